@@ -1,8 +1,25 @@
 package com.fitnesstracker;
 
+import com.fitnesstracker.database.ActivityDAO;
+import com.fitnesstracker.database.ActivitySummaryDAO;
+import com.fitnesstracker.database.DatabaseConfig;
+import com.fitnesstracker.database.DatabaseManager;
+import com.fitnesstracker.database.GoalDAO;
+import com.fitnesstracker.sync.ChangeFeedSynchronizer;
+import com.fitnesstracker.transfer.DataExporter;
+import com.fitnesstracker.transfer.ActivityImporter;
+import com.fitnesstracker.transfer.ImportResult;
 import com.fitnesstracker.ui.MainFrame;
 import javax.swing.SwingUtilities;
 import javax.swing.UIManager;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.Date;
+import java.util.Locale;
 
 /**
  * Main class - Entry point for Fitness Tracker Application
@@ -18,9 +35,22 @@ public class Main {
     
     /**
      * Main method to launch the application
-     * @param args command line arguments (not used)
+     * 
+     * Maintenance commands run without the UI:
+     * --rebuild-summary  recompute the daily activity summary from Activities
+     * --import FILE [--restart]
+     *                    import activities from a .csv or .ndjson file,
+     *                    resuming an interrupted import unless --restart is given
+     * --export activities|goals FILE [--from yyyy-MM-dd] [--to yyyy-MM-dd]
+     *                    export to .csv, .ndjson or .bin (add .gz to compress)
+     * 
+     * @param args command line arguments
      */
     public static void main(String[] args) {
+        if (args.length > 0) {
+            System.exit(runCommand(args));
+        }
+        
         // Set system look and feel for better UI appearance
         try {
             UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
@@ -28,6 +58,9 @@ public class Main {
             e.printStackTrace();
         }
         
+        // Must start before the trackers load (see ChangeFeedSynchronizer)
+        ChangeFeedSynchronizer.startIfEnabled();
+        
         // Launch GUI on Event Dispatch Thread for thread safety
         SwingUtilities.invokeLater(new Runnable() {
             @Override
@@ -37,4 +70,106 @@ public class Main {
             }
         });
     }
-}
\ No newline at end of file
+    
+    /**
+     * Run a maintenance command
+     * 
+     * @param args command and its arguments
+     * @return process exit code
+     */
+    private static int runCommand(String[] args) {
+        try {
+            switch (args[0]) {
+                case "--rebuild-summary":
+                    return new ActivitySummaryDAO().rebuild() >= 0 ? 0 : 1;
+                case "--import":
+                    if (args.length < 2) {
+                        System.err.println("Usage: --import FILE [--restart]");
+                        return 2;
+                    }
+                    return importActivities(Paths.get(args[1]),
+                        !(args.length > 2 && "--restart".equals(args[2])));
+                case "--export":
+                    return exportData(args);
+                default:
+                    System.err.println("Unknown command: " + args[0]);
+                    System.err.println("Commands: --rebuild-summary, --import FILE [--restart], " +
+                        "--export activities|goals FILE [--from DATE] [--to DATE]");
+                    return 2;
+            }
+        } finally {
+            DatabaseManager.getInstance().closeConnection();
+        }
+    }
+    
+    /**
+     * Import activities from a file, printing progress and line errors
+     * 
+     * @return 0 if the whole file was processed, 1 otherwise
+     */
+    private static int importActivities(Path file, boolean resume) {
+        int transactionSize = DatabaseManager.getInstance().getConfig()
+            .getInt(DatabaseConfig.IMPORT_BATCH_SIZE, 5000);
+        ActivityImporter importer = new ActivityImporter(new ActivityDAO(), transactionSize);
+        try {
+            ImportResult result = importer.importFile(file,
+                ActivityImporter.Format.fromFileName(file.toString()), resume,
+                (bytesRead, totalBytes, imported, failed) -> System.out.printf(
+                    " %5.1f%%  %d imported, %d failed%n",
+                    totalBytes == 0 ? 100.0 : bytesRead * 100.0 / totalBytes, imported, failed));
+            
+            for (ImportResult.LineError error : result.getErrors()) {
+                System.err.println(" " + error);
+            }
+            if (result.getFailedCount() > result.getErrors().size()) {
+                System.err.println(" ... and " + (result.getFailedCount() - result.getErrors().size()) +
+                    " more line errors");
+            }
+            System.out.println(" " + result);
+            return result.isCompleted() ? 0 : 1;
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Import failed: " + e.getMessage());
+            return 1;
+        }
+    }
+    
+    /**
+     * Export activities or goals to a file
+     * 
+     * @return 0 on success, 1 on failure, 2 on bad arguments
+     */
+    private static int exportData(String[] args) {
+        if (args.length < 3) {
+            System.err.println("Usage: --export activities|goals FILE [--from yyyy-MM-dd] [--to yyyy-MM-dd]");
+            return 2;
+        }
+        try {
+            DataExporter.Table table = DataExporter.Table.valueOf(args[1].toUpperCase(Locale.ROOT));
+            Path file = Paths.get(args[2]);
+            Date from = null;
+            Date to = null;
+            for (int i = 3; i + 1 < args.length; i += 2) {
+                Date date = Date.from(LocalDate.parse(args[i + 1]).atStartOfDay(ZoneId.systemDefault()).toInstant());
+                if ("--from".equals(args[i])) {
+                    from = date;
+                } else if ("--to".equals(args[i])) {
+                    to = date;
+                } else {
+                    System.err.println("Unknown option: " + args[i]);
+                    return 2;
+                }
+            }
+            
+            new DataExporter(new ActivityDAO(), new GoalDAO()).export(table, file,
+                DataExporter.Format.fromFileName(file.toString()),
+                file.toString().toLowerCase(Locale.ROOT).endsWith(".gz"), from, to);
+            return 0;
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            System.err.println("Export failed: " + e.getMessage());
+            return 2;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Export failed: " + e.getMessage());
+            return 1;
+        }
+    }
+}
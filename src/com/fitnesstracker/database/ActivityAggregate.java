@@ -0,0 +1,63 @@
+package com.fitnesstracker.database;
+
+import java.util.Date;
+
+/**
+ * ActivityAggregate - Totals for one time bucket (and optionally one exercise type)
+ *
+ * Produced by ActivityDAO.getAggregates, which computes them with
+ * GROUP BY in the database instead of loading the rows.
+ * @version 1.0
+ */
+public class ActivityAggregate {
+
+    private final Date bucketStart;
+    private final String exerciseType;
+    private final int activityCount;
+    private final double totalCalories;
+    private final int totalMinutes;
+    private final double averageIntensity;
+
+    public ActivityAggregate(Date bucketStart, String exerciseType, int activityCount,
+                             double totalCalories, int totalMinutes, double averageIntensity) {
+        this.bucketStart = bucketStart;
+        this.exerciseType = exerciseType;
+        this.activityCount = activityCount;
+        this.totalCalories = totalCalories;
+        this.totalMinutes = totalMinutes;
+        this.averageIntensity = averageIntensity;
+    }
+
+    /** First day of the bucket (midnight) */
+    public Date getBucketStart() {
+        return bucketStart;
+    }
+
+    /** Exercise type, or null when the aggregate covers all types */
+    public String getExerciseType() {
+        return exerciseType;
+    }
+
+    public int getActivityCount() {
+        return activityCount;
+    }
+
+    public double getTotalCalories() {
+        return totalCalories;
+    }
+
+    public int getTotalMinutes() {
+        return totalMinutes;
+    }
+
+    public double getAverageIntensity() {
+        return averageIntensity;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%tF %s: %d activities, %.0f cal, %d min, intensity %.1f",
+            bucketStart, exerciseType == null ? "ALL" : exerciseType,
+            activityCount, totalCalories, totalMinutes, averageIntensity);
+    }
+}
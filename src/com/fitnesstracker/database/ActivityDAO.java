@@ -2,10 +2,23 @@ package com.fitnesstracker.database;
 
 import com.fitnesstracker.model.Activity;
 import com.fitnesstracker.model.Exercise;
-import com.fitnesstracker.factory.ExerciseFactory;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * ActivityDAO - Data Access Object for Activity operations
@@ -21,10 +34,51 @@ import java.util.List;
  */
 public class ActivityDAO {
     
+    /** Columns bound by bindInsert, in order */
+    private static final List<String> INSERT_COLUMNS = Collections.unmodifiableList(Arrays.asList(
+        "ExerciseName", "ExerciseType", "Duration", "Intensity",
+        "CaloriesBurned", "ActivityDate", "Notes", "ClientRef"));
+    
+    private static final String INSERT_SQL =
+        "INSERT INTO Activities (" + String.join(", ", INSERT_COLUMNS) + ") " +
+        "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+    
+    // Parameters per IN list (SQL Server allows about 2100 per statement)
+    private static final int LOOKUP_CHUNK = 500;
+    
+    /** Columns read by exportRows, in order */
+    public static final List<String> EXPORT_COLUMNS = Collections.unmodifiableList(Arrays.asList(
+        "ActivityID", "ExerciseType", "ExerciseName", "Duration", "Intensity",
+        "CaloriesBurned", "ActivityDate", "Notes"));
+    
     private DatabaseManager dbManager;
+    private int batchSize;
+    private int fetchSize;
+    private final ActivityRowMapper fullMapper;
+    private final ActivityRowMapper summaryMapper;
     
     public ActivityDAO() {
         this.dbManager = DatabaseManager.getInstance();
+        this.fullMapper = new ActivityRowMapper(ActivityRowMapper.Projection.FULL, this::loadNotes);
+        this.summaryMapper = new ActivityRowMapper(ActivityRowMapper.Projection.SUMMARY, this::loadNotes);
+        this.batchSize = dbManager.getConfig().getInt(DatabaseConfig.BATCH_SIZE, 500);
+        this.fetchSize = dbManager.getConfig().getInt(DatabaseConfig.FETCH_SIZE, 1000);
+    }
+    
+    /**
+     * Set how many rows saveActivities sends per JDBC batch
+     * 
+     * @param batchSize rows per batch (must be positive)
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        this.batchSize = batchSize;
+    }
+    
+    public int getBatchSize() {
+        return batchSize;
     }
     
     /**
@@ -34,100 +88,524 @@ public class ActivityDAO {
      * @return the generated activity ID, or -1 if failed
      */
     public int saveActivity(Activity activity) {
-        String sql = "INSERT INTO Activities " +
-                    "(ExerciseName, ExerciseType, Duration, Intensity, " +
-                    "CaloriesBurned, ActivityDate, Notes) " +
-                    "VALUES (?, ?, ?, ?, ?, ?, ?)";
-        
-        try (Connection conn = dbManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+        try (Connection conn = dbManager.getConnection("ActivityDAO.saveActivity")) {
             
-            Exercise exercise = activity.getExercise();
+            // The daily summary is updated in the same transaction
+            conn.setAutoCommit(false);
+            saveActivity(conn, activity);
+            conn.commit();
             
-            pstmt.setString(1, exercise.getName());
-            pstmt.setString(2, exercise.getExerciseType());
-            pstmt.setInt(3, exercise.getDuration());
-            pstmt.setInt(4, exercise.getIntensity());
-            pstmt.setDouble(5, activity.getCaloriesBurned());
-            pstmt.setTimestamp(6, new Timestamp(activity.getDate().getTime()));
-            pstmt.setString(7, activity.getNotes());
+            System.out.println(" Activity saved with ID: " + activity.getId());
+            return activity.getId();
             
-            int rowsAffected = pstmt.executeUpdate();
+        } catch (SQLException e) {
+            activity.setId(0);
+            System.err.println("Error saving activity: " + e.getMessage());
+            e.printStackTrace();
+        }
+        
+        return -1;
+    }
+    
+    /**
+     * Save an activity and its daily summary change on the caller's
+     * connection (inside the caller's transaction, see UnitOfWork)
+     * 
+     * @param conn connection with auto-commit off
+     * @param activity the activity to save; its generated ID is set
+     * @throws SQLException if the insert fails
+     */
+    void saveActivity(Connection conn, Activity activity) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+            insertRow(pstmt, activity);
+        }
+        ActivitySummaryDAO.recordInserted(conn, Collections.singletonList(activity));
+    }
+    
+    /**
+     * Save many activities in one transaction using JDBC batches
+     * 
+     * Rows are sent in chunks of getBatchSize(): as a JDBC batch, or on
+     * backends that only return the last key of a batch (SQL Server) as
+     * multi-row inserts that return every key. If a chunk fails it is
+     * rolled back to a savepoint and retried row by row, so only the bad
+     * rows are reported as failures and the rest are still committed.
+     * Generated IDs are set on each saved Activity.
+     * 
+     * @param activities the activities to save
+     * @return which activities were saved and which failed
+     */
+    public BatchResult<Activity> saveActivities(Collection<Activity> activities) {
+        long start = System.nanoTime();
+        List<Activity> rows = new ArrayList<>(activities);
+        BatchResult<Activity> result = new BatchResult<>(rows.size());
+        if (rows.isEmpty()) {
+            return result;
+        }
+        
+        BitSet written = new BitSet(rows.size());
+        BitSet failed = new BitSet(rows.size());
+        try (Connection conn = dbManager.getConnection("ActivityDAO.saveActivities");
+             PreparedStatement pstmt = conn.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
             
-            if (rowsAffected > 0) {
-                // Get generated ID
-                ResultSet rs = pstmt.getGeneratedKeys();
-                if (rs.next()) {
-                    int id = rs.getInt(1);
-                    System.out.println(" Activity saved with ID: " + id);
-                    return id;
+            conn.setAutoCommit(false);
+            DatabaseBackend backend = dbManager.getBackend();
+            boolean batchKeys = backend.supportsBatchGeneratedKeys();
+            int multiRowLimit = batchKeys ? 0 : backend.getMaxMultiRowInsertRows(INSERT_COLUMNS.size());
+            
+            for (int from = 0; from < rows.size(); from += batchSize) {
+                int to = Math.min(from + batchSize, rows.size());
+                Savepoint savepoint = conn.setSavepoint();
+                try {
+                    if (batchKeys) {
+                        insertChunkBatched(pstmt, rows, from, to);
+                    } else if (multiRowLimit > 0) {
+                        insertChunkMultiRow(conn, backend, rows, from, to, multiRowLimit);
+                    } else {
+                        for (int i = from; i < to; i++) {
+                            insertRow(pstmt, rows.get(i));
+                        }
+                    }
+                    written.set(from, to);
+                } catch (SQLException | RuntimeException e) {
+                    pstmt.clearBatch();
+                    conn.rollback(savepoint);
+                    for (int i = from; i < to; i++) {
+                        rows.get(i).setId(0);
+                    }
+                    insertRowsIndividually(conn, pstmt, rows, from, to, written, failed, result);
                 }
             }
             
+            List<Activity> saved = new ArrayList<>(written.cardinality());
+            for (int i = written.nextSetBit(0); i >= 0; i = written.nextSetBit(i + 1)) {
+                saved.add(rows.get(i));
+            }
+            ActivitySummaryDAO.recordInserted(conn, saved);
+            
+            conn.commit();
+            for (Activity activity : saved) {
+                result.addSuccess(activity);
+            }
+            
         } catch (SQLException e) {
-            System.err.println("Error saving activity: " + e.getMessage());
-            e.printStackTrace();
+            System.err.println("Error saving activity batch: " + e.getMessage());
+            // Nothing from the open transaction was committed
+            result.setRolledBack(true);
+            for (int i = failed.nextClearBit(0); i < rows.size(); i = failed.nextClearBit(i + 1)) {
+                rows.get(i).setId(0);
+                result.addFailure(i, rows.get(i), "Not written, transaction rolled back: " + e.getMessage());
+            }
         }
         
-        return -1;
+        result.setElapsedNanos(System.nanoTime() - start);
+        System.out.println(" Batch insert: " + result);
+        return result;
+    }
+    
+    /**
+     * Send rows [from, to) as one JDBC batch and map generated keys back in order
+     */
+    private void insertChunkBatched(PreparedStatement pstmt, List<Activity> rows, int from, int to)
+            throws SQLException {
+        for (int i = from; i < to; i++) {
+            bindInsert(pstmt, rows.get(i));
+            pstmt.addBatch();
+        }
+        pstmt.executeBatch();
+        
+        try (ResultSet keys = pstmt.getGeneratedKeys()) {
+            int i = from;
+            while (keys.next() && i < to) {
+                rows.get(i++).setId(keys.getInt(1));
+            }
+            if (i != to) {
+                throw new SQLException("Expected " + (to - from) + " generated keys, got " + (i - from));
+            }
+        }
+    }
+    
+    /**
+     * Send rows [from, to) as multi-row inserts of at most limit rows and
+     * set the keys they return (see DatabaseBackend.multiRowInsertSql)
+     */
+    private void insertChunkMultiRow(Connection conn, DatabaseBackend backend, List<Activity> rows,
+                                     int from, int to, int limit) throws SQLException {
+        for (int start = from; start < to; start += limit) {
+            int count = Math.min(limit, to - start);
+            String sql = backend.multiRowInsertSql("Activities", INSERT_COLUMNS, "ActivityID", count);
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                for (int i = 0; i < count; i++) {
+                    bindInsert(pstmt, rows.get(start + i), i * INSERT_COLUMNS.size());
+                }
+                int keys = 0;
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        rows.get(start + rs.getInt(1)).setId(rs.getInt(2));
+                        keys++;
+                    }
+                }
+                if (keys != count) {
+                    throw new SQLException("Expected " + count + " generated keys, got " + keys);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Insert a single row on an open statement and set its generated ID
+     */
+    private void insertRow(PreparedStatement pstmt, Activity activity) throws SQLException {
+        bindInsert(pstmt, activity);
+        pstmt.executeUpdate();
+        try (ResultSet keys = pstmt.getGeneratedKeys()) {
+            if (!keys.next()) {
+                throw new SQLException("No generated key returned");
+            }
+            activity.setId(keys.getInt(1));
+        }
+    }
+    
+    /**
+     * Retry a failed chunk one row at a time to find the rows that fail
+     */
+    private void insertRowsIndividually(Connection conn, PreparedStatement pstmt, List<Activity> rows,
+                                        int from, int to, BitSet written, BitSet failed,
+                                        BatchResult<Activity> result) throws SQLException {
+        for (int i = from; i < to; i++) {
+            Activity activity = rows.get(i);
+            Savepoint savepoint = conn.setSavepoint();
+            try {
+                insertRow(pstmt, activity);
+                written.set(i);
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback(savepoint);
+                activity.setId(0);
+                failed.set(i);
+                result.addFailure(i, activity, String.valueOf(e.getMessage()));
+            }
+        }
+    }
+    
+    /**
+     * Bind the INSERT_SQL parameters for an activity
+     */
+    private void bindInsert(PreparedStatement pstmt, Activity activity) throws SQLException {
+        bindInsert(pstmt, activity, 0);
+    }
+    
+    /**
+     * Bind the INSERT_COLUMNS of an activity after the first offset parameters
+     */
+    private void bindInsert(PreparedStatement pstmt, Activity activity, int offset) throws SQLException {
+        Exercise exercise = activity.getExercise();
+        
+        pstmt.setString(offset + 1, exercise.getName());
+        pstmt.setString(offset + 2, exercise.getExerciseType());
+        pstmt.setInt(offset + 3, exercise.getDuration());
+        pstmt.setInt(offset + 4, exercise.getIntensity());
+        pstmt.setDouble(offset + 5, activity.getCaloriesBurned());
+        pstmt.setTimestamp(offset + 6, new Timestamp(activity.getDate().getTime()));
+        pstmt.setString(offset + 7, activity.getNotes());
+        pstmt.setString(offset + 8, activity.getClientRef());
     }
     
     /**
      * Get all activities from database
+     * Reads through one ResultSet; for very large tables ParallelActivityLoader
+     * reads partitions on several connections at once.
+     * Notes are left out of the query and load on the first getNotes() of
+     * each activity (one query each).
      * 
      * @return list of all activities
      */
     public List<Activity> getAllActivities() {
         List<Activity> activities = new ArrayList<>();
-        String sql = "SELECT * FROM Activities ORDER BY ActivityDate DESC";
         
-        try (Connection conn = dbManager.getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
+        try {
+            streamActivities(ActivityFilter.all().withoutNotes(), activities::add);
+            System.out.println(" Retrieved " + activities.size() + " activities from database");
+        } catch (DataAccessException e) {
+            System.err.println("Error retrieving activities: " + e.getMessage());
+            e.printStackTrace();
+        }
+        
+        return activities;
+    }
+    
+    /**
+     * Stream activities to a consumer without building a list
+     * 
+     * Rows are fetched in chunks of fitness.db.fetchSize and handed to the
+     * consumer one at a time, so memory use does not depend on how many
+     * rows match. The connection is held only while streaming.
+     * 
+     * @param filter which activities to read and in what order
+     * @param consumer receives each activity
+     * @return number of activities streamed
+     * @throws DataAccessException if the query fails
+     */
+    public int streamActivities(ActivityFilter filter, Consumer<Activity> consumer) {
+        ActivityRowMapper mapper = mapperFor(filter.getProjection());
+        int count = 0;
+        try (Connection conn = dbManager.getConnection("ActivityDAO.streamActivities");
+             PreparedStatement pstmt = prepareStreamingQuery(conn, filter);
+             ResultSet rs = pstmt.executeQuery()) {
             
             while (rs.next()) {
-                Activity activity = createActivityFromResultSet(rs);
+                Activity activity = createActivityFromResultSet(mapper, rs);
                 if (activity != null) {
-                    activities.add(activity);
+                    consumer.accept(activity);
+                    count++;
                 }
             }
             
-            System.out.println(" Retrieved " + activities.size() + " activities from database");
+        } catch (SQLException e) {
+            throw new DataAccessException("Error streaming activities: " + e.getMessage(), e);
+        }
+        return count;
+    }
+    
+    /**
+     * Read raw activity rows for export, oldest first
+     * 
+     * Columns are EXPORT_COLUMNS. Stored values are passed through
+     * as they are (calories are not recalculated). Rows are fetched in
+     * chunks of fitness.db.fetchSize.
+     * 
+     * @param from start of the range (inclusive), or null
+     * @param to end of the range (exclusive), or null
+     * @param callback receives each row
+     * @return number of rows read
+     * @throws DataAccessException if the query fails
+     */
+    public long exportRows(Date from, Date to, RowCallback callback) {
+        ActivityFilter filter = ActivityFilter.all().from(from).to(to).oldestFirst();
+        String sql = "SELECT " + String.join(", ", EXPORT_COLUMNS) + " FROM Activities" +
+                     filter.toSqlSuffix();
+        long count = 0;
+        
+        try (Connection conn = dbManager.getConnection("ActivityDAO.exportRows");
+             PreparedStatement pstmt = conn.prepareStatement(sql,
+                 ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            
+            pstmt.setFetchSize(fetchSize);
+            filter.bind(pstmt);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    callback.processRow(rs);
+                    count++;
+                }
+            }
             
         } catch (SQLException e) {
-            System.err.println("Error retrieving activities: " + e.getMessage());
+            throw new DataAccessException("Error exporting activities: " + e.getMessage(), e);
+        }
+        return count;
+    }
+    
+    /**
+     * Open a lazily populated stream of activities
+     * 
+     * The query runs when the first element is requested. The connection
+     * and ResultSet are released when the stream is exhausted or closed,
+     * so use try-with-resources when the stream may be abandoned early:
+     * <pre>
+     * try (Stream&lt;Activity&gt; stream = dao.openActivityStream(ActivityFilter.all())) {
+     *     stream.limit(10).forEach(...);
+     * }
+     * </pre>
+     * 
+     * @param filter which activities to read and in what order
+     * @return stream of activities
+     */
+    public Stream<Activity> openActivityStream(ActivityFilter filter) {
+        ActivityCursor cursor = new ActivityCursor(filter);
+        return StreamSupport.stream(cursor, false).onClose(cursor::close);
+    }
+    
+    /**
+     * Prepare a forward-only, read-only query with the configured fetch size
+     */
+    private PreparedStatement prepareStreamingQuery(Connection conn, ActivityFilter filter)
+            throws SQLException {
+        PreparedStatement pstmt = conn.prepareStatement(
+            "SELECT " + filter.getProjection().getColumns() + " FROM Activities" + filter.toSqlSuffix(),
+            ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        try {
+            pstmt.setFetchSize(fetchSize);
+            filter.bind(pstmt);
+            return pstmt;
+        } catch (SQLException e) {
+            pstmt.close();
+            throw e;
+        }
+    }
+    
+    /**
+     * Spliterator over an open ResultSet, opened on first use
+     */
+    private class ActivityCursor extends Spliterators.AbstractSpliterator<Activity> {
+        private final ActivityFilter filter;
+        private final ActivityRowMapper mapper;
+        private Connection conn;
+        private PreparedStatement pstmt;
+        private ResultSet rs;
+        private boolean done;
+        
+        ActivityCursor(ActivityFilter filter) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.filter = filter;
+            this.mapper = mapperFor(filter.getProjection());
+        }
+        
+        @Override
+        public boolean tryAdvance(Consumer<? super Activity> action) {
+            if (done) {
+                return false;
+            }
+            try {
+                if (rs == null) {
+                    conn = dbManager.getConnection("ActivityDAO.streamActivities");
+                    pstmt = prepareStreamingQuery(conn, filter);
+                    rs = pstmt.executeQuery();
+                }
+                while (rs.next()) {
+                    Activity activity = createActivityFromResultSet(mapper, rs);
+                    if (activity != null) {
+                        action.accept(activity);
+                        return true;
+                    }
+                }
+                close();
+                return false;
+            } catch (SQLException e) {
+                close();
+                throw new DataAccessException("Error streaming activities: " + e.getMessage(), e);
+            }
+        }
+        
+        void close() {
+            done = true;
+            try {
+                if (rs != null) {
+                    rs.close();
+                }
+                if (pstmt != null) {
+                    pstmt.close();
+                }
+            } catch (SQLException e) {
+                System.err.println("Error closing activity stream: " + e.getMessage());
+            } finally {
+                rs = null;
+                pstmt = null;
+                if (conn != null) {
+                    try {
+                        conn.close();
+                    } catch (SQLException e) {
+                        System.err.println("Error closing activity stream: " + e.getMessage());
+                    }
+                    conn = null;
+                }
+            }
+        }
+    }
+    
+    /**
+     * Get one page of activity history, newest first
+     * 
+     * Uses keyset pagination on (ActivityDate, ActivityID) instead of OFFSET,
+     * so every page costs the same however deep into the history it is.
+     * Backed by the IX_Activities_Date_ID index.
+     * 
+     * @param cursor null for the first page, otherwise getNextCursor() of the previous page
+     * @param limit maximum number of activities on the page
+     * @return the page and the cursor for the next one
+     * @throws IllegalArgumentException if the cursor is malformed or limit is not positive
+     */
+    public ActivityPage getActivitiesPage(String cursor, int limit) {
+        try {
+            return readActivitiesPage(cursor, limit);
+        } catch (SQLException e) {
+            System.err.println("Error retrieving activity page: " + e.getMessage());
             e.printStackTrace();
         }
+        return new ActivityPage(new ArrayList<>(), null);
+    }
+    
+    /**
+     * Get one page of activity history, newest first, reporting failures
+     * Same as getActivitiesPage, for callers that must not mistake a failed
+     * read for the end of the history.
+     * 
+     * @param cursor null for the first page, otherwise getNextCursor() of the previous page
+     * @param limit maximum number of activities on the page
+     * @return the page and the cursor for the next one
+     * @throws SQLException if the page cannot be read
+     * @throws IllegalArgumentException if the cursor is malformed or limit is not positive
+     */
+    public ActivityPage readActivitiesPage(String cursor, int limit) throws SQLException {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Page limit must be positive");
+        }
         
-        return activities;
+        String sql = "SELECT " + summaryMapper.getProjection().getColumns() + " FROM Activities " +
+                     (cursor == null ? "" :
+                        "WHERE ActivityDate <= ? AND (ActivityDate < ? OR ActivityID < ?) ") +
+                     "ORDER BY ActivityDate DESC, ActivityID DESC " +
+                     "OFFSET 0 ROWS FETCH NEXT ? ROWS ONLY";
+        
+        List<Activity> activities = new ArrayList<>(limit);
+        String nextCursor = null;
+        
+        try (Connection conn = dbManager.getConnection("ActivityDAO.readActivitiesPage");
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            
+            int param = 1;
+            if (cursor != null) {
+                long[] position = ActivityPage.decodeCursor(cursor);
+                Timestamp after = new Timestamp(position[0]);
+                pstmt.setTimestamp(param++, after);
+                pstmt.setTimestamp(param++, after);
+                pstmt.setInt(param++, (int) position[1]);
+            }
+            // One extra row tells us whether another page exists
+            pstmt.setInt(param, limit + 1);
+            
+            try (ResultSet rs = pstmt.executeQuery()) {
+                long lastDate = 0;
+                int lastId = 0;
+                while (rs.next()) {
+                    if (activities.size() == limit) {
+                        nextCursor = ActivityPage.encodeCursor(lastDate, lastId);
+                        break;
+                    }
+                    lastDate = rs.getTimestamp(ActivityRowMapper.ACTIVITY_DATE).getTime();
+                    lastId = rs.getInt(ActivityRowMapper.ACTIVITY_ID);
+                    Activity activity = createActivityFromResultSet(summaryMapper, rs);
+                    if (activity != null) {
+                        activities.add(activity);
+                    }
+                }
+            }
+        }
+        
+        return new ActivityPage(activities, nextCursor);
     }
     
     /**
      * Get activities by type
+     * Notes load lazily, on the first getNotes() of each activity.
      * 
      * @param type exercise type (CARDIO, STRENGTH, FLEXIBILITY)
      * @return list of activities matching the type
      */
     public List<Activity> getActivitiesByType(String type) {
         List<Activity> activities = new ArrayList<>();
-        String sql = "SELECT * FROM Activities WHERE ExerciseType = ? ORDER BY ActivityDate DESC";
         
-        try (Connection conn = dbManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            
-            pstmt.setString(1, type);
-            ResultSet rs = pstmt.executeQuery();
-            
-            while (rs.next()) {
-                Activity activity = createActivityFromResultSet(rs);
-                if (activity != null) {
-                    activities.add(activity);
-                }
-            }
-            
-            rs.close();
-            
-        } catch (SQLException e) {
+        try {
+            streamActivities(ActivityFilter.all().withType(type).withoutNotes(), activities::add);
+        } catch (DataAccessException e) {
             System.err.println("Error retrieving activities by type: " + e.getMessage());
             e.printStackTrace();
         }
@@ -135,15 +613,38 @@ public class ActivityDAO {
         return activities;
     }
     
+    /**
+     * Get activities that took place in a time range, newest first
+     * Served by the IX_Activities_Date_ID index. Notes load lazily, on the
+     * first getNotes() of each activity.
+     * 
+     * @param from start of the range (inclusive)
+     * @param to end of the range (exclusive)
+     * @return list of activities in the range
+     */
+    public List<Activity> getActivitiesBetween(Date from, Date to) {
+        List<Activity> activities = new ArrayList<>();
+        
+        try {
+            streamActivities(ActivityFilter.all().from(from).to(to).withoutNotes(), activities::add);
+        } catch (DataAccessException e) {
+            System.err.println("Error retrieving activities by date: " + e.getMessage());
+            e.printStackTrace();
+        }
+        
+        return activities;
+    }
+    
     /**
      * Get total calories burned
+     * Read from the type totals, one row per exercise type.
      * 
      * @return total calories across all activities
      */
     public double getTotalCalories() {
-        String sql = "SELECT SUM(CaloriesBurned) as Total FROM Activities";
+        String sql = "SELECT SUM(TotalCalories) as Total FROM ActivityTypeTotals";
         
-        try (Connection conn = dbManager.getConnection();
+        try (Connection conn = dbManager.getConnection("ActivityDAO.getTotalCalories");
              Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
             
@@ -160,13 +661,14 @@ public class ActivityDAO {
     
     /**
      * Get total duration of all activities
+     * Read from the type totals, one row per exercise type.
      * 
      * @return total duration in minutes
      */
     public int getTotalDuration() {
-        String sql = "SELECT SUM(Duration) as Total FROM Activities";
+        String sql = "SELECT SUM(TotalMinutes) as Total FROM ActivityTypeTotals";
         
-        try (Connection conn = dbManager.getConnection();
+        try (Connection conn = dbManager.getConnection("ActivityDAO.getTotalDuration");
              Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
             
@@ -181,6 +683,91 @@ public class ActivityDAO {
         return 0;
     }
     
+    /**
+     * Get the highest ActivityID handed out so far
+     * 
+     * @return the highest ID, 0 if the table is empty, or -1 if the query failed
+     */
+    public int getMaxActivityId() {
+        String sql = "SELECT MAX(ActivityID) FROM Activities";
+        
+        try (Connection conn = dbManager.getConnection("ActivityDAO.getMaxActivityId");
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            
+            if (rs.next()) {
+                return rs.getInt(1);
+            }
+            
+        } catch (SQLException e) {
+            System.err.println("Error reading highest activity ID: " + e.getMessage());
+        }
+        
+        return -1;
+    }
+    
+    /**
+     * Get per-bucket totals computed in the database
+     * Only one row per bucket (and type) leaves the server, so trend
+     * views do not have to load the history.
+     * 
+     * @param bucket day, week or month
+     * @param from start of the range (inclusive), or null for no lower bound
+     * @param to end of the range (exclusive), or null for no upper bound
+     * @param byType true to split each bucket by exercise type
+     * @return aggregates ordered by bucket (then type), oldest first
+     */
+    public List<ActivityAggregate> getAggregates(TimeBucket bucket, Date from, Date to, boolean byType) {
+        List<ActivityAggregate> aggregates = new ArrayList<>();
+        String bucketExpr = dbManager.getBackend().bucketStartExpression(bucket, "ActivityDate");
+        
+        StringBuilder sql = new StringBuilder("SELECT ").append(bucketExpr).append(" AS BucketStart, ");
+        sql.append(byType ? "ExerciseType" : "NULL").append(" AS ExerciseType, ");
+        sql.append("COUNT(*) AS ActivityCount, SUM(CaloriesBurned) AS TotalCalories, ");
+        sql.append("SUM(Duration) AS TotalMinutes, AVG(Intensity * 1.0) AS AvgIntensity ");
+        sql.append("FROM Activities");
+        if (from != null || to != null) {
+            sql.append(" WHERE ");
+            if (from != null) {
+                sql.append("ActivityDate >= ?");
+            }
+            if (to != null) {
+                sql.append(from != null ? " AND " : "").append("ActivityDate < ?");
+            }
+        }
+        sql.append(" GROUP BY ").append(bucketExpr).append(byType ? ", ExerciseType" : "");
+        sql.append(" ORDER BY ").append(bucketExpr).append(byType ? ", ExerciseType" : "");
+        
+        try (Connection conn = dbManager.getConnection("ActivityDAO.getAggregates");
+             PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+            
+            int index = 1;
+            if (from != null) {
+                pstmt.setTimestamp(index++, new Timestamp(from.getTime()));
+            }
+            if (to != null) {
+                pstmt.setTimestamp(index, new Timestamp(to.getTime()));
+            }
+            
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    aggregates.add(new ActivityAggregate(
+                        new Date(rs.getDate("BucketStart").getTime()),
+                        rs.getString("ExerciseType"),
+                        rs.getInt("ActivityCount"),
+                        rs.getDouble("TotalCalories"),
+                        rs.getInt("TotalMinutes"),
+                        rs.getDouble("AvgIntensity")));
+                }
+            }
+            
+        } catch (SQLException e) {
+            System.err.println("Error calculating activity aggregates: " + e.getMessage());
+        }
+        
+        return aggregates;
+    }
+    
     /**
      * Delete activity by ID
      * 
@@ -188,19 +775,13 @@ public class ActivityDAO {
      * @return true if deleted successfully
      */
     public boolean deleteActivity(int activityId) {
-        String sql = "DELETE FROM Activities WHERE ActivityID = ?";
-        
-        try (Connection conn = dbManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            
-            pstmt.setInt(1, activityId);
-            int rowsAffected = pstmt.executeUpdate();
-            
-            if (rowsAffected > 0) {
+        try (Connection conn = dbManager.getConnection("ActivityDAO.deleteActivity")) {
+            conn.setAutoCommit(false);
+            if (deleteActivity(conn, activityId)) {
+                conn.commit();
                 System.out.println(" Activity deleted: ID " + activityId);
                 return true;
             }
-            
         } catch (SQLException e) {
             System.err.println("Error deleting activity: " + e.getMessage());
         }
@@ -208,6 +789,41 @@ public class ActivityDAO {
         return false;
     }
     
+    /**
+     * Delete an activity, its daily summary share and leave a tombstone,
+     * on the caller's connection (inside the caller's transaction)
+     * 
+     * @param conn connection with auto-commit off
+     * @param activityId the ID of activity to delete
+     * @return true if the activity existed
+     * @throws SQLException if a statement fails
+     */
+    boolean deleteActivity(Connection conn, int activityId) throws SQLException {
+        String selectSql = "SELECT ActivityDate, ExerciseType, CaloriesBurned, Duration, Intensity " +
+                           "FROM Activities WHERE ActivityID = ?";
+        String sql = "DELETE FROM Activities WHERE ActivityID = ?";
+        
+        try (PreparedStatement select = conn.prepareStatement(selectSql);
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            
+            select.setInt(1, activityId);
+            try (ResultSet rs = select.executeQuery()) {
+                if (!rs.next()) {
+                    return false;
+                }
+                
+                pstmt.setInt(1, activityId);
+                if (pstmt.executeUpdate() == 0) {
+                    return false;
+                }
+                ActivitySummaryDAO.recordDeleted(conn, rs.getTimestamp(1), rs.getString(2),
+                    rs.getDouble(3), rs.getInt(4), rs.getInt(5));
+                ChangeFeedDAO.recordDeletion(conn, ChangeFeedDAO.ACTIVITIES, activityId);
+                return true;
+            }
+        }
+    }
+    
     /**
      * Clear all activities from database
      * 
@@ -216,10 +832,14 @@ public class ActivityDAO {
     public boolean clearAllActivities() {
         String sql = "DELETE FROM Activities";
         
-        try (Connection conn = dbManager.getConnection();
+        try (Connection conn = dbManager.getConnection("ActivityDAO.clearAllActivities");
              Statement stmt = conn.createStatement()) {
             
+            conn.setAutoCommit(false);
             int rowsDeleted = stmt.executeUpdate(sql);
+            ActivitySummaryDAO.clear(conn);
+            ChangeFeedDAO.recordDeletion(conn, ChangeFeedDAO.ACTIVITIES, ChangeFeedDAO.ALL_ROWS);
+            conn.commit();
             System.out.println(" Cleared " + rowsDeleted + " activities from database");
             return true;
             
@@ -230,31 +850,117 @@ public class ActivityDAO {
         return false;
     }
     
+    /**
+     * Load the notes of one activity (used for lazily loaded notes)
+     * 
+     * @param activityId the activity ID
+     * @return the notes, or null if not found
+     */
+    public String loadNotes(int activityId) {
+        String sql = "SELECT Notes FROM Activities WHERE ActivityID = ?";
+        
+        try (Connection conn = dbManager.getConnection("ActivityDAO.loadNotes");
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            
+            pstmt.setInt(1, activityId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    return rs.getString(1);
+                }
+            }
+            
+        } catch (SQLException e) {
+            System.err.println("Error loading activity notes: " + e.getMessage());
+        }
+        
+        return null;
+    }
+    
+    /**
+     * Look up activities already saved under the given client references
+     * Used by the offline journal to skip rows a previous replay wrote.
+     * 
+     * @param clientRefs references to look for
+     * @return ActivityID by ClientRef for the references found
+     * @throws SQLException if the lookup fails (the caller must not assume "not found")
+     */
+    public Map<String, Integer> findIdsByClientRef(Collection<String> clientRefs) throws SQLException {
+        Map<String, Integer> found = new HashMap<>();
+        List<String> refs = new ArrayList<>(clientRefs);
+        
+        try (Connection conn = dbManager.getConnection("ActivityDAO.findIdsByClientRef")) {
+            for (int from = 0; from < refs.size(); from += LOOKUP_CHUNK) {
+                List<String> chunk = refs.subList(from, Math.min(refs.size(), from + LOOKUP_CHUNK));
+                String sql = "SELECT ClientRef, ActivityID FROM Activities WHERE ClientRef IN (" +
+                             String.join(", ", Collections.nCopies(chunk.size(), "?")) + ")";
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    for (int i = 0; i < chunk.size(); i++) {
+                        pstmt.setString(i + 1, chunk.get(i));
+                    }
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        while (rs.next()) {
+                            found.put(rs.getString(1), rs.getInt(2));
+                        }
+                    }
+                }
+            }
+        }
+        return found;
+    }
+    
+    /**
+     * Find which of the given activities are still in the database
+     * Used after clearing to tell rows saved just before the DELETE (gone)
+     * from rows saved after it.
+     * 
+     * @param ids activity IDs to look for
+     * @return the IDs found
+     * @throws SQLException if the lookup fails (the caller must not assume "not found")
+     */
+    public Set<Integer> findExistingIds(Collection<Integer> ids) throws SQLException {
+        Set<Integer> found = new HashSet<>();
+        List<Integer> list = new ArrayList<>(ids);
+        
+        try (Connection conn = dbManager.getConnection("ActivityDAO.findExistingIds")) {
+            for (int from = 0; from < list.size(); from += LOOKUP_CHUNK) {
+                List<Integer> chunk = list.subList(from, Math.min(list.size(), from + LOOKUP_CHUNK));
+                String sql = "SELECT ActivityID FROM Activities WHERE ActivityID IN (" +
+                             String.join(", ", Collections.nCopies(chunk.size(), "?")) + ")";
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    for (int i = 0; i < chunk.size(); i++) {
+                        pstmt.setInt(i + 1, chunk.get(i));
+                    }
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        while (rs.next()) {
+                            found.add(rs.getInt(1));
+                        }
+                    }
+                }
+            }
+        }
+        return found;
+    }
+    
+    /**
+     * Get the row mapper matching a projection
+     */
+    private ActivityRowMapper mapperFor(ActivityRowMapper.Projection projection) {
+        return projection == ActivityRowMapper.Projection.FULL ? fullMapper : summaryMapper;
+    }
+    
     /**
      * Helper method to create Activity object from ResultSet
      * 
+     * @param mapper the mapper matching the query's column list
      * @param rs the ResultSet containing activity data
      * @return Activity object or null if error
      */
-    private Activity createActivityFromResultSet(ResultSet rs) {
+    private Activity createActivityFromResultSet(ActivityRowMapper mapper, ResultSet rs) {
         try {
-            String name = rs.getString("ExerciseName");
-            String type = rs.getString("ExerciseType");
-            int duration = rs.getInt("Duration");
-            int intensity = rs.getInt("Intensity");
-            String notes = rs.getString("Notes");
-            
-            // Recreate exercise using Factory
-            Exercise exercise = ExerciseFactory.createExercise(type, name, duration, intensity);
-            
-            // Create activity
-            Activity activity = new Activity(exercise, notes);
-            
-            return activity;
-            
-        } catch (SQLException e) {
+            return mapper.mapRow(rs);
+        } catch (SQLException | IllegalArgumentException e) {
             System.err.println("Error creating activity from result set: " + e.getMessage());
             return null;
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,124 @@
+package com.fitnesstracker.database;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Date;
+
+/**
+ * ActivityFilter - Criteria for streaming activity reads
+ *
+ * Immutable; each method returns a new filter, e.g.
+ * <pre>
+ * ActivityFilter.all().withType("CARDIO").from(start).oldestFirst()
+ * </pre>
+ * @version 1.0
+ */
+public final class ActivityFilter {
+
+    private static final ActivityFilter ALL = new ActivityFilter(null, null, null, false, true);
+
+    private final String type;
+    private final Date from;
+    private final Date to;
+    private final boolean oldestFirst;
+    private final boolean includeNotes;
+
+    private ActivityFilter(String type, Date from, Date to, boolean oldestFirst, boolean includeNotes) {
+        this.type = type;
+        this.from = from;
+        this.to = to;
+        this.oldestFirst = oldestFirst;
+        this.includeNotes = includeNotes;
+    }
+
+    /** Every activity, newest first */
+    public static ActivityFilter all() {
+        return ALL;
+    }
+
+    /** Only activities of the given exercise type (CARDIO, STRENGTH, FLEXIBILITY) */
+    public ActivityFilter withType(String exerciseType) {
+        return new ActivityFilter(exerciseType, from, to, oldestFirst, includeNotes);
+    }
+
+    /** Only activities on or after this time (inclusive) */
+    public ActivityFilter from(Date start) {
+        return new ActivityFilter(type, start, to, oldestFirst, includeNotes);
+    }
+
+    /** Only activities before this time (exclusive) */
+    public ActivityFilter to(Date end) {
+        return new ActivityFilter(type, from, end, oldestFirst, includeNotes);
+    }
+
+    /** Return rows in ascending date order instead of newest first */
+    public ActivityFilter oldestFirst() {
+        return new ActivityFilter(type, from, to, true, includeNotes);
+    }
+
+    /** Leave the Notes column out of the query; notes load lazily on access */
+    public ActivityFilter withoutNotes() {
+        return new ActivityFilter(type, from, to, oldestFirst, false);
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public Date getFrom() {
+        return from;
+    }
+
+    public Date getTo() {
+        return to;
+    }
+
+    public boolean isOldestFirst() {
+        return oldestFirst;
+    }
+
+    /** Column list the query should select */
+    public ActivityRowMapper.Projection getProjection() {
+        return includeNotes ? ActivityRowMapper.Projection.FULL : ActivityRowMapper.Projection.SUMMARY;
+    }
+
+    /**
+     * WHERE and ORDER BY clauses for this filter
+     */
+    String toSqlSuffix() {
+        StringBuilder sql = new StringBuilder();
+        String joiner = " WHERE ";
+        if (type != null) {
+            sql.append(joiner).append("ExerciseType = ?");
+            joiner = " AND ";
+        }
+        if (from != null) {
+            sql.append(joiner).append("ActivityDate >= ?");
+            joiner = " AND ";
+        }
+        if (to != null) {
+            sql.append(joiner).append("ActivityDate < ?");
+        }
+        String direction = oldestFirst ? "ASC" : "DESC";
+        sql.append(" ORDER BY ActivityDate ").append(direction)
+           .append(", ActivityID ").append(direction);
+        return sql.toString();
+    }
+
+    /**
+     * Bind the parameters of toSqlSuffix() starting at index 1
+     */
+    void bind(PreparedStatement pstmt) throws SQLException {
+        int param = 1;
+        if (type != null) {
+            pstmt.setString(param++, type);
+        }
+        if (from != null) {
+            pstmt.setTimestamp(param++, new Timestamp(from.getTime()));
+        }
+        if (to != null) {
+            pstmt.setTimestamp(param, new Timestamp(to.getTime()));
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.fitnesstracker.database;
+
+import com.fitnesstracker.model.Activity;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * ActivityPage - One page of activity history (newest first)
+ *
+ * Pages are read with keyset pagination on (ActivityDate, ActivityID).
+ * The continuation cursor is opaque to callers: pass getNextCursor() to
+ * ActivityDAO.getActivitiesPage to read the following page.
+ * @version 1.0
+ */
+public class ActivityPage {
+
+    private static final String CURSOR_VERSION = "v1";
+
+    private final List<Activity> activities;
+    private final String nextCursor;
+
+    ActivityPage(List<Activity> activities, String nextCursor) {
+        this.activities = Collections.unmodifiableList(activities);
+        this.nextCursor = nextCursor;
+    }
+
+    /** Activities on this page, newest first */
+    public List<Activity> getActivities() {
+        return activities;
+    }
+
+    /** Cursor for the next (older) page, or null if this is the last page */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean hasMore() {
+        return nextCursor != null;
+    }
+
+    /**
+     * Encode the position after the given row
+     */
+    static String encodeCursor(long activityDateMillis, int activityId) {
+        String raw = CURSOR_VERSION + ":" + activityDateMillis + ":" + activityId;
+        return Base64.getUrlEncoder().withoutPadding()
+            .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode a cursor into {activityDateMillis, activityId}
+     *
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    static long[] decodeCursor(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split(":");
+            if (parts.length != 3 || !CURSOR_VERSION.equals(parts[0])) {
+                throw new IllegalArgumentException("Invalid page cursor: " + cursor);
+            }
+            return new long[]{Long.parseLong(parts[1]), Integer.parseInt(parts[2])};
+        } catch (IllegalArgumentException e) {
+            // Also covers bad Base64 and NumberFormatException
+            throw new IllegalArgumentException("Invalid page cursor: " + cursor, e);
+        }
+    }
+}
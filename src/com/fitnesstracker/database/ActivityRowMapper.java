@@ -0,0 +1,92 @@
+package com.fitnesstracker.database;
+
+import com.fitnesstracker.factory.ExerciseFactory;
+import com.fitnesstracker.model.Activity;
+import com.fitnesstracker.model.Exercise;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Date;
+import java.util.function.IntFunction;
+
+/**
+ * ActivityRowMapper - Maps Activities rows with an explicit column list
+ *
+ * Projections:
+ * - FULL: every column the Activity needs, including Notes
+ * - SUMMARY: leaves out the Notes text column; notes are loaded on
+ *   first access through the supplied loader
+ * @version 1.0
+ */
+public class ActivityRowMapper implements RowMapper<Activity> {
+
+    /**
+     * Which columns a query selects
+     */
+    public enum Projection {
+        FULL(ActivityRowMapper.SUMMARY_COLUMNS + ", Notes"),
+        SUMMARY(ActivityRowMapper.SUMMARY_COLUMNS);
+
+        private final String columns;
+
+        Projection(String columns) {
+            this.columns = columns;
+        }
+
+        /** Comma separated SELECT list for this projection */
+        public String getColumns() {
+            return columns;
+        }
+    }
+
+    static final String SUMMARY_COLUMNS =
+        "ActivityID, ExerciseName, ExerciseType, Duration, Intensity, ActivityDate";
+
+    // Positions in the SELECT list
+    static final int ACTIVITY_ID = 1;
+    static final int EXERCISE_NAME = 2;
+    static final int EXERCISE_TYPE = 3;
+    static final int DURATION = 4;
+    static final int INTENSITY = 5;
+    static final int ACTIVITY_DATE = 6;
+    static final int NOTES = 7;
+
+    private final Projection projection;
+    private final IntFunction<String> notesLoader;
+
+    /**
+     * @param projection columns selected by the query
+     * @param notesLoader loads notes by ActivityID (used by SUMMARY only)
+     */
+    public ActivityRowMapper(Projection projection, IntFunction<String> notesLoader) {
+        this.projection = projection;
+        this.notesLoader = notesLoader;
+    }
+
+    public Projection getProjection() {
+        return projection;
+    }
+
+    @Override
+    public Activity mapRow(ResultSet rs) throws SQLException {
+        int id = rs.getInt(ACTIVITY_ID);
+
+        // Recreate exercise using Factory
+        Exercise exercise = ExerciseFactory.createExercise(
+            rs.getString(EXERCISE_TYPE),
+            rs.getString(EXERCISE_NAME),
+            rs.getInt(DURATION),
+            rs.getInt(INTENSITY));
+
+        Date date = new Date(rs.getTimestamp(ACTIVITY_DATE).getTime());
+
+        Activity activity;
+        if (projection == Projection.FULL) {
+            activity = new Activity(exercise, rs.getString(NOTES), date);
+        } else {
+            activity = new Activity(exercise, null, date);
+            activity.setNotesLoader(() -> notesLoader.apply(id));
+        }
+        activity.setId(id);
+        return activity;
+    }
+}
@@ -0,0 +1,373 @@
+package com.fitnesstracker.database;
+
+import com.fitnesstracker.model.Activity;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ActivitySummaryDAO - Per-day, per-type activity totals
+ *
+ * Purpose: Answers totals and per-period numbers from rollup tables
+ * instead of summing Activities.
+ * - ActivityDailySummary has one row per day and exercise type, so a
+ *   range of days costs the days in it, not the activities in them
+ * - ActivityTypeTotals has one row per exercise type, so the overall
+ *   totals read a handful of rows however long the history is
+ *
+ * Both rollups are maintained by ActivityDAO in the same transaction as the
+ * insert, delete or clear they reflect. If it ever drifts (e.g. rows
+ * changed by hand in SSMS), rebuild() recomputes it from Activities.
+ * @version 1.0
+ */
+public class ActivitySummaryDAO {
+
+    private static final String UPDATE_SQL =
+        "UPDATE ActivityDailySummary SET " +
+        "ActivityCount = ActivityCount + ?, TotalCalories = TotalCalories + ?, " +
+        "TotalMinutes = TotalMinutes + ?, TotalIntensity = TotalIntensity + ? " +
+        "WHERE SummaryDate = ? AND ExerciseType = ?";
+
+    private static final String INSERT_SQL =
+        "INSERT INTO ActivityDailySummary " +
+        "(SummaryDate, ExerciseType, ActivityCount, TotalCalories, TotalMinutes, TotalIntensity) " +
+        "VALUES (?, ?, ?, ?, ?, ?)";
+
+    private static final String DELETE_EMPTY_SQL =
+        "DELETE FROM ActivityDailySummary " +
+        "WHERE SummaryDate = ? AND ExerciseType = ? AND ActivityCount <= 0";
+
+    private static final String UPDATE_TYPE_SQL =
+        "UPDATE ActivityTypeTotals SET " +
+        "ActivityCount = ActivityCount + ?, TotalCalories = TotalCalories + ?, " +
+        "TotalMinutes = TotalMinutes + ?, TotalIntensity = TotalIntensity + ? " +
+        "WHERE ExerciseType = ?";
+
+    private static final String INSERT_TYPE_SQL =
+        "INSERT INTO ActivityTypeTotals " +
+        "(ExerciseType, ActivityCount, TotalCalories, TotalMinutes, TotalIntensity) " +
+        "VALUES (?, ?, ?, ?, ?)";
+
+    private static final String DELETE_EMPTY_TYPE_SQL =
+        "DELETE FROM ActivityTypeTotals WHERE ExerciseType = ? AND ActivityCount <= 0";
+
+    private DatabaseManager dbManager;
+
+    public ActivitySummaryDAO() {
+        this.dbManager = DatabaseManager.getInstance();
+    }
+
+    /**
+     * Totals over all activities
+     *
+     * @return count, calories, minutes and average intensity (bucket start and type are null)
+     */
+    public ActivityAggregate getTotals() {
+        String sql = "SELECT SUM(ActivityCount), SUM(TotalCalories), SUM(TotalMinutes), SUM(TotalIntensity) " +
+                     "FROM ActivityTypeTotals";
+
+        try (Connection conn = dbManager.getConnection("ActivitySummaryDAO.getTotals");
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+
+            if (rs.next()) {
+                return toAggregate(null, null, rs.getInt(1), rs.getDouble(2), rs.getInt(3), rs.getLong(4));
+            }
+
+        } catch (SQLException e) {
+            System.err.println("Error reading activity totals: " + e.getMessage());
+        }
+
+        return toAggregate(null, null, 0, 0.0, 0, 0);
+    }
+
+    /**
+     * Totals over all activities, per exercise type
+     *
+     * @return one aggregate per exercise type (bucket start is null)
+     * @throws SQLException if the rollup cannot be read (the caller must not assume "no activities")
+     */
+    public List<ActivityAggregate> getTotalsByType() throws SQLException {
+        List<ActivityAggregate> totals = new ArrayList<>();
+        String sql = "SELECT ExerciseType, ActivityCount, TotalCalories, TotalMinutes, TotalIntensity " +
+                     "FROM ActivityTypeTotals";
+
+        try (Connection conn = dbManager.getConnection("ActivitySummaryDAO.getTotalsByType");
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+
+            while (rs.next()) {
+                totals.add(toAggregate(null, rs.getString(1),
+                    rs.getInt(2), rs.getDouble(3), rs.getInt(4), rs.getLong(5)));
+            }
+        }
+
+        return totals;
+    }
+
+    /**
+     * Per-day totals for a range of days
+     *
+     * @param from first day (inclusive; the time of day is ignored), or null for no limit
+     * @param to last day (exclusive; the time of day is ignored), or null for no limit
+     * @param byType true to split each day by exercise type
+     * @return one aggregate per day (and type), oldest first
+     */
+    public List<ActivityAggregate> getDailyTotals(java.util.Date from, java.util.Date to, boolean byType) {
+        List<ActivityAggregate> totals = new ArrayList<>();
+        String sql = "SELECT SummaryDate, " + (byType ? "ExerciseType" : "NULL") + " AS ExerciseType, " +
+                     "SUM(ActivityCount), SUM(TotalCalories), SUM(TotalMinutes), SUM(TotalIntensity) " +
+                     "FROM ActivityDailySummary WHERE " +
+                     (from != null ? "SummaryDate >= ?" : "1 = 1") + (to != null ? " AND SummaryDate < ?" : "") +
+                     " GROUP BY SummaryDate" + (byType ? ", ExerciseType" : "") +
+                     " ORDER BY SummaryDate" + (byType ? ", ExerciseType" : "");
+
+        try (Connection conn = dbManager.getConnection("ActivitySummaryDAO.getDailyTotals");
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            int param = 1;
+            if (from != null) {
+                pstmt.setDate(param++, toSqlDate(from));
+            }
+            if (to != null) {
+                pstmt.setDate(param, toSqlDate(to));
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    totals.add(toAggregate(new java.util.Date(rs.getDate(1).getTime()), rs.getString(2),
+                        rs.getInt(3), rs.getDouble(4), rs.getInt(5), rs.getLong(6)));
+                }
+            }
+
+        } catch (SQLException e) {
+            System.err.println("Error reading daily totals: " + e.getMessage());
+        }
+
+        return totals;
+    }
+
+    /**
+     * Recompute the rollup from the Activities table
+     *
+     * @return number of summary rows written, or -1 if the rebuild failed
+     */
+    public int rebuild() {
+        try (Connection conn = dbManager.getConnection("ActivitySummaryDAO.rebuild")) {
+            conn.setAutoCommit(false);
+            int rows = rebuild(conn, dbManager.getBackend());
+            conn.commit();
+            System.out.println(" Rebuilt activity summary: " + rows + " day/type rows");
+            return rows;
+        } catch (SQLException e) {
+            System.err.println("Error rebuilding activity summary: " + e.getMessage());
+        }
+        return -1;
+    }
+
+    // Maintenance on the caller's connection and transaction
+
+    /**
+     * Recompute the daily rollup on an open transaction
+     * The type totals follow once their table exists (migration 8 creates
+     * it after migration 5 called this).
+     */
+    static int rebuild(Connection conn, DatabaseBackend backend) throws SQLException {
+        String day = backend.bucketStartExpression(TimeBucket.DAY, "ActivityDate");
+        int rows;
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("DELETE FROM ActivityDailySummary");
+            rows = stmt.executeUpdate(
+                "INSERT INTO ActivityDailySummary " +
+                "(SummaryDate, ExerciseType, ActivityCount, TotalCalories, TotalMinutes, TotalIntensity) " +
+                "SELECT " + day + ", ExerciseType, COUNT(*), SUM(CaloriesBurned), SUM(Duration), SUM(Intensity) " +
+                "FROM Activities GROUP BY " + day + ", ExerciseType");
+        }
+        if (backend.tableExists(conn, "ActivityTypeTotals")) {
+            rebuildTypeTotals(conn);
+        }
+        return rows;
+    }
+
+    /**
+     * Recompute the type totals from the daily rollup on an open transaction
+     */
+    static void rebuildTypeTotals(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("DELETE FROM ActivityTypeTotals");
+            stmt.executeUpdate(
+                "INSERT INTO ActivityTypeTotals " +
+                "(ExerciseType, ActivityCount, TotalCalories, TotalMinutes, TotalIntensity) " +
+                "SELECT ExerciseType, SUM(ActivityCount), SUM(TotalCalories), SUM(TotalMinutes), " +
+                "SUM(TotalIntensity) FROM ActivityDailySummary GROUP BY ExerciseType");
+        }
+    }
+
+    /**
+     * Add newly inserted activities to the rollup
+     * Rows are grouped by day and type first, so a batch touches each
+     * summary row once.
+     */
+    static void recordInserted(Connection conn, Collection<Activity> activities) throws SQLException {
+        Map<String, Delta> deltas = new LinkedHashMap<>();
+        Map<String, Delta> typeDeltas = new LinkedHashMap<>();
+        for (Activity activity : activities) {
+            java.sql.Date day = toSqlDate(activity.getDate());
+            String type = activity.getExerciseType();
+            deltas.computeIfAbsent(day + "|" + type, k -> new Delta(day, type)).add(activity);
+            typeDeltas.computeIfAbsent(type, k -> new Delta(null, type)).add(activity);
+        }
+        applyAll(conn, deltas.values());
+        applyAll(conn, typeDeltas.values());
+    }
+
+    /**
+     * One batched round trip for the updates; rows seen for the first time get inserted
+     */
+    private static void applyAll(Connection conn, Collection<Delta> deltas) throws SQLException {
+        List<Delta> pending = new ArrayList<>(deltas);
+        if (pending.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement update = conn.prepareStatement(pending.get(0).updateSql())) {
+            for (Delta delta : pending) {
+                bindUpdate(update, delta);
+                update.addBatch();
+            }
+            int[] counts = update.executeBatch();
+            for (int i = 0; i < pending.size(); i++) {
+                if (counts[i] == 0) {
+                    insertOrUpdate(conn, update, pending.get(i));
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove a deleted activity from the rollup
+     */
+    static void recordDeleted(Connection conn, java.util.Date activityDate, String type,
+                              double calories, int minutes, int intensity) throws SQLException {
+        for (Delta delta : new Delta[]{new Delta(toSqlDate(activityDate), type), new Delta(null, type)}) {
+            delta.count = -1;
+            delta.calories = -calories;
+            delta.minutes = -minutes;
+            delta.intensity = -intensity;
+
+            try (PreparedStatement update = conn.prepareStatement(delta.updateSql());
+                 PreparedStatement cleanup = conn.prepareStatement(
+                     delta.day != null ? DELETE_EMPTY_SQL : DELETE_EMPTY_TYPE_SQL)) {
+                applyUpdate(update, delta);
+                int param = 1;
+                if (delta.day != null) {
+                    cleanup.setDate(param++, delta.day);
+                }
+                cleanup.setString(param, delta.type);
+                cleanup.executeUpdate();
+            }
+        }
+    }
+
+    /**
+     * Empty the rollups (all activities were deleted)
+     */
+    static void clear(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("DELETE FROM ActivityDailySummary");
+            stmt.executeUpdate("DELETE FROM ActivityTypeTotals");
+        }
+    }
+
+    private static int applyUpdate(PreparedStatement update, Delta delta) throws SQLException {
+        bindUpdate(update, delta);
+        return update.executeUpdate();
+    }
+
+    private static void bindUpdate(PreparedStatement update, Delta delta) throws SQLException {
+        update.setInt(1, delta.count);
+        update.setDouble(2, delta.calories);
+        update.setInt(3, delta.minutes);
+        update.setLong(4, delta.intensity);
+        int param = 5;
+        if (delta.day != null) {
+            update.setDate(param++, delta.day);
+        }
+        update.setString(param, delta.type);
+    }
+
+    /**
+     * First activity of a day and type (or of a type): insert the summary row.
+     * If another transaction inserted it in the meantime, update instead.
+     */
+    private static void insertOrUpdate(Connection conn, PreparedStatement update, Delta delta)
+            throws SQLException {
+        Savepoint savepoint = conn.setSavepoint();
+        try (PreparedStatement insert = conn.prepareStatement(delta.day != null ? INSERT_SQL : INSERT_TYPE_SQL)) {
+            int param = 1;
+            if (delta.day != null) {
+                insert.setDate(param++, delta.day);
+            }
+            insert.setString(param++, delta.type);
+            insert.setInt(param++, delta.count);
+            insert.setDouble(param++, delta.calories);
+            insert.setInt(param++, delta.minutes);
+            insert.setLong(param, delta.intensity);
+            insert.executeUpdate();
+        } catch (SQLException e) {
+            conn.rollback(savepoint);
+            if (applyUpdate(update, delta) == 0) {
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Local calendar day of a timestamp, matching CAST(ActivityDate AS DATE)
+     */
+    private static java.sql.Date toSqlDate(java.util.Date date) {
+        Calendar cal = Calendar.getInstance();
+        cal.setTime(date);
+        cal.set(Calendar.HOUR_OF_DAY, 0);
+        cal.set(Calendar.MINUTE, 0);
+        cal.set(Calendar.SECOND, 0);
+        cal.set(Calendar.MILLISECOND, 0);
+        return new java.sql.Date(cal.getTimeInMillis());
+    }
+
+    private static ActivityAggregate toAggregate(java.util.Date day, String type, int count,
+                                                 double calories, int minutes, long intensity) {
+        return new ActivityAggregate(day, type, count, calories, minutes,
+            count == 0 ? 0.0 : (double) intensity / count);
+    }
+
+    /**
+     * Change to one summary row (a type total when day is null)
+     */
+    private static final class Delta {
+        final java.sql.Date day;
+        final String type;
+        int count;
+        double calories;
+        int minutes;
+        long intensity;
+
+        Delta(java.sql.Date day, String type) {
+            this.day = day;
+            this.type = type;
+        }
+
+        String updateSql() {
+            return day != null ? UPDATE_SQL : UPDATE_TYPE_SQL;
+        }
+
+        void add(Activity activity) {
+            count++;
+            calories += activity.getCaloriesBurned();
+            minutes += activity.getExercise().getDuration();
+            intensity += activity.getExercise().getIntensity();
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package com.fitnesstracker.database;
+
+import com.fitnesstracker.model.Activity;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ActivityWriteBehind - Asynchronous, group-committed activity persistence
+ *
+ * Purpose: Lets callers accept an activity immediately while a background
+ * writer saves it. The writer drains a bounded queue and commits a group
+ * when it reaches maxGroupSize rows or maxGroupDelayMillis after the first
+ * row of the group arrived, whichever comes first.
+ *
+ * - Backpressure: submit() blocks for up to offerTimeoutMillis when the queue is full
+ * - Retries: failed rows are retried with backoff up to maxRetries times
+ * - Failure callback: rows that still fail are handed to the FailureHandler
+ * - Shutdown: shutdown() stops intake and drains everything already queued
+ * @version 1.0
+ */
+public class ActivityWriteBehind {
+
+    /**
+     * Called on the writer thread when an activity could not be saved
+     */
+    public interface FailureHandler {
+        void onWriteFailed(Activity activity, String reason);
+    }
+
+    private static final long RETRY_BACKOFF_MS = 250;
+
+    private final ActivityDAO activityDAO;
+    private final BlockingQueue<Activity> queue;
+    private final int maxGroupSize;
+    private final long maxGroupDelayMillis;
+    private final long offerTimeoutMillis;
+    private final int maxRetries;
+    private final FailureHandler failureHandler;
+    private final Thread writer;
+
+    private final Object lock = new Object();
+    private int unsaved; // queued + being written, guarded by lock
+    private volatile boolean accepting = true;
+    private volatile boolean running = true;
+
+    private volatile long groupsCommitted;
+    private volatile long rowsCommitted;
+    private volatile long rowsFailed;
+
+    /**
+     * Create and start a write-behind writer
+     *
+     * @param activityDAO DAO used for batched inserts
+     * @param queueCapacity maximum number of activities waiting to be written
+     * @param maxGroupSize commit as soon as this many rows are collected
+     * @param maxGroupDelayMillis commit at the latest this long after the first row of a group
+     * @param offerTimeoutMillis how long submit() blocks when the queue is full
+     * @param maxRetries how often a failed row is retried before giving up
+     * @param failureHandler receives rows that could not be saved
+     */
+    public ActivityWriteBehind(ActivityDAO activityDAO, int queueCapacity, int maxGroupSize,
+                               long maxGroupDelayMillis, long offerTimeoutMillis, int maxRetries,
+                               FailureHandler failureHandler) {
+        this.activityDAO = activityDAO;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.maxGroupSize = maxGroupSize;
+        this.maxGroupDelayMillis = maxGroupDelayMillis;
+        this.offerTimeoutMillis = offerTimeoutMillis;
+        this.maxRetries = maxRetries;
+        this.failureHandler = failureHandler;
+
+        this.writer = new Thread(this::runWriter, "activity-write-behind");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Queue an activity for saving
+     * Blocks while the queue is full, up to the offer timeout.
+     *
+     * @param activity the activity to save
+     * @return true if queued, false if the queue stayed full or the writer is shut down
+     */
+    public boolean submit(Activity activity) {
+        if (!accepting) {
+            return false;
+        }
+        synchronized (lock) {
+            unsaved++;
+        }
+        boolean queued;
+        try {
+            queued = queue.offer(activity, offerTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            queued = false;
+        }
+        if (!queued) {
+            markDone(1);
+        }
+        return queued;
+    }
+
+    /**
+     * Wait until everything submitted so far has been written (or has failed)
+     *
+     * @param timeoutMillis maximum time to wait
+     * @return true if the queue drained in time
+     */
+    public boolean flush(long timeoutMillis) {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        synchronized (lock) {
+            while (unsaved > 0) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0 || !writer.isAlive()) {
+                    return false;
+                }
+                try {
+                    lock.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Stop accepting activities, write everything queued and stop the writer
+     *
+     * @param timeoutMillis maximum time to wait for the queue to drain
+     * @return true if all queued activities were processed
+     */
+    public boolean shutdown(long timeoutMillis) {
+        accepting = false;
+        boolean drained = flush(timeoutMillis);
+        running = false;
+        writer.interrupt();
+        if (!drained) {
+            System.err.println(" Write-behind shutdown timed out with " + getPendingCount() +
+                " activities not saved");
+        }
+        return drained;
+    }
+
+    /** Activities queued or being written */
+    public int getPendingCount() {
+        synchronized (lock) {
+            return unsaved;
+        }
+    }
+
+    public long getGroupsCommitted() {
+        return groupsCommitted;
+    }
+
+    public long getRowsCommitted() {
+        return rowsCommitted;
+    }
+
+    public long getRowsFailed() {
+        return rowsFailed;
+    }
+
+    private void runWriter() {
+        List<Activity> group = new ArrayList<>(maxGroupSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Activity first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                group.add(first);
+                collectGroup(group);
+            } catch (InterruptedException e) {
+                // Shutting down: write what was collected, the loop drains the rest
+            }
+
+            if (!group.isEmpty()) {
+                int size = group.size();
+                try {
+                    writeGroup(group);
+                } catch (RuntimeException e) {
+                    System.err.println("Write-behind group failed: " + e.getMessage());
+                    for (Activity activity : group) {
+                        reportFailure(activity, e.getMessage());
+                    }
+                }
+                group.clear();
+                markDone(size);
+            }
+        }
+    }
+
+    /**
+     * Fill the group until it is full or the group delay has passed
+     */
+    private void collectGroup(List<Activity> group) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxGroupDelayMillis);
+        while (group.size() < maxGroupSize) {
+            if (queue.drainTo(group, maxGroupSize - group.size()) > 0) {
+                continue;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0 || !running) {
+                return;
+            }
+            Activity next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            group.add(next);
+        }
+    }
+
+    /**
+     * Commit one group, retrying failed rows with backoff
+     */
+    private void writeGroup(List<Activity> group) {
+        List<Activity> remaining = new ArrayList<>(group);
+        for (int attempt = 0; ; attempt++) {
+            BatchResult<Activity> result = activityDAO.saveActivities(remaining);
+            rowsCommitted += result.getSucceededCount();
+            if (result.getSucceededCount() > 0) {
+                groupsCommitted++;
+            }
+            if (result.getFailedCount() == 0) {
+                return;
+            }
+
+            if (attempt >= maxRetries) {
+                for (BatchResult.RowFailure<Activity> failure : result.getFailures()) {
+                    reportFailure(failure.getRow(), failure.getMessage());
+                }
+                return;
+            }
+
+            remaining = new ArrayList<>(result.getFailedCount());
+            for (BatchResult.RowFailure<Activity> failure : result.getFailures()) {
+                remaining.add(failure.getRow());
+            }
+            try {
+                Thread.sleep(RETRY_BACKOFF_MS << attempt);
+            } catch (InterruptedException e) {
+                // Shutting down - still make the remaining attempts
+            }
+        }
+    }
+
+    private void reportFailure(Activity activity, String reason) {
+        rowsFailed++;
+        try {
+            failureHandler.onWriteFailed(activity, reason);
+        } catch (RuntimeException e) {
+            System.err.println("Write-behind failure handler threw: " + e.getMessage());
+        }
+    }
+
+    private void markDone(int count) {
+        synchronized (lock) {
+            unsaved -= count;
+            lock.notifyAll();
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.fitnesstracker.database;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * BatchResult - Outcome of a bulk write
+ *
+ * Records which rows were written and which failed (with the reason),
+ * so one bad row does not hide the rest of the batch.
+ *
+ * @param <T> the type of row written
+ * @version 1.0
+ */
+public class BatchResult<T> {
+
+    private final int attempted;
+    private final List<T> succeeded = new ArrayList<>();
+    private final List<RowFailure<T>> failures = new ArrayList<>();
+    private long elapsedNanos;
+    private boolean rolledBack;
+
+    public BatchResult(int attempted) {
+        this.attempted = attempted;
+    }
+
+    void addSuccess(T row) {
+        succeeded.add(row);
+    }
+
+    void addFailure(int index, T row, String message) {
+        failures.add(new RowFailure<>(index, row, message));
+    }
+
+    void setElapsedNanos(long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    void setRolledBack(boolean rolledBack) {
+        this.rolledBack = rolledBack;
+    }
+
+    public int getAttemptedCount() {
+        return attempted;
+    }
+
+    public int getSucceededCount() {
+        return succeeded.size();
+    }
+
+    public int getFailedCount() {
+        return failures.size();
+    }
+
+    /** Rows that were written, in input order */
+    public List<T> getSucceeded() {
+        return Collections.unmodifiableList(succeeded);
+    }
+
+    /** Rows that were not written, with the reason */
+    public List<RowFailure<T>> getFailures() {
+        return Collections.unmodifiableList(failures);
+    }
+
+    public boolean isFullySuccessful() {
+        return failures.isEmpty() && succeeded.size() == attempted;
+    }
+
+    /**
+     * Whether the whole transaction was rolled back (e.g. connection lost),
+     * as opposed to individual rows being rejected
+     */
+    public boolean isRolledBack() {
+        return rolledBack;
+    }
+
+    public double getElapsedMillis() {
+        return elapsedNanos / 1_000_000.0;
+    }
+
+    /** Rows written per second, or 0 if nothing was timed */
+    public double getRowsPerSecond() {
+        return elapsedNanos == 0 ? 0.0 : succeeded.size() * 1_000_000_000.0 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d/%d rows written, %d failed in %.1f ms (%.0f rows/s)",
+            succeeded.size(), attempted, failures.size(), getElapsedMillis(), getRowsPerSecond());
+    }
+
+    /**
+     * RowFailure - A row that could not be written
+     *
+     * @param <T> the type of row
+     */
+    public static class RowFailure<T> {
+        private final int index;
+        private final T row;
+        private final String message;
+
+        RowFailure(int index, T row, String message) {
+            this.index = index;
+            this.row = row;
+            this.message = message;
+        }
+
+        /** Position of the row in the input collection (0-based) */
+        public int getIndex() {
+            return index;
+        }
+
+        public T getRow() {
+            return row;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            return "row " + index + ": " + message;
+        }
+    }
+}
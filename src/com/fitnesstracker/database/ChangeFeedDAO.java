@@ -0,0 +1,217 @@
+package com.fitnesstracker.database;
+
+import com.fitnesstracker.model.Activity;
+import com.fitnesstracker.model.FitnessGoal;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ChangeFeedDAO - Reads what changed in Activities and Goals since a version
+ *
+ * Purpose: Lets an instance catch up with writes made by other instances
+ * without reloading whole tables.
+ *
+ * How it works:
+ * - Every insert into Activities and Goals takes the next value of
+ *   RowVersionSeq as its RowVersion (column default); updates take a new
+ *   one explicitly (see GoalDAO.updateGoalProgress)
+ * - Deletes write a RowTombstones row with its own version; clearing a
+ *   table writes one tombstone with RowID ALL_ROWS
+ * - readChanges returns everything with a version in a range, in version
+ *   order, both tables indexed on RowVersion
+ *
+ * Versions are handed out when a row is written, not when it commits, so
+ * a slow transaction can commit a version lower than one already read.
+ * Callers re-read a recent window to pick those up (see
+ * ChangeFeedSynchronizer); applying a change twice is harmless.
+ * @version 1.0
+ */
+public class ChangeFeedDAO {
+
+    public static final String ACTIVITIES = "Activities";
+    public static final String GOALS = "Goals";
+
+    /** Tombstone RowID meaning every row of the table was deleted */
+    public static final int ALL_ROWS = -1;
+
+    private static final String TOMBSTONE_SQL =
+        "INSERT INTO RowTombstones (TableName, RowID, RowVersion, DeletedOn) " +
+        "VALUES (?, ?, NEXT VALUE FOR RowVersionSeq, ?)";
+
+    // RowVersion and ClientRef follow the SUMMARY columns in the SELECT list
+    private static final int ACTIVITY_VERSION = ActivityRowMapper.ACTIVITY_DATE + 1;
+    private static final int GOAL_VERSION = GoalRowMapper.IS_COMPLETED + 1;
+
+    private DatabaseManager dbManager;
+    private final ActivityRowMapper activityMapper;
+    private final GoalRowMapper goalMapper;
+
+    public ChangeFeedDAO() {
+        this.dbManager = DatabaseManager.getInstance();
+        this.activityMapper = new ActivityRowMapper(ActivityRowMapper.Projection.SUMMARY,
+            new ActivityDAO()::loadNotes);
+        this.goalMapper = new GoalRowMapper(GoalRowMapper.Projection.SUMMARY,
+            new GoalDAO()::loadDescription);
+    }
+
+    /**
+     * Highest committed row version, including deletions
+     *
+     * @return the version, or 0 if nothing has been written yet
+     * @throws DataAccessException if the query fails
+     */
+    public long getCurrentVersion() {
+        String sql = "SELECT MAX(v) FROM (" +
+                     "SELECT MAX(RowVersion) AS v FROM Activities UNION ALL " +
+                     "SELECT MAX(RowVersion) FROM Goals UNION ALL " +
+                     "SELECT MAX(RowVersion) FROM RowTombstones) versions";
+
+        try (Connection conn = dbManager.getConnection("ChangeFeedDAO.getCurrentVersion");
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            return rs.next() ? rs.getLong(1) : 0;
+        } catch (SQLException e) {
+            throw new DataAccessException("Error reading change feed version: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Read changes with afterVersion < RowVersion <= upToVersion
+     *
+     * At most maxRows rows are read per table; if a table has more, the set
+     * stops at the last version every table was read up to and is marked
+     * truncated.
+     *
+     * @param afterVersion exclusive lower bound
+     * @param upToVersion inclusive upper bound (Long.MAX_VALUE for no bound)
+     * @param maxRows row limit per table
+     * @return the changes
+     * @throws DataAccessException if a query fails
+     */
+    public ChangeSet readChanges(long afterVersion, long upToVersion, int maxRows) {
+        List<RowChange<Activity>> activities = new ArrayList<>();
+        List<RowChange<FitnessGoal>> goals = new ArrayList<>();
+        List<RowChange<Activity>> activityDeletes = new ArrayList<>();
+        List<RowChange<FitnessGoal>> goalDeletes = new ArrayList<>();
+
+        long highest = afterVersion;
+        long limit = Long.MAX_VALUE; // last version of a table that hit maxRows
+
+        try (Connection conn = dbManager.getConnection("ChangeFeedDAO.readChanges")) {
+            try (PreparedStatement pstmt = prepareRange(conn,
+                    "SELECT " + activityMapper.getProjection().getColumns() + ", RowVersion, ClientRef FROM Activities",
+                    afterVersion, upToVersion, maxRows);
+                 ResultSet rs = pstmt.executeQuery()) {
+                long last = afterVersion;
+                while (rs.next()) {
+                    last = rs.getLong(ACTIVITY_VERSION);
+                    Activity activity = activityMapper.mapRow(rs);
+                    activity.setClientRef(rs.getString(ACTIVITY_VERSION + 1));
+                    activities.add(new RowChange<>(last, activity.getId(), activity));
+                }
+                highest = Math.max(highest, last);
+                if (activities.size() >= maxRows) {
+                    limit = Math.min(limit, last);
+                }
+            }
+
+            try (PreparedStatement pstmt = prepareRange(conn,
+                    "SELECT " + goalMapper.getProjection().getColumns() + ", RowVersion, ClientRef FROM Goals",
+                    afterVersion, upToVersion, maxRows);
+                 ResultSet rs = pstmt.executeQuery()) {
+                long last = afterVersion;
+                while (rs.next()) {
+                    last = rs.getLong(GOAL_VERSION);
+                    FitnessGoal goal = goalMapper.mapRow(rs);
+                    goal.setClientRef(rs.getString(GOAL_VERSION + 1));
+                    goals.add(new RowChange<>(last, goal.getId(), goal));
+                }
+                highest = Math.max(highest, last);
+                if (goals.size() >= maxRows) {
+                    limit = Math.min(limit, last);
+                }
+            }
+
+            try (PreparedStatement pstmt = prepareRange(conn,
+                    "SELECT TableName, RowID, RowVersion FROM RowTombstones",
+                    afterVersion, upToVersion, maxRows);
+                 ResultSet rs = pstmt.executeQuery()) {
+                long last = afterVersion;
+                int count = 0;
+                while (rs.next()) {
+                    last = rs.getLong(3);
+                    count++;
+                    if (ACTIVITIES.equalsIgnoreCase(rs.getString(1))) {
+                        activityDeletes.add(new RowChange<>(last, rs.getInt(2), null));
+                    } else if (GOALS.equalsIgnoreCase(rs.getString(1))) {
+                        goalDeletes.add(new RowChange<>(last, rs.getInt(2), null));
+                    }
+                }
+                highest = Math.max(highest, last);
+                if (count >= maxRows) {
+                    limit = Math.min(limit, last);
+                }
+            }
+
+        } catch (SQLException | IllegalArgumentException e) {
+            throw new DataAccessException("Error reading change feed: " + e.getMessage(), e);
+        }
+
+        boolean truncated = limit != Long.MAX_VALUE;
+        long lastVersion = truncated ? limit : highest;
+        return new ChangeSet(merge(activities, activityDeletes, lastVersion),
+            merge(goals, goalDeletes, lastVersion), lastVersion, truncated);
+    }
+
+    /**
+     * Write a tombstone on the caller's transaction
+     *
+     * @param conn connection of the deleting transaction
+     * @param table ACTIVITIES or GOALS
+     * @param rowId the deleted ID, or ALL_ROWS
+     */
+    static void recordDeletion(Connection conn, String table, int rowId) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(TOMBSTONE_SQL)) {
+            pstmt.setString(1, table);
+            pstmt.setInt(2, rowId);
+            pstmt.setTimestamp(3, new Timestamp(System.currentTimeMillis()));
+            pstmt.executeUpdate();
+        }
+    }
+
+    private PreparedStatement prepareRange(Connection conn, String select, long afterVersion,
+                                           long upToVersion, int maxRows) throws SQLException {
+        PreparedStatement pstmt = conn.prepareStatement(select +
+            " WHERE RowVersion > ? AND RowVersion <= ? ORDER BY RowVersion");
+        pstmt.setLong(1, afterVersion);
+        pstmt.setLong(2, upToVersion);
+        pstmt.setMaxRows(maxRows);
+        return pstmt;
+    }
+
+    /**
+     * Merge upserts and deletions (both in version order), dropping anything
+     * past the version every table was read up to
+     */
+    private static <T> List<RowChange<T>> merge(List<RowChange<T>> upserts, List<RowChange<T>> deletes,
+                                                long lastVersion) {
+        List<RowChange<T>> merged = new ArrayList<>(upserts.size() + deletes.size());
+        int i = 0;
+        int j = 0;
+        while (i < upserts.size() || j < deletes.size()) {
+            RowChange<T> next;
+            if (j == deletes.size() ||
+                    (i < upserts.size() && upserts.get(i).getVersion() < deletes.get(j).getVersion())) {
+                next = upserts.get(i++);
+            } else {
+                next = deletes.get(j++);
+            }
+            if (next.getVersion() > lastVersion) {
+                break;
+            }
+            merged.add(next);
+        }
+        return merged;
+    }
+}
@@ -0,0 +1,56 @@
+package com.fitnesstracker.database;
+
+import com.fitnesstracker.model.Activity;
+import com.fitnesstracker.model.FitnessGoal;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * ChangeSet - Changes read from the feed in one call
+ *
+ * Each list is in row version order, with upserts and deletions of the
+ * same table merged, so applying them front to back gives the right
+ * final state. Everything up to getLastVersion() has been read.
+ * @version 1.0
+ */
+public class ChangeSet {
+
+    private final List<RowChange<Activity>> activityChanges;
+    private final List<RowChange<FitnessGoal>> goalChanges;
+    private final long lastVersion;
+    private final boolean truncated;
+
+    ChangeSet(List<RowChange<Activity>> activityChanges, List<RowChange<FitnessGoal>> goalChanges,
+              long lastVersion, boolean truncated) {
+        this.activityChanges = Collections.unmodifiableList(activityChanges);
+        this.goalChanges = Collections.unmodifiableList(goalChanges);
+        this.lastVersion = lastVersion;
+        this.truncated = truncated;
+    }
+
+    public List<RowChange<Activity>> getActivityChanges() {
+        return activityChanges;
+    }
+
+    public List<RowChange<FitnessGoal>> getGoalChanges() {
+        return goalChanges;
+    }
+
+    /** Highest version covered by this set; read from here next time */
+    public long getLastVersion() {
+        return lastVersion;
+    }
+
+    /** True if the row limit was reached and more changes are waiting */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    public boolean isEmpty() {
+        return activityChanges.isEmpty() && goalChanges.isEmpty();
+    }
+
+    public int size() {
+        return activityChanges.size() + goalChanges.size();
+    }
+}
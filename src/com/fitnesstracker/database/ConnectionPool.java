@@ -0,0 +1,578 @@
+package com.fitnesstracker.database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ConnectionPool - Bounded JDBC connection pool used by DatabaseManager
+ *
+ * Purpose: Keeps physical connections open between DAO calls so that
+ * a DAO method closing its connection (try-with-resources) only hands it
+ * back to the pool instead of tearing down the login.
+ *
+ * Features:
+ * - Min/max pool size, blocking borrow with a timeout
+ * - Validation on borrow for connections that sat idle
+ * - Idle eviction down to the minimum size
+ * - Leak detection naming the DAO method that still holds a connection
+ *   (off by default: a borrower that does not give its name costs a stack
+ *   walk per borrow; the DAOs give theirs)
+ * - Borrow statistics (wait time, borrow latency, active count)
+ * @version 1.0
+ */
+public class ConnectionPool {
+
+    /** Connections used within this window are handed out without a validation round trip */
+    private static final long VALIDATION_SKIP_WINDOW_MS = 500;
+    private static final int VALIDATION_TIMEOUT_SECONDS = 5;
+    private static final long HOUSEKEEPING_INTERVAL_MS = 5000;
+    /** Closed statements are dropped from a handle's list once it grows past this */
+    private static final int STATEMENT_PRUNE_THRESHOLD = 32;
+
+    private final String url;
+    private final int minSize;
+    private final int maxSize;
+    private final long maxWaitMillis;
+    private final long idleTimeoutMillis;
+    private final long leakThresholdMillis;
+
+    private final Semaphore permits;
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final Set<PooledConnection> borrowed = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger openCount = new AtomicInteger(); // physical connections, including ones being opened
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean closed;
+
+    // Statistics
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+    private final AtomicLong createdCount = new AtomicLong();
+    private final AtomicLong evictedCount = new AtomicLong();
+    private final AtomicLong validationFailures = new AtomicLong();
+    private final AtomicLong leaksDetected = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong totalBorrowNanos = new AtomicLong();
+    private final AtomicLong maxBorrowNanos = new AtomicLong();
+    private final AtomicLong totalHoldNanos = new AtomicLong();
+
+    /**
+     * Create a pool for the given JDBC URL
+     *
+     * @param url JDBC connection URL
+     * @param minSize connections kept open even when idle
+     * @param maxSize upper bound on open connections
+     * @param maxWaitMillis how long a borrower waits for a free connection
+     * @param idleTimeoutMillis idle connections above minSize are closed after this
+     * @param leakThresholdMillis report connections held longer than this (0 disables, and
+     *        saves the stack walk that names a borrower that gave no name)
+     */
+    public ConnectionPool(String url, int minSize, int maxSize, long maxWaitMillis,
+                          long idleTimeoutMillis, long leakThresholdMillis) {
+        if (maxSize < 1 || minSize < 0 || minSize > maxSize) {
+            throw new IllegalArgumentException(
+                "Invalid pool size: min=" + minSize + ", max=" + maxSize);
+        }
+        this.url = url;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.maxWaitMillis = maxWaitMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.leakThresholdMillis = leakThresholdMillis;
+        this.permits = new Semaphore(maxSize, true);
+
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "db-pool-housekeeper");
+            t.setDaemon(true);
+            return t;
+        });
+        housekeeper.scheduleWithFixedDelay(this::housekeep,
+            HOUSEKEEPING_INTERVAL_MS, HOUSEKEEPING_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Open connections until the pool holds minSize connections
+     * Each one reserves its slot in openCount first, as borrowers do, so
+     * filling alongside borrowers never opens more than maxSize.
+     *
+     * @throws SQLException if a connection cannot be opened
+     */
+    public void fill() throws SQLException {
+        while (!closed && reserveSlot(minSize)) {
+            idle.offerLast(new PooledConnection(openReserved()));
+        }
+    }
+
+    /**
+     * Borrow a connection. Closing the returned connection gives it back to the pool.
+     *
+     * @return a validated connection
+     * @throws SQLException if the pool is closed, exhausted or the database is unreachable
+     */
+    public Connection borrow() throws SQLException {
+        return borrow(null);
+    }
+
+    /**
+     * Borrow a connection on behalf of a known caller
+     *
+     * @param borrower name reported if the connection leaks (looked up from the stack if null)
+     * @return a validated connection
+     * @throws SQLException if the pool is closed, exhausted or the database is unreachable
+     */
+    public Connection borrow(String borrower) throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS)) {
+                timeoutCount.incrementAndGet();
+                throw new SQLException("Timed out after " + maxWaitMillis +
+                    " ms waiting for a database connection (" + getStats() + ")");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+        long waited = System.nanoTime() - start;
+
+        try {
+            PooledConnection pooled = takeIdleOrOpen();
+            pooled.borrowedAtNanos = System.nanoTime();
+            pooled.borrower = leakThresholdMillis > 0 ? (borrower != null ? borrower : findBorrower()) : null;
+            pooled.leakReported = false;
+            borrowed.add(pooled);
+
+            long latency = System.nanoTime() - start;
+            borrowCount.incrementAndGet();
+            totalWaitNanos.addAndGet(waited);
+            updateMax(maxWaitNanos, waited);
+            totalBorrowNanos.addAndGet(latency);
+            updateMax(maxBorrowNanos, latency);
+
+            return pooled.newHandle();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Take an idle connection (validating it if it sat unused) or open a new one
+     */
+    private PooledConnection takeIdleOrOpen() throws SQLException {
+        while (true) {
+            PooledConnection pooled;
+            while ((pooled = idle.pollFirst()) != null) {
+                long idleMillis = System.currentTimeMillis() - pooled.lastReturnedMillis;
+                if (idleMillis < VALIDATION_SKIP_WINDOW_MS || isValid(pooled.physical)) {
+                    return pooled;
+                }
+                validationFailures.incrementAndGet();
+                discard(pooled);
+            }
+            if (reserveSlot(maxSize)) {
+                return new PooledConnection(openReserved());
+            }
+            // All maxSize are open, yet this borrower holds a permit: one is on its way back to idle
+            try {
+                pooled = idle.pollFirst(maxWaitMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for a database connection", e);
+            }
+            if (pooled == null) {
+                throw new SQLException("Timed out waiting for a returned connection (" + getStats() + ")");
+            }
+            idle.offerFirst(pooled); // validated by the next pass
+        }
+    }
+    
+    /**
+     * Claim room for one more physical connection
+     *
+     * @return false if limit connections are already open (or being opened)
+     */
+    private boolean reserveSlot(int limit) {
+        int current;
+        do {
+            current = openCount.get();
+            if (current >= limit) {
+                return false;
+            }
+        } while (!openCount.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    private boolean isValid(Connection conn) {
+        try {
+            return !conn.isClosed() && conn.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Open a connection for a slot claimed with reserveSlot (given back if opening fails)
+     */
+    private Connection openReserved() throws SQLException {
+        try {
+            Connection conn = DriverManager.getConnection(url);
+            createdCount.incrementAndGet();
+            return conn;
+        } catch (SQLException | RuntimeException e) {
+            openCount.decrementAndGet();
+            throw e;
+        }
+    }
+    
+    /**
+     * Close a pooled connection for good and free its slot
+     */
+    private void discard(PooledConnection pooled) {
+        closeQuietly(pooled.physical);
+        openCount.decrementAndGet();
+    }
+
+    /**
+     * Return a connection to the pool (called when a handle is closed)
+     */
+    private void release(PooledConnection pooled) {
+        if (!borrowed.remove(pooled)) {
+            return;
+        }
+        totalHoldNanos.addAndGet(System.nanoTime() - pooled.borrowedAtNanos);
+
+        boolean reusable = !closed && resetState(pooled.physical);
+        if (reusable) {
+            pooled.lastReturnedMillis = System.currentTimeMillis();
+            // LIFO keeps the hottest connections in use and lets the rest age out
+            idle.offerFirst(pooled);
+        } else {
+            discard(pooled);
+        }
+        permits.release();
+    }
+
+    /**
+     * Undo per-borrower state so the next borrower gets a clean connection
+     *
+     * @return false if the connection is broken and should be discarded
+     */
+    private boolean resetState(Connection conn) {
+        try {
+            if (conn.isClosed()) {
+                return false;
+            }
+            if (!conn.getAutoCommit()) {
+                conn.rollback();
+                conn.setAutoCommit(true);
+            }
+            return true;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Periodic task: evict idle connections and report leaks
+     */
+    private void housekeep() {
+        try {
+            evictIdle();
+            detectLeaks();
+        } catch (RuntimeException e) {
+            System.err.println("Connection pool housekeeping failed: " + e.getMessage());
+        }
+    }
+
+    private void evictIdle() {
+        long now = System.currentTimeMillis();
+        for (PooledConnection pooled : idle) {
+            if (openCount.get() <= minSize) {
+                break;
+            }
+            if (now - pooled.lastReturnedMillis > idleTimeoutMillis && idle.remove(pooled)) {
+                discard(pooled);
+                evictedCount.incrementAndGet();
+            }
+        }
+        try {
+            fill();
+        } catch (SQLException e) {
+            // Database unreachable - borrowers will see the error themselves
+        }
+    }
+
+    private void detectLeaks() {
+        if (leakThresholdMillis <= 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        for (PooledConnection pooled : borrowed) {
+            long heldMillis = TimeUnit.NANOSECONDS.toMillis(now - pooled.borrowedAtNanos);
+            if (!pooled.leakReported && heldMillis > leakThresholdMillis) {
+                pooled.leakReported = true;
+                leaksDetected.incrementAndGet();
+                System.err.println(" Possible connection leak: borrowed by " + pooled.borrower +
+                    " and not returned for " + heldMillis + " ms");
+            }
+        }
+    }
+
+    /**
+     * Find the application method that borrowed the connection, preferring DAO frames
+     */
+    static String findBorrower() {
+        StackTraceElement[] stack = Thread.currentThread().getStackTrace();
+        String fallback = "unknown";
+        for (StackTraceElement frame : stack) {
+            String cls = frame.getClassName();
+            if (!cls.startsWith("com.fitnesstracker.")
+                    || cls.equals(ConnectionPool.class.getName())
+                    || cls.equals(DatabaseManager.class.getName())) {
+                continue;
+            }
+            String name = cls.substring(cls.lastIndexOf('.') + 1) + "." + frame.getMethodName();
+            if (cls.endsWith("DAO")) {
+                return name;
+            }
+            if ("unknown".equals(fallback)) {
+                fallback = name;
+            }
+        }
+        return fallback;
+    }
+
+    private static void updateMax(AtomicLong max, long value) {
+        long current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            // retry
+        }
+    }
+
+    private static void closeQuietly(Connection conn) {
+        try {
+            conn.close();
+        } catch (SQLException e) {
+            // already broken
+        }
+    }
+
+    /**
+     * Close all idle connections and stop handing out new ones.
+     * Borrowed connections are closed when their borrowers return them.
+     */
+    public void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            discard(pooled);
+        }
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Get a snapshot of the pool statistics
+     *
+     * @return current statistics
+     */
+    public PoolStats getStats() {
+        return new PoolStats(borrowed.size(), idle.size(), maxSize,
+            permits.getQueueLength(), borrowCount.get(), timeoutCount.get(),
+            createdCount.get(), evictedCount.get(), validationFailures.get(),
+            leaksDetected.get(), totalWaitNanos.get(), maxWaitNanos.get(),
+            totalBorrowNanos.get(), maxBorrowNanos.get(), totalHoldNanos.get());
+    }
+
+    /**
+     * A physical connection plus its bookkeeping
+     */
+    private final class PooledConnection {
+        final Connection physical;
+        volatile long lastReturnedMillis = System.currentTimeMillis();
+        volatile long borrowedAtNanos;
+        volatile String borrower;
+        volatile boolean leakReported;
+
+        PooledConnection(Connection physical) {
+            this.physical = physical;
+        }
+
+        /**
+         * Create a handle for one borrow. close() on the handle closes the
+         * statements opened through it (and so their result sets), as
+         * closing a physical connection would, then returns the connection;
+         * any other call after that fails instead of touching a connection
+         * that now belongs to someone else.
+         */
+        Connection newHandle() {
+            InvocationHandler handler = new InvocationHandler() {
+                private boolean returned;
+                private final List<Statement> statements = new ArrayList<>();
+
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                    String name = method.getName();
+                    if ("close".equals(name)) {
+                        if (!returned) {
+                            returned = true;
+                            closeStatements();
+                            release(PooledConnection.this);
+                        }
+                        return null;
+                    }
+                    if ("isClosed".equals(name)) {
+                        return returned || physical.isClosed();
+                    }
+                    if ("equals".equals(name)) {
+                        return proxy == args[0];
+                    }
+                    if ("hashCode".equals(name)) {
+                        return System.identityHashCode(proxy);
+                    }
+                    if ("toString".equals(name)) {
+                        return "Pooled[" + physical + "]";
+                    }
+                    if (returned) {
+                        throw new SQLException("Connection has already been returned to the pool");
+                    }
+                    Object result;
+                    try {
+                        result = method.invoke(physical, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                    if (result instanceof Statement) { // createStatement, prepareStatement, prepareCall
+                        track((Statement) result);
+                    }
+                    return result;
+                }
+
+                private void track(Statement statement) throws SQLException {
+                    if (statements.size() >= STATEMENT_PRUNE_THRESHOLD) {
+                        List<Statement> open = new ArrayList<>(statements.size());
+                        for (Statement tracked : statements) {
+                            if (!tracked.isClosed()) {
+                                open.add(tracked);
+                            }
+                        }
+                        statements.clear();
+                        statements.addAll(open);
+                    }
+                    statements.add(statement);
+                }
+
+                private void closeStatements() {
+                    for (Statement statement : statements) {
+                        try {
+                            statement.close(); // no-op if the DAO closed it
+                        } catch (SQLException e) {
+                            // the connection is validated when it is returned
+                        }
+                    }
+                    statements.clear();
+                }
+            };
+            return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, handler);
+        }
+    }
+
+    /**
+     * PoolStats - Immutable snapshot of pool statistics
+     */
+    public static final class PoolStats {
+        private final int active;
+        private final int idle;
+        private final int maxSize;
+        private final int waiting;
+        private final long borrowCount;
+        private final long timeoutCount;
+        private final long createdCount;
+        private final long evictedCount;
+        private final long validationFailures;
+        private final long leaksDetected;
+        private final long totalWaitNanos;
+        private final long maxWaitNanos;
+        private final long totalBorrowNanos;
+        private final long maxBorrowNanos;
+        private final long totalHoldNanos;
+
+        PoolStats(int active, int idle, int maxSize, int waiting, long borrowCount,
+                  long timeoutCount, long createdCount, long evictedCount,
+                  long validationFailures, long leaksDetected, long totalWaitNanos,
+                  long maxWaitNanos, long totalBorrowNanos, long maxBorrowNanos,
+                  long totalHoldNanos) {
+            this.active = active;
+            this.idle = idle;
+            this.maxSize = maxSize;
+            this.waiting = waiting;
+            this.borrowCount = borrowCount;
+            this.timeoutCount = timeoutCount;
+            this.createdCount = createdCount;
+            this.evictedCount = evictedCount;
+            this.validationFailures = validationFailures;
+            this.leaksDetected = leaksDetected;
+            this.totalWaitNanos = totalWaitNanos;
+            this.maxWaitNanos = maxWaitNanos;
+            this.totalBorrowNanos = totalBorrowNanos;
+            this.maxBorrowNanos = maxBorrowNanos;
+            this.totalHoldNanos = totalHoldNanos;
+        }
+
+        public int getActive() { return active; }
+        public int getIdle() { return idle; }
+        public int getMaxSize() { return maxSize; }
+        public int getWaiting() { return waiting; }
+        public long getBorrowCount() { return borrowCount; }
+        public long getTimeoutCount() { return timeoutCount; }
+        public long getCreatedCount() { return createdCount; }
+        public long getEvictedCount() { return evictedCount; }
+        public long getValidationFailures() { return validationFailures; }
+        public long getLeaksDetected() { return leaksDetected; }
+
+        public double getAverageWaitMillis() { return averageMillis(totalWaitNanos); }
+        public double getMaxWaitMillis() { return maxWaitNanos / 1_000_000.0; }
+        public double getAverageBorrowMillis() { return averageMillis(totalBorrowNanos); }
+        public double getMaxBorrowMillis() { return maxBorrowNanos / 1_000_000.0; }
+        public double getAverageHoldMillis() { return averageMillis(totalHoldNanos); }
+
+        private double averageMillis(long totalNanos) {
+            return borrowCount == 0 ? 0.0 : totalNanos / 1_000_000.0 / borrowCount;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                "active=%d, idle=%d, max=%d, waiting=%d, borrows=%d, timeouts=%d, created=%d, " +
+                "evicted=%d, leaks=%d, avgWait=%.2fms, maxWait=%.2fms, avgBorrow=%.2fms, avgHold=%.2fms",
+                active, idle, maxSize, waiting, borrowCount, timeoutCount, createdCount,
+                evictedCount, leaksDetected, getAverageWaitMillis(), getMaxWaitMillis(),
+                getAverageBorrowMillis(), getAverageHoldMillis());
+        }
+    }
+}
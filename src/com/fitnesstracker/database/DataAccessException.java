@@ -0,0 +1,17 @@
+package com.fitnesstracker.database;
+
+/**
+ * DataAccessException - Unchecked wrapper for SQLException
+ *
+ * Used where a checked exception cannot be thrown, such as while a
+ * Stream of rows is being consumed.
+ * @version 1.0
+ */
+public class DataAccessException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public DataAccessException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
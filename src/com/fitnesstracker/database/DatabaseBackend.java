@@ -0,0 +1,296 @@
+package com.fitnesstracker.database;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * DatabaseBackend - Database engine abstraction (driver, URL and SQL dialect)
+ *
+ * Purpose: Keeps engine-specific details out of DatabaseManager and the DAOs
+ * so the same code runs against SQL Server or an embedded database.
+ *
+ * Backends:
+ * - sqlserver: Microsoft SQL Server (default)
+ * - h2: embedded H2 database stored in a local file
+ * @version 1.0
+ */
+public abstract class DatabaseBackend {
+
+    /**
+     * Create the backend selected by the configuration
+     *
+     * @param config database configuration
+     * @return the backend
+     * @throws IllegalArgumentException if the backend name is unknown
+     */
+    public static DatabaseBackend fromConfig(DatabaseConfig config) {
+        String name = config.getString(DatabaseConfig.BACKEND, "sqlserver").trim().toLowerCase();
+        switch (name) {
+            case "sqlserver":
+            case "mssql":
+                return new SqlServerBackend(config);
+            case "h2":
+                return new H2Backend(config);
+            default:
+                throw new IllegalArgumentException("Unknown database backend: " + name +
+                    ". Valid backends are: sqlserver, h2");
+        }
+    }
+
+    protected final DatabaseConfig config;
+
+    protected DatabaseBackend(DatabaseConfig config) {
+        this.config = config;
+    }
+
+    /** Short backend name for log output */
+    public abstract String getName();
+
+    /** Fully qualified JDBC driver class */
+    public abstract String getDriverClassName();
+
+    /** JDBC URL built from the configuration (fitness.db.url overrides it) */
+    public String getConnectionUrl() {
+        String url = config.getString(DatabaseConfig.URL);
+        return url != null && !url.trim().isEmpty() ? url.trim() : buildConnectionUrl();
+    }
+
+    protected abstract String buildConnectionUrl();
+
+    /** Human readable description of where the data lives */
+    public abstract String describeTarget();
+
+    /** Hints printed when the connection cannot be established */
+    public abstract String[] getTroubleshootingHints();
+
+    // Queries used by DatabaseManager.testConnection()
+
+    /** Query returning the engine version as the first column */
+    public abstract String getVersionQuery();
+
+    /** Query returning the current database name as the first column */
+    public abstract String getCurrentDatabaseQuery();
+
+    /** Query returning the application tables (TABLE_NAME column) */
+    public abstract String getListTablesQuery();
+
+    // Column types used for DDL
+
+    protected abstract String identityColumn();
+
+    protected abstract String textType(int length);
+
+    protected abstract String largeTextType();
+
+    protected abstract String floatType();
+
+    protected abstract String timestampType();
+
+    protected abstract String booleanType();
+
+    /** SQL literal for a boolean value */
+    public abstract String booleanLiteral(boolean value);
+
+    /**
+     * Expression for the start of the time bucket a timestamp falls in,
+     * as a DATE. Used both in SELECT and GROUP BY.
+     *
+     * @param bucket day, week (starting Monday) or month
+     * @param column timestamp column or expression
+     * @return SQL expression
+     */
+    public abstract String bucketStartExpression(TimeBucket bucket, String column);
+
+    /**
+     * Whether getGeneratedKeys() returns one key per row after executeBatch().
+     * Backends that return only the last key fall back to per-row inserts.
+     */
+    public abstract boolean supportsBatchGeneratedKeys();
+
+    /**
+     * Multi-row INSERT that returns the generated key of every row, for
+     * backends without per-row keys from a batch
+     * The statement returns one row per inserted row: its position in the
+     * VALUES list (0-based) and its generated key.
+     *
+     * @param table table to insert into
+     * @param columns columns bound per row, in parameter order
+     * @param keyColumn generated key column
+     * @param rows number of rows in the VALUES list
+     * @return SQL with columns.size() parameters per row, or null if not supported
+     */
+    public String multiRowInsertSql(String table, List<String> columns, String keyColumn, int rows) {
+        return null;
+    }
+
+    /**
+     * Most rows one multiRowInsertSql statement may hold
+     *
+     * @param columnCount parameters bound per row
+     * @return the limit, or 0 if multi-row inserts are not supported
+     */
+    public int getMaxMultiRowInsertRows(int columnCount) {
+        return 0;
+    }
+
+    /**
+     * Check whether a table exists (case-insensitive)
+     *
+     * @param conn open connection
+     * @param tableName table to look for
+     * @return true if the table exists
+     * @throws SQLException on database error
+     */
+    public boolean tableExists(Connection conn, String tableName) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(getListTablesQuery())) {
+            while (rs.next()) {
+                if (tableName.equalsIgnoreCase(rs.getString("TABLE_NAME"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Check whether an index exists on a table (case-insensitive)
+     *
+     * @param conn open connection
+     * @param tableName table the index belongs to
+     * @param indexName index to look for
+     * @return true if the index exists
+     * @throws SQLException on database error
+     */
+    public boolean indexExists(Connection conn, String tableName, String indexName) throws SQLException {
+        DatabaseMetaData meta = conn.getMetaData();
+        // Unquoted identifiers are stored upper-case by some engines
+        for (String table : new String[]{tableName, tableName.toUpperCase()}) {
+            try (ResultSet rs = meta.getIndexInfo(null, null, table, false, true)) {
+                while (rs.next()) {
+                    if (indexName.equalsIgnoreCase(rs.getString("INDEX_NAME"))) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Check whether a column exists on a table (case-insensitive)
+     *
+     * @param conn open connection
+     * @param tableName table to look in
+     * @param columnName column to look for
+     * @return true if the column exists
+     * @throws SQLException on database error
+     */
+    public boolean columnExists(Connection conn, String tableName, String columnName) throws SQLException {
+        DatabaseMetaData meta = conn.getMetaData();
+        for (String table : new String[]{tableName, tableName.toUpperCase()}) {
+            try (ResultSet rs = meta.getColumns(null, null, table, null)) {
+                while (rs.next()) {
+                    if (columnName.equalsIgnoreCase(rs.getString("COLUMN_NAME"))) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Check whether a sequence exists (case-insensitive)
+     *
+     * @param conn open connection
+     * @param sequenceName sequence to look for
+     * @return true if the sequence exists
+     * @throws SQLException on database error
+     */
+    public boolean sequenceExists(Connection conn, String sequenceName) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "SELECT COUNT(*) FROM INFORMATION_SCHEMA.SEQUENCES WHERE UPPER(SEQUENCE_NAME) = ?")) {
+            pstmt.setString(1, sequenceName.toUpperCase());
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() && rs.getInt(1) > 0;
+            }
+        }
+    }
+
+    /**
+     * ALTER TABLE statement adding a nullable column with a default
+     *
+     * @param table table name
+     * @param column new column name
+     * @param type column type
+     * @param defaultExpression default value expression, or null for none
+     * @return the DDL statement
+     */
+    public abstract String addColumnSql(String table, String column, String type, String defaultExpression);
+
+    /**
+     * CREATE UNIQUE INDEX statement on a nullable column; rows where the
+     * column is NULL do not conflict with each other
+     *
+     * @param index index name
+     * @param table table name
+     * @param column the unique column
+     * @return the DDL statement
+     */
+    public String createUniqueIndexSql(String index, String table, String column) {
+        return "CREATE UNIQUE INDEX " + index + " ON " + table + " (" + column + ")";
+    }
+
+    /**
+     * CREATE INDEX statement; include columns are added as non-key columns
+     * where the engine supports covering indexes, otherwise left out
+     *
+     * @param index index name
+     * @param table table name
+     * @param keyColumns key columns, optionally with ASC/DESC
+     * @param includeColumns extra columns to carry in the index (may be empty)
+     * @return the DDL statement
+     */
+    public String createIndexSql(String index, String table, String keyColumns, String includeColumns) {
+        return "CREATE INDEX " + index + " ON " + table + " (" + keyColumns + ")";
+    }
+
+    /**
+     * Run DDL unless the index already exists
+     *
+     * @return true if the index was created
+     */
+    public boolean createIndexIfMissing(Connection conn, String table, String index, String ddl)
+            throws SQLException {
+        if (indexExists(conn, table, index)) {
+            return false;
+        }
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate(ddl);
+            System.out.println(" Created index " + index);
+        }
+        return true;
+    }
+
+    /**
+     * Run DDL unless the table already exists
+     *
+     * @return true if the table was created
+     */
+    public boolean createTableIfMissing(Connection conn, String table, String ddl) throws SQLException {
+        if (tableExists(conn, table)) {
+            return false;
+        }
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate(ddl);
+            System.out.println(" Created table " + table);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,230 @@
+package com.fitnesstracker.database;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Properties;
+
+/**
+ * DatabaseConfig - Database and persistence settings
+ *
+ * Settings are read from (later sources win):
+ * 1. Built-in defaults (the original SQL Server setup)
+ * 2. fitnesstracker.properties on the classpath
+ * 3. fitnesstracker.properties in the working directory,
+ *    or the file named by -Dfitness.config
+ * 4. -Dfitness.* system properties
+ *
+ * Example for a local embedded database:
+ * <pre>
+ * fitness.db.backend=h2
+ * fitness.db.h2.path=./data/fitnesstracker
+ * </pre>
+ * @version 1.0
+ */
+public class DatabaseConfig {
+
+    public static final String CONFIG_FILE = "fitnesstracker.properties";
+
+    public static final String BACKEND = "fitness.db.backend";
+    public static final String URL = "fitness.db.url";
+    public static final String SERVER = "fitness.db.server";
+    public static final String DATABASE = "fitness.db.name";
+    public static final String USER = "fitness.db.user";
+    public static final String PASSWORD = "fitness.db.password";
+    public static final String H2_PATH = "fitness.db.h2.path";
+
+    public static final String POOL_MIN_SIZE = "fitness.db.pool.minSize";
+    public static final String POOL_MAX_SIZE = "fitness.db.pool.maxSize";
+    public static final String POOL_MAX_WAIT_MS = "fitness.db.pool.maxWaitMs";
+    public static final String POOL_IDLE_TIMEOUT_MS = "fitness.db.pool.idleTimeoutMs";
+    // Leak detection walks the stack on every borrow to name the borrower; off (0) unless diagnosing
+    public static final String POOL_LEAK_THRESHOLD_MS = "fitness.db.pool.leakThresholdMs";
+
+    public static final String BATCH_SIZE = "fitness.db.batchSize";
+    public static final String FETCH_SIZE = "fitness.db.fetchSize";
+
+    public static final String METRICS_ENABLED = "fitness.db.metrics.enabled";
+    public static final String SLOW_QUERY_MS = "fitness.db.slowQueryMs";
+    public static final String SLOW_QUERY_LOG_SIZE = "fitness.db.slowQueryLogSize";
+
+    // Only used with fitness.offline.enabled=false; the offline journal takes precedence,
+    // as it already saves activities in the background
+    public static final String WRITE_BEHIND = "fitness.activity.writeBehind";
+    public static final String WRITE_BEHIND_QUEUE_CAPACITY = "fitness.activity.writeBehind.queueCapacity";
+    public static final String WRITE_BEHIND_GROUP_SIZE = "fitness.activity.writeBehind.groupSize";
+    public static final String WRITE_BEHIND_GROUP_DELAY_MS = "fitness.activity.writeBehind.groupDelayMs";
+    public static final String WRITE_BEHIND_OFFER_TIMEOUT_MS = "fitness.activity.writeBehind.offerTimeoutMs";
+    public static final String WRITE_BEHIND_MAX_RETRIES = "fitness.activity.writeBehind.maxRetries";
+
+    public static final String GOAL_COALESCE_MS = "fitness.goal.coalesceMs";
+
+    public static final String IMPORT_BATCH_SIZE = "fitness.import.batchSize";
+
+    public static final String ACTIVITY_STORE = "fitness.activity.store";
+    public static final String ACTIVITY_INITIAL_ROWS = "fitness.activity.initialRows";
+    public static final String ACTIVITY_INITIAL_DAYS = "fitness.activity.initialDays";
+    public static final String ACTIVITY_PAGE_SIZE = "fitness.activity.pageSize";
+    public static final String ACTIVITY_LOAD_THREADS = "fitness.activity.loadThreads";
+
+    public static final String SNAPSHOT_ENABLED = "fitness.snapshot.enabled";
+    public static final String SNAPSHOT_DIR = "fitness.snapshot.dir";
+    public static final String SNAPSHOT_INTERVAL_MS = "fitness.snapshot.intervalMs";
+    public static final String SNAPSHOT_MAX_DELTA_ROWS = "fitness.snapshot.maxDeltaRows";
+
+    public static final String OFFLINE_ENABLED = "fitness.offline.enabled";
+    public static final String OFFLINE_JOURNAL = "fitness.offline.journal";
+    public static final String OFFLINE_RETRY_MS = "fitness.offline.retryMs";
+    public static final String OFFLINE_REPLAY_BATCH_SIZE = "fitness.offline.replayBatchSize";
+    public static final String OFFLINE_MAX_ATTEMPTS = "fitness.offline.maxAttempts";
+
+    public static final String SYNC_ENABLED = "fitness.sync.enabled";
+    public static final String SYNC_INTERVAL_MS = "fitness.sync.intervalMs";
+    public static final String SYNC_LOOKBACK_MS = "fitness.sync.lookbackMs";
+    public static final String SYNC_MAX_ROWS = "fitness.sync.maxRows";
+
+    private final Properties properties;
+
+    private DatabaseConfig(Properties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * Load configuration from defaults, config files and system properties
+     *
+     * @return the merged configuration
+     */
+    public static DatabaseConfig load() {
+        Properties props = defaults();
+
+        try (InputStream in = DatabaseConfig.class.getClassLoader().getResourceAsStream(CONFIG_FILE)) {
+            if (in != null) {
+                props.load(in);
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading classpath " + CONFIG_FILE + ": " + e.getMessage());
+        }
+
+        Path file = Paths.get(System.getProperty("fitness.config", CONFIG_FILE));
+        if (Files.isRegularFile(file)) {
+            try (InputStream in = new FileInputStream(file.toFile())) {
+                props.load(in);
+                System.out.println(" Loaded configuration from " + file.toAbsolutePath());
+            } catch (IOException e) {
+                System.err.println("Error reading " + file + ": " + e.getMessage());
+            }
+        }
+
+        for (String name : System.getProperties().stringPropertyNames()) {
+            if (name.startsWith("fitness.")) {
+                props.setProperty(name, System.getProperty(name));
+            }
+        }
+
+        return new DatabaseConfig(props);
+    }
+
+    /**
+     * Create a configuration from explicit properties (on top of the defaults)
+     *
+     * @param overrides properties to apply
+     * @return the configuration
+     */
+    public static DatabaseConfig of(Properties overrides) {
+        Properties props = defaults();
+        props.putAll(overrides);
+        return new DatabaseConfig(props);
+    }
+
+    private static Properties defaults() {
+        Properties props = new Properties();
+        props.setProperty(BACKEND, "sqlserver");
+        props.setProperty(SERVER, "ANAN-HANY");
+        props.setProperty(DATABASE, "FitnessTrackerDB");
+        props.setProperty(USER, "fitness_user");
+        props.setProperty(PASSWORD, "StrongPassword123!");
+        props.setProperty(H2_PATH, "./data/fitnesstracker");
+        props.setProperty(POOL_MIN_SIZE, "2");
+        props.setProperty(POOL_MAX_SIZE, "10");
+        props.setProperty(POOL_MAX_WAIT_MS, "10000");
+        props.setProperty(POOL_IDLE_TIMEOUT_MS, "300000");
+        props.setProperty(POOL_LEAK_THRESHOLD_MS, "0");
+        props.setProperty(BATCH_SIZE, "500");
+        props.setProperty(FETCH_SIZE, "1000");
+        props.setProperty(METRICS_ENABLED, "true");
+        props.setProperty(SLOW_QUERY_MS, "500");
+        props.setProperty(SLOW_QUERY_LOG_SIZE, "100");
+        props.setProperty(WRITE_BEHIND, "false");
+        props.setProperty(WRITE_BEHIND_QUEUE_CAPACITY, "10000");
+        props.setProperty(WRITE_BEHIND_GROUP_SIZE, "500");
+        props.setProperty(WRITE_BEHIND_GROUP_DELAY_MS, "200");
+        props.setProperty(WRITE_BEHIND_OFFER_TIMEOUT_MS, "5000");
+        props.setProperty(WRITE_BEHIND_MAX_RETRIES, "3");
+        props.setProperty(GOAL_COALESCE_MS, "200");
+        props.setProperty(IMPORT_BATCH_SIZE, "5000");
+        props.setProperty(ACTIVITY_STORE, "indexed");
+        props.setProperty(ACTIVITY_INITIAL_ROWS, "500");
+        props.setProperty(ACTIVITY_INITIAL_DAYS, "30");
+        props.setProperty(ACTIVITY_PAGE_SIZE, "1000");
+        props.setProperty(ACTIVITY_LOAD_THREADS, "0");
+        props.setProperty(SNAPSHOT_ENABLED, "true");
+        props.setProperty(SNAPSHOT_DIR, "./data");
+        props.setProperty(SNAPSHOT_INTERVAL_MS, "300000");
+        props.setProperty(SNAPSHOT_MAX_DELTA_ROWS, "20000");
+        props.setProperty(OFFLINE_ENABLED, "true");
+        props.setProperty(OFFLINE_JOURNAL, "./data/offline.journal");
+        props.setProperty(OFFLINE_RETRY_MS, "5000");
+        props.setProperty(OFFLINE_REPLAY_BATCH_SIZE, "500");
+        props.setProperty(OFFLINE_MAX_ATTEMPTS, "5");
+        props.setProperty(SYNC_ENABLED, "false");
+        props.setProperty(SYNC_INTERVAL_MS, "2000");
+        props.setProperty(SYNC_LOOKBACK_MS, "30000");
+        props.setProperty(SYNC_MAX_ROWS, "5000");
+        return props;
+    }
+
+    public String getString(String key) {
+        return properties.getProperty(key);
+    }
+
+    public String getString(String key, String defaultValue) {
+        return properties.getProperty(key, defaultValue);
+    }
+
+    public int getInt(String key, int defaultValue) {
+        String value = properties.getProperty(key);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid number for " + key + ": " + value);
+            return defaultValue;
+        }
+    }
+
+    public long getLong(String key, long defaultValue) {
+        String value = properties.getProperty(key);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid number for " + key + ": " + value);
+            return defaultValue;
+        }
+    }
+
+    public boolean getBoolean(String key, boolean defaultValue) {
+        String value = properties.getProperty(key);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        return Boolean.parseBoolean(value.trim());
+    }
+}
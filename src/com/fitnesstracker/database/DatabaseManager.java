@@ -3,64 +3,73 @@ package com.fitnesstracker.database;
 import java.sql.*;
 
 /**
- * DatabaseManager - SQL Server connection manager
+ * DatabaseManager - Database connection manager
+ * 
+ * Hands out connections from a bounded ConnectionPool. DAOs keep using
+ * try-with-resources; closing a connection returns it to the pool.
+ * The engine (SQL Server or embedded H2) is chosen by DatabaseConfig.
 
  * @version 1.0
  */
 public class DatabaseManager {
     
     private static DatabaseManager instance;
-    private Connection connection;
-    
-    //  SERVER NAME FROM SSMS
-    private static final String SERVER_NAME = "ANAN-HANY";
-    private static final String DATABASE_NAME = "FitnessTrackerDB";
-    private static final String DB_USER = "fitness_user";
-    private static final String DB_PASSWORD = "StrongPassword123!";
-
-private static final String CONNECTION_URL =
-    String.format(
-        "jdbc:sqlserver://%s;databaseName=%s;user=%s;password=%s;encrypt=true;trustServerCertificate=true",
-        SERVER_NAME,
-        DATABASE_NAME,
-        DB_USER,
-        DB_PASSWORD
-    );
+    private final DatabaseConfig config;
+    private final DatabaseBackend backend;
+    private ConnectionPool pool;
+    private final QueryMetrics queryMetrics;
+    private volatile boolean schemaReady; // migrations have run against this database
     
     /**
      * Private constructor - Singleton pattern
      */
     private DatabaseManager() {
+        config = DatabaseConfig.load();
+        backend = DatabaseBackend.fromConfig(config);
+        queryMetrics = new QueryMetrics(config);
+        queryMetrics.registerMBean();
+        
         try {
-            // Load SQL Server JDBC driver
-            Class.forName("com.microsoft.sqlserver.jdbc.SQLServerDriver");
+            // Load JDBC driver for the configured backend
+            Class.forName(backend.getDriverClassName());
             
-            System.out.println(" Connecting to SQL Server...");
-            System.out.println(" Server: " + SERVER_NAME);
-            System.out.println(" Database: " + DATABASE_NAME);
-          //  System.out.println(" URL: " + CONNECTION_URL);
+            System.out.println(" Connecting to " + backend.getName() + "...");
+            System.out.println(" " + backend.describeTarget());
             
-            // Establish connection
-            connection = DriverManager.getConnection(CONNECTION_URL);
+            // Create the pool; connections are opened lazily if the server is down
+            pool = new ConnectionPool(backend.getConnectionUrl(),
+                config.getInt(DatabaseConfig.POOL_MIN_SIZE, 2),
+                config.getInt(DatabaseConfig.POOL_MAX_SIZE, 10),
+                config.getLong(DatabaseConfig.POOL_MAX_WAIT_MS, 10000L),
+                config.getLong(DatabaseConfig.POOL_IDLE_TIMEOUT_MS, 300000L),
+                config.getLong(DatabaseConfig.POOL_LEAK_THRESHOLD_MS, 0L));
+            pool.fill();
             
             System.out.println("\n CONNECTED SUCCESSFULLY! ");
             
+            // Create or upgrade tables and indexes
+            try (Connection conn = getConnection("DatabaseManager.migrate")) {
+                new SchemaMigrator(backend).migrate(conn);
+                schemaReady = true;
+            }
+            
             // Test connection
             testConnection();
             
         } catch (ClassNotFoundException e) {
-            System.err.println(" SQL Server JDBC Driver not found!");
-            System.err.println("Please add mssql-jdbc JAR to project libraries.");
+            System.err.println(" " + backend.getName() + " JDBC Driver not found!");
+            System.err.println("Please add the driver JAR (" + backend.getDriverClassName() +
+                ") to project libraries.");
             e.printStackTrace();
         } catch (SQLException e) {
             System.err.println(" Database connection failed!");
-            System.err.println("Server: " + SERVER_NAME);
-            System.err.println("Database: " + DATABASE_NAME);
+            System.err.println(backend.describeTarget());
             System.err.println("Error: " + e.getMessage());
             System.err.println("\n Troubleshooting:");
-            System.err.println("1. Make sure SQL Server service is running");
-            System.err.println("2. Make sure database 'FitnessTrackerDB' exists");
-            System.err.println("3. Try connecting in SSMS first with server: " + SERVER_NAME);
+            String[] hints = backend.getTroubleshootingHints();
+            for (int i = 0; i < hints.length; i++) {
+                System.err.println((i + 1) + ". " + hints[i]);
+            }
             e.printStackTrace();
         }
     }
@@ -77,68 +86,125 @@ private static final String CONNECTION_URL =
     }
     
     /**
-     * Get active database connection
-     * Reconnects if connection is closed
+     * Borrow a connection from the pool
+     * Closing the returned connection gives it back to the pool
+     * While metrics are enabled the connection is timed as one call of
+     * the method that borrowed it, found from the stack; DAOs name
+     * themselves with getConnection(String) instead, which is cheaper.
      * 
      * @return Connection object
-     * @throws SQLException if connection fails
+     * @throws SQLException if no connection can be obtained
      */
     public Connection getConnection() throws SQLException {
-        if (connection == null || connection.isClosed()) {
-            connection = DriverManager.getConnection(CONNECTION_URL);
-            System.out.println(" Database connection re-established");
+        return getConnection(null);
+    }
+    
+    /**
+     * Borrow a connection from the pool for a named operation
+     * While metrics are enabled the connection is timed as one call of
+     * the operation (see QueryMetrics); the name also shows in leak reports.
+     * 
+     * @param operation caller name such as "ActivityDAO.saveActivity" (looked up from the stack if null)
+     * @return Connection object
+     * @throws SQLException if no connection can be obtained
+     */
+    public Connection getConnection(String operation) throws SQLException {
+        if (pool == null) {
+            throw new SQLException("Database driver is not available");
+        }
+        if (!queryMetrics.isEnabled()) {
+            return pool.borrow(operation);
+        }
+        if (operation == null) {
+            operation = ConnectionPool.findBorrower();
         }
-        return connection;
+        long start = System.nanoTime();
+        Connection conn;
+        try {
+            conn = pool.borrow(operation);
+        } catch (SQLException e) {
+            long elapsed = System.nanoTime() - start;
+            queryMetrics.record(operation, elapsed, elapsed, 0, 0, true);
+            throw e;
+        }
+        return InstrumentedConnection.wrap(conn, queryMetrics, operation, start, System.nanoTime() - start);
+    }
+    
+    /**
+     * Get per-operation latency, error and row counts for the DAO layer
+     * 
+     * @return the query metrics (empty if fitness.db.metrics.enabled is false)
+     */
+    public QueryMetrics getQueryMetrics() {
+        return queryMetrics;
+    }
+    
+    /**
+     * Get connection pool statistics
+     * 
+     * @return pool statistics, or null if the pool was never created
+     */
+    public ConnectionPool.PoolStats getPoolStats() {
+        return pool == null ? null : pool.getStats();
+    }
+    
+    /**
+     * Get the configured database backend (SQL dialect)
+     * 
+     * @return the backend
+     */
+    public DatabaseBackend getBackend() {
+        return backend;
+    }
+    
+    /**
+     * Get the loaded configuration
+     * 
+     * @return the configuration
+     */
+    public DatabaseConfig getConfig() {
+        return config;
     }
     
     /**
      * Test database connection and display info
      */
     private void testConnection() {
-        try {
+        try (Connection connection = getConnection("DatabaseManager.testConnection");
+             Statement stmt = connection.createStatement()) {
             System.out.println("\n Testing connection...\n");
             
-            Statement stmt = connection.createStatement();
-            
-            // Get SQL Server version
-            ResultSet versionRs = stmt.executeQuery("SELECT @@VERSION AS Version");
-            if (versionRs.next()) {
-                String version = versionRs.getString("Version");
-                // Get first line only
-                String firstLine = version.split("\n")[0];
-                System.out.println(" " + firstLine);
+            // Get engine version
+            try (ResultSet versionRs = stmt.executeQuery(backend.getVersionQuery())) {
+                if (versionRs.next()) {
+                    String version = versionRs.getString(1);
+                    // Get first line only
+                    String firstLine = version.split("\n")[0];
+                    System.out.println(" " + firstLine);
+                }
             }
-            versionRs.close();
             
             // Get current database
-            ResultSet dbRs = stmt.executeQuery("SELECT DB_NAME() AS CurrentDB");
-            if (dbRs.next()) {
-                System.out.println(" Connected to database: " + dbRs.getString("CurrentDB"));
+            try (ResultSet dbRs = stmt.executeQuery(backend.getCurrentDatabaseQuery())) {
+                if (dbRs.next()) {
+                    System.out.println(" Connected to database: " + dbRs.getString(1));
+                }
             }
-            dbRs.close();
             
             // List existing tables
-            ResultSet rs = stmt.executeQuery(
-                "SELECT TABLE_NAME FROM INFORMATION_SCHEMA.TABLES " +
-                "WHERE TABLE_TYPE = 'BASE TABLE' " +
-                "ORDER BY TABLE_NAME"
-            );
-            
-            System.out.println("\n Available tables:");
-            boolean hasTables = false;
-            while (rs.next()) {
-                System.out.println("   " + rs.getString("TABLE_NAME"));
-                hasTables = true;
+            try (ResultSet rs = stmt.executeQuery(backend.getListTablesQuery())) {
+                System.out.println("\n Available tables:");
+                boolean hasTables = false;
+                while (rs.next()) {
+                    System.out.println("   " + rs.getString("TABLE_NAME"));
+                    hasTables = true;
+                }
+                
+                if (!hasTables) {
+                    System.out.println("   No tables found!");
+                }
             }
             
-            if (!hasTables) {
-                System.out.println("   No tables found!");
-                System.out.println("   Please run the CREATE TABLE scripts in SSMS");
-            }
-            
-            rs.close();
-            stmt.close();
-            
             System.out.println("\n Connection test completed!\n");
             
         } catch (SQLException e) {
@@ -148,26 +214,44 @@ private static final String CONNECTION_URL =
     }
     
     /**
-     * Close database connection
+     * Close all pooled database connections
      */
     public void closeConnection() {
-        try {
-            if (connection != null && !connection.isClosed()) {
-                connection.close();
-                System.out.println("Database connection closed");
-            }
+        if (pool != null && !pool.isClosed()) {
+            pool.close();
+            System.out.println("Database connections closed (" + pool.getStats() + ")");
+            queryMetrics.printSummary(10);
+        }
+    }
+    
+    /**
+     * Run the schema migrations if they could not run at startup
+     * (the database was unreachable then)
+     * 
+     * @return true if the schema is up to date
+     */
+    public synchronized boolean ensureSchema() {
+        if (schemaReady) {
+            return true;
+        }
+        try (Connection conn = getConnection("DatabaseManager.ensureSchema")) {
+            new SchemaMigrator(backend).migrate(conn);
+            schemaReady = true;
+            System.out.println(" Database schema brought up to date after reconnecting");
         } catch (SQLException e) {
-            System.err.println("Error closing connection: " + e.getMessage());
+            System.err.println("Schema migration failed: " + e.getMessage());
         }
+        return schemaReady;
     }
     
     /**
-     * Check if connection is active
+     * Check if the database is reachable
+     * Borrowing validates the connection before it is handed out
      * @return true if connected
      */
     public boolean isConnected() {
-        try {
-            return connection != null && !connection.isClosed() && connection.isValid(5);
+        try (Connection conn = getConnection("DatabaseManager.isConnected")) {
+            return !conn.isClosed();
         } catch (SQLException e) {
             return false;
         }
@@ -3,24 +3,44 @@ package com.fitnesstracker.database;
 import com.fitnesstracker.model.FitnessGoal;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class GoalDAO {
 
+    /** Columns read by exportRows, in order */
+    public static final List<String> EXPORT_COLUMNS = Collections.unmodifiableList(Arrays.asList(
+        "GoalID", "GoalName", "GoalType", "TargetValue", "CurrentProgress",
+        "Unit", "StartDate", "IsCompleted", "GoalDescription"));
+
     private DatabaseManager dbManager;
+    private final GoalRowMapper summaryMapper;
 
     public GoalDAO() {
         this.dbManager = DatabaseManager.getInstance();
+        this.summaryMapper = new GoalRowMapper(GoalRowMapper.Projection.SUMMARY, this::loadDescription);
     }
 
     // Insert a new goal
     public int insertGoal(FitnessGoal goal) {
+        try (Connection conn = dbManager.getConnection("GoalDAO.insertGoal")) {
+            return insertGoal(conn, goal);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return -1;
+    }
+
+    // Insert a new goal on the caller's connection (see UnitOfWork); sets and returns its ID
+    int insertGoal(Connection conn, FitnessGoal goal) throws SQLException {
         String sql = "INSERT INTO Goals " +
-                     "(GoalName, GoalDescription, GoalType, TargetValue, CurrentProgress, Unit, StartDate, IsCompleted) " +
-                     "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+                     "(GoalName, GoalDescription, GoalType, TargetValue, CurrentProgress, Unit, StartDate, IsCompleted, ClientRef) " +
+                     "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
 
-        try (Connection conn = dbManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+        try (PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
 
             pstmt.setString(1, goal.getName());
             pstmt.setString(2, goal.getDescription());
@@ -30,78 +50,268 @@ public class GoalDAO {
             pstmt.setString(6, goal.getUnit());
             pstmt.setTimestamp(7, new Timestamp(goal.getStartDate().getTime()));
             pstmt.setBoolean(8, goal.isCompleted());
+            pstmt.setString(9, goal.getClientRef());
 
-            int rows = pstmt.executeUpdate();
-            if (rows > 0) {
-                ResultSet rs = pstmt.getGeneratedKeys();
-                if (rs.next()) {
-                    int id = rs.getInt(1);
-                    goal.setId(id); // Set DB ID to object
-                    return id;
+            pstmt.executeUpdate();
+            try (ResultSet rs = pstmt.getGeneratedKeys()) {
+                if (!rs.next()) {
+                    throw new SQLException("No generated key returned");
                 }
+                int id = rs.getInt(1);
+                goal.setId(id); // Set DB ID to object
+                return id;
             }
+        }
+    }
+
+    // Delete goal by ID (leaves a tombstone for the change feed)
+    public boolean deleteGoal(int goalId) {
+        try (Connection conn = dbManager.getConnection("GoalDAO.deleteGoal")) {
+            conn.setAutoCommit(false);
+            if (!deleteGoal(conn, goalId)) {
+                return false;
+            }
+            conn.commit();
+            return true;
         } catch (SQLException e) {
             e.printStackTrace();
+            return false;
         }
-        return -1;
     }
 
-    // Delete goal by ID
-    public boolean deleteGoal(int goalId) {
+    // Delete goal by ID on the caller's connection, inside the caller's transaction
+    boolean deleteGoal(Connection conn, int goalId) throws SQLException {
         String sql = "DELETE FROM Goals WHERE GoalID = ?";
-        try (Connection conn = dbManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setInt(1, goalId);
-            return pstmt.executeUpdate() > 0;
+            if (pstmt.executeUpdate() == 0) {
+                return false;
+            }
+        }
+        ChangeFeedDAO.recordDeletion(conn, ChangeFeedDAO.GOALS, goalId);
+        return true;
+    }
+
+    // Update goal progress (takes a new row version for the change feed)
+    public boolean updateGoalProgress(FitnessGoal goal) {
+        return updateGoalProgress(goal.getId(), goal.getCurrentProgress(), goal.isCompleted());
+    }
+
+    // Update goal progress by ID
+    public boolean updateGoalProgress(int goalId, double currentProgress, boolean completed) {
+        try (Connection conn = dbManager.getConnection("GoalDAO.updateGoalProgress")) {
+            return updateGoalProgress(conn, goalId, currentProgress, completed);
         } catch (SQLException e) {
             e.printStackTrace();
             return false;
         }
     }
 
-    // Update goal progress
-    public boolean updateGoalProgress(FitnessGoal goal) {
-        String sql = "UPDATE Goals SET CurrentProgress=?, IsCompleted=? WHERE GoalID=?";
-        try (Connection conn = dbManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+    // Update goal progress on the caller's connection; false if the goal does not exist
+    boolean updateGoalProgress(Connection conn, int goalId, double currentProgress, boolean completed)
+            throws SQLException {
+        String sql = "UPDATE Goals SET CurrentProgress=?, IsCompleted=?, " +
+                     "RowVersion=NEXT VALUE FOR RowVersionSeq WHERE GoalID=?";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
-            pstmt.setDouble(1, goal.getCurrentProgress());
-            pstmt.setBoolean(2, goal.isCompleted());
-            pstmt.setInt(3, goal.getId());
+            pstmt.setDouble(1, currentProgress);
+            pstmt.setBoolean(2, completed);
+            pstmt.setInt(3, goalId);
 
             return pstmt.executeUpdate() > 0;
+        }
+    }
+
+    // Add to a goal's progress in the database itself (no lost updates when
+    // several threads or instances increment the same goal); completion is
+    // decided in SQL. Returns the stored progress, or null if it failed or
+    // the goal does not exist.
+    public Progress incrementProgress(int goalId, double delta) {
+        try {
+            return incrementProgress(Collections.singletonMap(goalId, delta)).get(goalId);
         } catch (SQLException e) {
             e.printStackTrace();
-            return false;
+            return null;
         }
     }
 
-    // Get all goals
+    // Apply several increments in one transaction (see GoalProgressCoalescer);
+    // goals that do not exist are left out of the result
+    public Map<Integer, Progress> incrementProgress(Map<Integer, Double> deltas) throws SQLException {
+        String update = "UPDATE Goals SET CurrentProgress = CurrentProgress + ?, " +
+                        "IsCompleted = CASE WHEN IsCompleted = " + dbManager.getBackend().booleanLiteral(true) +
+                        " OR CurrentProgress + ? >= TargetValue THEN " + dbManager.getBackend().booleanLiteral(true) +
+                        " ELSE " + dbManager.getBackend().booleanLiteral(false) + " END, " +
+                        "RowVersion = NEXT VALUE FOR RowVersionSeq WHERE GoalID = ?";
+        String select = "SELECT CurrentProgress, IsCompleted FROM Goals WHERE GoalID = ?";
+        Map<Integer, Progress> stored = new HashMap<>();
+        if (deltas.isEmpty()) {
+            return stored;
+        }
+
+        try (Connection conn = dbManager.getConnection("GoalDAO.incrementProgress");
+             PreparedStatement pstmt = conn.prepareStatement(update);
+             PreparedStatement query = conn.prepareStatement(select)) {
+            conn.setAutoCommit(false);
+            // Same lock order in every instance, so two flushes cannot deadlock
+            List<Integer> goalIds = new ArrayList<>(deltas.keySet());
+            Collections.sort(goalIds);
+            for (Integer goalId : goalIds) {
+                double delta = deltas.get(goalId);
+                pstmt.setDouble(1, delta);
+                pstmt.setDouble(2, delta);
+                pstmt.setInt(3, goalId);
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+
+            // The updated rows stay locked until commit, so these are the values just written
+            for (Integer goalId : goalIds) {
+                query.setInt(1, goalId);
+                try (ResultSet rs = query.executeQuery()) {
+                    if (rs.next()) {
+                        stored.put(goalId, new Progress(goalId, rs.getDouble(1), rs.getBoolean(2)));
+                    }
+                }
+            }
+            conn.commit();
+        }
+        return stored;
+    }
+
+    // Get all goals (GoalDescription is loaded lazily on first access)
     public List<FitnessGoal> getAllGoals() {
         List<FitnessGoal> goals = new ArrayList<>();
-        String sql = "SELECT * FROM Goals ORDER BY StartDate DESC";
-        try (Connection conn = dbManager.getConnection();
+        String sql = "SELECT " + summaryMapper.getProjection().getColumns() +
+                     " FROM Goals ORDER BY StartDate DESC";
+        try (Connection conn = dbManager.getConnection("GoalDAO.getAllGoals");
              Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
 
             while (rs.next()) {
-                FitnessGoal goal = new FitnessGoal(
-                        rs.getString("GoalName"),
-                        rs.getString("GoalDescription"),
-                        rs.getString("GoalType"),
-                        rs.getDouble("TargetValue"),
-                        rs.getString("Unit")
-                );
-                goal.setCurrentProgress(rs.getDouble("CurrentProgress"));
-                goal.setCompleted(rs.getBoolean("IsCompleted"));
-                goal.setId(rs.getInt("GoalID"));
-                Timestamp startTs = rs.getTimestamp("StartDate");
-                if (startTs != null) goal.setTargetDate(new java.util.Date(startTs.getTime()));
-                goals.add(goal);
+                goals.add(summaryMapper.mapRow(rs));
             }
         } catch (SQLException e) {
             e.printStackTrace();
         }
         return goals;
     }
+
+    /**
+     * Read raw goal rows for export, oldest StartDate first
+     *
+     * Columns are EXPORT_COLUMNS.
+     *
+     * @param from earliest StartDate (inclusive), or null
+     * @param to latest StartDate (exclusive), or null
+     * @param callback receives each row
+     * @return number of rows read
+     * @throws DataAccessException if the query fails
+     */
+    public long exportRows(java.util.Date from, java.util.Date to, RowCallback callback) {
+        StringBuilder sql = new StringBuilder("SELECT ")
+            .append(String.join(", ", EXPORT_COLUMNS)).append(" FROM Goals");
+        String joiner = " WHERE ";
+        if (from != null) {
+            sql.append(joiner).append("StartDate >= ?");
+            joiner = " AND ";
+        }
+        if (to != null) {
+            sql.append(joiner).append("StartDate < ?");
+        }
+        sql.append(" ORDER BY StartDate, GoalID");
+        long count = 0;
+
+        try (Connection conn = dbManager.getConnection("GoalDAO.exportRows");
+             PreparedStatement pstmt = conn.prepareStatement(sql.toString(),
+                 ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+
+            pstmt.setFetchSize(dbManager.getConfig().getInt(DatabaseConfig.FETCH_SIZE, 1000));
+            int param = 1;
+            if (from != null) {
+                pstmt.setTimestamp(param++, new Timestamp(from.getTime()));
+            }
+            if (to != null) {
+                pstmt.setTimestamp(param, new Timestamp(to.getTime()));
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    callback.processRow(rs);
+                    count++;
+                }
+            }
+        } catch (SQLException e) {
+            throw new DataAccessException("Error exporting goals: " + e.getMessage(), e);
+        }
+        return count;
+    }
+
+    // Find the goal saved under a client reference (offline journal replay);
+    // returns 0 if there is none, throws if the lookup itself fails
+    public int findIdByClientRef(String clientRef) throws SQLException {
+        String sql = "SELECT GoalID FROM Goals WHERE ClientRef = ?";
+        try (Connection conn = dbManager.getConnection("GoalDAO.findIdByClientRef");
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, clientRef);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        }
+    }
+
+    // Highest GoalID handed out so far; 0 if there are no goals, -1 if the query failed
+    public int getMaxGoalId() {
+        String sql = "SELECT MAX(GoalID) FROM Goals";
+        try (Connection conn = dbManager.getConnection("GoalDAO.getMaxGoalId");
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            if (rs.next()) {
+                return rs.getInt(1);
+            }
+        } catch (SQLException e) {
+            System.err.println("Error reading highest goal ID: " + e.getMessage());
+        }
+        return -1;
+    }
+
+    // Load the description of one goal (used for lazily loaded descriptions)
+    public String loadDescription(int goalId) {
+        String sql = "SELECT GoalDescription FROM Goals WHERE GoalID = ?";
+        try (Connection conn = dbManager.getConnection("GoalDAO.loadDescription");
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, goalId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    return rs.getString(1);
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Progress - A goal's progress as stored after an increment
+     */
+    public static final class Progress {
+        private final int goalId;
+        private final double currentProgress;
+        private final boolean completed;
+
+        Progress(int goalId, double currentProgress, boolean completed) {
+            this.goalId = goalId;
+            this.currentProgress = currentProgress;
+            this.completed = completed;
+        }
+
+        public int getGoalId() { return goalId; }
+        public double getCurrentProgress() { return currentProgress; }
+        public boolean isCompleted() { return completed; }
+
+        @Override
+        public String toString() {
+            return "goal " + goalId + ": " + currentProgress + (completed ? " (completed)" : "");
+        }
+    }
 }
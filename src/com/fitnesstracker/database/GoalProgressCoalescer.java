@@ -0,0 +1,310 @@
+package com.fitnesstracker.database;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * GoalProgressCoalescer - Folds many small progress increments into few writes
+ *
+ * Purpose: Background imports can bump the same goal thousands of times a
+ * second. Each add() only merges the delta into a per-goal sum (no shared
+ * lock; ConcurrentHashMap locks per bin). A writer thread wakes every
+ * delayMillis, takes the sums and applies them with one atomic
+ * CurrentProgress = CurrentProgress + ? per goal, all in one transaction.
+ *
+ * - The stored values are handed to the Listener so callers can correct
+ *   their in-memory copy (add getPendingDelta() for what is still queued)
+ * - If the write fails the sums are put back and retried on the next round;
+ *   nothing is lost while the process is running
+ * - Deltas still queued when the process dies are lost; shutdown() and
+ *   flush() write them out
+ * - discard() drops what is queued for a goal whose progress is about to
+ *   be overwritten, so it is not added on top of the new value
+ * - The sums can go somewhere other than GoalDAO (see Store); with the
+ *   offline journal on they are journaled instead
+ * @version 1.0
+ */
+public class GoalProgressCoalescer {
+
+    /**
+     * Called on the writer thread after each successful write
+     */
+    public interface Listener {
+        void progressStored(Collection<GoalDAO.Progress> stored);
+    }
+
+    /**
+     * Writes one round of sums, called on the writer thread
+     * Returns the stored progress to pass to the Listener (may be empty);
+     * throwing puts the sums back for the next round.
+     */
+    public interface Store {
+        Map<Integer, GoalDAO.Progress> incrementProgress(Map<Integer, Double> deltas) throws SQLException;
+    }
+
+    private static final long RETRY_BACKOFF_MS = 1000;
+
+    private final Store store;
+    private final long delayMillis;
+    private final Listener listener;
+    private final Map<Integer, Double> pending = new ConcurrentHashMap<>();
+    private final Thread writer;
+
+    private final Object lock = new Object();
+    private boolean writing;       // a taken batch is being written, guarded by lock
+    private Map<Integer, Double> inFlight = Collections.emptyMap(); // the batch being written, guarded by lock
+    private final Set<Integer> discarded = new HashSet<>(); // goals of inFlight discarded meanwhile, guarded by lock
+    private boolean wakeRequested; // guarded by lock
+    private volatile boolean running = true;
+
+    private final LongAdder incrementsReceived = new LongAdder();
+    private volatile long writes;
+    private volatile long goalsWritten;
+
+    /**
+     * Create and start a coalescer
+     *
+     * @param goalDAO DAO used for the increments
+     * @param delayMillis how long increments are collected before they are written
+     * @param listener receives the stored progress after each write (may be null)
+     */
+    public GoalProgressCoalescer(GoalDAO goalDAO, long delayMillis, Listener listener) {
+        this(goalDAO::incrementProgress, delayMillis, listener);
+    }
+
+    /**
+     * Create and start a coalescer writing somewhere other than GoalDAO
+     *
+     * @param store writes each round of sums
+     * @param delayMillis how long increments are collected before they are written
+     * @param listener receives the stored progress after each write (may be null)
+     */
+    public GoalProgressCoalescer(Store store, long delayMillis, Listener listener) {
+        this.store = store;
+        this.delayMillis = Math.max(1, delayMillis);
+        this.listener = listener;
+
+        this.writer = new Thread(this::runWriter, "goal-progress-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Queue an increment; returns at once
+     *
+     * @param goalId a goal that exists in the database
+     * @param delta amount to add (may be negative)
+     */
+    public void add(int goalId, double delta) {
+        if (!running) {
+            throw new IllegalStateException("Goal progress writer has been shut down");
+        }
+        pending.merge(goalId, delta, Double::sum);
+        incrementsReceived.increment();
+    }
+
+    /**
+     * Sum of the increments for a goal that have not been written yet
+     */
+    public double getPendingDelta(int goalId) {
+        Double delta = pending.get(goalId);
+        return delta != null ? delta : 0.0;
+    }
+
+    /**
+     * Drop the increments queued for a goal, before its progress is overwritten
+     * Call while holding the lock that guards the goal's in-memory progress.
+     * If some are being written right now they are not put back should the
+     * write fail, and isDiscarded() reports the goal until the write is over;
+     * call awaitWrite() (without that lock) before writing the new value.
+     *
+     * @return the queued sum that was dropped (not counting an in-flight write)
+     */
+    public double discard(int goalId) {
+        synchronized (lock) {
+            Double dropped = pending.remove(goalId);
+            if (writing && inFlight.containsKey(goalId)) {
+                discarded.add(goalId);
+            }
+            return dropped != null ? dropped : 0.0;
+        }
+    }
+
+    /**
+     * Whether the goal was discarded while the current write was in flight;
+     * the Listener must then ignore the progress stored for it
+     */
+    public boolean isDiscarded(int goalId) {
+        synchronized (lock) {
+            return discarded.contains(goalId);
+        }
+    }
+
+    /**
+     * Wait until increments of a goal being written right now are stored
+     * Must not be called while holding a lock the Listener takes.
+     */
+    public void awaitWrite(int goalId) {
+        synchronized (lock) {
+            while (writing && inFlight.containsKey(goalId) && writer.isAlive()) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Write everything queued so far and wait for it
+     *
+     * @param timeoutMillis maximum time to wait
+     * @return true if nothing is left unwritten
+     */
+    public boolean flush(long timeoutMillis) {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        synchronized (lock) {
+            wakeRequested = true;
+            lock.notifyAll();
+            while (writing || !pending.isEmpty()) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0 || !writer.isAlive()) {
+                    return false;
+                }
+                try {
+                    lock.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Stop accepting increments and write out what is queued
+     *
+     * @param timeoutMillis maximum time to wait for the last write
+     * @return true if everything was written
+     */
+    public boolean shutdown(long timeoutMillis) {
+        running = false;
+        boolean flushed = flush(timeoutMillis);
+        writer.interrupt();
+        return flushed;
+    }
+
+    public long getIncrementsReceived() {
+        return incrementsReceived.sum();
+    }
+
+    /** Transactions written */
+    public long getWriteCount() {
+        return writes;
+    }
+
+    /** Goal rows updated, over all writes */
+    public long getGoalsWritten() {
+        return goalsWritten;
+    }
+
+    // Writer thread
+
+    private void runWriter() {
+        while (true) {
+            synchronized (lock) {
+                if (!wakeRequested) {
+                    try {
+                        lock.wait(delayMillis);
+                    } catch (InterruptedException e) {
+                        if (pending.isEmpty()) {
+                            return;
+                        }
+                    }
+                }
+                wakeRequested = false;
+                if (pending.isEmpty()) {
+                    lock.notifyAll();
+                    if (!running && Thread.currentThread().isInterrupted()) {
+                        return;
+                    }
+                    continue;
+                }
+                writing = true;
+                inFlight = takePending();
+            }
+
+            boolean ok = writeBatch(inFlight);
+
+            synchronized (lock) {
+                discarded.clear();
+                inFlight = Collections.emptyMap();
+                writing = false;
+                lock.notifyAll();
+            }
+            if (!ok) {
+                try {
+                    Thread.sleep(RETRY_BACKOFF_MS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    if (!running) {
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    private Map<Integer, Double> takePending() {
+        Map<Integer, Double> batch = new HashMap<>();
+        for (Integer goalId : new ArrayList<>(pending.keySet())) {
+            Double delta = pending.remove(goalId);
+            if (delta != null && delta != 0.0) {
+                batch.put(goalId, delta);
+            }
+        }
+        return batch;
+    }
+
+    private boolean writeBatch(Map<Integer, Double> batch) {
+        if (batch.isEmpty()) {
+            return true;
+        }
+        Map<Integer, GoalDAO.Progress> stored;
+        try {
+            stored = store.incrementProgress(batch);
+        } catch (SQLException e) {
+            // Put the sums back (unless overwritten meanwhile); later increments simply add to them
+            synchronized (lock) {
+                for (Map.Entry<Integer, Double> delta : batch.entrySet()) {
+                    if (!discarded.contains(delta.getKey())) {
+                        pending.merge(delta.getKey(), delta.getValue(), Double::sum);
+                    }
+                }
+            }
+            System.err.println(" Goal progress write failed, retrying: " + e.getMessage());
+            return false;
+        }
+        writes++;
+        goalsWritten += stored.size();
+        if (listener != null && !stored.isEmpty()) {
+            try {
+                listener.progressStored(stored.values());
+            } catch (RuntimeException e) {
+                System.err.println(" Goal progress listener failed: " + e);
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,92 @@
+package com.fitnesstracker.database;
+
+import com.fitnesstracker.model.FitnessGoal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.function.IntFunction;
+
+/**
+ * GoalRowMapper - Maps Goals rows with an explicit column list
+ *
+ * Projections:
+ * - FULL: every column, including GoalDescription
+ * - SUMMARY: leaves out the GoalDescription text column; the description
+ *   is loaded on first access through the supplied loader
+ * @version 1.0
+ */
+public class GoalRowMapper implements RowMapper<FitnessGoal> {
+
+    /**
+     * Which columns a query selects
+     */
+    public enum Projection {
+        FULL(GoalRowMapper.SUMMARY_COLUMNS + ", GoalDescription"),
+        SUMMARY(GoalRowMapper.SUMMARY_COLUMNS);
+
+        private final String columns;
+
+        Projection(String columns) {
+            this.columns = columns;
+        }
+
+        /** Comma separated SELECT list for this projection */
+        public String getColumns() {
+            return columns;
+        }
+    }
+
+    static final String SUMMARY_COLUMNS =
+        "GoalID, GoalName, GoalType, TargetValue, CurrentProgress, Unit, StartDate, IsCompleted";
+
+    // Positions in the SELECT list
+    static final int GOAL_ID = 1;
+    static final int GOAL_NAME = 2;
+    static final int GOAL_TYPE = 3;
+    static final int TARGET_VALUE = 4;
+    static final int CURRENT_PROGRESS = 5;
+    static final int UNIT = 6;
+    static final int START_DATE = 7;
+    static final int IS_COMPLETED = 8;
+    static final int GOAL_DESCRIPTION = 9;
+
+    private final Projection projection;
+    private final IntFunction<String> descriptionLoader;
+
+    /**
+     * @param projection columns selected by the query
+     * @param descriptionLoader loads the description by GoalID (used by SUMMARY only)
+     */
+    public GoalRowMapper(Projection projection, IntFunction<String> descriptionLoader) {
+        this.projection = projection;
+        this.descriptionLoader = descriptionLoader;
+    }
+
+    public Projection getProjection() {
+        return projection;
+    }
+
+    @Override
+    public FitnessGoal mapRow(ResultSet rs) throws SQLException {
+        int id = rs.getInt(GOAL_ID);
+
+        FitnessGoal goal = new FitnessGoal(
+            rs.getString(GOAL_NAME),
+            rs.getString(GOAL_TYPE),
+            rs.getDouble(TARGET_VALUE),
+            rs.getString(UNIT));
+
+        if (projection == Projection.FULL) {
+            goal.setDescription(rs.getString(GOAL_DESCRIPTION));
+        } else {
+            goal.setDescriptionLoader(() -> descriptionLoader.apply(id));
+        }
+
+        goal.setCurrentProgress(rs.getDouble(CURRENT_PROGRESS));
+        goal.setCompleted(rs.getBoolean(IS_COMPLETED));
+        goal.setId(id);
+        Timestamp startTs = rs.getTimestamp(START_DATE);
+        if (startTs != null) goal.setTargetDate(new java.util.Date(startTs.getTime()));
+        return goal;
+    }
+}
@@ -0,0 +1,126 @@
+package com.fitnesstracker.database;
+
+import java.nio.file.Paths;
+
+/**
+ * H2Backend - Embedded, file-backed H2 database
+ *
+ * Runs in-process with no server or network hop, which makes it suitable
+ * for laptops, CI boxes and benchmarks. Requires the h2 jar on the classpath.
+ * The database file location is set with fitness.db.h2.path.
+ * @version 1.0
+ */
+public class H2Backend extends DatabaseBackend {
+
+    public H2Backend(DatabaseConfig config) {
+        super(config);
+    }
+
+    @Override
+    public String getName() {
+        return "H2 (embedded)";
+    }
+
+    @Override
+    public String getDriverClassName() {
+        return "org.h2.Driver";
+    }
+
+    @Override
+    protected String buildConnectionUrl() {
+        return "jdbc:h2:file:" + getDatabasePath() + ";DB_CLOSE_ON_EXIT=FALSE";
+    }
+
+    private String getDatabasePath() {
+        return Paths.get(config.getString(DatabaseConfig.H2_PATH)).toAbsolutePath().toString();
+    }
+
+    @Override
+    public String describeTarget() {
+        return "File: " + getDatabasePath() + ".mv.db";
+    }
+
+    @Override
+    public String[] getTroubleshootingHints() {
+        return new String[]{
+            "Make sure the h2 jar is on the classpath",
+            "Make sure the directory for " + getDatabasePath() + " is writable",
+            "Make sure no other process has the database file open"
+        };
+    }
+
+    @Override
+    public String getVersionQuery() {
+        return "SELECT 'H2 ' || H2VERSION() AS Version";
+    }
+
+    @Override
+    public String getCurrentDatabaseQuery() {
+        return "SELECT DATABASE() AS CurrentDB";
+    }
+
+    @Override
+    public String getListTablesQuery() {
+        return "SELECT TABLE_NAME FROM INFORMATION_SCHEMA.TABLES " +
+               "WHERE TABLE_SCHEMA = SCHEMA() AND TABLE_TYPE = 'BASE TABLE' " +
+               "ORDER BY TABLE_NAME";
+    }
+
+    @Override
+    protected String identityColumn() {
+        return "INT GENERATED BY DEFAULT AS IDENTITY";
+    }
+
+    @Override
+    protected String textType(int length) {
+        return "VARCHAR(" + length + ")";
+    }
+
+    @Override
+    protected String largeTextType() {
+        return "CHARACTER LARGE OBJECT";
+    }
+
+    @Override
+    protected String floatType() {
+        return "DOUBLE PRECISION";
+    }
+
+    @Override
+    protected String timestampType() {
+        return "TIMESTAMP";
+    }
+
+    @Override
+    protected String booleanType() {
+        return "BOOLEAN";
+    }
+
+    @Override
+    public String booleanLiteral(boolean value) {
+        return value ? "TRUE" : "FALSE";
+    }
+
+    @Override
+    public String addColumnSql(String table, String column, String type, String defaultExpression) {
+        String sql = "ALTER TABLE " + table + " ADD COLUMN " + column + " " + type;
+        return defaultExpression == null ? sql : sql + " DEFAULT " + defaultExpression;
+    }
+
+    @Override
+    public String bucketStartExpression(TimeBucket bucket, String column) {
+        switch (bucket) {
+            case WEEK:
+                return "DATEADD(DAY, 1 - ISO_DAY_OF_WEEK(" + column + "), CAST(" + column + " AS DATE))";
+            case MONTH:
+                return "DATEADD(DAY, 1 - DAY_OF_MONTH(" + column + "), CAST(" + column + " AS DATE))";
+            default:
+                return "CAST(" + column + " AS DATE)";
+        }
+    }
+
+    @Override
+    public boolean supportsBatchGeneratedKeys() {
+        return true;
+    }
+}
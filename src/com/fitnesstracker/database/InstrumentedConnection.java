@@ -0,0 +1,277 @@
+package com.fitnesstracker.database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+
+/**
+ * InstrumentedConnection - Timing wrapper around one borrowed connection
+ *
+ * Statements and result sets created through it are wrapped the same way
+ * as the pool's handles (dynamic proxies) so that:
+ * - every execute call is timed, and statements over the slow-query
+ *   threshold are logged with their SQL and parameter types
+ * - rows read from result sets and update counts are added up
+ * - any SQLException (or a rollback) marks the operation as failed
+ *
+ * Closing the connection records the whole borrow as one call of the
+ * operation in QueryMetrics. Used by one thread at a time, like the
+ * connection it wraps.
+ * @version 1.0
+ */
+final class InstrumentedConnection implements InvocationHandler {
+
+    private final Connection target;
+    private final QueryMetrics metrics;
+    private final String operation;
+    private final long startNanos;
+    private final long acquireNanos;
+    private Connection proxy;
+
+    private long rows;
+    private long rowsAffected;
+    private boolean failed;
+    private boolean recorded;
+
+    private InstrumentedConnection(Connection target, QueryMetrics metrics, String operation,
+                                   long startNanos, long acquireNanos) {
+        this.target = target;
+        this.metrics = metrics;
+        this.operation = operation;
+        this.startNanos = startNanos;
+        this.acquireNanos = acquireNanos;
+    }
+
+    /**
+     * Wrap a borrowed connection
+     *
+     * @param startNanos when the connection was requested from the pool
+     * @param acquireNanos how long the pool took to hand it out
+     */
+    static Connection wrap(Connection target, QueryMetrics metrics, String operation,
+                           long startNanos, long acquireNanos) {
+        InstrumentedConnection handler = new InstrumentedConnection(target, metrics, operation,
+            startNanos, acquireNanos);
+        handler.proxy = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+            new Class<?>[]{Connection.class}, handler);
+        return handler.proxy;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        String name = method.getName();
+        switch (name) {
+            case "close":
+                if (!recorded) {
+                    recorded = true;
+                    metrics.record(operation, acquireNanos, System.nanoTime() - startNanos,
+                        rows, rowsAffected, failed);
+                }
+                target.close();
+                return null;
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return "Instrumented[" + operation + ", " + target + "]";
+            case "rollback":
+                failed = true;
+                return call(target, method, args);
+            case "createStatement":
+            case "prepareStatement":
+            case "prepareCall":
+                Statement statement = (Statement) call(target, method, args);
+                String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : null;
+                return wrap(method.getReturnType(), new StatementHandler(statement, sql));
+            default:
+                return call(target, method, args);
+        }
+    }
+
+    /**
+     * Invoke the wrapped object, noting database errors
+     */
+    private Object call(Object on, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(on, args);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof SQLException) {
+                failed = true;
+            }
+            throw e.getCause();
+        }
+    }
+
+    private static Object wrap(Class<?> type, InvocationHandler handler) {
+        return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    /**
+     * Times executions and remembers bound parameter types
+     */
+    private final class StatementHandler implements InvocationHandler {
+        private final Statement statement;
+        private String sql;
+        private String[] parameterTypes = new String[0];
+        private int[] parameterLengths = new int[0];
+        private int batchSize;
+
+        StatementHandler(Statement statement, String sql) {
+            this.statement = statement;
+            this.sql = sql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.startsWith("execute")) {
+                return execute(proxy, method, args);
+            }
+            switch (name) {
+                case "addBatch":
+                    batchSize++;
+                    if (args != null && args.length == 1) {
+                        sql = (String) args[0];
+                    }
+                    break;
+                case "clearBatch":
+                    batchSize = 0;
+                    break;
+                case "getResultSet":
+                    ResultSet resultSet = (ResultSet) call(statement, method, args);
+                    return resultSet == null ? null : wrap(ResultSet.class, new ResultSetHandler(resultSet, proxy));
+                case "getConnection":
+                    return InstrumentedConnection.this.proxy;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Instrumented[" + statement + "]";
+                default:
+                    if (args != null && args.length >= 2 && args[0] instanceof Integer
+                            && name.startsWith("set") && statement instanceof PreparedStatement) {
+                        bind((Integer) args[0], name, args[1]);
+                    }
+            }
+            return call(statement, method, args);
+        }
+
+        private Object execute(Object proxy, Method method, Object[] args) throws Throwable {
+            String text = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : sql;
+            long start = System.nanoTime();
+            boolean ok = false;
+            Object result;
+            try {
+                result = call(statement, method, args);
+                ok = true;
+            } finally {
+                long elapsed = System.nanoTime() - start;
+                if (elapsed >= metrics.getSlowThresholdNanos()) {
+                    metrics.recordSlow(operation, text, describeParameters(), batchSize, elapsed, !ok);
+                }
+                if ("executeBatch".equals(method.getName()) || "executeLargeBatch".equals(method.getName())) {
+                    batchSize = 0;
+                }
+            }
+
+            if (result instanceof ResultSet) {
+                return wrap(ResultSet.class, new ResultSetHandler((ResultSet) result, proxy));
+            }
+            if (result instanceof Integer || result instanceof Long) {
+                rowsAffected += Math.max(0, ((Number) result).longValue());
+            } else if (result instanceof int[]) {
+                for (int count : (int[]) result) {
+                    rowsAffected += Math.max(0, count);
+                }
+            } else if (result instanceof long[]) {
+                for (long count : (long[]) result) {
+                    rowsAffected += Math.max(0, count);
+                }
+            }
+            return result;
+        }
+
+        private void bind(int index, String setter, Object value) {
+            if (index < 1 || index > 1000) {
+                return;
+            }
+            if (index > parameterTypes.length) {
+                parameterTypes = Arrays.copyOf(parameterTypes, Math.max(index, parameterTypes.length * 2));
+                parameterLengths = Arrays.copyOf(parameterLengths, parameterTypes.length);
+            }
+            // Only the shape: setString -> VARCHAR(length), setNull -> NULL, setInt -> INT ...
+            String type;
+            int length = -1;
+            if (value == null || "setNull".equals(setter)) {
+                type = "NULL";
+            } else if (value instanceof String) {
+                type = "VARCHAR";
+                length = ((String) value).length();
+            } else if ("setObject".equals(setter)) {
+                type = value.getClass().getSimpleName();
+            } else {
+                type = setter.substring(3);
+            }
+            parameterTypes[index - 1] = type;
+            parameterLengths[index - 1] = length;
+        }
+
+        private String describeParameters() {
+            StringBuilder text = new StringBuilder("[");
+            for (int i = 0; i < parameterTypes.length && parameterTypes[i] != null; i++) {
+                if (i > 0) {
+                    text.append(", ");
+                }
+                text.append(parameterTypes[i].toUpperCase());
+                if (parameterLengths[i] >= 0) {
+                    text.append('(').append(parameterLengths[i]).append(')');
+                }
+            }
+            return text.append(']').toString();
+        }
+    }
+
+    /**
+     * Counts rows read
+     */
+    private final class ResultSetHandler implements InvocationHandler {
+        private final ResultSet resultSet;
+        private final Object statementProxy;
+
+        ResultSetHandler(ResultSet resultSet, Object statementProxy) {
+            this.resultSet = resultSet;
+            this.statementProxy = statementProxy;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "next":
+                    Object hasRow = call(resultSet, method, args);
+                    if (Boolean.TRUE.equals(hasRow)) {
+                        rows++;
+                    }
+                    return hasRow;
+                case "getStatement":
+                    return statementProxy;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Instrumented[" + resultSet + "]";
+                default:
+                    return call(resultSet, method, args);
+            }
+        }
+    }
+}
@@ -0,0 +1,477 @@
+package com.fitnesstracker.database;
+
+import com.fitnesstracker.model.Activity;
+import com.fitnesstracker.model.FitnessGoal;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * JournalReconciler - Offline-first writes through the OfflineJournal
+ *
+ * Purpose: Recording an activity or changing a goal must not depend on
+ * the database being reachable. Writes are appended to a local journal
+ * (forced to disk) and shown from memory at once; a background thread
+ * replays the journal into ActivityDAO and GoalDAO whenever the database
+ * is reachable, in the order the writes were made.
+ *
+ * Replays are idempotent. Every journaled activity and new goal gets a
+ * ClientRef (a UUID, unique in the database); before inserting, the
+ * reconciler looks up which references are already there, so a replay
+ * interrupted after its commit but before the journal position was saved
+ * does not insert the rows again. Progress updates set absolute values and
+ * deleting a missing goal does nothing, so repeating them is harmless.
+ *
+ * A record that keeps failing while the database is reachable (e.g. the
+ * row is rejected) is dropped after fitness.offline.maxAttempts tries, so
+ * it cannot block the records behind it.
+ *
+ * Enabled by default; set fitness.offline.enabled=false to write directly.
+ * @version 1.0
+ */
+public class JournalReconciler {
+
+    private static JournalReconciler instance;
+
+    private final OfflineJournal journal;
+    private final ActivityDAO activityDAO;
+    private final GoalDAO goalDAO;
+    private final DatabaseManager dbManager;
+    private final long retryMillis;
+    private final int batchSize;
+    private final int maxAttempts;
+
+    private final Deque<JournalRecord> pending = new ArrayDeque<>(); // guarded by this
+    private final ReentrantLock replayLock = new ReentrantLock();
+    private final List<Runnable> replayListeners = new CopyOnWriteArrayList<>();
+    private volatile ActivityWriteBehind.FailureHandler activityFailureHandler;
+    private final Thread worker;
+
+    private volatile boolean online = true; // only changes are logged
+    private volatile boolean running = true;
+    private volatile long replayedCount;
+
+    private JournalReconciler(OfflineJournal journal, DatabaseConfig config) throws IOException {
+        this.journal = journal;
+        this.dbManager = DatabaseManager.getInstance();
+        this.activityDAO = new ActivityDAO();
+        this.goalDAO = new GoalDAO();
+        this.retryMillis = config.getLong(DatabaseConfig.OFFLINE_RETRY_MS, 5000L);
+        this.batchSize = config.getInt(DatabaseConfig.OFFLINE_REPLAY_BATCH_SIZE, 500);
+        this.maxAttempts = config.getInt(DatabaseConfig.OFFLINE_MAX_ATTEMPTS, 5);
+
+        pending.addAll(journal.readPending());
+        if (!pending.isEmpty()) {
+            System.out.println(" Offline journal has " + pending.size() + " writes waiting for the database");
+        }
+
+        this.worker = new Thread(this::runWorker, "offline-journal-replay");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * Get the shared reconciler
+     *
+     * @return the reconciler, or null if offline mode is disabled or the journal cannot be opened
+     */
+    public static synchronized JournalReconciler getInstance() {
+        if (instance == null) {
+            DatabaseConfig config = DatabaseManager.getInstance().getConfig();
+            if (!config.getBoolean(DatabaseConfig.OFFLINE_ENABLED, true)) {
+                return null;
+            }
+            Path path = Paths.get(config.getString(DatabaseConfig.OFFLINE_JOURNAL, "./data/offline.journal"));
+            try {
+                instance = new JournalReconciler(OfflineJournal.open(path), config);
+                System.out.println(" Offline journal: " + path.toAbsolutePath());
+            } catch (IOException e) {
+                System.err.println(" Offline journal unavailable, writing directly to the database: " +
+                    e.getMessage());
+                return null;
+            }
+        }
+        return instance;
+    }
+
+    // Recording writes
+
+    /**
+     * Journal a new activity
+     * Returns once the record is on disk; the database insert happens later.
+     *
+     * @param activity the activity (its ClientRef is assigned here)
+     * @return false if the journal could not be written
+     */
+    public boolean recordActivity(Activity activity) {
+        if (activity.getClientRef() == null) {
+            activity.setClientRef(UUID.randomUUID().toString());
+        }
+        return record(JournalRecord.activity(activity));
+    }
+
+    /**
+     * Journal a new goal
+     *
+     * @param goal the goal (its ClientRef is assigned here)
+     * @return false if the journal could not be written
+     */
+    public boolean recordGoal(FitnessGoal goal) {
+        if (goal.getClientRef() == null) {
+            goal.setClientRef(UUID.randomUUID().toString());
+        }
+        return record(JournalRecord.goalInsert(goal));
+    }
+
+    /**
+     * Journal the goal's current progress and completion
+     *
+     * @return false if the journal could not be written
+     */
+    public boolean recordGoalProgress(FitnessGoal goal) {
+        return record(JournalRecord.goalProgress(goal));
+    }
+
+    /**
+     * Journal the deletion of a goal
+     *
+     * @return false if the journal could not be written
+     */
+    public boolean recordGoalDeleted(FitnessGoal goal) {
+        return record(JournalRecord.goalDelete(goal));
+    }
+
+    private boolean record(JournalRecord record) {
+        synchronized (this) {
+            try {
+                journal.append(Collections.singletonList(record));
+            } catch (IOException e) {
+                System.err.println("Error writing offline journal: " + e.getMessage());
+                return false;
+            }
+            pending.addLast(record);
+            notifyAll();
+        }
+        return true;
+    }
+
+    // State for loading
+
+    /**
+     * Run an action while no replay is in progress
+     * Used when loading from the database, so a row is not both loaded and
+     * still listed as pending.
+     */
+    public <T> T withReplayPaused(Supplier<T> action) {
+        replayLock.lock();
+        try {
+            return action.get();
+        } finally {
+            replayLock.unlock();
+        }
+    }
+
+    /**
+     * Activities journaled but not yet in the database, oldest first
+     */
+    public synchronized List<Activity> getPendingActivities() {
+        List<Activity> activities = new ArrayList<>();
+        for (JournalRecord record : pending) {
+            if (record.kind == JournalRecord.Kind.ACTIVITY) {
+                activities.add(record.activity);
+            }
+        }
+        return activities;
+    }
+
+    /**
+     * Apply goal changes not yet in the database to goals loaded from it
+     *
+     * @param goals goals loaded from the database; modified in place
+     */
+    public synchronized void applyPendingGoalChanges(List<FitnessGoal> goals) {
+        for (JournalRecord record : pending) {
+            switch (record.kind) {
+                case GOAL_INSERT:
+                    goals.add(record.goal);
+                    break;
+                case GOAL_PROGRESS:
+                    for (FitnessGoal goal : goals) {
+                        if (record.refersTo(goal)) {
+                            goal.setCurrentProgress(record.progress);
+                            goal.setCompleted(record.completed);
+                        }
+                    }
+                    break;
+                case GOAL_DELETE:
+                    goals.removeIf(record::refersTo);
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Receive activities whose replay was rejected (called on the replay thread)
+     */
+    public void setActivityFailureHandler(ActivityWriteBehind.FailureHandler handler) {
+        this.activityFailureHandler = handler;
+    }
+
+    /**
+     * Run after each replay pass that wrote something (called on the replay thread)
+     */
+    public void addReplayListener(Runnable listener) {
+        replayListeners.add(listener);
+    }
+
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    /** Whether the last replay attempt reached the database */
+    public boolean isOnline() {
+        return online;
+    }
+
+    public long getReplayedCount() {
+        return replayedCount;
+    }
+
+    /**
+     * Wait until everything journaled so far is in the database
+     *
+     * @param timeoutMillis maximum time to wait
+     * @return true if nothing is pending
+     */
+    public boolean flush(long timeoutMillis) {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        synchronized (this) {
+            notifyAll(); // replay now rather than after the retry delay
+            while (!pending.isEmpty()) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0 || !worker.isAlive()) {
+                    return false;
+                }
+                try {
+                    wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Stop the replay thread; whatever is pending stays in the journal
+     */
+    public void shutdown() {
+        running = false;
+        worker.interrupt();
+    }
+
+    // Replay
+
+    private void runWorker() {
+        while (running) {
+            try {
+                synchronized (this) {
+                    while (pending.isEmpty() && running) {
+                        wait();
+                    }
+                }
+                if (!replayPass()) {
+                    synchronized (this) {
+                        wait(retryMillis); // offline: try again later, or when a flush asks
+                    }
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                // Keep the replay thread alive
+                System.err.println("Offline journal replay failed: " + e);
+            }
+        }
+    }
+
+    /**
+     * Replay as much as possible
+     *
+     * @return false if replay stopped because the database is unavailable
+     */
+    private boolean replayPass() {
+        replayLock.lock();
+        int written = 0;
+        try {
+            if (!dbManager.isConnected() || !dbManager.ensureSchema()) {
+                setOnline(false);
+                return false;
+            }
+            setOnline(true);
+
+            List<JournalRecord> batch;
+            while (!(batch = nextBatch()).isEmpty()) {
+                boolean ok = batch.get(0).kind == JournalRecord.Kind.ACTIVITY
+                    ? replayActivities(batch)
+                    : replayGoal(batch.get(0));
+                if (!ok) {
+                    JournalRecord first = batch.get(0);
+                    if (!dbManager.isConnected()) {
+                        setOnline(false);
+                        return false;
+                    }
+                    if (++first.attempts < maxAttempts) {
+                        return false;
+                    }
+                    System.err.println("Dropping offline journal record " + first + " after " +
+                        first.attempts + " failed attempts");
+                    batch = Collections.singletonList(first);
+                    if (first.kind == JournalRecord.Kind.ACTIVITY) {
+                        reportActivityFailure(first.activity, "rejected by the database");
+                    }
+                }
+                completed(batch);
+                written += batch.size();
+            }
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error updating offline journal position: " + e.getMessage());
+            return false;
+        } finally {
+            replayLock.unlock();
+            if (written > 0) {
+                for (Runnable listener : replayListeners) {
+                    listener.run();
+                }
+            }
+        }
+    }
+
+    /**
+     * The next records to replay: a run of activities (up to batchSize) or a single goal change
+     */
+    private synchronized List<JournalRecord> nextBatch() {
+        List<JournalRecord> batch = new ArrayList<>();
+        for (JournalRecord record : pending) {
+            if (record.kind != JournalRecord.Kind.ACTIVITY) {
+                if (batch.isEmpty()) {
+                    batch.add(record);
+                }
+                break;
+            }
+            batch.add(record);
+            if (batch.size() == batchSize) {
+                break;
+            }
+        }
+        return batch;
+    }
+
+    private void completed(List<JournalRecord> batch) throws IOException {
+        synchronized (this) {
+            Iterator<JournalRecord> it = pending.iterator();
+            for (int i = 0; i < batch.size() && it.hasNext(); i++) {
+                it.next();
+                it.remove();
+            }
+            journal.markReplayed(batch.get(batch.size() - 1).endOffset);
+            replayedCount += batch.size();
+            notifyAll();
+        }
+    }
+
+    private boolean replayActivities(List<JournalRecord> batch) {
+        List<String> refs = new ArrayList<>(batch.size());
+        for (JournalRecord record : batch) {
+            refs.add(record.clientRef);
+        }
+        Map<String, Integer> existing;
+        try {
+            existing = activityDAO.findIdsByClientRef(refs);
+        } catch (SQLException e) {
+            System.err.println("Error checking replayed activities: " + e.getMessage());
+            return false;
+        }
+
+        List<Activity> toInsert = new ArrayList<>(batch.size());
+        for (JournalRecord record : batch) {
+            Integer id = existing.get(record.clientRef);
+            if (id != null) {
+                record.activity.setId(id); // written by an earlier, interrupted replay
+            } else {
+                toInsert.add(record.activity);
+            }
+        }
+        if (toInsert.isEmpty()) {
+            return true;
+        }
+
+        BatchResult<Activity> result = activityDAO.saveActivities(toInsert);
+        if (result.isRolledBack()) {
+            return false;
+        }
+        for (BatchResult.RowFailure<Activity> failure : result.getFailures()) {
+            System.err.println("Dropping journaled activity " + failure);
+            reportActivityFailure(failure.getRow(), failure.getMessage());
+        }
+        return true;
+    }
+
+    private boolean replayGoal(JournalRecord record) {
+        try {
+            int goalId = record.goalId > 0 || record.clientRef == null
+                ? record.goalId : goalDAO.findIdByClientRef(record.clientRef);
+
+            switch (record.kind) {
+                case GOAL_INSERT:
+                    if (goalId > 0) {
+                        record.goal.setId(goalId); // written by an earlier, interrupted replay
+                        return true;
+                    }
+                    return goalDAO.insertGoal(record.goal) > 0;
+                case GOAL_PROGRESS:
+                    // No ID: the goal was deleted before it was ever written
+                    return goalId <= 0 || goalDAO.updateGoalProgress(goalId, record.progress, record.completed)
+                        || dbManager.isConnected();
+                case GOAL_DELETE:
+                    return goalId <= 0 || goalDAO.deleteGoal(goalId) || dbManager.isConnected();
+                default:
+                    return true;
+            }
+        } catch (SQLException e) {
+            System.err.println("Error replaying goal change: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private void reportActivityFailure(Activity activity, String reason) {
+        ActivityWriteBehind.FailureHandler handler = activityFailureHandler;
+        if (handler != null) {
+            handler.onWriteFailed(activity, reason);
+        }
+    }
+
+    private void setOnline(boolean nowOnline) {
+        if (online != nowOnline) {
+            online = nowOnline;
+            System.out.println(nowOnline
+                ? " Database reachable, replaying offline journal"
+                : " Database unreachable, keeping writes in the offline journal");
+        }
+    }
+}
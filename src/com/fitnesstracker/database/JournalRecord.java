@@ -0,0 +1,209 @@
+package com.fitnesstracker.database;
+
+import com.fitnesstracker.factory.ExerciseFactory;
+import com.fitnesstracker.model.Activity;
+import com.fitnesstracker.model.Exercise;
+import com.fitnesstracker.model.FitnessGoal;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+/**
+ * JournalRecord - One write kept in the offline journal
+ *
+ * Records carry the client reference of the row they create or change,
+ * which is what makes replaying them idempotent. Goals that already have
+ * a database ID are referred to by ID.
+ * @version 1.0
+ */
+final class JournalRecord {
+
+    enum Kind {
+        ACTIVITY(1),
+        GOAL_INSERT(2),
+        GOAL_PROGRESS(3),
+        GOAL_DELETE(4);
+
+        final int code;
+
+        Kind(int code) {
+            this.code = code;
+        }
+
+        static Kind fromCode(int code) throws IOException {
+            for (Kind kind : values()) {
+                if (kind.code == code) {
+                    return kind;
+                }
+            }
+            throw new IOException("Unknown journal record kind " + code);
+        }
+    }
+
+    final Kind kind;
+    final String clientRef;
+    final Activity activity;   // ACTIVITY
+    final FitnessGoal goal;    // GOAL_INSERT
+    final int goalId;          // GOAL_PROGRESS, GOAL_DELETE (0 if not saved yet)
+    final double progress;     // GOAL_PROGRESS
+    final boolean completed;   // GOAL_PROGRESS
+
+    long endOffset;            // journal position just after this record
+    int attempts;              // failed replays while the database was reachable
+
+    private JournalRecord(Kind kind, String clientRef, Activity activity, FitnessGoal goal,
+                          int goalId, double progress, boolean completed) {
+        this.kind = kind;
+        this.clientRef = clientRef;
+        this.activity = activity;
+        this.goal = goal;
+        this.goalId = goalId;
+        this.progress = progress;
+        this.completed = completed;
+    }
+
+    static JournalRecord activity(Activity activity) {
+        return new JournalRecord(Kind.ACTIVITY, activity.getClientRef(), activity, null, 0, 0, false);
+    }
+
+    static JournalRecord goalInsert(FitnessGoal goal) {
+        return new JournalRecord(Kind.GOAL_INSERT, goal.getClientRef(), null, goal, 0, 0, false);
+    }
+
+    static JournalRecord goalProgress(FitnessGoal goal) {
+        return new JournalRecord(Kind.GOAL_PROGRESS, goal.getClientRef(), null, null, goal.getId(),
+            goal.getCurrentProgress(), goal.isCompleted());
+    }
+
+    static JournalRecord goalDelete(FitnessGoal goal) {
+        return new JournalRecord(Kind.GOAL_DELETE, goal.getClientRef(), null, null, goal.getId(), 0, false);
+    }
+
+    /**
+     * Whether this record refers to the given goal
+     */
+    boolean refersTo(FitnessGoal candidate) {
+        return (goalId > 0 && candidate.getId() == goalId) ||
+               (clientRef != null && clientRef.equals(candidate.getClientRef()));
+    }
+
+    // Binary form (inside the journal's length + CRC frame)
+
+    byte[] encode() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(kind.code);
+        writeString(out, clientRef);
+
+        switch (kind) {
+            case ACTIVITY:
+                Exercise exercise = activity.getExercise();
+                writeString(out, exercise.getExerciseType());
+                writeString(out, exercise.getName());
+                out.writeInt(exercise.getDuration());
+                out.writeInt(exercise.getIntensity());
+                out.writeLong(activity.getDate().getTime());
+                writeString(out, activity.getNotes());
+                break;
+            case GOAL_INSERT:
+                writeString(out, goal.getName());
+                writeString(out, goal.getDescription());
+                writeString(out, goal.getGoalType());
+                out.writeDouble(goal.getTargetValue());
+                out.writeDouble(goal.getCurrentProgress());
+                writeString(out, goal.getUnit());
+                out.writeLong(goal.getStartDate().getTime());
+                out.writeBoolean(goal.isCompleted());
+                break;
+            case GOAL_PROGRESS:
+                out.writeInt(goalId);
+                out.writeDouble(progress);
+                out.writeBoolean(completed);
+                break;
+            case GOAL_DELETE:
+                out.writeInt(goalId);
+                break;
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    static JournalRecord decode(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        Kind kind = Kind.fromCode(in.readUnsignedByte());
+        String clientRef = readString(in);
+
+        switch (kind) {
+            case ACTIVITY: {
+                String type = readString(in);
+                String name = readString(in);
+                int duration = in.readInt();
+                int intensity = in.readInt();
+                Date date = new Date(in.readLong());
+                String notes = readString(in);
+                Exercise exercise;
+                try {
+                    exercise = ExerciseFactory.createExercise(type, name, duration, intensity);
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("Invalid journaled activity: " + e.getMessage(), e);
+                }
+                Activity activity = new Activity(exercise, notes, date);
+                activity.setClientRef(clientRef);
+                return activity(activity);
+            }
+            case GOAL_INSERT: {
+                String name = readString(in);
+                String description = readString(in);
+                String goalType = readString(in);
+                double target = in.readDouble();
+                double progress = in.readDouble();
+                String unit = readString(in);
+                Date startDate = new Date(in.readLong());
+                boolean completed = in.readBoolean();
+                FitnessGoal goal = new FitnessGoal(name, description, goalType, target, unit);
+                goal.setCurrentProgress(progress);
+                goal.setCompleted(completed);
+                goal.setStartDate(startDate);
+                goal.setClientRef(clientRef);
+                return goalInsert(goal);
+            }
+            case GOAL_PROGRESS:
+                return new JournalRecord(kind, clientRef, null, null, in.readInt(),
+                    in.readDouble(), in.readBoolean());
+            default:
+                return new JournalRecord(kind, clientRef, null, null, in.readInt(), 0, false);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > in.available()) {
+            throw new IOException("Journal string length " + length + " exceeds the record");
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String toString() {
+        return kind + " " + (clientRef != null ? clientRef : "goal " + goalId);
+    }
+}
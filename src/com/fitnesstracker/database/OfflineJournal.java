@@ -0,0 +1,268 @@
+package com.fitnesstracker.database;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.zip.CRC32;
+
+/**
+ * OfflineJournal - Crash-safe, append-only log of writes not yet in the database
+ *
+ * File layout: the magic number FTJ1, then one frame per record:
+ * payload length (int), CRC32 of the payload (int), payload.
+ * Every append is forced to disk before it returns.
+ *
+ * The offset of the first record not yet replayed is kept in a small
+ * position file next to the journal, replaced atomically. Once every
+ * record has been replayed the journal is truncated back to its header.
+ *
+ * A crash while appending can leave a torn frame at the end; it is
+ * detected by its length or checksum on the next open and cut off.
+ * @version 1.0
+ */
+class OfflineJournal implements AutoCloseable {
+
+    private static final int MAGIC = 0x46544A31; // "FTJ1"
+    private static final int HEADER_SIZE = 4;
+    private static final int FRAME_HEADER_SIZE = 8;
+    private static final int MAX_PAYLOAD = 16 * 1024 * 1024;
+
+    private final Path path;
+    private final Path positionPath;
+    private final FileChannel channel;
+    private long replayedOffset;
+
+    private OfflineJournal(Path path, FileChannel channel, long replayedOffset) {
+        this.path = path;
+        this.positionPath = positionPathFor(path);
+        this.channel = channel;
+        this.replayedOffset = replayedOffset;
+    }
+
+    /**
+     * Open (or create) a journal
+     *
+     * @throws IOException if the file cannot be opened or is not a journal
+     */
+    static OfflineJournal open(Path path) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        FileChannel channel = FileChannel.open(path,
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (channel.size() < HEADER_SIZE) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC);
+                header.flip();
+                channel.truncate(0);
+                channel.write(header, 0);
+                channel.force(true);
+            } else {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                channel.read(header, 0);
+                header.flip();
+                if (header.getInt() != MAGIC) {
+                    throw new IOException(path + " is not an offline journal");
+                }
+            }
+            long position = Math.max(HEADER_SIZE, Math.min(readPosition(positionPathFor(path)), channel.size()));
+            return new OfflineJournal(path, channel, position);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    /**
+     * Read every record that has not been replayed yet
+     * A torn or corrupt frame ends the journal; it is truncated there.
+     *
+     * @return records in the order they were written
+     */
+    synchronized List<JournalRecord> readPending() throws IOException {
+        List<JournalRecord> records = new ArrayList<>();
+        long size = channel.size();
+        long offset = replayedOffset;
+        ByteBuffer frameHeader = ByteBuffer.allocate(FRAME_HEADER_SIZE);
+
+        while (offset < size) {
+            long frameStart = offset;
+            String problem = null;
+            int length = 0;
+
+            frameHeader.clear();
+            if (size - offset < FRAME_HEADER_SIZE || readFully(frameHeader, offset) < FRAME_HEADER_SIZE) {
+                problem = "incomplete frame header";
+            } else {
+                frameHeader.flip();
+                length = frameHeader.getInt();
+                if (length <= 0 || length > MAX_PAYLOAD || offset + FRAME_HEADER_SIZE + length > size) {
+                    problem = "bad record length " + length;
+                }
+            }
+            ByteBuffer payload = null;
+            if (problem == null) {
+                payload = ByteBuffer.allocate(length);
+                readFully(payload, offset + FRAME_HEADER_SIZE);
+                if (crc(payload.array()) != frameHeader.getInt(4)) {
+                    problem = "checksum mismatch";
+                }
+            }
+            if (problem != null) {
+                // Torn write from a crash: nothing after it can be trusted
+                System.err.println(" Offline journal " + path.getFileName() + ": " + problem +
+                    " at offset " + frameStart + ", discarding the rest");
+                channel.truncate(frameStart);
+                channel.force(true);
+                break;
+            }
+
+            offset += FRAME_HEADER_SIZE + length;
+            try {
+                JournalRecord record = JournalRecord.decode(payload.array());
+                record.endOffset = offset;
+                records.add(record);
+            } catch (IOException e) {
+                // Intact but unusable (e.g. an exercise type that no longer exists)
+                System.err.println(" Skipping offline journal record at offset " + frameStart + ": " + e.getMessage());
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Append records and force them to disk
+     * Each record's endOffset is set.
+     */
+    synchronized void append(List<JournalRecord> records) throws IOException {
+        List<byte[]> payloads = new ArrayList<>(records.size());
+        int total = 0;
+        for (JournalRecord record : records) {
+            byte[] payload = record.encode();
+            payloads.add(payload);
+            total += FRAME_HEADER_SIZE + payload.length;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(total);
+        long offset = channel.size();
+        for (int i = 0; i < payloads.size(); i++) {
+            byte[] payload = payloads.get(i);
+            buffer.putInt(payload.length).putInt(crc(payload)).put(payload);
+            offset += FRAME_HEADER_SIZE + payload.length;
+            records.get(i).endOffset = offset;
+        }
+        buffer.flip();
+
+        long start = channel.size();
+        try {
+            long position = start;
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            // Do not leave a partial frame in front of later appends
+            try {
+                channel.truncate(start);
+            } catch (IOException ignored) {
+                // the frame check on the next open cuts it off
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Record that everything before the given offset is in the database
+     * When nothing is left, the journal is truncated to its header.
+     *
+     * The position is written before truncating: a stale offset past the
+     * truncated end would skip records appended later. If it cannot be
+     * written the journal is left as it is, and is replayed again from the
+     * old position (replay skips what is already saved).
+     */
+    synchronized void markReplayed(long offset) throws IOException {
+        long replayed = Math.max(replayedOffset, offset);
+        if (replayed >= channel.size()) {
+            writePosition(positionPath, HEADER_SIZE);
+            channel.truncate(HEADER_SIZE);
+            channel.force(true);
+            replayedOffset = HEADER_SIZE;
+        } else {
+            writePosition(positionPath, replayed);
+            replayedOffset = replayed;
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    // Helpers
+
+    private int readFully(ByteBuffer buffer, long position) throws IOException {
+        int read = 0;
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position + read);
+            if (n < 0) {
+                break;
+            }
+            read += n;
+        }
+        return read;
+    }
+
+    private static int crc(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length);
+        return (int) crc.getValue();
+    }
+
+    private static Path positionPathFor(Path path) {
+        return path.resolveSibling(path.getFileName() + ".pos");
+    }
+
+    private static long readPosition(Path positionPath) {
+        if (!Files.isRegularFile(positionPath)) {
+            return HEADER_SIZE;
+        }
+        Properties props = new Properties();
+        try (InputStream in = Files.newInputStream(positionPath)) {
+            props.load(in);
+            return Long.parseLong(props.getProperty("replayedOffset"));
+        } catch (IOException | RuntimeException e) {
+            // Replaying from the start is safe, only slower
+            System.err.println("Ignoring unreadable journal position " + positionPath + ": " + e.getMessage());
+            return HEADER_SIZE;
+        }
+    }
+
+    private static void writePosition(Path positionPath, long offset) throws IOException {
+        Properties props = new Properties();
+        props.setProperty("replayedOffset", Long.toString(offset));
+
+        Path temp = positionPath.resolveSibling(positionPath.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(temp)) {
+            props.store(out, "Offline journal replay position");
+        }
+        try {
+            Files.move(temp, positionPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.move(temp, positionPath, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
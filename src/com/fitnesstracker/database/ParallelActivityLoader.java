@@ -0,0 +1,256 @@
+package com.fitnesstracker.database;
+
+import com.fitnesstracker.model.Activity;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ParallelActivityLoader - Reads a large range of activities on several
+ * pooled connections at once
+ *
+ * Purpose: A full history load through one ResultSet is bound by a single
+ * thread reading and mapping rows. This loader splits the ActivityDate
+ * range into partitions and streams each one on its own connection and
+ * worker thread, which also builds the Activity objects.
+ *
+ * How it works:
+ * - Partition boundaries come from the per-day counts in the
+ *   ActivityDailySummary rollup, so each partition holds about the same
+ *   number of rows however unevenly the activities are spread over time
+ * - Each partition is read newest first, the order of IX_Activities_Date_ID
+ *   (reading it the other way makes the database sort), then reversed in
+ *   place; joining the partitions in order gives the whole range in time
+ *   order without sorting
+ * - Threads: fitness.activity.loadThreads, or with 0 the number of cores,
+ *   at most the pool size minus two so other work still gets a connection
+ *
+ * The rollup only decides where the range is split; rows missing from it
+ * (or a failed read of it) make the partitions uneven, not incomplete.
+ * @version 1.0
+ */
+public class ParallelActivityLoader {
+
+    /** Partitions per thread, so a slow partition does not hold up the rest */
+    private static final int PARTITIONS_PER_THREAD = 4;
+
+    /** Smaller partitions cost more in queries than they gain */
+    private static final int MIN_PARTITION_ROWS = 10000;
+
+    private static final AtomicInteger loaderCount = new AtomicInteger();
+
+    private final ActivityDAO activityDAO;
+    private final ActivitySummaryDAO summaryDAO;
+    private final int threads;
+
+    /**
+     * Create a loader sized from the configuration and the connection pool
+     */
+    public ParallelActivityLoader(ActivityDAO activityDAO) {
+        this(activityDAO, DatabaseManager.getInstance().getConfig().getInt(DatabaseConfig.ACTIVITY_LOAD_THREADS, 0));
+    }
+
+    /**
+     * @param activityDAO DAO used to stream each partition
+     * @param threads worker threads (and connections); 0 picks a number from the cores and pool size
+     */
+    public ParallelActivityLoader(ActivityDAO activityDAO, int threads) {
+        this.activityDAO = activityDAO;
+        this.summaryDAO = new ActivitySummaryDAO();
+        this.threads = threads > 0 ? threads : defaultThreads();
+    }
+
+    private static int defaultThreads() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        ConnectionPool.PoolStats pool = DatabaseManager.getInstance().getPoolStats();
+        int connections = pool == null ? 1 : Math.max(1, pool.getMaxSize() - 2);
+        return Math.max(1, Math.min(cores, connections));
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Read every activity, oldest first (notes load lazily)
+     *
+     * @throws DataAccessException if a partition cannot be read
+     */
+    public Result loadAll() {
+        return load(null, null);
+    }
+
+    /**
+     * Read the activities in a time range, oldest first (notes load lazily)
+     *
+     * @param from start of the range (inclusive), or null
+     * @param to end of the range (exclusive), or null
+     * @return the activities and load statistics
+     * @throws DataAccessException if a partition cannot be read
+     */
+    public Result load(Date from, Date to) {
+        long start = System.nanoTime();
+        List<Partition> partitions = plan(from, to);
+        int workers = Math.min(threads, partitions.size());
+
+        List<List<Activity>> parts = new ArrayList<>(partitions.size());
+        if (workers <= 1) {
+            for (Partition partition : partitions) {
+                parts.add(read(partition));
+            }
+        } else {
+            parts = readInParallel(partitions, workers);
+        }
+
+        int size = 0;
+        for (List<Activity> part : parts) {
+            size += part.size();
+        }
+        List<Activity> activities = new ArrayList<>(size);
+        for (List<Activity> part : parts) {
+            activities.addAll(part);
+        }
+
+        Result result = new Result(activities, partitions.size(), workers, System.nanoTime() - start);
+        System.out.println(" Parallel load: " + result);
+        return result;
+    }
+
+    private List<List<Activity>> readInParallel(List<Partition> partitions, int workers) {
+        int loader = loaderCount.incrementAndGet();
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "activity-loader-" + loader + "-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<List<Activity>>> futures = new ArrayList<>(partitions.size());
+            for (Partition partition : partitions) {
+                futures.add(executor.submit(() -> read(partition)));
+            }
+            List<List<Activity>> parts = new ArrayList<>(partitions.size());
+            for (Future<List<Activity>> future : futures) {
+                parts.add(future.get());
+            }
+            return parts;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof DataAccessException) {
+                throw (DataAccessException) cause;
+            }
+            throw new DataAccessException("Error loading activities: " + cause, cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DataAccessException("Activity load interrupted", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private List<Activity> read(Partition partition) {
+        List<Activity> rows = new ArrayList<>(partition.expectedRows);
+        ActivityFilter filter = ActivityFilter.all().from(partition.from).to(partition.to).withoutNotes();
+        activityDAO.streamActivities(filter, rows::add);
+        Collections.reverse(rows);
+        return rows;
+    }
+
+    /**
+     * Split the range at day boundaries into partitions of about equal row counts
+     */
+    List<Partition> plan(Date from, Date to) {
+        List<ActivityAggregate> days = summaryDAO.getDailyTotals(from, to, false);
+        long total = 0;
+        for (ActivityAggregate day : days) {
+            total += day.getActivityCount();
+        }
+        int count = (int) Math.max(1, Math.min((long) threads * PARTITIONS_PER_THREAD, total / MIN_PARTITION_ROWS));
+        if (threads == 1) {
+            count = 1;
+        }
+
+        List<Partition> partitions = new ArrayList<>(count);
+        long target = total / count;
+        Date partitionStart = from;
+        int rows = 0;
+        for (ActivityAggregate day : days) {
+            Date dayStart = day.getBucketStart();
+            boolean insideRange = from == null || dayStart.after(from);
+            if (rows >= target && partitions.size() < count - 1 && insideRange) {
+                partitions.add(new Partition(partitionStart, dayStart, rows));
+                partitionStart = dayStart;
+                rows = 0;
+            }
+            rows += day.getActivityCount();
+        }
+        partitions.add(new Partition(partitionStart, to, rows));
+        return partitions;
+    }
+
+    /**
+     * One ActivityDate range, read by one worker
+     */
+    static final class Partition {
+        final Date from; // inclusive, or null
+        final Date to;   // exclusive, or null
+        final int expectedRows;
+
+        Partition(Date from, Date to, int expectedRows) {
+            this.from = from;
+            this.to = to;
+            this.expectedRows = expectedRows;
+        }
+    }
+
+    /**
+     * Result - Activities read by a parallel load, with its statistics
+     */
+    public static final class Result {
+        private final List<Activity> activities;
+        private final int partitions;
+        private final int threads;
+        private final long elapsedNanos;
+
+        Result(List<Activity> activities, int partitions, int threads, long elapsedNanos) {
+            this.activities = Collections.unmodifiableList(activities);
+            this.partitions = partitions;
+            this.threads = threads;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /** The activities, oldest first */
+        public List<Activity> getActivities() {
+            return activities;
+        }
+
+        public int getPartitionCount() {
+            return partitions;
+        }
+
+        /** Worker threads (and connections) used */
+        public int getThreadCount() {
+            return threads;
+        }
+
+        public double getElapsedMillis() {
+            return elapsedNanos / 1_000_000.0;
+        }
+
+        public double getRowsPerSecond() {
+            return elapsedNanos == 0 ? 0.0 : activities.size() * 1_000_000_000.0 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d activities from %d partitions on %d connections in %.1f ms (%.0f rows/s)",
+                activities.size(), partitions, threads, getElapsedMillis(), getRowsPerSecond());
+        }
+    }
+}
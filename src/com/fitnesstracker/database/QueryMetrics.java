@@ -0,0 +1,199 @@
+package com.fitnesstracker.database;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * QueryMetrics - Latency, error and row counts per named DAO operation
+ *
+ * DatabaseManager wraps every borrowed connection in an InstrumentedConnection
+ * named after the DAO method that borrowed it; closing the connection records
+ * one call here. Statements slower than fitness.db.slowQueryMs are also kept
+ * in a bounded slow-query log and printed.
+ *
+ * Read the numbers with DatabaseManager.getInstance().getQueryMetrics(), or
+ * over JMX as com.fitnesstracker:type=QueryMetrics.
+ * Turn instrumentation off with fitness.db.metrics.enabled=false.
+ * @version 1.0
+ */
+public class QueryMetrics implements QueryMetricsMXBean {
+
+    public static final String OBJECT_NAME = "com.fitnesstracker:type=QueryMetrics";
+
+    private final boolean enabled;
+    private final int slowLogSize;
+    private volatile long slowThresholdNanos;
+
+    private final Map<String, Operation> operations = new ConcurrentHashMap<>();
+    private final Deque<SlowQuery> slowQueries = new ArrayDeque<>();
+
+    QueryMetrics(DatabaseConfig config) {
+        this.enabled = config.getBoolean(DatabaseConfig.METRICS_ENABLED, true);
+        this.slowLogSize = Math.max(1, config.getInt(DatabaseConfig.SLOW_QUERY_LOG_SIZE, 100));
+        this.slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(
+            config.getLong(DatabaseConfig.SLOW_QUERY_MS, 500L));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Register with the platform MBean server (once per JVM)
+     */
+    void registerMBean() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(this, name);
+            }
+        } catch (JMException | RuntimeException e) {
+            System.err.println(" Query metrics not exported over JMX: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Statistics for one operation
+     *
+     * @param operation e.g. ActivityDAO.getAllActivities
+     * @return the statistics, or null if the operation has not run
+     */
+    public QueryStats getStats(String operation) {
+        Operation stats = operations.get(operation);
+        return stats == null ? null : stats.snapshot(operation);
+    }
+
+    @Override
+    public List<QueryStats> getQueryStats() {
+        List<QueryStats> result = new ArrayList<>(operations.size());
+        for (Map.Entry<String, Operation> entry : operations.entrySet()) {
+            result.add(entry.getValue().snapshot(entry.getKey()));
+        }
+        result.sort(Comparator.comparingDouble(QueryStats::getTotalMillis).reversed());
+        return result;
+    }
+
+    @Override
+    public List<SlowQuery> getSlowQueries() {
+        synchronized (slowQueries) {
+            return Collections.unmodifiableList(new ArrayList<>(slowQueries));
+        }
+    }
+
+    @Override
+    public long getSlowQueryThresholdMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(slowThresholdNanos);
+    }
+
+    @Override
+    public void setSlowQueryThresholdMillis(long millis) {
+        slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, millis));
+    }
+
+    @Override
+    public void reset() {
+        operations.clear();
+        synchronized (slowQueries) {
+            slowQueries.clear();
+        }
+    }
+
+    /**
+     * Print the busiest operations (by total time)
+     *
+     * @param limit maximum number of lines
+     */
+    public void printSummary(int limit) {
+        List<QueryStats> stats = getQueryStats();
+        if (stats.isEmpty()) {
+            return;
+        }
+        System.out.println(" Query metrics (" + stats.size() + " operations):");
+        for (int i = 0; i < Math.min(limit, stats.size()); i++) {
+            System.out.println("   " + stats.get(i));
+        }
+    }
+
+    // Recording (called by InstrumentedConnection and DatabaseManager)
+
+    long getSlowThresholdNanos() {
+        return slowThresholdNanos;
+    }
+
+    void record(String operation, long acquireNanos, long totalNanos,
+                long rows, long rowsAffected, boolean failed) {
+        Operation stats = operations.computeIfAbsent(operation, key -> new Operation());
+        stats.count.increment();
+        if (failed) {
+            stats.errors.increment();
+        }
+        stats.rows.add(rows);
+        stats.rowsAffected.add(rowsAffected);
+        stats.totalNanos.add(totalNanos);
+        stats.acquireNanos.add(acquireNanos);
+        updateMax(stats.maxNanos, totalNanos);
+        updateMax(stats.maxAcquireNanos, acquireNanos);
+        stats.latency.record(totalNanos);
+    }
+
+    void recordSlow(String operation, String sql, String parameters, int batchSize,
+                    long elapsedNanos, boolean failed) {
+        SlowQuery slow = new SlowQuery(new Date(), operation, sql, parameters, batchSize,
+            elapsedNanos / 1_000_000.0, failed);
+        synchronized (slowQueries) {
+            slowQueries.addFirst(slow);
+            while (slowQueries.size() > slowLogSize) {
+                slowQueries.removeLast();
+            }
+        }
+        System.err.println(" Slow query: " + slow);
+    }
+
+    private static void updateMax(AtomicLong max, long value) {
+        long current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            // retry
+        }
+    }
+
+    /**
+     * Running totals for one operation
+     */
+    private static final class Operation {
+        final LongAdder count = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        final LongAdder rows = new LongAdder();
+        final LongAdder rowsAffected = new LongAdder();
+        final LongAdder totalNanos = new LongAdder();
+        final LongAdder acquireNanos = new LongAdder();
+        final AtomicLong maxNanos = new AtomicLong();
+        final AtomicLong maxAcquireNanos = new AtomicLong();
+        final LatencyHistogram latency = new LatencyHistogram();
+
+        QueryStats snapshot(String name) {
+            // Bucket midpoints can overshoot the largest value actually seen
+            long max = maxNanos.get();
+            return new QueryStats(name, count.sum(), errors.sum(), rows.sum(), rowsAffected.sum(),
+                totalNanos.sum(), Math.min(max, latency.percentile(50)), Math.min(max, latency.percentile(95)),
+                Math.min(max, latency.percentile(99)), max, acquireNanos.sum(), maxAcquireNanos.get());
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.fitnesstracker.database;
+
+import java.util.List;
+
+/**
+ * QueryMetricsMXBean - JMX view of the DAO query metrics
+ *
+ * Registered as com.fitnesstracker:type=QueryMetrics; browse it with
+ * jconsole or any JMX client.
+ * @version 1.0
+ */
+public interface QueryMetricsMXBean {
+
+    /** Per-operation statistics, slowest total time first */
+    List<QueryStats> getQueryStats();
+
+    /** Most recent slow statements, newest first */
+    List<SlowQuery> getSlowQueries();
+
+    long getSlowQueryThresholdMillis();
+
+    void setSlowQueryThresholdMillis(long millis);
+
+    /** Clear all statistics and the slow-query log */
+    void reset();
+}
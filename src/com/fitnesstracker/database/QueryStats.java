@@ -0,0 +1,70 @@
+package com.fitnesstracker.database;
+
+/**
+ * QueryStats - Immutable snapshot of the metrics for one named DAO operation
+ *
+ * An operation is one borrow of a connection, named after the DAO method
+ * that borrowed it (e.g. ActivityDAO.getAllActivities). Its latency runs
+ * from asking the pool for a connection to closing it, so it includes the
+ * time spent waiting for the connection.
+ * @version 1.0
+ */
+public final class QueryStats {
+    private final String operation;
+    private final long count;
+    private final long errorCount;
+    private final long rows;
+    private final long rowsAffected;
+    private final double meanMillis;
+    private final double p50Millis;
+    private final double p95Millis;
+    private final double p99Millis;
+    private final double maxMillis;
+    private final double meanAcquireMillis;
+    private final double maxAcquireMillis;
+    private final double totalMillis;
+
+    QueryStats(String operation, long count, long errorCount, long rows, long rowsAffected,
+               long totalNanos, long p50Nanos, long p95Nanos, long p99Nanos, long maxNanos,
+               long totalAcquireNanos, long maxAcquireNanos) {
+        this.operation = operation;
+        this.count = count;
+        this.errorCount = errorCount;
+        this.rows = rows;
+        this.rowsAffected = rowsAffected;
+        this.totalMillis = totalNanos / 1_000_000.0;
+        this.meanMillis = count == 0 ? 0.0 : totalMillis / count;
+        this.p50Millis = p50Nanos / 1_000_000.0;
+        this.p95Millis = p95Nanos / 1_000_000.0;
+        this.p99Millis = p99Nanos / 1_000_000.0;
+        this.maxMillis = maxNanos / 1_000_000.0;
+        this.meanAcquireMillis = count == 0 ? 0.0 : totalAcquireNanos / 1_000_000.0 / count;
+        this.maxAcquireMillis = maxAcquireNanos / 1_000_000.0;
+    }
+
+    public String getOperation() { return operation; }
+    public long getCount() { return count; }
+    public long getErrorCount() { return errorCount; }
+    /** Rows read from result sets */
+    public long getRows() { return rows; }
+    /** Rows inserted, updated or deleted */
+    public long getRowsAffected() { return rowsAffected; }
+    public double getMeanMillis() { return meanMillis; }
+    public double getP50Millis() { return p50Millis; }
+    public double getP95Millis() { return p95Millis; }
+    public double getP99Millis() { return p99Millis; }
+    public double getMaxMillis() { return maxMillis; }
+    public double getTotalMillis() { return totalMillis; }
+    /** Time spent waiting for a pooled connection */
+    public double getMeanAcquireMillis() { return meanAcquireMillis; }
+    public double getMaxAcquireMillis() { return maxAcquireMillis; }
+
+    @Override
+    public String toString() {
+        return String.format(
+            "%s: calls=%d, errors=%d, rows=%d, affected=%d, mean=%.2fms, p50=%.2fms, " +
+            "p95=%.2fms, p99=%.2fms, max=%.2fms, acquire=%.2fms",
+            operation, count, errorCount, rows, rowsAffected, meanMillis, p50Millis,
+            p95Millis, p99Millis, maxMillis, meanAcquireMillis);
+    }
+}
@@ -0,0 +1,23 @@
+package com.fitnesstracker.database;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * RowCallback - Processes raw rows from an open cursor
+ *
+ * Used where building model objects would only get in the way, such as
+ * exports. The ResultSet is positioned on the current row; the callback
+ * must not advance or close it.
+ * @version 1.0
+ */
+public interface RowCallback {
+
+    /**
+     * Process the current row
+     *
+     * @param rs result set positioned on the row
+     * @throws SQLException if a column cannot be read
+     */
+    void processRow(ResultSet rs) throws SQLException;
+}
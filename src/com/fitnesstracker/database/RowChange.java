@@ -0,0 +1,50 @@
+package com.fitnesstracker.database;
+
+/**
+ * RowChange - One entry of the change feed
+ *
+ * Either an inserted or updated row (getRow() is the current row) or a
+ * deletion (getRow() is null). A deletion with id ChangeFeedDAO.ALL_ROWS
+ * means the whole table was cleared.
+ * @version 1.0
+ */
+public class RowChange<T> {
+
+    private final long version;
+    private final int id;
+    private final T row;
+
+    RowChange(long version, int id, T row) {
+        this.version = version;
+        this.id = id;
+        this.row = row;
+    }
+
+    /** Row version (from RowVersionSeq) of the change */
+    public long getVersion() {
+        return version;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    /** The current row, or null for a deletion */
+    public T getRow() {
+        return row;
+    }
+
+    public boolean isDeletion() {
+        return row == null;
+    }
+
+    /** True for a deletion of every row in the table */
+    public boolean isClearAll() {
+        return row == null && id == ChangeFeedDAO.ALL_ROWS;
+    }
+
+    @Override
+    public String toString() {
+        return (isDeletion() ? "delete " : "upsert ") + id + " @" + version;
+    }
+}
@@ -0,0 +1,25 @@
+package com.fitnesstracker.database;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * RowMapper - Converts the current ResultSet row into an object
+ *
+ * Implementations read columns by position from an explicit SELECT list
+ * instead of looking each column up by name on every row.
+ *
+ * @param <T> the type produced for each row
+ * @version 1.0
+ */
+public interface RowMapper<T> {
+
+    /**
+     * Map the current row
+     *
+     * @param rs result set positioned on a row
+     * @return the mapped object
+     * @throws SQLException on database error
+     */
+    T mapRow(ResultSet rs) throws SQLException;
+}
@@ -0,0 +1,338 @@
+package com.fitnesstracker.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * SchemaMigrator - Versioned schema migrations run at startup
+ *
+ * Purpose: Brings every install to the same schema, including the indexes
+ * the hot queries depend on, without anyone running scripts by hand.
+ *
+ * How it works:
+ * - Applied versions are recorded in the SchemaVersion table
+ * - Pending migrations run in version order, each in its own transaction
+ * - Every migration checks for existing objects first, so databases
+ *   created before migrations existed (or by SSMS scripts) are adopted
+ *   instead of failing
+ * - If another app instance applies a version concurrently, the
+ *   failure is ignored once that version shows up as applied
+ *
+ * To change the schema, append a Migration with the next version number.
+ * Never edit a migration that has already shipped.
+ * @version 1.0
+ */
+public class SchemaMigrator {
+
+    /**
+     * A schema change step
+     */
+    public interface Step {
+        void apply(Connection conn, DatabaseBackend backend) throws SQLException;
+    }
+
+    /**
+     * Migration - One numbered schema change
+     */
+    public static final class Migration {
+        private final int version;
+        private final String description;
+        private final Step step;
+
+        public Migration(int version, String description, Step step) {
+            this.version = version;
+            this.description = description;
+            this.step = step;
+        }
+
+        public int getVersion() {
+            return version;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+    }
+
+    private static final List<Migration> MIGRATIONS = Collections.unmodifiableList(Arrays.asList(
+        new Migration(1, "Create Activities and Goals tables", SchemaMigrator::createBaseTables),
+
+        // ORDER BY ActivityDate DESC and keyset pagination
+        new Migration(2, "Index Activities by date", (conn, backend) ->
+            backend.createIndexIfMissing(conn, "Activities", "IX_Activities_Date_ID",
+                backend.createIndexSql("IX_Activities_Date_ID", "Activities",
+                    "ActivityDate DESC, ActivityID DESC",
+                    "ExerciseName, ExerciseType, Duration, Intensity"))),
+
+        // WHERE ExerciseType = ? ORDER BY ActivityDate DESC
+        new Migration(3, "Index Activities by type and date", (conn, backend) ->
+            backend.createIndexIfMissing(conn, "Activities", "IX_Activities_Type_Date",
+                backend.createIndexSql("IX_Activities_Type_Date", "Activities",
+                    "ExerciseType, ActivityDate DESC, ActivityID DESC",
+                    "ExerciseName, Duration, Intensity"))),
+
+        // Active/completed goal lists ordered by StartDate
+        new Migration(4, "Index Goals by completion and start date", (conn, backend) ->
+            backend.createIndexIfMissing(conn, "Goals", "IX_Goals_Completed_StartDate",
+                backend.createIndexSql("IX_Goals_Completed_StartDate", "Goals",
+                    "IsCompleted, StartDate DESC",
+                    "GoalName, GoalType, TargetValue, CurrentProgress, Unit"))),
+
+        // Dashboard totals without summing Activities
+        new Migration(5, "Create ActivityDailySummary rollup", SchemaMigrator::createDailySummary),
+
+        // Change feed for keeping other instances in sync
+        new Migration(6, "Add row versions and RowTombstones", SchemaMigrator::createChangeFeed),
+
+        // Offline journal replay: each journaled row is inserted at most once
+        new Migration(7, "Add ClientRef to Activities and Goals", SchemaMigrator::addClientRefs),
+
+        // Totals without summing the daily rollup
+        new Migration(8, "Create ActivityTypeTotals rollup", SchemaMigrator::createTypeTotals)
+    ));
+
+    private final DatabaseBackend backend;
+
+    public SchemaMigrator(DatabaseBackend backend) {
+        this.backend = backend;
+    }
+
+    /**
+     * All known migrations in version order
+     *
+     * @return the migrations
+     */
+    public static List<Migration> getMigrations() {
+        return MIGRATIONS;
+    }
+
+    /**
+     * Apply all pending migrations
+     *
+     * @param conn open connection
+     * @return number of migrations applied
+     * @throws SQLException if a migration fails
+     */
+    public int migrate(Connection conn) throws SQLException {
+        ensureVersionTable(conn);
+        Set<Integer> applied = loadAppliedVersions(conn);
+
+        int count = 0;
+        for (Migration migration : MIGRATIONS) {
+            if (applied.contains(migration.getVersion())) {
+                continue;
+            }
+            if (apply(conn, migration)) {
+                count++;
+            }
+        }
+
+        if (count > 0) {
+            System.out.println(" Schema migrated to version " + getCurrentVersion(conn) +
+                " (" + count + " migration(s) applied)");
+        }
+        return count;
+    }
+
+    /**
+     * Highest applied schema version
+     *
+     * @param conn open connection
+     * @return the version, or 0 if none applied
+     * @throws SQLException on database error
+     */
+    public int getCurrentVersion(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT MAX(Version) FROM SchemaVersion")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    /**
+     * Run one migration in its own transaction and record it
+     *
+     * @return true if this instance applied it, false if another instance did
+     */
+    private boolean apply(Connection conn, Migration migration) throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try {
+            migration.step.apply(conn, backend);
+            try (PreparedStatement pstmt = conn.prepareStatement(
+                    "INSERT INTO SchemaVersion (Version, Description, AppliedOn) VALUES (?, ?, ?)")) {
+                pstmt.setInt(1, migration.getVersion());
+                pstmt.setString(2, migration.getDescription());
+                pstmt.setTimestamp(3, new Timestamp(System.currentTimeMillis()));
+                pstmt.executeUpdate();
+            }
+            conn.commit();
+            System.out.println(" Applied migration " + migration.getVersion() + ": " +
+                migration.getDescription());
+            return true;
+        } catch (SQLException e) {
+            conn.rollback();
+            if (loadAppliedVersions(conn).contains(migration.getVersion())) {
+                // Another instance applied it while we were trying
+                return false;
+            }
+            throw new SQLException("Migration " + migration.getVersion() + " (" +
+                migration.getDescription() + ") failed: " + e.getMessage(), e);
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    private void ensureVersionTable(Connection conn) throws SQLException {
+        try {
+            backend.createTableIfMissing(conn, "SchemaVersion",
+                "CREATE TABLE SchemaVersion (" +
+                "Version INT NOT NULL PRIMARY KEY, " +
+                "Description " + backend.textType(200) + " NOT NULL, " +
+                "AppliedOn " + backend.timestampType() + " NOT NULL)");
+        } catch (SQLException e) {
+            // Lost a creation race with another instance
+            if (!backend.tableExists(conn, "SchemaVersion")) {
+                throw e;
+            }
+        }
+    }
+
+    private Set<Integer> loadAppliedVersions(Connection conn) throws SQLException {
+        Set<Integer> versions = new HashSet<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT Version FROM SchemaVersion")) {
+            while (rs.next()) {
+                versions.add(rs.getInt(1));
+            }
+        }
+        return versions;
+    }
+
+    // Migration steps
+
+    private static void createBaseTables(Connection conn, DatabaseBackend backend) throws SQLException {
+        backend.createTableIfMissing(conn, "Activities",
+            "CREATE TABLE Activities (" +
+            "ActivityID " + backend.identityColumn() + " PRIMARY KEY, " +
+            "ExerciseName " + backend.textType(100) + " NOT NULL, " +
+            "ExerciseType " + backend.textType(20) + " NOT NULL, " +
+            "Duration INT NOT NULL, " +
+            "Intensity INT NOT NULL, " +
+            "CaloriesBurned " + backend.floatType() + " NOT NULL, " +
+            "ActivityDate " + backend.timestampType() + " NOT NULL, " +
+            "Notes " + backend.largeTextType() + " NULL)");
+
+        backend.createTableIfMissing(conn, "Goals",
+            "CREATE TABLE Goals (" +
+            "GoalID " + backend.identityColumn() + " PRIMARY KEY, " +
+            "GoalName " + backend.textType(100) + " NOT NULL, " +
+            "GoalDescription " + backend.largeTextType() + " NULL, " +
+            "GoalType " + backend.textType(50) + " NOT NULL, " +
+            "TargetValue " + backend.floatType() + " NOT NULL, " +
+            "CurrentProgress " + backend.floatType() + " DEFAULT 0 NOT NULL, " +
+            "Unit " + backend.textType(20) + " NULL, " +
+            "StartDate " + backend.timestampType() + " NOT NULL, " +
+            "IsCompleted " + backend.booleanType() + " DEFAULT " + backend.booleanLiteral(false) +
+            " NOT NULL)");
+    }
+
+    private static void createDailySummary(Connection conn, DatabaseBackend backend) throws SQLException {
+        backend.createTableIfMissing(conn, "ActivityDailySummary",
+            "CREATE TABLE ActivityDailySummary (" +
+            "SummaryDate DATE NOT NULL, " +
+            "ExerciseType " + backend.textType(20) + " NOT NULL, " +
+            "ActivityCount INT NOT NULL, " +
+            "TotalCalories " + backend.floatType() + " NOT NULL, " +
+            "TotalMinutes INT NOT NULL, " +
+            "TotalIntensity BIGINT NOT NULL, " +
+            "PRIMARY KEY (SummaryDate, ExerciseType))");
+
+        // Seed from the activities recorded before the rollup existed
+        ActivitySummaryDAO.rebuild(conn, backend);
+    }
+
+    private static void createTypeTotals(Connection conn, DatabaseBackend backend) throws SQLException {
+        backend.createTableIfMissing(conn, "ActivityTypeTotals",
+            "CREATE TABLE ActivityTypeTotals (" +
+            "ExerciseType " + backend.textType(20) + " NOT NULL PRIMARY KEY, " +
+            "ActivityCount INT NOT NULL, " +
+            "TotalCalories " + backend.floatType() + " NOT NULL, " +
+            "TotalMinutes INT NOT NULL, " +
+            "TotalIntensity BIGINT NOT NULL)");
+
+        // Seed from the daily rollup (migration 5 filled it)
+        ActivitySummaryDAO.rebuildTypeTotals(conn);
+    }
+
+    private static void createChangeFeed(Connection conn, DatabaseBackend backend) throws SQLException {
+        if (!backend.sequenceExists(conn, "RowVersionSeq")) {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("CREATE SEQUENCE RowVersionSeq AS BIGINT START WITH 1 INCREMENT BY 1");
+            }
+        }
+
+        // Every insert and update takes the next version; rows that existed before are version 0
+        for (String table : new String[]{"Activities", "Goals"}) {
+            try (Statement stmt = conn.createStatement()) {
+                if (!backend.columnExists(conn, table, "RowVersion")) {
+                    stmt.executeUpdate(backend.addColumnSql(table, "RowVersion", "BIGINT",
+                        "NEXT VALUE FOR RowVersionSeq"));
+                }
+                stmt.executeUpdate("UPDATE " + table + " SET RowVersion = 0 WHERE RowVersion IS NULL");
+            }
+            backend.createIndexIfMissing(conn, table, "IX_" + table + "_RowVersion",
+                backend.createIndexSql("IX_" + table + "_RowVersion", table, "RowVersion", null));
+        }
+
+        // Deletes leave a tombstone so other instances can drop the row too
+        backend.createTableIfMissing(conn, "RowTombstones",
+            "CREATE TABLE RowTombstones (" +
+            "TableName " + backend.textType(30) + " NOT NULL, " +
+            "RowID INT NOT NULL, " +
+            "RowVersion BIGINT NOT NULL, " +
+            "DeletedOn " + backend.timestampType() + " NOT NULL)");
+        backend.createIndexIfMissing(conn, "RowTombstones", "IX_RowTombstones_RowVersion",
+            backend.createIndexSql("IX_RowTombstones_RowVersion", "RowTombstones", "RowVersion", null));
+    }
+
+    private static void addClientRefs(Connection conn, DatabaseBackend backend) throws SQLException {
+        for (String table : new String[]{"Activities", "Goals"}) {
+            if (!backend.columnExists(conn, table, "ClientRef")) {
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.executeUpdate(backend.addColumnSql(table, "ClientRef", backend.textType(36), null));
+                }
+            }
+            backend.createIndexIfMissing(conn, table, "UX_" + table + "_ClientRef",
+                backend.createUniqueIndexSql("UX_" + table + "_ClientRef", table, "ClientRef"));
+        }
+    }
+
+    /**
+     * Versions that have not been applied yet (for diagnostics)
+     *
+     * @param conn open connection
+     * @return pending migrations
+     * @throws SQLException on database error
+     */
+    public List<Migration> getPendingMigrations(Connection conn) throws SQLException {
+        ensureVersionTable(conn);
+        Set<Integer> applied = loadAppliedVersions(conn);
+        List<Migration> pending = new ArrayList<>();
+        for (Migration migration : MIGRATIONS) {
+            if (!applied.contains(migration.getVersion())) {
+                pending.add(migration);
+            }
+        }
+        return pending;
+    }
+}
@@ -0,0 +1,47 @@
+package com.fitnesstracker.database;
+
+import java.util.Date;
+
+/**
+ * SlowQuery - One statement that took longer than fitness.db.slowQueryMs
+ *
+ * Parameters are recorded by type (and length for strings), never by value.
+ * @version 1.0
+ */
+public final class SlowQuery {
+    private final Date time;
+    private final String operation;
+    private final String sql;
+    private final String parameters;
+    private final int batchSize;
+    private final double elapsedMillis;
+    private final boolean failed;
+
+    SlowQuery(Date time, String operation, String sql, String parameters,
+              int batchSize, double elapsedMillis, boolean failed) {
+        this.time = time;
+        this.operation = operation;
+        this.sql = sql;
+        this.parameters = parameters;
+        this.batchSize = batchSize;
+        this.elapsedMillis = elapsedMillis;
+        this.failed = failed;
+    }
+
+    public Date getTime() { return new Date(time.getTime()); }
+    public String getOperation() { return operation; }
+    public String getSql() { return sql; }
+    /** Bound parameter shapes, e.g. [INT, VARCHAR(12), TIMESTAMP] */
+    public String getParameters() { return parameters; }
+    /** Rows in the batch, or 0 if the statement was not batched */
+    public int getBatchSize() { return batchSize; }
+    public double getElapsedMillis() { return elapsedMillis; }
+    public boolean isFailed() { return failed; }
+
+    @Override
+    public String toString() {
+        return String.format("%.1f ms %s%s: %s %s%s", elapsedMillis, operation,
+            failed ? " (failed)" : "", sql, parameters,
+            batchSize > 0 ? " x" + batchSize : "");
+    }
+}
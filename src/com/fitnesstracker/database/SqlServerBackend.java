@@ -0,0 +1,176 @@
+package com.fitnesstracker.database;
+
+import java.util.List;
+
+/**
+ * SqlServerBackend - Microsoft SQL Server backend
+ *
+ * Requires the mssql-jdbc driver on the classpath.
+ * @version 1.0
+ */
+public class SqlServerBackend extends DatabaseBackend {
+
+    /** Parameters one statement may bind (the server allows 2100) */
+    private static final int MAX_PARAMETERS = 2000;
+
+    public SqlServerBackend(DatabaseConfig config) {
+        super(config);
+    }
+
+    @Override
+    public String getName() {
+        return "SQL Server";
+    }
+
+    @Override
+    public String getDriverClassName() {
+        return "com.microsoft.sqlserver.jdbc.SQLServerDriver";
+    }
+
+    @Override
+    protected String buildConnectionUrl() {
+        return String.format(
+            "jdbc:sqlserver://%s;databaseName=%s;user=%s;password=%s;encrypt=true;trustServerCertificate=true",
+            config.getString(DatabaseConfig.SERVER),
+            config.getString(DatabaseConfig.DATABASE),
+            config.getString(DatabaseConfig.USER),
+            config.getString(DatabaseConfig.PASSWORD)
+        );
+    }
+
+    @Override
+    public String describeTarget() {
+        return "Server: " + config.getString(DatabaseConfig.SERVER) +
+               ", Database: " + config.getString(DatabaseConfig.DATABASE);
+    }
+
+    @Override
+    public String[] getTroubleshootingHints() {
+        return new String[]{
+            "Make sure SQL Server service is running",
+            "Make sure database '" + config.getString(DatabaseConfig.DATABASE) + "' exists",
+            "Try connecting in SSMS first with server: " + config.getString(DatabaseConfig.SERVER),
+            "Or run locally with -D" + DatabaseConfig.BACKEND + "=h2"
+        };
+    }
+
+    @Override
+    public String getVersionQuery() {
+        return "SELECT @@VERSION AS Version";
+    }
+
+    @Override
+    public String getCurrentDatabaseQuery() {
+        return "SELECT DB_NAME() AS CurrentDB";
+    }
+
+    @Override
+    public String getListTablesQuery() {
+        return "SELECT TABLE_NAME FROM INFORMATION_SCHEMA.TABLES " +
+               "WHERE TABLE_TYPE = 'BASE TABLE' " +
+               "ORDER BY TABLE_NAME";
+    }
+
+    @Override
+    protected String identityColumn() {
+        return "INT IDENTITY(1,1)";
+    }
+
+    @Override
+    protected String textType(int length) {
+        return "NVARCHAR(" + length + ")";
+    }
+
+    @Override
+    protected String largeTextType() {
+        return "NVARCHAR(MAX)";
+    }
+
+    @Override
+    protected String floatType() {
+        return "FLOAT";
+    }
+
+    @Override
+    protected String timestampType() {
+        return "DATETIME2";
+    }
+
+    @Override
+    protected String booleanType() {
+        return "BIT";
+    }
+
+    @Override
+    public String booleanLiteral(boolean value) {
+        return value ? "1" : "0";
+    }
+
+    @Override
+    public String addColumnSql(String table, String column, String type, String defaultExpression) {
+        String sql = "ALTER TABLE " + table + " ADD " + column + " " + type + " NULL";
+        return defaultExpression == null ? sql
+            : sql + " CONSTRAINT DF_" + table + "_" + column + " DEFAULT (" + defaultExpression + ")";
+    }
+
+    @Override
+    public String createUniqueIndexSql(String index, String table, String column) {
+        // Filtered, so any number of rows may leave the column NULL
+        return super.createUniqueIndexSql(index, table, column) + " WHERE " + column + " IS NOT NULL";
+    }
+
+    @Override
+    public String bucketStartExpression(TimeBucket bucket, String column) {
+        switch (bucket) {
+            case WEEK:
+                // Monday regardless of the session's SET DATEFIRST
+                return "DATEADD(DAY, -((DATEPART(WEEKDAY, " + column + ") + @@DATEFIRST - 2) % 7), " +
+                       "CAST(" + column + " AS DATE))";
+            case MONTH:
+                return "DATEFROMPARTS(YEAR(" + column + "), MONTH(" + column + "), 1)";
+            default:
+                return "CAST(" + column + " AS DATE)";
+        }
+    }
+
+    @Override
+    public boolean supportsBatchGeneratedKeys() {
+        // mssql-jdbc only reports the key of the last statement in a batch
+        return false;
+    }
+
+    /**
+     * MERGE ... OUTPUT rather than INSERT ... OUTPUT: the order of OUTPUT
+     * rows is not guaranteed, and only MERGE can output a column of the
+     * source (the row number) next to the inserted key.
+     */
+    @Override
+    public String multiRowInsertSql(String table, List<String> columns, String keyColumn, int rows) {
+        String columnList = String.join(", ", columns);
+        StringBuilder row = new StringBuilder("(");
+        for (int i = 0; i < columns.size(); i++) {
+            row.append("?, ");
+        }
+        StringBuilder sql = new StringBuilder("MERGE INTO ").append(table).append(" USING (VALUES ");
+        for (int i = 0; i < rows; i++) {
+            sql.append(i > 0 ? ", " : "").append(row).append(i).append(')');
+        }
+        sql.append(") AS Src (").append(columnList).append(", RowNo) ON 1 = 0 ")
+           .append("WHEN NOT MATCHED THEN INSERT (").append(columnList).append(") VALUES (");
+        for (int i = 0; i < columns.size(); i++) {
+            sql.append(i > 0 ? ", " : "").append("Src.").append(columns.get(i));
+        }
+        return sql.append(") OUTPUT Src.RowNo, INSERTED.").append(keyColumn).append(";").toString();
+    }
+
+    @Override
+    public int getMaxMultiRowInsertRows(int columnCount) {
+        return MAX_PARAMETERS / columnCount;
+    }
+
+    @Override
+    public String createIndexSql(String index, String table, String keyColumns, String includeColumns) {
+        String sql = super.createIndexSql(index, table, keyColumns, includeColumns);
+        return includeColumns == null || includeColumns.isEmpty() ? sql : sql + " INCLUDE (" + includeColumns + ")";
+    }
+}
@@ -0,0 +1,14 @@
+package com.fitnesstracker.database;
+
+/**
+ * TimeBucket - Granularity of activity aggregates
+ *
+ * Buckets are calendar based in the database's local time:
+ * DAY starts at midnight, WEEK on Monday (ISO 8601), MONTH on the 1st.
+ * @version 1.0
+ */
+public enum TimeBucket {
+    DAY,
+    WEEK,
+    MONTH
+}
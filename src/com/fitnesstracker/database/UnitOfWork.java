@@ -0,0 +1,257 @@
+package com.fitnesstracker.database;
+
+import com.fitnesstracker.model.Activity;
+import com.fitnesstracker.model.FitnessGoal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * UnitOfWork - Several DAO operations committed together
+ *
+ * Purpose: Compound changes, such as logging an activity and bumping the
+ * related goal, should be atomic and cost one commit instead of one per
+ * operation.
+ *
+ * Operations are queued and run by commit() on a single pooled connection
+ * in one transaction. If any of them fails, nothing is written and the undo
+ * actions registered with onRollback() run (newest first), so the callers'
+ * in-memory state can be put back:
+ * <pre>
+ * UnitOfWork work = new UnitOfWork();
+ * activityTracker.addActivity(activity, work);
+ * goalSystem.updateGoalProgress(goal, goal.getCurrentProgress() + 1, work);
+ * if (!work.commit()) { ... both changes are gone again ... }
+ * </pre>
+ * Writes go straight to the database, not through the offline journal,
+ * so a unit of work fails while the database is unreachable.
+ * Not thread-safe; build and commit it on one thread (the EDT for work
+ * that touches ActivityTracker or GoalManagementSystem).
+ * @version 1.0
+ */
+public class UnitOfWork {
+
+    /**
+     * One operation run on the shared connection
+     */
+    public interface Step {
+        void execute(Connection conn) throws SQLException;
+    }
+
+    private final DatabaseManager dbManager;
+    private final List<Step> steps = new ArrayList<>();
+    private final Deque<Runnable> undoActions = new ArrayDeque<>();
+    private final List<Runnable> commitActions = new ArrayList<>();
+    private final Map<Object, Runnable> completionActions = new LinkedHashMap<>();
+    private ActivityDAO activityDAO;
+    private GoalDAO goalDAO;
+    private boolean finished;
+    private Exception failure;
+
+    public UnitOfWork() {
+        this.dbManager = DatabaseManager.getInstance();
+    }
+
+    /**
+     * Queue an operation
+     *
+     * @param step runs on the shared connection (auto-commit is off; do not commit)
+     * @return this unit of work
+     */
+    public UnitOfWork add(Step step) {
+        if (finished) {
+            throw new IllegalStateException("Unit of work has already been committed or rolled back");
+        }
+        steps.add(step);
+        return this;
+    }
+
+    /**
+     * Queue saving an activity (and its daily summary change)
+     * The generated ID is set on commit and cleared again on rollback.
+     */
+    public UnitOfWork saveActivity(Activity activity) {
+        add(conn -> activityDAO().saveActivity(conn, activity));
+        return onRollback(() -> activity.setId(0));
+    }
+
+    /**
+     * Queue deleting an activity; fails the unit of work if it does not exist
+     */
+    public UnitOfWork deleteActivity(int activityId) {
+        return add(conn -> {
+            if (!activityDAO().deleteActivity(conn, activityId)) {
+                throw new SQLException("Activity " + activityId + " does not exist");
+            }
+        });
+    }
+
+    /**
+     * Queue inserting a goal
+     * The generated ID is set on commit and cleared again on rollback.
+     */
+    public UnitOfWork insertGoal(FitnessGoal goal) {
+        add(conn -> goalDAO().insertGoal(conn, goal));
+        return onRollback(() -> goal.setId(0));
+    }
+
+    /**
+     * Queue writing a goal's progress; fails the unit of work if the goal
+     * does not exist (e.g. it is still waiting in the offline journal)
+     * The progress is read when the unit of work commits, so it also
+     * covers goals inserted earlier in the same unit of work.
+     */
+    public UnitOfWork updateGoalProgress(FitnessGoal goal) {
+        return add(conn -> {
+            if (!goalDAO().updateGoalProgress(conn, goal.getId(), goal.getCurrentProgress(), goal.isCompleted())) {
+                throw new SQLException("Goal " + goal.getId() + " does not exist");
+            }
+        });
+    }
+
+    /**
+     * Queue deleting a goal; fails the unit of work if it does not exist
+     */
+    public UnitOfWork deleteGoal(int goalId) {
+        return add(conn -> {
+            if (!goalDAO().deleteGoal(conn, goalId)) {
+                throw new SQLException("Goal " + goalId + " does not exist");
+            }
+        });
+    }
+
+    /**
+     * Register an action that undoes an in-memory change if the unit of work
+     * fails. Undo actions run newest first.
+     */
+    public UnitOfWork onRollback(Runnable undo) {
+        undoActions.push(undo);
+        return this;
+    }
+
+    /**
+     * Register an action to run after a successful commit
+     */
+    public UnitOfWork afterCommit(Runnable action) {
+        commitActions.add(action);
+        return this;
+    }
+
+    /**
+     * Register an action to run once the outcome is known, either way
+     * Only the first action per owner is kept, so a tracker that takes part
+     * several times notifies its observers once.
+     */
+    public UnitOfWork afterCompletion(Object owner, Runnable action) {
+        completionActions.putIfAbsent(owner, action);
+        return this;
+    }
+
+    /**
+     * Run every queued operation in one transaction
+     *
+     * @return true if everything was committed; false if it was rolled back
+     *         (see getFailure) and the undo actions have run
+     */
+    public boolean commit() {
+        if (finished) {
+            throw new IllegalStateException("Unit of work has already been committed or rolled back");
+        }
+        finished = true;
+        if (!steps.isEmpty()) {
+            try (Connection conn = dbManager.getConnection("UnitOfWork.commit")) {
+                conn.setAutoCommit(false);
+                try {
+                    for (Step step : steps) {
+                        step.execute(conn);
+                    }
+                    conn.commit();
+                } catch (SQLException | RuntimeException e) {
+                    rollbackQuietly(conn);
+                    throw e;
+                }
+            } catch (SQLException | RuntimeException e) {
+                failure = e;
+                System.err.println(" Unit of work rolled back (" + steps.size() + " operations): " + e.getMessage());
+                undo();
+                return false;
+            }
+        }
+        runAll(commitActions);
+        runAll(completionActions.values());
+        return true;
+    }
+
+    /**
+     * Abandon the unit of work without writing anything and run the undo actions
+     */
+    public void rollback() {
+        if (finished) {
+            throw new IllegalStateException("Unit of work has already been committed or rolled back");
+        }
+        finished = true;
+        undo();
+    }
+
+    /**
+     * Why commit() failed, or null
+     */
+    public Exception getFailure() {
+        return failure;
+    }
+
+    public int size() {
+        return steps.size();
+    }
+
+    // Helpers
+
+    private void undo() {
+        while (!undoActions.isEmpty()) {
+            try {
+                undoActions.pop().run();
+            } catch (RuntimeException e) {
+                // Keep undoing the rest
+                System.err.println(" Undo action failed: " + e);
+            }
+        }
+        runAll(completionActions.values());
+    }
+
+    private static void runAll(Iterable<Runnable> actions) {
+        for (Runnable action : actions) {
+            try {
+                action.run();
+            } catch (RuntimeException e) {
+                System.err.println(" Unit of work callback failed: " + e);
+            }
+        }
+    }
+
+    private static void rollbackQuietly(Connection conn) {
+        try {
+            conn.rollback();
+        } catch (SQLException e) {
+            // the pool rolls back again when the connection is returned
+        }
+    }
+
+    private ActivityDAO activityDAO() {
+        if (activityDAO == null) {
+            activityDAO = new ActivityDAO();
+        }
+        return activityDAO;
+    }
+
+    private GoalDAO goalDAO() {
+        if (goalDAO == null) {
+            goalDAO = new GoalDAO();
+        }
+        return goalDAO;
+    }
+}
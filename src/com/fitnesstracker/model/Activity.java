@@ -2,6 +2,8 @@ package com.fitnesstracker.model;
 
 import java.util.Date;
 import java.text.SimpleDateFormat;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
 /**
  * Activity - Represents a completed exercise activity
@@ -12,10 +14,16 @@ import java.text.SimpleDateFormat;
  */
 public class Activity {
     
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+    
+    private final long sequence = SEQUENCE.incrementAndGet(); // creation order, never changes
+    private volatile int id; // ID from database, 0 until saved (set by background writers)
     private Exercise exercise;
     private Date date;
     private double caloriesBurned;
-    private String notes;
+    private volatile String notes;
+    private volatile Supplier<String> notesLoader; // loads notes on first access when a query left them out
+    private String clientRef; // unique reference given when recorded offline, null otherwise
     
     /**
      * Constructor for Activity
@@ -40,6 +48,19 @@ public class Activity {
         this.notes = notes;
     }
     
+    /**
+     * Constructor with notes and the time the activity took place
+     * Used when loading saved activities
+     * 
+     * @param exercise the exercise performed
+     * @param notes additional notes about the activity
+     * @param date when the activity took place
+     */
+    public Activity(Exercise exercise, String notes, Date date) {
+        this(exercise, notes);
+        this.date = date;
+    }
+    
     /**
      * Get formatted date string
      * FIXED: Changed from sdf.getDate() to sdf.format(date)
@@ -63,6 +84,22 @@ public class Activity {
     
     // Getters and Setters
     
+    public int getId() {
+        return id;
+    }
+    
+    /**
+     * Creation order of this object; orders activities with equal dates
+     * (see ActivityStore.BY_TIME), as the ID is assigned after they are held
+     */
+    public long getSequence() {
+        return sequence;
+    }
+    
+    public void setId(int id) {
+        this.id = id;
+    }
+    
     public Exercise getExercise() {
         return exercise;
     }
@@ -83,12 +120,44 @@ public class Activity {
         return caloriesBurned;
     }
     
+    /**
+     * Get the notes, loading them first if a query left them out
+     * Safe to call from several threads; the notes are loaded once.
+     */
     public String getNotes() {
+        if (notesLoader != null) {
+            synchronized (this) {
+                Supplier<String> loader = notesLoader;
+                if (loader != null) {
+                    notes = loader.get();
+                    notesLoader = null;
+                }
+            }
+        }
         return notes;
     }
     
-    public void setNotes(String notes) {
+    public synchronized void setNotes(String notes) {
         this.notes = notes;
+        this.notesLoader = null;
+    }
+    
+    /**
+     * Load notes lazily on the first call to getNotes()
+     * 
+     * @param notesLoader supplies the notes when they are first needed
+     */
+    public synchronized void setNotesLoader(Supplier<String> notesLoader) {
+        this.notes = null;
+        this.notesLoader = notesLoader;
+    }
+    
+    public String getClientRef() {
+        return clientRef;
+    }
+    
+    public void setClientRef(String clientRef) {
+        this.clientRef = clientRef;
     }
     
     @Override
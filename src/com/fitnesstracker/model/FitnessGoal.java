@@ -1,19 +1,22 @@
 package com.fitnesstracker.model;
 
 import java.util.Date;
+import java.util.function.Supplier;
 
 public class FitnessGoal {
     
-    private int id; // ID from database
+    private volatile int id; // ID from database, 0 until saved (set by the journal replay)
     private String name;
-    private String description;
+    private volatile String description;
     private String goalType;
     private double targetValue;
-    private double currentProgress;
+    private volatile double currentProgress; // changed under GoalManagementSystem's per-goal lock
     private String unit;
     private Date startDate;
     private Date targetDate;
-    private boolean completed;
+    private volatile boolean completed;
+    private volatile Supplier<String> descriptionLoader; // loads the description on first access
+    private String clientRef; // unique reference given when recorded offline, null otherwise
 
     // Constructor without description
     public FitnessGoal(String name, String goalType, double targetValue, String unit) {
@@ -55,8 +58,27 @@ public class FitnessGoal {
     public void setId(int id) { this.id = id; }
     public String getName() { return name; }
     public void setName(String name) { this.name = name; }
-    public String getDescription() { return description; }
-    public void setDescription(String description) { this.description = description; }
+    public String getDescription() {
+        // Double-checked so concurrent readers load the description once
+        if (descriptionLoader != null) {
+            synchronized (this) {
+                Supplier<String> loader = descriptionLoader;
+                if (loader != null) {
+                    description = loader.get();
+                    descriptionLoader = null;
+                }
+            }
+        }
+        return description;
+    }
+    public synchronized void setDescription(String description) {
+        this.description = description;
+        this.descriptionLoader = null;
+    }
+    public synchronized void setDescriptionLoader(Supplier<String> descriptionLoader) {
+        this.description = null;
+        this.descriptionLoader = descriptionLoader;
+    }
     public String getGoalType() { return goalType; }
     public void setGoalType(String goalType) { this.goalType = goalType; }
     public double getTargetValue() { return targetValue; }
@@ -69,9 +91,12 @@ public class FitnessGoal {
     public String getUnit() { return unit; }
     public void setUnit(String unit) { this.unit = unit; }
     public Date getStartDate() { return startDate; }
+    public void setStartDate(Date startDate) { this.startDate = startDate; }
     public Date getTargetDate() { return targetDate; }
     public void setTargetDate(Date targetDate) { this.targetDate = targetDate; }
     public void setCompleted(boolean completed) { this.completed = completed; }
+    public String getClientRef() { return clientRef; }
+    public void setClientRef(String clientRef) { this.clientRef = clientRef; }
 
     @Override
     public String toString() { return getSummary(); }
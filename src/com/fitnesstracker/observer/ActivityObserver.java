@@ -27,4 +27,12 @@ public interface ActivityObserver {
      * Implementing classes should define how they respond to activity changes
      */
     void onActivityUpdated();
+
+    /**
+     * Called when ActivityTracker starts or stops loading history in the
+     * background (see getHistoryState and isHistoryLoading)
+     * Optional; most observers only care about onActivityUpdated.
+     */
+    default void onHistoryStateChanged() {
+    }
 }
\ No newline at end of file
@@ -2,24 +2,216 @@ package com.fitnesstracker.singleton;
 
 import com.fitnesstracker.model.Activity;
 import com.fitnesstracker.observer.ActivityObserver;
+import com.fitnesstracker.database.ActivityAggregate;
 import com.fitnesstracker.database.ActivityDAO;
+import com.fitnesstracker.database.ActivityPage;
+import com.fitnesstracker.database.ActivitySummaryDAO;
+import com.fitnesstracker.database.ActivityWriteBehind;
+import com.fitnesstracker.database.BatchResult;
+import com.fitnesstracker.database.ChangeFeedDAO;
+import com.fitnesstracker.database.ChangeSet;
+import com.fitnesstracker.database.DataAccessException;
+import com.fitnesstracker.database.DatabaseConfig;
+import com.fitnesstracker.database.DatabaseManager;
+import com.fitnesstracker.database.JournalReconciler;
+import com.fitnesstracker.database.ParallelActivityLoader;
+import com.fitnesstracker.database.RowChange;
+import com.fitnesstracker.database.UnitOfWork;
+import com.fitnesstracker.snapshot.ActivitySnapshot;
+import com.fitnesstracker.snapshot.SnapshotManager;
+import com.fitnesstracker.store.ActivityStore;
+import com.fitnesstracker.store.ActivityTotals;
+import com.fitnesstracker.store.ColumnarActivityStore;
+import com.fitnesstracker.store.IndexedActivityStore;
+import com.fitnesstracker.store.RecentActivities;
+import com.fitnesstracker.store.RunningTotals;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.swing.SwingUtilities;
 
+/**
+ * ActivityTracker - Singleton holding the activities in memory
+ * 
+ * Safe to use from any thread. Readers never lock: every query runs on an
+ * immutable ReadView (store snapshot, totals, recent activities) that is
+ * replaced after each change. Changes are serialized by writeLock, which
+ * is only held for the in-memory update (and the rare full reload or
+ * clear), not for database writes. Observers are called on the EDT.
+ * 
+ * Only the recent part of the history is read at startup (see
+ * fitness.activity.initialRows and initialDays), on a background thread,
+ * so startup does not depend on how much history there is. Older
+ * activities are paged in when asked for (loadOlderActivities,
+ * loadFullHistory, or a getActivitiesBetween range reaching past them).
+ * The totals always cover the whole history: they start from the
+ * ActivityTypeTotals rollup and are kept up to date from there.
+ * 
+ * With snapshots enabled (see SnapshotManager), what is held is written
+ * to a snapshot file periodically and on exit, and startup restores it
+ * plus the changes made since (from the change feed) instead.
+ */
 public class ActivityTracker {
     
+    /**
+     * How much of the activity history is held in memory
+     */
+    public enum HistoryState {
+        /** The recent activities are being read; only activities added since are held */
+        LOADING,
+        /** The recent activities are held; older ones are read on demand */
+        PARTIAL,
+        /** Every activity is held */
+        COMPLETE,
+        /** The history could not be read; reloadActivities() tries again */
+        UNAVAILABLE
+    }
+    
     private static ActivityTracker instance;
-    private List<Activity> activities;
-    private List<ActivityObserver> observers;
+    
+    // Guarded by writeLock
+    private final Object writeLock = new Object();
+    private final ActivityStore store; // indexed or columnar, see fitness.activity.store
+    private final RunningTotals totals = new RunningTotals(); // kept in step with the store
+    private final RecentActivities recent = new RecentActivities(RECENT_CAPACITY);
+    
+    private volatile ReadView view; // what readers see; replaced after every change
+    private final List<ActivityObserver> observers = new CopyOnWriteArrayList<>();
     private ActivityDAO activityDAO; // DAO for database operations
+    private ActivityWriteBehind writeBehind; // null unless write-behind mode is enabled
+    private JournalReconciler journal; // offline journal; null if disabled
+    
+    // History loading; guarded by writeLock unless volatile
+    private final ExecutorService historyLoader; // one daemon thread, loads run in order
+    private final AtomicInteger historyLoads = new AtomicInteger(); // queued or running
+    private final int initialRows;
+    private final long initialWindowMillis;
+    private final int pageSize;
+    private String historyCursor; // next older page; null when there is nothing older to read
+    private long heldFromMillis = Long.MIN_VALUE; // position of the oldest database row held,
+    private int heldFromId;                       // everything newer is held
+    private int loadGeneration; // bumped by reload and clear; results of older loads are dropped
+    private List<Activity> addedDuringLoad; // not null while the recent activities are being read
+    private volatile HistoryState historyState = HistoryState.LOADING;
+    private volatile long requestedSinceMillis = Long.MAX_VALUE;
+    private long loadedVersion = -1; // change feed version the history held is current with; -1 if unknown
+    private long loadedMillis;        // when loadedVersion was read
+    private long settledVersion;      // every change at or below it is held, late commits included
+    
+    private final SnapshotManager snapshots; // null if snapshots are disabled
+    
+    private static final long SHUTDOWN_FLUSH_TIMEOUT_MS = 30000;
+    private static final int RECENT_CAPACITY = 20;
+    private static final int WINDOW_PAGE_SIZE = 100;
+    private static final String SNAPSHOT_NAME = "activities";
     
     private ActivityTracker() {
-        this.activities = new ArrayList<>();
-        this.observers = new ArrayList<>();
         this.activityDAO = new ActivityDAO(); //Initialize DAO
+        DatabaseConfig config = DatabaseManager.getInstance().getConfig();
+        this.store = createStore(config);
+        this.journal = JournalReconciler.getInstance();
+        this.initialRows = Math.max(RECENT_CAPACITY, config.getInt(DatabaseConfig.ACTIVITY_INITIAL_ROWS, 500));
+        this.initialWindowMillis = TimeUnit.DAYS.toMillis(Math.max(0, config.getInt(DatabaseConfig.ACTIVITY_INITIAL_DAYS, 30)));
+        this.pageSize = Math.max(1, config.getInt(DatabaseConfig.ACTIVITY_PAGE_SIZE, 1000));
+        this.historyLoader = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "activity-history-loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        
+        // Start empty and read the recent activities (or the snapshot) in the background
+        this.snapshots = SnapshotManager.getInstance();
+        publish();
+        startHistoryLoad(true);
+        if (snapshots != null) {
+            snapshots.register(this::writeSnapshot);
+        }
         
-        // Load activities from database on startup
-        loadActivitiesFromDatabase();
+        if (journal != null) {
+            // The journal already saves in the background; write-behind is not used with it
+            journal.setActivityFailureHandler(this::rollbackUnsavedActivity);
+            journal.addReplayListener(this::notifyObservers);
+            if (config.getBoolean(DatabaseConfig.WRITE_BEHIND, false)) {
+                System.err.println(" " + DatabaseConfig.WRITE_BEHIND + " is ignored while the offline journal is enabled" +
+                    " (" + DatabaseConfig.OFFLINE_ENABLED + "); journaled activities are saved in the background" +
+                    " in groups of up to " + DatabaseConfig.OFFLINE_REPLAY_BATCH_SIZE);
+            }
+        } else if (config.getBoolean(DatabaseConfig.WRITE_BEHIND, false)) {
+            enableWriteBehind(config);
+        }
+    }
+    
+    /**
+     * Pick the in-memory store: "indexed" keeps Activity objects,
+     * "columnar" keeps primitive columns for very long histories
+     */
+    private ActivityStore createStore(DatabaseConfig config) {
+        String kind = config.getString(DatabaseConfig.ACTIVITY_STORE, "indexed").trim();
+        if ("columnar".equalsIgnoreCase(kind)) {
+            System.out.println(" Using columnar activity store");
+            return new ColumnarActivityStore(activityDAO::loadNotes);
+        }
+        if (!"indexed".equalsIgnoreCase(kind)) {
+            System.err.println("Unknown " + DatabaseConfig.ACTIVITY_STORE + ": " + kind + ", using indexed");
+        }
+        return new IndexedActivityStore();
+    }
+    
+    /**
+     * Save new activities on a background writer instead of the calling thread
+     * Activities show up immediately; a failed save removes them again.
+     */
+    private void enableWriteBehind(DatabaseConfig config) {
+        writeBehind = new ActivityWriteBehind(activityDAO,
+            config.getInt(DatabaseConfig.WRITE_BEHIND_QUEUE_CAPACITY, 10000),
+            config.getInt(DatabaseConfig.WRITE_BEHIND_GROUP_SIZE, 500),
+            config.getLong(DatabaseConfig.WRITE_BEHIND_GROUP_DELAY_MS, 200L),
+            config.getLong(DatabaseConfig.WRITE_BEHIND_OFFER_TIMEOUT_MS, 5000L),
+            config.getInt(DatabaseConfig.WRITE_BEHIND_MAX_RETRIES, 3),
+            this::rollbackUnsavedActivity);
+        
+        // Write out whatever is still queued when the application exits
+        Runtime.getRuntime().addShutdownHook(new Thread(
+            () -> writeBehind.shutdown(SHUTDOWN_FLUSH_TIMEOUT_MS), "activity-write-behind-flush"));
+        
+        System.out.println(" Write-behind mode enabled for activities");
+    }
+    
+    /**
+     * Remove an activity whose background save ultimately failed
+     * Handed to the EDT: the journal calls this while it holds its replay
+     * lock, which loading holds while it takes writeLock.
+     */
+    private void rollbackUnsavedActivity(Activity activity, String reason) {
+        System.err.println("Failed to save activity to database: " + reason);
+        SwingUtilities.invokeLater(() -> {
+            boolean removed;
+            synchronized (writeLock) {
+                removed = removeFromStore(activity);
+                publish();
+            }
+            if (removed) {
+                notifyObservers();
+            }
+        });
     }
     
     public static synchronized ActivityTracker getInstance() {
@@ -29,60 +221,1006 @@ public class ActivityTracker {
         return instance;
     }
     
-    // Load activities from database
-    private void loadActivitiesFromDatabase() {
+    // History loading
+    
+    /**
+     * Drop what is held and read the recent activities again, in the background
+     * 
+     * @param fromSnapshot true to start from the snapshot file if it is usable
+     */
+    private void startHistoryLoad(boolean fromSnapshot) {
+        int generation;
+        synchronized (writeLock) {
+            generation = ++loadGeneration;
+            addedDuringLoad = new ArrayList<>();
+            historyCursor = null;
+            historyState = HistoryState.LOADING;
+            requestedSinceMillis = Long.MAX_VALUE;
+        }
+        ActivityWriteBehind queued = writeBehind;
+        submitHistoryLoad(() -> {
+            if (queued != null) {
+                // Queued activities are in neither the database nor the journal yet
+                queued.flush(SHUTDOWN_FLUSH_TIMEOUT_MS);
+            }
+            if (!fromSnapshot || snapshots == null || !restoreSnapshot(generation)) {
+                loadRecentActivities(generation);
+            }
+        });
+    }
+    
+    /**
+     * Read the recent activities, the totals and anything still waiting in
+     * the offline journal, then replace what is held
+     * The database is read without writeLock; activities added meanwhile
+     * are collected in addedDuringLoad and kept.
+     */
+    private void loadRecentActivities(int generation) {
+        long start = System.currentTimeMillis();
+        long version = readChangeVersion(); // before the rows, so the next snapshot misses nothing
+        RecentWindow window = new RecentWindow();
+        if (journal == null) {
+            window.read();
+        } else {
+            // Nothing may be replayed between reading the database and the journal
+            journal.withReplayPaused(() -> {
+                window.read();
+                window.pending = journal.getPendingActivities();
+                return null;
+            });
+        }
+        
+        synchronized (writeLock) {
+            if (generation != loadGeneration) {
+                return; // cleared or reloaded meanwhile
+            }
+            List<Activity> local = addedDuringLoad;
+            addedDuringLoad = null;
+            clearStore();
+            
+            // Activities added meanwhile: saved ones are in the database totals, the rest are not
+            Set<Integer> savedIds = new HashSet<>();
+            Set<Activity> unsaved = Collections.newSetFromMap(new IdentityHashMap<>());
+            unsaved.addAll(window.pending);
+            for (Activity activity : local) {
+                if (activity.getId() > 0) {
+                    savedIds.add(activity.getId());
+                } else {
+                    unsaved.add(activity);
+                }
+            }
+            List<Activity> rows = new ArrayList<>(window.rows.size());
+            for (Activity row : window.rows) {
+                if (!savedIds.contains(row.getId())) {
+                    rows.add(row);
+                }
+            }
+            List<Activity> others = new ArrayList<>(unsaved);
+            for (Activity activity : local) {
+                if (activity.getId() > 0) {
+                    others.add(activity);
+                }
+            }
+            addHeld(rows);
+            addHeld(others);
+            totals.reset(window.totalsByType);
+            for (Activity activity : unsaved) {
+                totals.added(activity);
+            }
+            
+            historyCursor = window.cursor;
+            if (window.failed) {
+                historyState = HistoryState.UNAVAILABLE;
+                heldFromMillis = Long.MIN_VALUE;
+            } else if (window.cursor == null) {
+                historyState = HistoryState.COMPLETE;
+                heldFromMillis = Long.MIN_VALUE;
+            } else {
+                historyState = HistoryState.PARTIAL;
+                holdFrom(window.rows.get(window.rows.size() - 1));
+            }
+            markLoaded(window.failed ? -1 : version, start);
+            publish();
+        }
+        
+        if (!window.failed) {
+            System.out.println(" Loaded " + window.rows.size() + " recent activities of " + getTotals().getCount() +
+                " in " + (System.currentTimeMillis() - start) + " ms" +
+                (window.cursor != null ? " (older ones are read on demand)" : ""));
+        }
+        if (!window.pending.isEmpty()) {
+            System.out.println(" " + window.pending.size() + " activities are waiting in the offline journal");
+        }
+        notifyObservers();
+    }
+    
+    /**
+     * Start from the snapshot file plus the changes made since it was written
+     * Used at startup only. The snapshot is ignored if the database is
+     * not the one it was taken from, or if too much has changed since.
+     * 
+     * @return false if there is no usable snapshot (nothing was changed)
+     */
+    private boolean restoreSnapshot(int generation) {
+        long start = System.currentTimeMillis();
+        ActivitySnapshot snapshot;
+        try {
+            snapshot = ActivitySnapshot.read(snapshots.getPath(SNAPSHOT_NAME), activityDAO::loadNotes);
+        } catch (IOException e) {
+            System.err.println(" Ignoring activity snapshot: " + e.getMessage());
+            return false;
+        }
+        if (snapshot == null) {
+            return false;
+        }
+        
+        SnapshotDelta delta = new SnapshotDelta(snapshot);
+        if (journal == null) {
+            delta.read();
+        } else {
+            // As with a normal load: nothing may be replayed between reading the feed and the journal
+            journal.withReplayPaused(() -> {
+                delta.read();
+                delta.pending = journal.getPendingActivities();
+                return null;
+            });
+        }
+        if (delta.problem != null) {
+            if (delta.sameDatabase) {
+                synchronized (writeLock) {
+                    startFrom(snapshot); // the normal load settles on top of it
+                }
+            }
+            System.out.println(" Activity snapshot not used: " + delta.problem);
+            return false;
+        }
+        
+        boolean partial;
+        boolean outsideHeld;
+        synchronized (writeLock) {
+            if (generation != loadGeneration) {
+                return true; // cleared meanwhile
+            }
+            List<Activity> local = addedDuringLoad;
+            addedDuringLoad = null;
+            clearStore();
+            
+            addHeld(snapshot.getActivities());
+            totals.reset(snapshot.getTotalsByType());
+            historyCursor = snapshot.getHistoryCursor();
+            if (historyCursor == null) {
+                historyState = HistoryState.COMPLETE;
+                heldFromMillis = Long.MIN_VALUE;
+            } else {
+                historyState = HistoryState.PARTIAL;
+                heldFromMillis = snapshot.getHeldFromMillis();
+                heldFromId = snapshot.getHeldFromId();
+            }
+            
+            // Activities added meanwhile and those waiting in the journal are not in the snapshot;
+            // held before the changes are applied, so the feed rows for them are recognised
+            Set<Activity> others = Collections.newSetFromMap(new IdentityHashMap<>());
+            others.addAll(delta.pending);
+            others.addAll(local);
+            addAllInTimeOrder(others);
+            
+            partial = historyCursor != null;
+            outsideHeld = partial && changesHistoryNotHeld(delta.changes);
+            applyChangesLocked(delta.changes);
+            startFrom(snapshot);
+            markLoaded(delta.version, delta.versionMillis);
+            publish();
+        }
+        
+        System.out.println(" Restored " + snapshot.getActivities().size() + " activities from snapshot, " +
+            delta.changes.size() + " changes since, in " + (System.currentTimeMillis() - start) + " ms" +
+            (partial ? " (older ones are read on demand)" : ""));
+        if (!delta.pending.isEmpty()) {
+            System.out.println(" " + delta.pending.size() + " activities are waiting in the offline journal");
+        }
+        notifyObservers();
+        if (outsideHeld) {
+            refreshTotals(); // changes to history not held cannot adjust the snapshot totals
+        }
+        return true;
+    }
+    
+    /**
+     * Take the versions of a snapshot of this database as those of the state held
+     */
+    private void startFrom(ActivitySnapshot snapshot) {
+        loadedVersion = snapshot.getChangeVersion();
+        loadedMillis = snapshot.getWrittenMillis();
+        settledVersion = snapshot.getSettledVersion();
+    }
+    
+    /**
+     * Record the version the history is being read at (-1 if unknown)
+     */
+    private void markLoaded(long version, long millis) {
+        if (snapshots != null) {
+            settledVersion = snapshots.settledVersion(settledVersion, loadedVersion, loadedMillis, version, millis);
+        }
+        loadedVersion = version;
+        loadedMillis = millis;
+    }
+    
+    /**
+     * Current change feed version, or -1 if the feed cannot be read
+     */
+    private static long readChangeVersion() {
         try {
-            activities = activityDAO.getAllActivities();
-            System.out.println(" Loaded " + activities.size() + " activities from database");
-        } catch (Exception e) {
-            System.err.println(" Error loading activities: " + e.getMessage());
-            activities = new ArrayList<>(); // Fallback to empty list
+            return new ChangeFeedDAO().getCurrentVersion();
+        } catch (DataAccessException e) {
+            System.err.println(" " + e.getMessage());
+            return -1;
+        }
+    }
+    
+    /**
+     * Write what is held to the snapshot file, for a fast start next time
+     * Only saved activities are written (the others are still queued or in
+     * the offline journal), with the totals less the unsaved ones.
+     * Called periodically and on exit by SnapshotManager.
+     * 
+     * @return true if the snapshot was written
+     */
+    public boolean writeSnapshot() {
+        if (snapshots == null) {
+            return false;
+        }
+        ReadView current;
+        String cursor;
+        long fromMillis;
+        int fromId;
+        long version;
+        long settled;
+        synchronized (writeLock) {
+            if (historyState == HistoryState.LOADING || historyState == HistoryState.UNAVAILABLE
+                    || loadedVersion < 0) {
+                return false; // nothing consistent to write
+            }
+            current = view;
+            cursor = historyCursor;
+            fromMillis = heldFromMillis;
+            fromId = heldFromId;
+            version = loadedVersion;
+            settled = settledVersion;
+        }
+        
+        // The view is immutable, so the file is written without the lock
+        long start = System.currentTimeMillis();
+        List<Activity> all = current.store.getAll();
+        List<Activity> saved = new ArrayList<>(all.size());
+        RunningTotals savedTotals = current.totals.copy();
+        int maxId = 0;
+        for (Activity activity : all) {
+            int id = activity.getId();
+            if (id > 0) {
+                saved.add(activity);
+                maxId = Math.max(maxId, id);
+            } else {
+                savedTotals.removed(activity);
+            }
+        }
+        
+        Path path = snapshots.getPath(SNAPSHOT_NAME);
+        try {
+            new ActivitySnapshot(version, settled, maxId, saved, savedTotals.getByType(), cursor, fromMillis, fromId)
+                .write(path);
+        } catch (IOException e) {
+            System.err.println(" Error writing activity snapshot: " + e.getMessage());
+            return false;
+        }
+        System.out.println(" Wrote activity snapshot: " + saved.size() + " activities in " +
+            (System.currentTimeMillis() - start) + " ms");
+        return true;
+    }
+    
+    /**
+     * Read the next older page of history
+     * 
+     * @param limit maximum number of activities to read
+     * @return true if a page was read and there is more
+     */
+    private boolean loadOlderPage(int limit) {
+        String cursor;
+        int generation;
+        synchronized (writeLock) {
+            cursor = historyCursor;
+            generation = loadGeneration;
+        }
+        if (cursor == null) {
+            return false;
+        }
+        
+        ActivityPage page;
+        try {
+            page = activityDAO.readActivitiesPage(cursor, limit);
+        } catch (SQLException e) {
+            System.err.println(" Error loading older activities: " + e.getMessage());
+            return false;
+        }
+        
+        synchronized (writeLock) {
+            if (generation != loadGeneration || !cursor.equals(historyCursor)) {
+                return false; // reloaded, cleared, or another load read this page
+            }
+            List<Activity> rows = page.getActivities();
+            addHeld(withoutHeld(rows)); // already in the totals
+            historyCursor = page.getNextCursor();
+            if (historyCursor == null) {
+                historyState = HistoryState.COMPLETE;
+                heldFromMillis = Long.MIN_VALUE;
+            } else if (!rows.isEmpty()) {
+                holdFrom(rows.get(rows.size() - 1));
+            }
+            publish();
+        }
+        notifyObservers();
+        return page.hasMore();
+    }
+    
+    /**
+     * Read everything older than the activities held
+     */
+    private void loadRemainingHistory() {
+        String cursor;
+        int generation;
+        long before;
+        synchronized (writeLock) {
+            cursor = historyCursor;
+            generation = loadGeneration;
+            before = heldFromMillis;
+        }
+        if (cursor == null) {
+            return;
+        }
+        
+        ParallelActivityLoader.Result result;
+        try {
+            // Up to and including the oldest time held; rows already held are skipped below
+            result = new ParallelActivityLoader(activityDAO).load(null, new Date(before + 1));
+        } catch (DataAccessException e) {
+            System.err.println(" Error loading activity history: " + e.getMessage());
+            return;
+        }
+        
+        synchronized (writeLock) {
+            if (generation != loadGeneration || !cursor.equals(historyCursor)) {
+                return; // reloaded or cleared meanwhile
+            }
+            addHeld(withoutHeld(result.getActivities())); // already in the totals
+            historyCursor = null;
+            heldFromMillis = Long.MIN_VALUE;
+            historyState = HistoryState.COMPLETE;
+            publish();
+        }
+        notifyObservers();
+    }
+    
+    /**
+     * Rows read from the database that are not held yet (e.g. a backdated
+     * activity added here, or received from the change feed)
+     * 
+     * @param rows in time order, either direction
+     */
+    private List<Activity> withoutHeld(List<Activity> rows) {
+        if (rows.isEmpty()) {
+            return rows;
+        }
+        long first = rows.get(0).getDate().getTime();
+        long last = rows.get(rows.size() - 1).getDate().getTime();
+        Date from = new Date(Math.min(first, last));
+        Date to = new Date(Math.max(first, last) + 1);
+        Set<Integer> held = new HashSet<>();
+        for (Activity activity : store.getBetween(from, to)) {
+            held.add(activity.getId());
+        }
+        if (held.isEmpty()) {
+            return rows;
+        }
+        List<Activity> missing = new ArrayList<>(rows.size());
+        for (Activity row : rows) {
+            if (!held.contains(row.getId())) {
+                missing.add(row);
+            }
+        }
+        return missing;
+    }
+    
+    private void holdFrom(Activity oldest) {
+        heldFromMillis = oldest.getDate().getTime();
+        heldFromId = oldest.getId();
+    }
+    
+    /**
+     * Whether a database row is older than every row held (it is read by a later page)
+     */
+    private boolean olderThanHeld(Activity row) {
+        long time = row.getDate().getTime();
+        return historyCursor != null
+            && (time < heldFromMillis || (time == heldFromMillis && row.getId() < heldFromId));
+    }
+    
+    /**
+     * Re-read the totals from the rollup, plus the activities not saved yet
+     * Used when the change feed reports changes to history that is not held.
+     */
+    private void refreshTotals() {
+        Map<String, ActivityTotals> rollup;
+        try {
+            rollup = readTotalsByType();
+        } catch (SQLException e) {
+            System.err.println(" Error reading activity totals: " + e.getMessage());
+            return;
+        }
+        synchronized (writeLock) {
+            if (addedDuringLoad != null) {
+                return; // the load in progress reads them anyway
+            }
+            totals.reset(rollup);
+            for (Activity activity : store.getUnsaved()) {
+                totals.added(activity);
+            }
+            publish();
+        }
+        notifyObservers();
+    }
+    
+    private static Map<String, ActivityTotals> readTotalsByType() throws SQLException {
+        Map<String, ActivityTotals> totalsByType = new HashMap<>();
+        for (ActivityAggregate aggregate : new ActivitySummaryDAO().getTotalsByType()) {
+            totalsByType.put(aggregate.getExerciseType(), new ActivityTotals(aggregate.getActivityCount(),
+                aggregate.getTotalCalories(), aggregate.getTotalMinutes()));
+        }
+        return totalsByType;
+    }
+    
+    /**
+     * Run a load on the history loader thread
+     */
+    private void submitHistoryLoad(Runnable load) {
+        if (historyLoads.getAndIncrement() == 0) {
+            notifyHistoryStateChanged();
+        }
+        historyLoader.execute(() -> {
+            try {
+                load.run();
+            } catch (RuntimeException e) {
+                System.err.println(" Activity history load failed: " + e);
+            } finally {
+                if (historyLoads.decrementAndGet() == 0) {
+                    notifyHistoryStateChanged();
+                }
+            }
+        });
+    }
+    
+    /**
+     * How much of the history is held
+     */
+    public HistoryState getHistoryState() {
+        return historyState;
+    }
+    
+    /**
+     * Whether history is being read in the background right now
+     */
+    public boolean isHistoryLoading() {
+        return historyLoads.get() > 0;
+    }
+    
+    /**
+     * Read up to count older activities in the background
+     * Observers are notified once they are held.
+     */
+    public void loadOlderActivities(int count) {
+        if (count > 0) {
+            submitHistoryLoad(() -> loadOlderPage(count));
+        }
+    }
+    
+    /**
+     * Read all remaining history in the background
+     * It is read in partitions on several connections at once (see
+     * ParallelActivityLoader); observers are notified once it is held.
+     */
+    public void loadFullHistory() {
+        submitHistoryLoad(this::loadRemainingHistory);
+    }
+    
+    /**
+     * Wait until the history loads requested so far have finished
+     * 
+     * @param timeoutMillis maximum time to wait
+     * @return true if they have finished
+     */
+    public boolean awaitHistoryLoads(long timeoutMillis) {
+        try {
+            historyLoader.submit(() -> { }).get(timeoutMillis, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (TimeoutException | ExecutionException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+    
+    /**
+     * Page in history back to the given time, in the background
+     */
+    private void requestHistorySince(Date from) {
+        long since = from.getTime();
+        if (historyState != HistoryState.PARTIAL || since >= requestedSinceMillis) {
+            return;
+        }
+        requestedSinceMillis = since;
+        submitHistoryLoad(() -> {
+            boolean more = true;
+            while (more && historyState == HistoryState.PARTIAL && heldFrom() > since) {
+                more = loadOlderPage(pageSize);
+            }
+        });
+    }
+    
+    private long heldFrom() {
+        synchronized (writeLock) {
+            return heldFromMillis;
         }
     }
     
     public void addActivity(Activity activity) {
+        if (journal != null || writeBehind != null) {
+            // Held first, so a failure reported by the background writer always finds it
+            add(activity);
+            // On disk locally first (the database insert follows in the background),
+            // or queued for the background writer
+            boolean accepted = journal != null ? journal.recordActivity(activity) : writeBehind.submit(activity);
+            if (accepted) {
+                notifyObservers();
+            } else {
+                synchronized (writeLock) {
+                    removeFromStore(activity);
+                    publish();
+                }
+                System.err.println(journal != null
+                    ? "Failed to save activity: offline journal could not be written"
+                    : "Failed to queue activity: write-behind queue is full");
+            }
+            return;
+        }
+        
         // Save to database first
         int id = activityDAO.saveActivity(activity);
         
         if (id > 0) {
             // Only add to memory if database save was successful
-            activities.add(activity);
+            add(activity);
             notifyObservers();
         } else {
             System.err.println("Failed to save activity to database");
         }
     }
     
-    public List<Activity> getAllActivities() {
-        return new ArrayList<>(activities);
+    /**
+     * Add an activity as part of a unit of work (e.g. together with a goal update)
+     * It is held at once and removed again if the unit of work is rolled
+     * back; observers are notified once the unit of work has finished.
+     * The database write bypasses the offline journal and write-behind.
+     * 
+     * @param activity the activity to add
+     * @param work the unit of work that saves it
+     */
+    public void addActivity(Activity activity, UnitOfWork work) {
+        work.saveActivity(activity);
+        add(activity);
+        work.onRollback(() -> {
+            synchronized (writeLock) {
+                removeFromStore(activity);
+                publish();
+            }
+        });
+        work.afterCompletion(this, this::notifyObservers);
     }
     
-    public List<Activity> getActivitiesByType(String type) {
-        List<Activity> filtered = new ArrayList<>();
-        for (Activity activity : activities) {
-            if (activity.getExerciseType().equalsIgnoreCase(type)) {
-                filtered.add(activity);
+    /**
+     * Add many activities at once (e.g. importing history)
+     * Saved with batched inserts in one transaction; observers are
+     * notified once for the whole batch instead of once per row.
+     * 
+     * @param newActivities the activities to add
+     * @return which activities were saved and which failed
+     */
+    public BatchResult<Activity> addActivities(Collection<Activity> newActivities) {
+        BatchResult<Activity> result = activityDAO.saveActivities(newActivities);
+        
+        if (result.getSucceededCount() > 0) {
+            synchronized (writeLock) {
+                addAllInTimeOrder(result.getSucceeded());
+                publish();
             }
+            notifyObservers();
+        }
+        for (BatchResult.RowFailure<Activity> failure : result.getFailures()) {
+            System.err.println("Failed to save activity " + failure);
         }
-        return filtered;
+        return result;
+    }
+    
+    /**
+     * Get the activities held, oldest first
+     * While getHistoryState() is PARTIAL the oldest ones are not held yet
+     * (see loadFullHistory). The list is an immutable snapshot; it is
+     * shared, not copied, until the activities change.
+     * 
+     * @return the activities held
+     */
+    public List<Activity> getAllActivities() {
+        return view.store.getAll();
+    }
+    
+    /**
+     * Get activities that took place in a time range, oldest first
+     * Binary search on the time index: O(log n + k).
+     * If the range reaches back past the activities held, the older ones
+     * are read in the background and observers are notified as they arrive.
+     * 
+     * @param from start of the range (inclusive)
+     * @param to end of the range (exclusive)
+     * @return activities in the range held so far
+     */
+    public List<Activity> getActivitiesBetween(Date from, Date to) {
+        requestHistorySince(from);
+        return view.store.getBetween(from, to);
+    }
+    
+    /**
+     * Get activities of one exercise type (ignoring case), oldest first
+     * 
+     * @param type the exercise type
+     * @return activities of that type
+     */
+    public List<Activity> getActivitiesByType(String type) {
+        return view.store.getByType(type);
+    }
+    
+    /**
+     * Get activities of one exercise name (ignoring case), oldest first
+     * 
+     * @param name the exercise name
+     * @return activities with that name
+     */
+    public List<Activity> getActivitiesByName(String name) {
+        return view.store.getByName(name);
+    }
+    
+    /**
+     * Get the most recent activities, newest first
+     * 
+     * @param count maximum number of activities
+     * @return up to count activities
+     */
+    public List<Activity> getLatestActivities(int count) {
+        return view.store.getLatest(count);
+    }
+    
+    /**
+     * Count, calories and minutes of the activities held in memory
+     * 
+     * @param from start of the range (inclusive), or null for no limit
+     * @param to end of the range (exclusive), or null for no limit
+     * @return the totals
+     */
+    public ActivityTotals getTotalsBetween(Date from, Date to) {
+        return view.store.getTotals(from, to);
+    }
+    
+    /**
+     * Get the most recent activities, newest first, without touching the store
+     * Kept up to date on every change; at most RECENT_CAPACITY activities.
+     * 
+     * @return the newest activities (immutable)
+     */
+    public List<Activity> getRecentActivities() {
+        return view.recent;
+    }
+    
+    /**
+     * Get count, calories and minutes over all activities
+     * Covers the whole history, held or not (empty while it is LOADING).
+     * Kept up to date on every change, so reading it costs nothing.
+     * 
+     * @return the running totals
+     */
+    public ActivityTotals getTotals() {
+        return view.totals.get();
+    }
+    
+    /**
+     * Get running totals for one exercise type (ignoring case)
+     * 
+     * @param type the exercise type
+     * @return the running totals for that type
+     */
+    public ActivityTotals getTotalsByType(String type) {
+        return view.totals.get(type);
     }
     
     public double getTotalCaloriesBurned() {
-        //  Get from database for accuracy
-        return activityDAO.getTotalCalories();
+        return view.totals.get().getCalories();
     }
     
     public int getTotalDuration() {
-        // Get from database for accuracy
-        return activityDAO.getTotalDuration();
+        return (int) view.totals.get().getMinutes();
+    }
+    
+    /**
+     * Wait until activities accepted in write-behind mode are saved
+     * 
+     * @param timeoutMillis maximum time to wait
+     * @return true if nothing is left unsaved
+     */
+    public boolean flushPendingWrites(long timeoutMillis) {
+        if (journal != null) {
+            return journal.flush(timeoutMillis);
+        }
+        return writeBehind == null || writeBehind.flush(timeoutMillis);
+    }
+    
+    /**
+     * Reload the activity list from the database, in the background
+     * Used after changes made outside the tracker, such as a bulk import.
+     * Only the recent activities are read again, as at startup. Returns at
+     * once; activities not saved yet are kept (write-behind is flushed on
+     * the loading thread, the offline journal is merged in).
+     */
+    public void reloadActivities() {
+        startHistoryLoad(false);
     }
     
     public void clearActivities() {
-        // Clear from database
-        if (activityDAO.clearAllActivities()) {
-            activities.clear();
+        // Clear from database without writeLock; activities added meanwhile
+        // are collected in addedDuringLoad and kept, as a load does
+        int generation;
+        synchronized (writeLock) {
+            generation = ++loadGeneration; // drops a load in progress, it may read rows being deleted
+            addedDuringLoad = new ArrayList<>();
+        }
+        
+        // Queued writes must land before the table is cleared
+        boolean cleared;
+        if (!flushPendingWrites(SHUTDOWN_FLUSH_TIMEOUT_MS) && journal != null) {
+            System.err.println("Cannot clear activities while some are still waiting for the database");
+            cleared = false;
+        } else {
+            cleared = activityDAO.clearAllActivities();
+        }
+        
+        // Activities saved meanwhile may have been saved before the DELETE
+        Set<Integer> gone = Collections.emptySet();
+        if (cleared) {
+            Set<Integer> savedIds = new HashSet<>();
+            synchronized (writeLock) {
+                if (generation == loadGeneration) {
+                    for (Activity activity : addedDuringLoad) {
+                        if (activity.getId() > 0) {
+                            savedIds.add(activity.getId());
+                        }
+                    }
+                }
+            }
+            if (!savedIds.isEmpty()) {
+                try {
+                    savedIds.removeAll(activityDAO.findExistingIds(savedIds));
+                    gone = savedIds;
+                } catch (SQLException e) {
+                    System.err.println("Could not check activities added while clearing: " + e.getMessage());
+                }
+            }
+        }
+        
+        boolean reload = false;
+        synchronized (writeLock) {
+            if (generation != loadGeneration) {
+                return; // reloaded or cleared meanwhile; that one replaces what is held
+            }
+            List<Activity> local = addedDuringLoad;
+            addedDuringLoad = null;
+            if (cleared) {
+                clearStore();
+                allHistoryHeld();
+                List<Activity> kept = new ArrayList<>(local.size());
+                for (Activity activity : local) {
+                    if (!gone.contains(activity.getId())) {
+                        kept.add(activity);
+                    }
+                }
+                addAllInTimeOrder(kept);
+                publish();
+            } else {
+                reload = historyState == HistoryState.LOADING; // the dropped load must run again
+            }
+        }
+        if (cleared) {
+            notifyObservers();
+            notifyHistoryStateChanged();
+        } else if (reload) {
+            startHistoryLoad(false);
+        }
+    }
+    
+    /**
+     * Apply activity changes read from the change feed (see ChangeFeedSynchronizer)
+     * Changes are applied in order; rows already held are skipped, so a
+     * change may safely be applied twice. Observers are notified once.
+     * 
+     * @param changes upserts and deletions in row version order
+     */
+    public void applyChanges(List<RowChange<Activity>> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        boolean changed;
+        boolean outsideHeld;
+        synchronized (writeLock) {
+            outsideHeld = historyCursor != null && changesHistoryNotHeld(changes);
+            changed = applyChangesLocked(changes);
+            publish();
+        }
+        if (changed) {
             notifyObservers();
         }
+        if (outsideHeld) {
+            // Rows that are not held cannot adjust the totals one by one
+            submitHistoryLoad(this::refreshTotals);
+        }
+    }
+    
+    private boolean applyChangesLocked(List<RowChange<Activity>> changes) {
+        Map<Integer, Activity> added = new LinkedHashMap<>();
+        boolean removed = false;
+        for (RowChange<Activity> change : changes) {
+            int id = change.getId();
+            if (change.isClearAll()) {
+                removed |= !store.isEmpty() || !added.isEmpty();
+                clearStore();
+                added.clear();
+                allHistoryHeld();
+            } else if (change.isDeletion()) {
+                if (added.remove(id) == null) {
+                    Activity existing = store.findById(id);
+                    if (existing != null && removeFromStore(existing)) {
+                        removed = true;
+                    }
+                }
+            } else if (store.findById(id) == null && !added.containsKey(id) && !claimUnsaved(change.getRow())
+                    && !olderThanHeld(change.getRow())) { // older rows are read with their page
+                added.put(id, change.getRow()); // activities are never updated, only inserted
+            }
+        }
+        
+        if (!added.isEmpty()) {
+            if (addedDuringLoad != null) {
+                addedDuringLoad.addAll(added.values());
+            }
+            addAllInTimeOrder(added.values());
+        }
+        return removed || !added.isEmpty();
+    }
+    
+    /**
+     * Whether any change inserts or deletes a row older than those held
+     */
+    private boolean changesHistoryNotHeld(List<RowChange<Activity>> changes) {
+        for (RowChange<Activity> change : changes) {
+            if (change.isClearAll()) {
+                continue;
+            }
+            if (change.isDeletion() ? store.findById(change.getId()) == null : olderThanHeld(change.getRow())) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Nothing is left in the database that is not held (after a clear)
+     */
+    private void allHistoryHeld() {
+        loadGeneration++;
+        addedDuringLoad = null;
+        historyCursor = null;
+        heldFromMillis = Long.MIN_VALUE;
+        historyState = HistoryState.COMPLETE;
+    }
+    
+    /**
+     * Match a row from the feed with an activity held before its ID was known
+     * (saved in the background, or from the offline journal)
+     * 
+     * @return true if the row is already held
+     */
+    private boolean claimUnsaved(Activity row) {
+        String ref = row.getClientRef();
+        if (ref == null) {
+            return false;
+        }
+        for (Activity activity : store.getUnsaved()) {
+            if (ref.equals(activity.getClientRef())) {
+                activity.setId(row.getId()); // the store indexes it from now on
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    // Store maintenance (keeps the totals and recent activities in step)
+    // Everything below runs under writeLock; call publish() when done.
+    
+    private void add(Activity activity) {
+        synchronized (writeLock) {
+            if (addedDuringLoad != null) {
+                addedDuringLoad.add(activity);
+            }
+            insertInTimeOrder(activity);
+            publish();
+        }
+    }
+    
+    /**
+     * Let readers see the current state
+     */
+    private void publish() {
+        view = new ReadView(store.snapshot(), totals.copy(), recent.getAll());
+    }
+    
+    private void insertInTimeOrder(Activity activity) {
+        store.add(activity);
+        totals.added(activity);
+        recent.offer(activity);
+    }
+    
+    private void addAllInTimeOrder(Collection<Activity> newActivities) {
+        addHeld(newActivities);
+        for (Activity activity : newActivities) {
+            totals.added(activity);
+        }
+    }
+    
+    /**
+     * Hold activities that the totals already count (history read from the database)
+     */
+    private void addHeld(Collection<Activity> activities) {
+        store.addAll(activities);
+        if (activities.size() > recent.getCapacity()) {
+            recent.reset(store.getLatest(recent.getCapacity()));
+        } else {
+            for (Activity activity : activities) {
+                recent.offer(activity);
+            }
+        }
+    }
+    
+    private boolean removeFromStore(Activity activity) {
+        if (!store.remove(activity)) {
+            return false;
+        }
+        if (addedDuringLoad != null) {
+            addedDuringLoad.remove(activity);
+        }
+        totals.removed(activity);
+        if (recent.remove(activity)) {
+            recent.reset(store.getLatest(recent.getCapacity())); // one short now
+        }
+        return true;
+    }
+    
+    private void clearStore() {
+        store.clear();
+        totals.clear();
+        recent.clear();
     }
     
     // Observer pattern methods 
@@ -94,9 +1232,126 @@ public class ActivityTracker {
         observers.remove(observer);
     }
     
+    /**
+     * Notify observers on the EDT (now if this is the EDT)
+     * The list is copy-on-write, so observers may add or remove observers
+     * while being notified.
+     */
     private void notifyObservers() {
+        if (!SwingUtilities.isEventDispatchThread()) {
+            SwingUtilities.invokeLater(this::notifyObservers);
+            return;
+        }
         for (ActivityObserver observer : observers) {
             observer.onActivityUpdated();
         }
     }
+    
+    private void notifyHistoryStateChanged() {
+        if (!SwingUtilities.isEventDispatchThread()) {
+            SwingUtilities.invokeLater(this::notifyHistoryStateChanged);
+            return;
+        }
+        for (ActivityObserver observer : observers) {
+            observer.onHistoryStateChanged();
+        }
+    }
+    
+    /**
+     * The recent activities and totals read at startup or reload
+     */
+    private final class RecentWindow {
+        final List<Activity> rows = new ArrayList<>(); // newest first
+        String cursor;
+        Map<String, ActivityTotals> totalsByType = Collections.emptyMap();
+        List<Activity> pending = Collections.emptyList();
+        boolean failed;
+        
+        /**
+         * Read pages until initialRows activities, or until the oldest one
+         * read is older than initialDays (and a dashboard's worth is held)
+         */
+        void read() {
+            long cutoff = System.currentTimeMillis() - initialWindowMillis;
+            try {
+                do {
+                    ActivityPage page = activityDAO.readActivitiesPage(cursor,
+                        Math.min(WINDOW_PAGE_SIZE, initialRows - rows.size()));
+                    rows.addAll(page.getActivities());
+                    cursor = page.getNextCursor();
+                } while (cursor != null && rows.size() < initialRows
+                    && (rows.size() < RECENT_CAPACITY || rows.get(rows.size() - 1).getDate().getTime() >= cutoff));
+                // Read last, so activities saved here while the rows were read are included
+                totalsByType = readTotalsByType();
+            } catch (SQLException e) {
+                System.err.println(" Error loading activities: " + e.getMessage());
+                rows.clear();
+                cursor = null;
+                failed = true;
+            }
+        }
+    }
+    
+    /**
+     * The changes made since a snapshot was written, if the snapshot is usable
+     */
+    private final class SnapshotDelta {
+        final ActivitySnapshot snapshot;
+        List<RowChange<Activity>> changes = Collections.emptyList();
+        List<Activity> pending = Collections.emptyList();
+        long version;
+        long versionMillis; // when version was read
+        boolean sameDatabase; // the snapshot was taken from this database
+        String problem; // why the snapshot cannot be used; null if it can
+        
+        SnapshotDelta(ActivitySnapshot snapshot) {
+            this.snapshot = snapshot;
+        }
+        
+        /**
+         * Check the snapshot against the database high-water marks, then
+         * read the changes after its settled version (those below the
+         * version it was loaded at may have committed after the load;
+         * rows already held are skipped when applied)
+         */
+        void read() {
+            try {
+                ChangeFeedDAO changeFeed = new ChangeFeedDAO();
+                versionMillis = System.currentTimeMillis();
+                version = changeFeed.getCurrentVersion();
+                int maxId = activityDAO.getMaxActivityId();
+                if (maxId < 0) {
+                    problem = "highest ActivityID could not be read";
+                } else if (version < snapshot.getChangeVersion() || maxId < snapshot.getMaxActivityId()) {
+                    problem = "it is newer than the database (restored or recreated?)";
+                } else {
+                    sameDatabase = true;
+                    ChangeSet set = changeFeed.readChanges(snapshot.getSettledVersion(), version,
+                        snapshots.getMaxDeltaRows());
+                    if (set.isTruncated()) {
+                        problem = "more than " + snapshots.getMaxDeltaRows() + " changes since it was written";
+                    } else {
+                        changes = set.getActivityChanges();
+                    }
+                }
+            } catch (DataAccessException e) {
+                problem = e.getMessage();
+            }
+        }
+    }
+    
+    /**
+     * Immutable state read by the query methods
+     */
+    private static final class ReadView {
+        final ActivityStore store;
+        final RunningTotals totals;
+        final List<Activity> recent;
+        
+        ReadView(ActivityStore store, RunningTotals totals, List<Activity> recent) {
+            this.store = store;
+            this.totals = totals;
+            this.recent = recent;
+        }
+    }
 }
\ No newline at end of file
@@ -2,31 +2,84 @@ package com.fitnesstracker.singleton;
 
 import com.fitnesstracker.model.FitnessGoal;
 import com.fitnesstracker.observer.GoalObserver;
+import com.fitnesstracker.database.ChangeFeedDAO;
+import com.fitnesstracker.database.ChangeSet;
+import com.fitnesstracker.database.DataAccessException;
+import com.fitnesstracker.database.DatabaseConfig;
+import com.fitnesstracker.database.DatabaseManager;
 import com.fitnesstracker.database.GoalDAO;
+import com.fitnesstracker.database.GoalProgressCoalescer;
+import com.fitnesstracker.database.JournalReconciler;
+import com.fitnesstracker.database.RowChange;
+import com.fitnesstracker.database.UnitOfWork;
+import com.fitnesstracker.snapshot.GoalSnapshot;
+import com.fitnesstracker.snapshot.SnapshotManager;
+import java.io.IOException;
+import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Predicate;
+import javax.swing.SwingUtilities;
 
 /**
  * GoalManagementSystem - Singleton with Database Integration
  * 
+ * Safe to use from any thread. The goal list is an immutable list that is
+ * replaced on every add or remove (under goalsLock), so readers never lock
+ * or copy. Progress is changed under a per-goal lock (one of
+ * PROGRESS_LOCK_STRIPES), so updates to different goals never wait for
+ * each other; incrementProgress() is written to the database by a
+ * GoalProgressCoalescer. Observers are called on the EDT.
+ * 
+ * With snapshots enabled, startup restores the goals from the snapshot
+ * file plus the changes made since, instead of reading them all.
  */
 public class GoalManagementSystem {
     
+    private static final int PROGRESS_LOCK_STRIPES = 32;
+    private static final long SHUTDOWN_FLUSH_TIMEOUT_MS = 10000;
+    private static final String SNAPSHOT_NAME = "goals";
+    
     private static GoalManagementSystem instance;
-    private List<FitnessGoal> goals;
-    private List<GoalObserver> observers;
+    private volatile List<FitnessGoal> goals = Collections.emptyList(); // immutable
+    private final Object goalsLock = new Object(); // serializes adding and removing goals
+    private final List<GoalObserver> observers = new CopyOnWriteArrayList<>();
     private GoalDAO goalDAO; // Database access
+    private JournalReconciler journal; // offline journal; null if disabled
+    private final GoalProgressCoalescer progressWriter;
+    private final Object[] progressLocks = new Object[PROGRESS_LOCK_STRIPES];
+    private final SnapshotManager snapshots; // null if snapshots are disabled
+    private long loadedVersion = -1; // change feed version the goals were loaded at (guarded by goalsLock)
+    private long loadedMillis;        // when loadedVersion was read (guarded by goalsLock)
+    private long settledVersion;      // every change at or below it is held, late commits included (guarded by goalsLock)
     
     /**
      * Private constructor - Singleton pattern
      */
     private GoalManagementSystem() {
-        this.goals = new ArrayList<>();
-        this.observers = new ArrayList<>();
         this.goalDAO = new GoalDAO();
+        this.journal = JournalReconciler.getInstance();
+        for (int i = 0; i < progressLocks.length; i++) {
+            progressLocks[i] = new Object();
+        }
         
-        // Load goals from database on startup
-        loadGoalsFromDatabase();
+        DatabaseConfig config = DatabaseManager.getInstance().getConfig();
+        progressWriter = new GoalProgressCoalescer(
+            journal != null ? this::journalProgress : goalDAO::incrementProgress,
+            config.getLong(DatabaseConfig.GOAL_COALESCE_MS, 200L), this::applyStoredProgress);
+        Runtime.getRuntime().addShutdownHook(new Thread(
+            () -> progressWriter.shutdown(SHUTDOWN_FLUSH_TIMEOUT_MS), "goal-progress-flush"));
+        
+        // Load goals from the snapshot or the database on startup
+        this.snapshots = SnapshotManager.getInstance();
+        loadGoals();
+        if (snapshots != null) {
+            snapshots.register(this::writeSnapshot);
+        }
     }
     
     /**
@@ -40,18 +93,192 @@ public class GoalManagementSystem {
     }
     
     /**
-     * Load goals from database
+     * Load goals from the snapshot or the database
      */
-    private void loadGoalsFromDatabase() {
+    private void loadGoals() {
+        synchronized (goalsLock) {
+            if (journal == null) {
+                goals = Collections.unmodifiableList(loadWithoutJournal());
+                return;
+            }
+            // Goal changes still waiting in the offline journal are applied on top
+            goals = journal.withReplayPaused(() -> {
+                List<FitnessGoal> loaded = loadWithoutJournal();
+                journal.applyPendingGoalChanges(loaded);
+                return Collections.unmodifiableList(loaded);
+            });
+        }
+    }
+    
+    private List<FitnessGoal> loadWithoutJournal() {
+        List<FitnessGoal> restored = restoreSnapshot();
+        return restored != null ? restored : loadFromDatabaseOnly();
+    }
+    
+    private List<FitnessGoal> loadFromDatabaseOnly() {
         try {
-            goals = goalDAO.getAllGoals();
-            System.out.println(" Loaded " + goals.size() + " goals from database");
+            long now = System.currentTimeMillis();
+            markLoaded(new ChangeFeedDAO().getCurrentVersion(), now); // before the goals
+            List<FitnessGoal> loaded = new ArrayList<>(goalDAO.getAllGoals());
+            System.out.println(" Loaded " + loaded.size() + " goals from database");
+            return loaded;
         } catch (Exception e) {
             System.err.println(" Error loading goals: " + e.getMessage());
-            goals = new ArrayList<>(); // Fallback to empty list
+            loadedVersion = -1;
+            return new ArrayList<>(); // Fallback to empty list
         }
     }
     
+    /**
+     * The goals in the snapshot file with the changes made since applied
+     * 
+     * @return the goals, or null if there is no usable snapshot
+     */
+    private List<FitnessGoal> restoreSnapshot() {
+        if (snapshots == null) {
+            return null;
+        }
+        long start = System.currentTimeMillis();
+        GoalSnapshot snapshot;
+        try {
+            snapshot = GoalSnapshot.read(snapshots.getPath(SNAPSHOT_NAME), goalDAO::loadDescription);
+        } catch (IOException e) {
+            System.err.println(" Ignoring goal snapshot: " + e.getMessage());
+            return null;
+        }
+        if (snapshot == null) {
+            return null;
+        }
+        
+        // Only usable against the database it was taken from, and if little has changed since
+        long now = System.currentTimeMillis();
+        long version;
+        ChangeSet changes;
+        try {
+            ChangeFeedDAO changeFeed = new ChangeFeedDAO();
+            version = changeFeed.getCurrentVersion();
+            int maxId = goalDAO.getMaxGoalId();
+            if (maxId < 0 || version < snapshot.getChangeVersion() || maxId < snapshot.getMaxGoalId()) {
+                System.out.println(" Goal snapshot not used: " + (maxId < 0
+                    ? "highest GoalID could not be read" : "it is newer than the database (restored or recreated?)"));
+                return null;
+            }
+            // A normal load settles on top of the snapshot's versions too
+            loadedVersion = snapshot.getChangeVersion();
+            loadedMillis = snapshot.getWrittenMillis();
+            settledVersion = snapshot.getSettledVersion();
+            // From the settled version: changes below the loaded one may have committed after the load
+            changes = changeFeed.readChanges(settledVersion, version, snapshots.getMaxDeltaRows());
+        } catch (DataAccessException e) {
+            System.out.println(" Goal snapshot not used: " + e.getMessage());
+            return null;
+        }
+        if (changes.isTruncated()) {
+            System.out.println(" Goal snapshot not used: more than " + snapshots.getMaxDeltaRows() +
+                " changes since it was written");
+            return null;
+        }
+        
+        // Nothing refers to these goals yet, so changed ones are simply replaced (again, if already held)
+        List<FitnessGoal> restored = new ArrayList<>(snapshot.getGoals());
+        for (RowChange<FitnessGoal> change : changes.getGoalChanges()) {
+            if (change.isClearAll()) {
+                restored.clear();
+            } else if (change.isDeletion()) {
+                restored.removeIf(goal -> goal.getId() == change.getId());
+            } else {
+                int index = indexOf(restored, change.getId());
+                if (index >= 0) {
+                    restored.set(index, change.getRow());
+                } else {
+                    restored.add(change.getRow());
+                }
+            }
+        }
+        markLoaded(version, now);
+        System.out.println(" Restored " + restored.size() + " goals from snapshot, " +
+            changes.getGoalChanges().size() + " changes since, in " + (System.currentTimeMillis() - start) + " ms");
+        return restored;
+    }
+    
+    /**
+     * Record the version the goals are being read at (-1 if unknown)
+     */
+    private void markLoaded(long version, long millis) {
+        if (snapshots != null) {
+            settledVersion = snapshots.settledVersion(settledVersion, loadedVersion, loadedMillis, version, millis);
+        }
+        loadedVersion = version;
+        loadedMillis = millis;
+    }
+    
+    private static int indexOf(List<FitnessGoal> goals, int goalId) {
+        for (int i = 0; i < goals.size(); i++) {
+            if (goals.get(i).getId() == goalId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Write the saved goals to the snapshot file, for a fast start next time
+     * Progress is written as stored in the database; increments still
+     * queued, and goals still in the offline journal, are left out.
+     * Called periodically and on exit by SnapshotManager.
+     * 
+     * @return true if the snapshot was written
+     */
+    public boolean writeSnapshot() {
+        if (snapshots == null) {
+            return false;
+        }
+        List<FitnessGoal> held;
+        long version;
+        long settled;
+        synchronized (goalsLock) {
+            held = goals;
+            version = loadedVersion;
+            settled = settledVersion;
+        }
+        if (version < 0) {
+            return false;
+        }
+        
+        List<FitnessGoal> saved = new ArrayList<>(held.size());
+        int maxId = 0;
+        for (FitnessGoal goal : held) {
+            if (goal.getId() > 0) {
+                saved.add(storedCopy(goal));
+                maxId = Math.max(maxId, goal.getId());
+            }
+        }
+        try {
+            new GoalSnapshot(version, settled, maxId, saved).write(snapshots.getPath(SNAPSHOT_NAME));
+        } catch (IOException e) {
+            System.err.println(" Error writing goal snapshot: " + e.getMessage());
+            return false;
+        }
+        System.out.println(" Wrote goal snapshot: " + saved.size() + " goals");
+        return true;
+    }
+    
+    /**
+     * A copy of a goal with the progress the database has
+     */
+    private FitnessGoal storedCopy(FitnessGoal goal) {
+        FitnessGoal copy = new FitnessGoal(goal.getName(), goal.getGoalType(), goal.getTargetValue(), goal.getUnit());
+        synchronized (progressLock(goal)) {
+            copy.setCurrentProgress(goal.getCurrentProgress() - progressWriter.getPendingDelta(goal.getId()));
+            copy.setCompleted(goal.isCompleted());
+        }
+        copy.setStartDate(goal.getStartDate());
+        copy.setTargetDate(goal.getTargetDate());
+        copy.setClientRef(goal.getClientRef());
+        copy.setId(goal.getId());
+        return copy;
+    }
+    
     /**
      * Add a new fitness goal
      * Saves to database first, then adds to memory
@@ -59,18 +286,43 @@ public class GoalManagementSystem {
      * @param goal the fitness goal to add
      */
     public void addGoal(FitnessGoal goal) {
+        if (journal != null) {
+            // On disk locally first; the database insert follows in the background
+            if (journal.recordGoal(goal)) {
+                addToList(goal);
+                notifyObservers();
+            } else {
+                System.err.println("Failed to save goal: offline journal could not be written");
+            }
+            return;
+        }
+        
         // Save to database first
         int id = goalDAO.insertGoal(goal);
         
         if (id > 0) {
             // Only add to memory if database save was successful
-            goals.add(goal);
+            addToList(goal);
             notifyObservers();
         } else {
             System.err.println("❌ Failed to save goal to database");
         }
     }
     
+    /**
+     * Add a goal as part of a unit of work
+     * It is held at once and removed again if the unit of work is rolled back.
+     * 
+     * @param goal the fitness goal to add
+     * @param work the unit of work that inserts it
+     */
+    public void addGoal(FitnessGoal goal, UnitOfWork work) {
+        work.insertGoal(goal);
+        addToList(goal);
+        work.onRollback(() -> removeFromList(held -> held == goal));
+        work.afterCompletion(this, this::notifyObservers);
+    }
+    
     /**
      * Remove a fitness goal
      * 
@@ -79,10 +331,10 @@ public class GoalManagementSystem {
    public void removeGoal(FitnessGoal goal) {
     if (goal == null) return;
 
-    boolean deleted = goalDAO.deleteGoal(goal.getId());
+    boolean deleted = journal != null ? journal.recordGoalDeleted(goal) : goalDAO.deleteGoal(goal.getId());
 
     if (deleted) {
-        goals.remove(goal);
+        removeFromList(held -> held == goal);
         notifyObservers();
     } else {
         System.err.println("Failed to delete goal from database");
@@ -92,11 +344,13 @@ public class GoalManagementSystem {
     
     /**
      * Get all fitness goals
+     * The list is immutable and shared, not copied, until a goal is added
+     * or removed.
      * 
      * @return list of all goals
      */
     public List<FitnessGoal> getAllGoals() {
-        return new ArrayList<>(goals);
+        return goals;
     }
     
     /**
@@ -131,21 +385,240 @@ public class GoalManagementSystem {
     
     /**
      * Update progress for a specific goal
-     * Updates database and notifies observers
+     * Updates database and notifies observers. Increments still queued for
+     * the goal are dropped; the new value replaces them.
      * 
      * @param goal the goal to update
      * @param currentProgress the new progress value
      */
    public void updateGoalProgress(FitnessGoal goal, double currentProgress) {
-    goal.setCurrentProgress(currentProgress);
+    synchronized (progressLock(goal)) {
+        progressWriter.discard(goal.getId());
+        goal.setCurrentProgress(currentProgress);
+    }
+    progressWriter.awaitWrite(goal.getId()); // an increment being written must land first
 
-    if (goalDAO.updateGoalProgress(goal)) {
+    boolean saved = journal != null ? journal.recordGoalProgress(goal) : goalDAO.updateGoalProgress(goal);
+    if (saved) {
         notifyObservers();
     } else {
         System.err.println("Failed to update goal progress");
     }
 }
 
+    /**
+     * Add to a goal's progress; safe to call from any thread
+     * The goal changes in memory at once. The database is updated with an
+     * atomic CurrentProgress = CurrentProgress + delta, so concurrent
+     * increments (here or in other instances) are never lost; increments
+     * arriving close together are written as one (fitness.goal.coalesceMs).
+     * With the offline journal on, the resulting progress is journaled
+     * instead, as updateGoalProgress does (see journalProgress).
+     * Observers are notified once the write is done.
+     * 
+     * @param goalId a goal that is saved in the database
+     * @param delta amount to add
+     * @return false if no saved goal has that ID
+     */
+    public boolean incrementProgress(int goalId, double delta) {
+        FitnessGoal goal = findGoal(goalId);
+        if (goal == null) {
+            return false;
+        }
+        synchronized (progressLock(goal)) {
+            goal.setCurrentProgress(goal.getCurrentProgress() + delta);
+            progressWriter.add(goalId, delta);
+        }
+        return true;
+    }
+    
+    /**
+     * Wait until queued progress increments are written
+     * 
+     * @param timeoutMillis maximum time to wait
+     * @return true if nothing is left unwritten
+     */
+    public boolean flushProgress(long timeoutMillis) {
+        return progressWriter.flush(timeoutMillis);
+    }
+    
+    /**
+     * Store for the coalescer while the offline journal is on
+     * Each round journals the goals' absolute progress, like
+     * updateGoalProgress, so increments survive a crash or a database
+     * outage; the replay writes them. The value already includes every
+     * increment, so the Listener has nothing to correct.
+     */
+    private Map<Integer, GoalDAO.Progress> journalProgress(Map<Integer, Double> deltas) throws SQLException {
+        boolean journaled = false;
+        for (Integer goalId : deltas.keySet()) {
+            FitnessGoal goal = findGoal(goalId);
+            if (goal == null || progressWriter.isDiscarded(goalId)) {
+                continue; // removed, or overwritten (and journaled) by updateGoalProgress
+            }
+            if (!journal.recordGoalProgress(goal)) {
+                throw new SQLException("offline journal could not be written");
+            }
+            journaled = true;
+        }
+        if (journaled) {
+            notifyObservers();
+        }
+        return Collections.emptyMap();
+    }
+    
+    /**
+     * Take the progress stored by the coalescer (it includes increments
+     * from other instances), plus what is still queued here
+     */
+    private void applyStoredProgress(Collection<GoalDAO.Progress> stored) {
+        for (GoalDAO.Progress progress : stored) {
+            FitnessGoal goal = findGoal(progress.getGoalId());
+            if (goal == null) {
+                continue;
+            }
+            synchronized (progressLock(goal)) {
+                if (progressWriter.isDiscarded(goal.getId())) {
+                    continue; // overwritten while this write was in flight
+                }
+                goal.setCurrentProgress(progress.getCurrentProgress() +
+                    progressWriter.getPendingDelta(goal.getId()));
+                if (progress.isCompleted()) {
+                    goal.setCompleted(true);
+                }
+            }
+        }
+        notifyObservers();
+    }
+    
+    private FitnessGoal findGoal(int goalId) {
+        if (goalId <= 0) {
+            return null;
+        }
+        for (FitnessGoal goal : goals) {
+            if (goal.getId() == goalId) {
+                return goal;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * The lock guarding a goal's progress, picked by object identity: the
+     * ID changes when the journal replay saves a goal created offline
+     */
+    private Object progressLock(FitnessGoal goal) {
+        return progressLocks[(System.identityHashCode(goal) & 0x7fffffff) % progressLocks.length];
+    }
+    
+    /**
+     * Update progress as part of a unit of work
+     * The new progress is visible at once; the previous progress and
+     * completion, and any queued increments it replaced, are put back if
+     * the unit of work is rolled back.
+     * 
+     * @param goal the goal to update (must already be in the database)
+     * @param currentProgress the new progress value
+     * @param work the unit of work that writes it
+     */
+    public void updateGoalProgress(FitnessGoal goal, double currentProgress, UnitOfWork work) {
+        double previousProgress;
+        boolean wasCompleted;
+        double dropped;
+        synchronized (progressLock(goal)) {
+            previousProgress = goal.getCurrentProgress();
+            wasCompleted = goal.isCompleted();
+            dropped = progressWriter.discard(goal.getId());
+            goal.setCurrentProgress(currentProgress);
+        }
+        progressWriter.awaitWrite(goal.getId());
+        work.updateGoalProgress(goal);
+        work.onRollback(() -> {
+            synchronized (progressLock(goal)) {
+                goal.setCurrentProgress(previousProgress);
+                goal.setCompleted(wasCompleted);
+                if (dropped != 0.0) {
+                    progressWriter.add(goal.getId(), dropped); // still owed to the database
+                }
+            }
+        });
+        work.afterCompletion(this, this::notifyObservers);
+    }
+
+    /**
+     * Apply goal changes read from the change feed (see ChangeFeedSynchronizer)
+     * New goals are added, changed progress is copied onto the goal already
+     * held (so references kept by the UI stay valid) and deleted goals are
+     * removed. Observers are notified once, and only if something changed.
+     * 
+     * @param changes upserts and deletions in row version order
+     */
+    public void applyChanges(List<RowChange<FitnessGoal>> changes) {
+        boolean changed = false;
+        for (RowChange<FitnessGoal> change : changes) {
+            if (change.isClearAll()) {
+                changed |= removeFromList(goal -> true);
+            } else if (change.isDeletion()) {
+                changed |= removeFromList(goal -> goal.getId() == change.getId());
+            } else {
+                changed |= mergeGoal(change.getRow());
+            }
+        }
+        if (changed) {
+            notifyObservers();
+        }
+    }
+    
+    private boolean mergeGoal(FitnessGoal incoming) {
+        synchronized (goalsLock) {
+            // Under the lock so the same new goal cannot be added twice
+            return mergeGoalLocked(incoming);
+        }
+    }
+    
+    private boolean mergeGoalLocked(FitnessGoal incoming) {
+        String ref = incoming.getClientRef();
+        for (FitnessGoal goal : goals) {
+            // A goal from the offline journal may not know its ID yet
+            if (goal.getId() == incoming.getId() || (ref != null && ref.equals(goal.getClientRef()))) {
+                synchronized (progressLock(goal)) {
+                    // Increments not written yet are not in the feed
+                    double progress = incoming.getCurrentProgress() + progressWriter.getPendingDelta(goal.getId());
+                    if (goal.getCurrentProgress() == progress &&
+                            goal.isCompleted() == incoming.isCompleted()) {
+                        return false;
+                    }
+                    goal.setCurrentProgress(progress);
+                    goal.setCompleted(incoming.isCompleted());
+                    return true;
+                }
+            }
+        }
+        addToList(incoming);
+        return true;
+    }
+    
+    // Goal list changes: copy, change, publish
+    
+    private void addToList(FitnessGoal goal) {
+        synchronized (goalsLock) {
+            List<FitnessGoal> changed = new ArrayList<>(goals.size() + 1);
+            changed.addAll(goals);
+            changed.add(goal);
+            goals = Collections.unmodifiableList(changed);
+        }
+    }
+    
+    private boolean removeFromList(Predicate<FitnessGoal> filter) {
+        synchronized (goalsLock) {
+            List<FitnessGoal> changed = new ArrayList<>(goals);
+            if (!changed.removeIf(filter)) {
+                return false;
+            }
+            goals = Collections.unmodifiableList(changed);
+            return true;
+        }
+    }
    
     // Observer Pattern Methods
     
@@ -168,9 +641,15 @@ public class GoalManagementSystem {
     }
     
     /**
-     * Notify all observers of goal changes
+     * Notify all observers of goal changes, on the EDT (now if this is the EDT)
+     * The list is copy-on-write, so observers may add or remove observers
+     * while being notified.
      */
     private void notifyObservers() {
+        if (!SwingUtilities.isEventDispatchThread()) {
+            SwingUtilities.invokeLater(this::notifyObservers);
+            return;
+        }
         for (GoalObserver observer : observers) {
             observer.onGoalUpdated();
         }
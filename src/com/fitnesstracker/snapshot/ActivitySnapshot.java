@@ -0,0 +1,221 @@
+package com.fitnesstracker.snapshot;
+
+import com.fitnesstracker.factory.ExerciseFactory;
+import com.fitnesstracker.model.Activity;
+import com.fitnesstracker.store.ActivityTotals;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+/**
+ * ActivitySnapshot - The activities ActivityTracker holds, as a binary file
+ *
+ * Purpose: Lets the tracker start from its last state plus the changes
+ * made since (read from the change feed) instead of reading its history
+ * from the database again.
+ *
+ * Body: settled version (see SnapshotManager.settledVersion), highest
+ * ActivityID held, history cursor and the position of the oldest
+ * row held, totals per exercise type, a dictionary of exercise types and
+ * one of exercise names, then one fixed-size record per activity, oldest
+ * first (ID, time, type, name, duration, intensity). Notes are left out
+ * and load lazily, as with any summary query. Only saved activities are
+ * written; unsaved ones are still in the offline journal.
+ * @version 1.0
+ */
+public final class ActivitySnapshot {
+
+    private static final int FORMAT_VERSION = 2;
+
+    private final long changeVersion;
+    private final long settledVersion;
+    private final long writtenMillis;
+    private final int maxActivityId;
+    private final List<Activity> activities;
+    private final Map<String, ActivityTotals> totalsByType;
+    private final String historyCursor;
+    private final long heldFromMillis;
+    private final int heldFromId;
+
+    /**
+     * @param changeVersion change feed version the activities were loaded at
+     * @param settledVersion every change at or below it is in the activities, late commits included;
+     *        a warm start reads the changes after it
+     * @param maxActivityId highest ActivityID held; a database that has not reached it is not the one
+     *        the snapshot was taken from
+     * @param activities saved activities, oldest first
+     * @param totalsByType totals over the whole history (held or not) per type
+     * @param historyCursor cursor for the next older page, or null if all history is held
+     * @param heldFromMillis time of the oldest row held (ignored without a cursor)
+     * @param heldFromId ID of the oldest row held (ignored without a cursor)
+     */
+    public ActivitySnapshot(long changeVersion, long settledVersion, int maxActivityId, List<Activity> activities,
+                            Map<String, ActivityTotals> totalsByType, String historyCursor,
+                            long heldFromMillis, int heldFromId) {
+        this(changeVersion, settledVersion, 0, maxActivityId, activities, totalsByType, historyCursor,
+            heldFromMillis, heldFromId);
+    }
+
+    private ActivitySnapshot(long changeVersion, long settledVersion, long writtenMillis, int maxActivityId,
+                             List<Activity> activities, Map<String, ActivityTotals> totalsByType,
+                             String historyCursor, long heldFromMillis, int heldFromId) {
+        this.changeVersion = changeVersion;
+        this.settledVersion = settledVersion;
+        this.writtenMillis = writtenMillis;
+        this.maxActivityId = maxActivityId;
+        this.activities = activities;
+        this.totalsByType = totalsByType;
+        this.historyCursor = historyCursor;
+        this.heldFromMillis = heldFromMillis;
+        this.heldFromId = heldFromId;
+    }
+
+    public long getChangeVersion() { return changeVersion; }
+    public long getSettledVersion() { return settledVersion; }
+    /** When the file was written (0 if not read from one) */
+    public long getWrittenMillis() { return writtenMillis; }
+    public int getMaxActivityId() { return maxActivityId; }
+    /** Oldest first */
+    public List<Activity> getActivities() { return activities; }
+    public Map<String, ActivityTotals> getTotalsByType() { return totalsByType; }
+    public String getHistoryCursor() { return historyCursor; }
+    public long getHeldFromMillis() { return heldFromMillis; }
+    public int getHeldFromId() { return heldFromId; }
+
+    /**
+     * Write this snapshot, replacing the file at path
+     *
+     * @throws IOException if it cannot be written (the old file is left as it was)
+     */
+    public void write(Path path) throws IOException {
+        SnapshotFile.write(path, SnapshotFile.KIND_ACTIVITIES, FORMAT_VERSION, changeVersion, this::writeBody);
+    }
+
+    private void writeBody(DataOutputStream out) throws IOException {
+        out.writeLong(settledVersion);
+        out.writeInt(maxActivityId);
+        SnapshotFile.writeString(out, historyCursor);
+        out.writeLong(heldFromMillis);
+        out.writeInt(heldFromId);
+
+        out.writeInt(totalsByType.size());
+        for (Map.Entry<String, ActivityTotals> entry : totalsByType.entrySet()) {
+            ActivityTotals totals = entry.getValue();
+            SnapshotFile.writeString(out, entry.getKey());
+            out.writeInt(totals.getCount());
+            out.writeDouble(totals.getCalories());
+            out.writeLong(totals.getMinutes());
+        }
+
+        // Few distinct types and names; each record refers to them by index
+        Map<String, Integer> types = new LinkedHashMap<>();
+        Map<String, Integer> names = new LinkedHashMap<>();
+        for (Activity activity : activities) {
+            types.putIfAbsent(activity.getExerciseType(), types.size());
+            names.putIfAbsent(activity.getExercise().getName(), names.size());
+        }
+        if (types.size() > Byte.MAX_VALUE) {
+            throw new IOException("too many exercise types: " + types.size());
+        }
+        writeDictionary(out, types);
+        writeDictionary(out, names);
+
+        out.writeInt(activities.size());
+        for (Activity activity : activities) {
+            out.writeInt(activity.getId());
+            out.writeLong(activity.getDate().getTime());
+            out.writeByte(types.get(activity.getExerciseType()));
+            out.writeInt(names.get(activity.getExercise().getName()));
+            out.writeInt(activity.getExercise().getDuration());
+            out.writeInt(activity.getExercise().getIntensity());
+        }
+    }
+
+    private static void writeDictionary(DataOutputStream out, Map<String, Integer> entries) throws IOException {
+        out.writeInt(entries.size());
+        for (String entry : entries.keySet()) {
+            SnapshotFile.writeString(out, entry);
+        }
+    }
+
+    /**
+     * Read the snapshot at path
+     *
+     * @param notesLoader loads the notes of an activity by ID, on first access
+     * @return the snapshot, or null if there is none
+     * @throws IOException if the file is damaged or was written by another format version
+     */
+    public static ActivitySnapshot read(Path path, IntFunction<String> notesLoader) throws IOException {
+        SnapshotFile.Contents contents = SnapshotFile.read(path, SnapshotFile.KIND_ACTIVITIES, FORMAT_VERSION);
+        if (contents == null) {
+            return null;
+        }
+        try {
+            return decode(contents, notesLoader);
+        } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException
+                 | NegativeArraySizeException e) {
+            throw new IOException("malformed activity snapshot: " + e, e);
+        }
+    }
+
+    private static ActivitySnapshot decode(SnapshotFile.Contents contents, IntFunction<String> notesLoader) {
+        ByteBuffer in = contents.body;
+        long settled = in.getLong();
+        int maxId = in.getInt();
+        String cursor = SnapshotFile.readString(in);
+        long heldFromMillis = in.getLong();
+        int heldFromId = in.getInt();
+
+        int typeCount = in.getInt();
+        Map<String, ActivityTotals> totalsByType = new HashMap<>();
+        for (int i = 0; i < typeCount; i++) {
+            String type = SnapshotFile.readString(in);
+            totalsByType.put(type, new ActivityTotals(in.getInt(), in.getDouble(), in.getLong()));
+        }
+
+        String[] types = readDictionary(in);
+        String[] names = readDictionary(in);
+
+        int count = in.getInt();
+        List<Activity> activities = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int id = in.getInt();
+            Date date = new Date(in.getLong());
+            String type = types[in.get()];
+            String name = names[in.getInt()];
+            int duration = in.getInt();
+            int intensity = in.getInt();
+
+            Activity activity = new Activity(ExerciseFactory.createExercise(type, name, duration, intensity), null, date);
+            activity.setNotesLoader(() -> notesLoader.apply(id));
+            activity.setId(id);
+            activities.add(activity);
+        }
+
+        return new ActivitySnapshot(contents.changeVersion, settled, contents.writtenMillis, maxId, activities,
+            Collections.unmodifiableMap(totalsByType), cursor, heldFromMillis, heldFromId);
+    }
+
+    private static String[] readDictionary(ByteBuffer in) {
+        String[] entries = new String[in.getInt()];
+        for (int i = 0; i < entries.length; i++) {
+            entries[i] = SnapshotFile.readString(in);
+        }
+        return entries;
+    }
+
+    @Override
+    public String toString() {
+        return activities.size() + " activities at change version " + changeVersion;
+    }
+}
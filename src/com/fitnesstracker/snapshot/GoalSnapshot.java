@@ -0,0 +1,144 @@
+package com.fitnesstracker.snapshot;
+
+import com.fitnesstracker.model.FitnessGoal;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * GoalSnapshot - The goals GoalManagementSystem holds, as a binary file
+ *
+ * Body: settled version (see SnapshotManager.settledVersion), highest
+ * GoalID held, then one record per goal (ID, name, type,
+ * target, unit, progress, completed, start and target date, ClientRef).
+ * Descriptions are left out and load lazily. Only saved goals are
+ * written, with the progress stored in the database; changes not saved
+ * yet are still in the offline journal or the progress coalescer.
+ * @version 1.0
+ */
+public final class GoalSnapshot {
+
+    private static final int FORMAT_VERSION = 2;
+    private static final long NO_DATE = Long.MIN_VALUE;
+
+    private final long changeVersion;
+    private final long settledVersion;
+    private final long writtenMillis;
+    private final int maxGoalId;
+    private final List<FitnessGoal> goals;
+
+    /**
+     * @param changeVersion change feed version the goals were loaded at
+     * @param settledVersion every change at or below it is in the goals, late commits included;
+     *        a warm start reads the changes after it
+     * @param maxGoalId highest GoalID held; a database that has not reached it is not the one
+     *        the snapshot was taken from
+     * @param goals saved goals
+     */
+    public GoalSnapshot(long changeVersion, long settledVersion, int maxGoalId, List<FitnessGoal> goals) {
+        this(changeVersion, settledVersion, 0, maxGoalId, goals);
+    }
+
+    private GoalSnapshot(long changeVersion, long settledVersion, long writtenMillis, int maxGoalId,
+                         List<FitnessGoal> goals) {
+        this.changeVersion = changeVersion;
+        this.settledVersion = settledVersion;
+        this.writtenMillis = writtenMillis;
+        this.maxGoalId = maxGoalId;
+        this.goals = goals;
+    }
+
+    public long getChangeVersion() { return changeVersion; }
+    public long getSettledVersion() { return settledVersion; }
+    /** When the file was written (0 if not read from one) */
+    public long getWrittenMillis() { return writtenMillis; }
+    public int getMaxGoalId() { return maxGoalId; }
+    public List<FitnessGoal> getGoals() { return goals; }
+
+    /**
+     * Write this snapshot, replacing the file at path
+     *
+     * @throws IOException if it cannot be written (the old file is left as it was)
+     */
+    public void write(Path path) throws IOException {
+        SnapshotFile.write(path, SnapshotFile.KIND_GOALS, FORMAT_VERSION, changeVersion, this::writeBody);
+    }
+
+    private void writeBody(DataOutputStream out) throws IOException {
+        out.writeLong(settledVersion);
+        out.writeInt(maxGoalId);
+        out.writeInt(goals.size());
+        for (FitnessGoal goal : goals) {
+            out.writeInt(goal.getId());
+            SnapshotFile.writeString(out, goal.getName());
+            SnapshotFile.writeString(out, goal.getGoalType());
+            out.writeDouble(goal.getTargetValue());
+            SnapshotFile.writeString(out, goal.getUnit());
+            out.writeDouble(goal.getCurrentProgress());
+            out.writeBoolean(goal.isCompleted());
+            out.writeLong(goal.getStartDate() != null ? goal.getStartDate().getTime() : NO_DATE);
+            out.writeLong(goal.getTargetDate() != null ? goal.getTargetDate().getTime() : NO_DATE);
+            SnapshotFile.writeString(out, goal.getClientRef());
+        }
+    }
+
+    /**
+     * Read the snapshot at path
+     *
+     * @param descriptionLoader loads the description of a goal by ID, on first access
+     * @return the snapshot, or null if there is none
+     * @throws IOException if the file is damaged or was written by another format version
+     */
+    public static GoalSnapshot read(Path path, IntFunction<String> descriptionLoader) throws IOException {
+        SnapshotFile.Contents contents = SnapshotFile.read(path, SnapshotFile.KIND_GOALS, FORMAT_VERSION);
+        if (contents == null) {
+            return null;
+        }
+        try {
+            return decode(contents, descriptionLoader);
+        } catch (BufferUnderflowException | IllegalArgumentException | NegativeArraySizeException e) {
+            throw new IOException("malformed goal snapshot: " + e, e);
+        }
+    }
+
+    private static GoalSnapshot decode(SnapshotFile.Contents contents, IntFunction<String> descriptionLoader) {
+        ByteBuffer in = contents.body;
+        long settled = in.getLong();
+        int maxId = in.getInt();
+        int count = in.getInt();
+        List<FitnessGoal> goals = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int id = in.getInt();
+            String name = SnapshotFile.readString(in);
+            String type = SnapshotFile.readString(in);
+            double target = in.getDouble();
+            String unit = SnapshotFile.readString(in);
+
+            FitnessGoal goal = new FitnessGoal(name, type, target, unit);
+            goal.setDescriptionLoader(() -> descriptionLoader.apply(id));
+            goal.setCurrentProgress(in.getDouble());
+            goal.setCompleted(in.get() != 0);
+            goal.setStartDate(toDate(in.getLong()));
+            goal.setTargetDate(toDate(in.getLong()));
+            goal.setClientRef(SnapshotFile.readString(in));
+            goal.setId(id);
+            goals.add(goal);
+        }
+        return new GoalSnapshot(contents.changeVersion, settled, contents.writtenMillis, maxId, goals);
+    }
+
+    private static Date toDate(long millis) {
+        return millis == NO_DATE ? null : new Date(millis);
+    }
+
+    @Override
+    public String toString() {
+        return goals.size() + " goals at change version " + changeVersion;
+    }
+}
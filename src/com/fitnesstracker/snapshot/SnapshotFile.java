@@ -0,0 +1,172 @@
+package com.fitnesstracker.snapshot;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * SnapshotFile - Versioned, checksummed container for a binary snapshot
+ *
+ * Layout (big-endian): magic FTS1 (int), kind (int), format version (int),
+ * change feed version (long), time written (long), body length (int),
+ * CRC32 of the body (int), then the body.
+ *
+ * The file is written next to the old one, forced to disk and moved over
+ * it, so a crash leaves either the old or the new snapshot. It is read
+ * through a memory-mapped buffer; nothing is decoded until the length and
+ * checksum of the whole body have been verified.
+ * @version 1.0
+ */
+final class SnapshotFile {
+
+    static final int KIND_ACTIVITIES = 1;
+    static final int KIND_GOALS = 2;
+
+    private static final int MAGIC = 0x46545331; // "FTS1"
+    private static final int HEADER_SIZE = 36;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Writes the body of a snapshot
+     */
+    interface BodyWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * A verified snapshot
+     */
+    static final class Contents {
+        final long changeVersion;
+        final long writtenMillis;
+        final ByteBuffer body; // positioned at the start of the body
+
+        Contents(long changeVersion, long writtenMillis, ByteBuffer body) {
+            this.changeVersion = changeVersion;
+            this.writtenMillis = writtenMillis;
+            this.body = body;
+        }
+    }
+
+    private SnapshotFile() {
+    }
+
+    /**
+     * Replace the snapshot at path
+     *
+     * @param changeVersion change feed version the state is current with
+     */
+    static void write(Path path, int kind, int formatVersion, long changeVersion, BodyWriter body)
+            throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            // Body first, behind room for the header; the header needs its length and checksum
+            channel.position(HEADER_SIZE);
+            CRC32 crc = new CRC32();
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new CheckedOutputStream(Channels.newOutputStream(channel), crc), BUFFER_SIZE));
+            body.write(out);
+            out.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(kind).putInt(formatVersion)
+                .putLong(changeVersion).putLong(System.currentTimeMillis())
+                .putInt(out.size()).putInt((int) crc.getValue());
+            header.flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            channel.force(true);
+        }
+        try {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Map and verify the snapshot at path
+     *
+     * @return the snapshot, or null if there is none
+     * @throws IOException if it cannot be read, is of another kind or
+     *         format version, or fails its checksum
+     */
+    static Contents read(Path path, int kind, int formatVersion) throws IOException {
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+        MappedByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+                throw new IOException("bad size " + size);
+            }
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size); // stays valid after close
+        }
+
+        if (mapped.getInt() != MAGIC) {
+            throw new IOException("not a snapshot file");
+        }
+        int fileKind = mapped.getInt();
+        int fileFormat = mapped.getInt();
+        if (fileKind != kind || fileFormat != formatVersion) {
+            throw new IOException("kind " + fileKind + " format " + fileFormat +
+                ", expected kind " + kind + " format " + formatVersion);
+        }
+        long changeVersion = mapped.getLong();
+        long writtenMillis = mapped.getLong();
+        int length = mapped.getInt();
+        int checksum = mapped.getInt();
+        if (length != mapped.capacity() - HEADER_SIZE) {
+            throw new IOException("truncated: body is " + (mapped.capacity() - HEADER_SIZE) +
+                " bytes, header says " + length);
+        }
+
+        ByteBuffer body = mapped.slice();
+        CRC32 crc = new CRC32();
+        crc.update(body.duplicate());
+        if ((int) crc.getValue() != checksum) {
+            throw new IOException("checksum mismatch");
+        }
+        return new Contents(changeVersion, writtenMillis, body);
+    }
+
+    // Strings: length in bytes (-1 for null), then UTF-8
+
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
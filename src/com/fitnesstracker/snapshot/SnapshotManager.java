@@ -0,0 +1,132 @@
+package com.fitnesstracker.snapshot;
+
+import com.fitnesstracker.database.DatabaseConfig;
+import com.fitnesstracker.database.DatabaseManager;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SnapshotManager - Where snapshots live and when they are written
+ *
+ * ActivityTracker and GoalManagementSystem register a writer here; every
+ * writer runs every fitness.snapshot.intervalMs (0 for never) on one
+ * background thread, and once more when the application exits. A warm
+ * start reads the snapshot and only the changes made since it was written
+ * (at most fitness.snapshot.maxDeltaRows, else the snapshot is ignored).
+ *
+ * Row versions are handed out at write time, so a change below the
+ * version a tracker loaded at can commit after the load. The changes are
+ * therefore read from the snapshot's settled version: a version loaded at
+ * least fitness.sync.lookbackMs before the state was read again, so every
+ * change below it had committed by then.
+ *
+ * Enabled unless fitness.snapshot.enabled=false; files go to
+ * fitness.snapshot.dir.
+ * @version 1.0
+ */
+public class SnapshotManager {
+
+    private static SnapshotManager instance;
+
+    private final Path directory;
+    private final int maxDeltaRows;
+    private final long lookbackMillis;
+    private final List<Runnable> writers = new CopyOnWriteArrayList<>();
+
+    private SnapshotManager(DatabaseConfig config) {
+        this.directory = Paths.get(config.getString(DatabaseConfig.SNAPSHOT_DIR, "./data"));
+        this.maxDeltaRows = Math.max(1, config.getInt(DatabaseConfig.SNAPSHOT_MAX_DELTA_ROWS, 20000));
+        this.lookbackMillis = config.getLong(DatabaseConfig.SYNC_LOOKBACK_MS, 30000L);
+
+        long intervalMillis = config.getLong(DatabaseConfig.SNAPSHOT_INTERVAL_MS, 300000L);
+        if (intervalMillis > 0) {
+            ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "snapshot-writer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleWithFixedDelay(this::writeAll, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(this::writeAll, "snapshot-on-exit"));
+    }
+
+    /**
+     * Get the shared manager
+     *
+     * @return the manager, or null if snapshots are disabled
+     */
+    public static synchronized SnapshotManager getInstance() {
+        if (instance == null) {
+            DatabaseConfig config = DatabaseManager.getInstance().getConfig();
+            if (!config.getBoolean(DatabaseConfig.SNAPSHOT_ENABLED, true)) {
+                return null;
+            }
+            instance = new SnapshotManager(config);
+        }
+        return instance;
+    }
+
+    /**
+     * File for a named snapshot
+     */
+    public Path getPath(String name) {
+        return directory.resolve(name + ".snapshot");
+    }
+
+    /**
+     * Most changes worth applying on top of a snapshot; with more, a
+     * normal load is faster
+     */
+    public int getMaxDeltaRows() {
+        return maxDeltaRows;
+    }
+
+    /**
+     * The settled version after state is read again from the database
+     * (loaded, or restored from a snapshot plus the changes after its
+     * settled version)
+     *
+     * @param settled settled version of the state held so far (0 if none)
+     * @param loaded version the state held so far was loaded at, or -1 if unknown
+     * @param loadedMillis when that version was read
+     * @param version version read before the state is read again, or -1 if unknown
+     * @param nowMillis when that version was read
+     * @return every change at or below it is in the new state, late commits included
+     */
+    public long settledVersion(long settled, long loaded, long loadedMillis, long version, long nowMillis) {
+        if (version < 0) {
+            return settled; // nothing was read
+        }
+        if (loaded >= 0 && loaded <= version && loadedMillis + lookbackMillis <= nowMillis) {
+            settled = Math.max(settled, loaded); // everything below it had committed before this read
+        }
+        return settled <= version ? settled : 0; // otherwise the database was recreated
+    }
+
+    /**
+     * Write a snapshot periodically and on exit
+     *
+     * @param writer writes one snapshot
+     */
+    public void register(Runnable writer) {
+        writers.add(writer);
+    }
+
+    /**
+     * Write every registered snapshot now (one run at a time; they share files)
+     */
+    public synchronized void writeAll() {
+        for (Runnable writer : writers) {
+            try {
+                writer.run();
+            } catch (RuntimeException e) {
+                System.err.println(" Error writing snapshot: " + e);
+            }
+        }
+    }
+}
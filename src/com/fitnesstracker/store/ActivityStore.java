@@ -0,0 +1,109 @@
+package com.fitnesstracker.store;
+
+import com.fitnesstracker.model.Activity;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * ActivityStore - In-memory storage of the activities ActivityTracker holds
+ *
+ * Activities are kept in time order (see BY_TIME). Lists returned by the
+ * queries are immutable and are not affected by later changes to the
+ * store, so callers never need to copy them.
+ * @version 1.0
+ */
+public interface ActivityStore {
+
+    /**
+     * Order of the store: by date, then by creation order for equal dates
+     * (not by ID: it is 0 until saved and reset by a rolled back unit of work)
+     */
+    Comparator<Activity> BY_TIME =
+        Comparator.comparing(Activity::getDate).thenComparingLong(Activity::getSequence);
+
+    int size();
+
+    default boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Add one activity at its place in time order
+     */
+    void add(Activity activity);
+
+    /**
+     * Add many activities; they may come in any order
+     */
+    void addAll(Collection<Activity> activities);
+
+    /**
+     * Remove an activity (the same object that was added)
+     *
+     * @return true if it was held
+     */
+    boolean remove(Activity activity);
+
+    void clear();
+
+    /**
+     * All activities, oldest first
+     */
+    List<Activity> getAll();
+
+    /**
+     * The activity with a database ID, or null if it is not held
+     * Activities added before they had an ID are found once they have one.
+     * Indexed on the store itself; a snapshot scans.
+     */
+    Activity findById(int id);
+
+    /**
+     * Activities held that have no database ID yet (waiting in the offline
+     * journal or write-behind); usually few, returned as a copy
+     */
+    List<Activity> getUnsaved();
+
+    /**
+     * Activities that took place in a time range, oldest first
+     *
+     * @param from start of the range (inclusive)
+     * @param to end of the range (exclusive)
+     */
+    List<Activity> getBetween(Date from, Date to);
+
+    /**
+     * Activities of one exercise type (ignoring case), oldest first
+     */
+    List<Activity> getByType(String type);
+
+    /**
+     * Activities of one exercise name (ignoring case), oldest first
+     */
+    List<Activity> getByName(String name);
+
+    /**
+     * The most recent activities, newest first
+     *
+     * @param count maximum number of activities
+     */
+    List<Activity> getLatest(int count);
+
+    /**
+     * Totals over a time range
+     *
+     * @param from start of the range (inclusive), or null for no limit
+     * @param to end of the range (exclusive), or null for no limit
+     */
+    ActivityTotals getTotals(Date from, Date to);
+
+    /**
+     * An immutable copy of the store as it is now
+     * Safe to read from any thread while this store keeps changing; its
+     * mutators throw UnsupportedOperationException. Cheap enough to take
+     * after every change.
+     */
+    ActivityStore snapshot();
+}
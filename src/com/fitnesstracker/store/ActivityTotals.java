@@ -0,0 +1,43 @@
+package com.fitnesstracker.store;
+
+import com.fitnesstracker.model.Activity;
+
+/**
+ * ActivityTotals - Count, calories and minutes over a set of activities
+ * @version 1.0
+ */
+public final class ActivityTotals {
+
+    public static final ActivityTotals EMPTY = new ActivityTotals(0, 0.0, 0L);
+
+    private final int count;
+    private final double calories;
+    private final long minutes;
+
+    public ActivityTotals(int count, double calories, long minutes) {
+        this.count = count;
+        this.calories = calories;
+        this.minutes = minutes;
+    }
+
+    public int getCount() { return count; }
+    public double getCalories() { return calories; }
+    public long getMinutes() { return minutes; }
+
+    /**
+     * These totals with one activity added (sign 1) or taken away (sign -1)
+     */
+    ActivityTotals adjust(Activity activity, int sign) {
+        int newCount = count + sign;
+        if (newCount <= 0) {
+            return EMPTY; // drop rounding drift once nothing is left
+        }
+        return new ActivityTotals(newCount, calories + sign * activity.getCaloriesBurned(),
+            minutes + sign * activity.getDuration());
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d activities, %.0f cal, %d min", count, calories, minutes);
+    }
+}
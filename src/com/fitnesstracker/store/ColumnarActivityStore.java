@@ -0,0 +1,964 @@
+package com.fitnesstracker.store;
+
+import com.fitnesstracker.factory.ExerciseFactory;
+import com.fitnesstracker.model.Activity;
+import com.fitnesstracker.model.Exercise;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.function.IntFunction;
+
+/**
+ * ColumnarActivityStore - Activities kept as primitive columns instead of objects
+ *
+ * Purpose: Held as objects, a long history costs a few hundred bytes per
+ * activity (Activity, Exercise, Date, name string, index entries). Here an
+ * activity is one row across parallel arrays, about 30 bytes:
+ * - long epoch millis, int ID, int duration, float calories
+ * - byte intensity and byte exercise type code
+ * - int exercise name code (names and types are dictionary encoded)
+ * The arrays grow in steps rounded up to CHUNK_ROWS and are kept sorted
+ * by time; rows with equal times stay in the order they were added (rows
+ * are rebuilt as new objects, so BY_TIME's creation order does not apply).
+ * getByType() and getByName() read a posting list per type
+ * and name code (its rows in order, 8 bytes per row for both), so they
+ * cost the rows returned, not a scan. findById() uses IDs sorted with the
+ * time of their row (12 bytes per row, built on first use), so no Activity
+ * objects are kept to look rows up.
+ *
+ * Activity objects are only built when an element of a returned list is
+ * read, through ExerciseFactory exactly as if the row had been loaded from
+ * the database; notes come from the notes loader on first access. Every
+ * read builds a new object, so rows are matched by time and ID, not by
+ * identity. An activity added before it has an ID (offline journal,
+ * write-behind) is kept as the object itself, so the ID it gets later shows.
+ *
+ * Returned lists are views over the columns. Changing the store after a
+ * list was handed out copies the columns first (appends excepted), so the
+ * lists never change; snapshot() shares the columns the same way. The
+ * posting lists are copied on write by the same rule.
+ * getTotals() only scans the primitive columns.
+ * Exercise decorators are not kept, the same as after a reload.
+ * Not thread-safe; snapshots are.
+ * @version 1.0
+ */
+public class ColumnarActivityStore implements ActivityStore {
+
+    /** Capacity is always a multiple of this many rows */
+    static final int CHUNK_ROWS = 4096;
+
+    private final IntFunction<String> notesLoader;
+    private final boolean readOnly; // a snapshot
+    private Columns columns;
+    private Dictionary names;
+    private Dictionary types;
+    private Postings nameRows;
+    private Postings typeRows;
+    private IdIndex idIndex;              // built by the first findById(); never in a snapshot
+    private final List<Activity> unsaved; // added without an ID and not in idIndex; null in a snapshot
+
+    /**
+     * @param notesLoader loads notes by ActivityID (may be null)
+     */
+    public ColumnarActivityStore(IntFunction<String> notesLoader) {
+        this(notesLoader, new Columns(0), new Dictionary(), new Dictionary(),
+            new Postings(), new Postings(), false);
+    }
+
+    private ColumnarActivityStore(IntFunction<String> notesLoader, Columns columns,
+                                  Dictionary names, Dictionary types,
+                                  Postings nameRows, Postings typeRows, boolean readOnly) {
+        this.notesLoader = notesLoader;
+        this.columns = columns;
+        this.names = names;
+        this.types = types;
+        this.nameRows = nameRows;
+        this.typeRows = typeRows;
+        this.unsaved = readOnly ? null : new ArrayList<>();
+        this.readOnly = readOnly;
+    }
+
+    @Override
+    public int size() {
+        return columns.size;
+    }
+
+    @Override
+    public void add(Activity activity) {
+        checkWritable();
+        Columns c = columns;
+        long time = activity.getDate().getTime();
+        indexId(activity);
+        if (c.size == 0 || c.times[c.size - 1] <= time) {
+            c = forAppend(1); // the usual case: newest so far
+            int row = c.size++;
+            write(c, row, activity);
+            typeRows.append(c.types[row] & 0xFF, row);
+            nameRows.append(c.names[row], row);
+            return;
+        }
+        int index = c.upperBound(time);
+        c = forUpdate(1);
+        c.shift(index, c.size - index, 1);
+        c.size++;
+        write(c, index, activity);
+        typeRows.insert(c.types[index] & 0xFF, index);
+        nameRows.insert(c.names[index], index);
+    }
+
+    @Override
+    public void addAll(Collection<Activity> activities) {
+        checkWritable();
+        if (activities.isEmpty()) {
+            return;
+        }
+        List<Activity> batch = new ArrayList<>(activities);
+        batch.sort(BY_TIME); // linear for a batch that is already in (either) order
+        if (idIndex != null) {
+            idIndex.addAll(batch);
+        }
+        for (Activity activity : batch) {
+            if (activity.getId() <= 0) {
+                unsaved.add(activity);
+            }
+        }
+
+        Columns c = columns;
+        Activity first = batch.get(0);
+        if (c.size == 0 || c.times[c.size - 1] <= first.getDate().getTime()) {
+            c = forAppend(batch.size());
+            for (Activity activity : batch) {
+                int row = c.size++;
+                write(c, row, activity);
+                typeRows.append(c.types[row] & 0xFF, row);
+                nameRows.append(c.names[row], row);
+            }
+            return;
+        }
+
+        // Merge the old rows and the batch into new columns
+        Columns merged = new Columns(grow(c.size + batch.size(), 0));
+        int i = 0;
+        int j = 0;
+        while (i < c.size || j < batch.size()) {
+            Activity next = j < batch.size() ? batch.get(j) : null;
+            if (next == null || (i < c.size && c.times[i] <= next.getDate().getTime())) {
+                merged.copyRow(merged.size++, c, i++);
+            } else {
+                write(merged, merged.size++, next);
+                j++;
+            }
+        }
+        columns = merged;
+        typeRows = new Postings();
+        nameRows = new Postings();
+        for (int row = 0; row < merged.size; row++) {
+            typeRows.append(merged.types[row] & 0xFF, row);
+            nameRows.append(merged.names[row], row);
+        }
+    }
+
+    @Override
+    public boolean remove(Activity activity) {
+        checkWritable();
+        Columns c = columns;
+        long time = activity.getDate().getTime();
+        int id = activity.getId();
+        int index = -1;
+        for (int row = c.lowerBound(time); row < c.size && c.times[row] == time; row++) {
+            Activity attached = c.attached[row];
+            if (attached == activity || (attached == null && id > 0 && c.ids[row] == id)) {
+                index = row;
+                break;
+            }
+        }
+        if (index < 0) {
+            return false;
+        }
+        Activity attached = c.attached[index];
+        unsaved.remove(attached);
+        if (idIndex != null) {
+            idIndex.remove(attached != null ? attached.getId() : c.ids[index]);
+        }
+        typeRows.remove(c.types[index] & 0xFF, index);
+        nameRows.remove(c.names[index], index);
+        c = forUpdate(0);
+        c.shift(index + 1, c.size - index - 1, -1);
+        c.size--;
+        c.attached[c.size] = null;
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        checkWritable();
+        columns = new Columns(0);
+        names = new Dictionary();
+        types = new Dictionary();
+        nameRows = new Postings();
+        typeRows = new Postings();
+        idIndex = null;
+        unsaved.clear();
+    }
+
+    @Override
+    public List<Activity> getAll() {
+        return range(0, columns.size, false);
+    }
+
+    @Override
+    public Activity findById(int id) {
+        if (id <= 0) {
+            return null;
+        }
+        Columns c = columns;
+        if (readOnly) {
+            for (int row = 0; row < c.size; row++) {
+                if (hasId(c, row, id)) {
+                    return materialize(c, names.values, types.values, row);
+                }
+            }
+            return null;
+        }
+        if (idIndex == null) {
+            idIndex = IdIndex.of(c);
+            unsaved.removeIf(activity -> activity.getId() > 0);
+        }
+        int position = idIndex.find(id);
+        if (position < 0 && indexSaved()) {
+            position = idIndex.find(id);
+        }
+        if (position < 0) {
+            return null;
+        }
+        long time = idIndex.times[position];
+        for (int row = c.lowerBound(time); row < c.size && c.times[row] == time; row++) {
+            if (hasId(c, row, id)) {
+                return materialize(c, names.values, types.values, row);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public List<Activity> getUnsaved() {
+        List<Activity> found = new ArrayList<>();
+        if (unsaved == null) {
+            Columns c = columns;
+            for (int row = 0; row < c.size; row++) {
+                if (c.attached[row] != null && c.attached[row].getId() <= 0) {
+                    found.add(c.attached[row]);
+                }
+            }
+        } else {
+            indexSaved();
+            found.addAll(unsaved);
+        }
+        return Collections.unmodifiableList(found);
+    }
+
+    @Override
+    public List<Activity> getBetween(Date from, Date to) {
+        Columns c = columns;
+        int start = c.lowerBound(from.getTime());
+        int end = c.lowerBound(to.getTime());
+        return range(start, end - start, false);
+    }
+
+    @Override
+    public List<Activity> getByType(String type) {
+        return select(typeRows, types.matching(type));
+    }
+
+    @Override
+    public List<Activity> getByName(String name) {
+        return select(nameRows, names.matching(name));
+    }
+
+    @Override
+    public List<Activity> getLatest(int count) {
+        int size = columns.size;
+        int n = Math.min(Math.max(count, 0), size);
+        return range(size - n, n, true);
+    }
+
+    @Override
+    public ActivityTotals getTotals(Date from, Date to) {
+        Columns c = columns;
+        int start = from == null ? 0 : c.lowerBound(from.getTime());
+        int end = to == null ? c.size : c.lowerBound(to.getTime());
+        double calories = 0;
+        long minutes = 0;
+        for (int row = start; row < end; row++) {
+            calories += c.calories[row];
+            minutes += c.durations[row];
+        }
+        return new ActivityTotals(Math.max(0, end - start), calories, minutes);
+    }
+
+    @Override
+    public ActivityStore snapshot() {
+        if (readOnly) {
+            return this;
+        }
+        // Rows below the current size are never written again while shared
+        return new ColumnarActivityStore(notesLoader, share().header(), names.frozen(), types.frozen(),
+            nameRows.header(), typeRows.header(), true);
+    }
+
+    /**
+     * Bytes held by the columns (capacity, not just the rows in use);
+     * excludes the dictionaries and activities kept as objects
+     */
+    public long getColumnBytes() {
+        return (long) columns.times.length * Columns.BYTES_PER_ROW;
+    }
+
+    // ID index
+
+    private void indexId(Activity activity) {
+        if (activity.getId() <= 0) {
+            unsaved.add(activity); // the ID is assigned when it is saved
+        } else if (idIndex != null) {
+            idIndex.add(activity.getId(), activity.getDate().getTime());
+        }
+    }
+
+    /**
+     * Index rows that were saved since they were added (or just drop them
+     * from unsaved if there is no index yet)
+     *
+     * @return true if any were
+     */
+    private boolean indexSaved() {
+        boolean moved = false;
+        for (Iterator<Activity> it = unsaved.iterator(); it.hasNext(); ) {
+            Activity activity = it.next();
+            if (activity.getId() > 0) {
+                if (idIndex != null) {
+                    idIndex.add(activity.getId(), activity.getDate().getTime());
+                }
+                it.remove();
+                moved = true;
+            }
+        }
+        return moved;
+    }
+
+    private static boolean hasId(Columns c, int row, int id) {
+        Activity attached = c.attached[row];
+        return attached != null ? attached.getId() == id : c.ids[row] == id;
+    }
+
+    // Writing rows
+
+    private void write(Columns c, int row, Activity activity) {
+        Exercise exercise = activity.getExercise();
+        c.times[row] = activity.getDate().getTime();
+        c.ids[row] = activity.getId();
+        c.durations[row] = exercise.getDuration();
+        c.intensities[row] = (byte) exercise.getIntensity();
+        c.types[row] = types.typeCode(exercise.getExerciseType());
+        c.names[row] = names.code(exercise.getName());
+        c.calories[row] = (float) activity.getCaloriesBurned();
+        // Without an ID the row cannot be rebuilt later; keep the object itself
+        c.attached[row] = activity.getId() > 0 ? null : activity;
+    }
+
+    /**
+     * Columns that can take extra rows at the end
+     * Rows past a shared list's size are not visible to it, so appending
+     * does not need a copy.
+     */
+    private Columns forAppend(int extra) {
+        Columns c = columns;
+        if (c.size + extra > c.times.length) {
+            columns = c = c.copy(grow(c.size + extra, c.times.length));
+        }
+        return c;
+    }
+
+    /**
+     * Columns that rows may be moved in: copied if a list still uses them
+     */
+    private Columns forUpdate(int extra) {
+        Columns c = columns;
+        if (c.shared || c.size + extra > c.times.length) {
+            columns = c = c.copy(Math.max(c.times.length, grow(c.size + extra, c.times.length)));
+        }
+        return c;
+    }
+
+    private static int grow(int needed, int capacity) {
+        int target = Math.max(needed, capacity + (capacity >> 1));
+        return (int) Math.min(Integer.MAX_VALUE - CHUNK_ROWS,
+            ((long) target + CHUNK_ROWS - 1) / CHUNK_ROWS * CHUNK_ROWS);
+    }
+
+    // Views
+
+    private List<Activity> range(int start, int count, boolean newestFirst) {
+        if (count <= 0) {
+            return Collections.emptyList();
+        }
+        return new RowList(share(), null, start, count, newestFirst);
+    }
+
+    /**
+     * Rows whose code is one of the given ones: the posting list itself for
+     * one code, the merged lists for several (case variants of a name)
+     */
+    private List<Activity> select(Postings postings, boolean[] codes) {
+        if (codes == null) {
+            return Collections.emptyList();
+        }
+        int[] rows = null;
+        int count = 0;
+        for (int code = 0; code < codes.length && code < postings.counts.length; code++) {
+            int n = postings.counts[code];
+            if (!codes[code] || n == 0) {
+                continue;
+            }
+            if (rows == null) {
+                rows = postings.rows[code];
+                count = n;
+            } else {
+                rows = Postings.merge(rows, count, postings.rows[code], n);
+                count += n;
+            }
+        }
+        if (count == 0) {
+            return Collections.emptyList();
+        }
+        if (!readOnly) {
+            postings.shared = true;
+        }
+        return new RowList(share(), rows, 0, count, false);
+    }
+
+    private Columns share() {
+        if (!readOnly) {
+            columns.shared = true; // a snapshot's columns were marked when it was taken
+        }
+        return columns;
+    }
+
+    private void checkWritable() {
+        if (readOnly) {
+            throw new UnsupportedOperationException("Activity store snapshots are read-only");
+        }
+    }
+
+    /**
+     * Build the Activity for one row
+     */
+    private Activity materialize(Columns c, String[] nameValues, String[] typeValues, int row) {
+        Activity attached = c.attached[row];
+        if (attached != null) {
+            return attached;
+        }
+        Exercise exercise = ExerciseFactory.createExercise(
+            typeValues[c.types[row] & 0xFF], nameValues[c.names[row]], c.durations[row], c.intensities[row]);
+        Activity activity = new Activity(exercise, null, new Date(c.times[row]));
+        int id = c.ids[row];
+        activity.setId(id);
+        if (notesLoader != null) {
+            activity.setNotesLoader(() -> notesLoader.apply(id));
+        }
+        return activity;
+    }
+
+    /**
+     * Immutable list over rows of one version of the columns
+     */
+    private final class RowList extends AbstractList<Activity> implements RandomAccess {
+        private final Columns c;
+        private final String[] nameValues = names.values;
+        private final String[] typeValues = types.values;
+        private final int[] rows; // selected rows, or null for a contiguous range
+        private final int start;
+        private final int count;
+        private final boolean newestFirst;
+
+        RowList(Columns c, int[] rows, int start, int count, boolean newestFirst) {
+            this.c = c;
+            this.rows = rows;
+            this.start = start;
+            this.count = count;
+            this.newestFirst = newestFirst;
+        }
+
+        @Override
+        public Activity get(int index) {
+            if (index < 0 || index >= count) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + count);
+            }
+            int row;
+            if (rows != null) {
+                row = rows[index];
+            } else {
+                row = newestFirst ? start + count - 1 - index : start + index;
+            }
+            return materialize(c, nameValues, typeValues, row);
+        }
+
+        @Override
+        public int size() {
+            return count;
+        }
+    }
+
+    /**
+     * The parallel arrays, sorted by (time, ID)
+     */
+    private static final class Columns {
+        // long + 3 ints + float + 2 bytes + one reference (compressed)
+        static final int BYTES_PER_ROW = 8 + 4 + 4 + 4 + 4 + 1 + 1 + 4;
+
+        final long[] times;
+        final int[] ids;
+        final int[] durations;
+        final byte[] intensities;
+        final byte[] types;
+        final int[] names;
+        final float[] calories;
+        final Activity[] attached; // null unless the row had no ID when added
+        int size;
+        boolean shared; // a RowList reads these arrays
+
+        Columns(int capacity) {
+            times = new long[capacity];
+            ids = new int[capacity];
+            durations = new int[capacity];
+            intensities = new byte[capacity];
+            types = new byte[capacity];
+            names = new int[capacity];
+            calories = new float[capacity];
+            attached = new Activity[capacity];
+        }
+
+        private Columns(Columns from) {
+            times = from.times;
+            ids = from.ids;
+            durations = from.durations;
+            intensities = from.intensities;
+            types = from.types;
+            names = from.names;
+            calories = from.calories;
+            attached = from.attached;
+            size = from.size;
+            shared = true;
+        }
+
+        /**
+         * Same arrays with the size fixed at the current one
+         * (the owner may keep appending past it)
+         */
+        Columns header() {
+            return new Columns(this);
+        }
+
+        Columns copy(int capacity) {
+            Columns copy = new Columns(capacity);
+            System.arraycopy(times, 0, copy.times, 0, size);
+            System.arraycopy(ids, 0, copy.ids, 0, size);
+            System.arraycopy(durations, 0, copy.durations, 0, size);
+            System.arraycopy(intensities, 0, copy.intensities, 0, size);
+            System.arraycopy(types, 0, copy.types, 0, size);
+            System.arraycopy(names, 0, copy.names, 0, size);
+            System.arraycopy(calories, 0, copy.calories, 0, size);
+            System.arraycopy(attached, 0, copy.attached, 0, size);
+            copy.size = size;
+            return copy;
+        }
+
+        void copyRow(int row, Columns from, int fromRow) {
+            times[row] = from.times[fromRow];
+            ids[row] = from.ids[fromRow];
+            durations[row] = from.durations[fromRow];
+            intensities[row] = from.intensities[fromRow];
+            types[row] = from.types[fromRow];
+            names[row] = from.names[fromRow];
+            calories[row] = from.calories[fromRow];
+            attached[row] = from.attached[fromRow];
+        }
+
+        /**
+         * Move count rows starting at from by distance (+1 opens a gap, -1 closes one)
+         */
+        void shift(int from, int count, int distance) {
+            if (count <= 0) {
+                return;
+            }
+            int to = from + distance;
+            System.arraycopy(times, from, times, to, count);
+            System.arraycopy(ids, from, ids, to, count);
+            System.arraycopy(durations, from, durations, to, count);
+            System.arraycopy(intensities, from, intensities, to, count);
+            System.arraycopy(types, from, types, to, count);
+            System.arraycopy(names, from, names, to, count);
+            System.arraycopy(calories, from, calories, to, count);
+            System.arraycopy(attached, from, attached, to, count);
+        }
+
+        /**
+         * First row at or after the given time
+         */
+        int lowerBound(long time) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (times[mid] < time) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * First row after the given time
+         */
+        int upperBound(long time) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (times[mid] <= time) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+
+    /**
+     * The rows of each dictionary code, in ascending order
+     * A list handed out (or a snapshot) reads an array up to the count it
+     * saw. Appending writes past that count, or into a new array when it is
+     * full, so it never needs a copy; moving rows (an insert or removal in
+     * the middle) copies every array first while shared.
+     */
+    private static final class Postings {
+        int[][] rows = new int[0][];
+        int[] counts = new int[0];
+        boolean shared; // a RowList or snapshot reads the arrays
+
+        /**
+         * Same arrays with the counts fixed at the current ones
+         */
+        Postings header() {
+            shared = true;
+            Postings header = new Postings();
+            header.rows = rows.clone();
+            header.counts = counts.clone();
+            header.shared = true;
+            return header;
+        }
+
+        void append(int code, int row) {
+            if (code >= counts.length) {
+                int codes = Math.max(code + 1, counts.length * 2);
+                rows = Arrays.copyOf(rows, codes);
+                counts = Arrays.copyOf(counts, codes);
+            }
+            int[] list = rows[code];
+            int n = counts[code];
+            if (list == null || n == list.length) {
+                list = list == null ? new int[16] : Arrays.copyOf(list, n + (n >> 1));
+                rows[code] = list;
+            }
+            list[n] = row;
+            counts[code] = n + 1;
+        }
+
+        /**
+         * A row was inserted at row; the rows from there on moved up by one
+         */
+        void insert(int code, int row) {
+            shiftFrom(row, 1);
+            append(code, row); // lands at the end; move it to its place
+            int[] list = rows[code];
+            int n = counts[code];
+            int position = lowerBound(list, n - 1, row);
+            System.arraycopy(list, position, list, position + 1, n - 1 - position);
+            list[position] = row;
+        }
+
+        /**
+         * The row at row was removed; the rows after it moved down by one
+         */
+        void remove(int code, int row) {
+            unshare();
+            int[] list = rows[code];
+            int n = counts[code];
+            int position = lowerBound(list, n, row);
+            if (position < n && list[position] == row) {
+                System.arraycopy(list, position + 1, list, position, n - position - 1);
+                counts[code] = n - 1;
+            }
+            shiftFrom(row + 1, -1);
+        }
+
+        private void shiftFrom(int row, int distance) {
+            unshare();
+            for (int code = 0; code < counts.length; code++) {
+                int[] list = rows[code];
+                int n = counts[code];
+                for (int i = lowerBound(list, n, row); i < n; i++) {
+                    list[i] += distance;
+                }
+            }
+        }
+
+        private void unshare() {
+            if (shared) {
+                for (int code = 0; code < counts.length; code++) {
+                    if (rows[code] != null) {
+                        rows[code] = rows[code].clone();
+                    }
+                }
+                shared = false;
+            }
+        }
+
+        private static int lowerBound(int[] list, int n, int row) {
+            if (list == null) {
+                return 0;
+            }
+            int position = Arrays.binarySearch(list, 0, n, row);
+            return position < 0 ? -position - 1 : position;
+        }
+
+        /**
+         * Merge two ascending lists into a new one
+         */
+        static int[] merge(int[] a, int aCount, int[] b, int bCount) {
+            int[] merged = new int[aCount + bCount];
+            int i = 0;
+            int j = 0;
+            int k = 0;
+            while (i < aCount || j < bCount) {
+                merged[k++] = j == bCount || (i < aCount && a[i] < b[j]) ? a[i++] : b[j++];
+            }
+            return merged;
+        }
+    }
+
+    /**
+     * IDs in ascending order, each with the time of its row
+     * New activities usually have the highest ID so far, so adding one is
+     * normally an append. Only used by the store itself, never shared.
+     */
+    private static final class IdIndex {
+        int[] ids = new int[0];
+        long[] times = new long[0];
+        int size;
+
+        /**
+         * Index the rows of a store
+         */
+        static IdIndex of(Columns c) {
+            long[] entries = new long[c.size]; // ID in the high half, row in the low
+            int count = 0;
+            for (int row = 0; row < c.size; row++) {
+                int id = c.attached[row] != null ? c.attached[row].getId() : c.ids[row];
+                if (id > 0) {
+                    entries[count++] = ((long) id << 32) | row;
+                }
+            }
+            Arrays.sort(entries, 0, count);
+            IdIndex index = new IdIndex();
+            index.ensureCapacity(count);
+            for (int i = 0; i < count; i++) {
+                int id = (int) (entries[i] >>> 32);
+                if (index.size == 0 || index.ids[index.size - 1] != id) {
+                    index.ids[index.size] = id;
+                    index.times[index.size++] = c.times[(int) entries[i]];
+                }
+            }
+            return index;
+        }
+
+        /**
+         * Position of an ID, or a negative number if it is not indexed
+         */
+        int find(int id) {
+            return Arrays.binarySearch(ids, 0, size, id);
+        }
+
+        void add(int id, long time) {
+            int position = size == 0 || id > ids[size - 1] ? size : find(id);
+            if (position >= 0 && position < size) {
+                times[position] = time; // already indexed
+                return;
+            }
+            position = position < 0 ? -position - 1 : position;
+            ensureCapacity(size + 1);
+            System.arraycopy(ids, position, ids, position + 1, size - position);
+            System.arraycopy(times, position, times, position + 1, size - position);
+            ids[position] = id;
+            times[position] = time;
+            size++;
+        }
+
+        /**
+         * Add the IDs of a batch in one merge (history pages come in below
+         * the IDs already held)
+         */
+        void addAll(List<Activity> batch) {
+            int count = 0;
+            long[] entries = new long[batch.size()]; // ID in the high half, batch position in the low
+            for (int i = 0; i < batch.size(); i++) {
+                int id = batch.get(i).getId();
+                if (id > 0) {
+                    entries[count++] = ((long) id << 32) | i;
+                }
+            }
+            if (count == 0) {
+                return;
+            }
+            Arrays.sort(entries, 0, count);
+
+            if (size == 0 || (int) (entries[0] >>> 32) > ids[size - 1]) {
+                // All above the IDs held (new activities): append
+                ensureCapacity(size + count);
+                for (int j = 0; j < count; j++) {
+                    int id = (int) (entries[j] >>> 32);
+                    if (size == 0 || ids[size - 1] != id) {
+                        ids[size] = id;
+                        times[size++] = batch.get((int) entries[j]).getDate().getTime();
+                    }
+                }
+                return;
+            }
+            int capacity = size + count > ids.length ? grow(size + count, ids.length) : ids.length;
+            int[] mergedIds = new int[capacity];
+            long[] mergedTimes = new long[mergedIds.length];
+            int merged = 0;
+            int i = 0;
+            int j = 0;
+            while (i < size || j < count) {
+                int batchId = j < count ? (int) (entries[j] >>> 32) : 0;
+                if (j == count || (i < size && ids[i] < batchId)) {
+                    mergedIds[merged] = ids[i];
+                    mergedTimes[merged++] = times[i++];
+                } else {
+                    if (i < size && ids[i] == batchId) {
+                        i++; // held already; the batch has the current time
+                    }
+                    if (merged == 0 || mergedIds[merged - 1] != batchId) {
+                        mergedIds[merged] = batchId;
+                        mergedTimes[merged++] = batch.get((int) entries[j]).getDate().getTime();
+                    }
+                    j++;
+                }
+            }
+            ids = mergedIds;
+            times = mergedTimes;
+            size = merged;
+        }
+
+        void remove(int id) {
+            int position = id > 0 ? find(id) : -1;
+            if (position < 0) {
+                return;
+            }
+            System.arraycopy(ids, position + 1, ids, position, size - position - 1);
+            System.arraycopy(times, position + 1, times, position, size - position - 1);
+            size--;
+        }
+
+        void clear() {
+            ids = new int[0];
+            times = new long[0];
+            size = 0;
+        }
+
+        private void ensureCapacity(int needed) {
+            if (needed > ids.length) {
+                int capacity = grow(needed, ids.length);
+                ids = Arrays.copyOf(ids, capacity);
+                times = Arrays.copyOf(times, capacity);
+            }
+        }
+    }
+
+    /**
+     * Distinct strings and their codes; only grows, so a values array
+     * handed to a RowList stays valid for every code it can meet
+     */
+    private static final class Dictionary {
+        String[] values;
+        int count;
+        private final Map<String, Integer> codes; // null when frozen
+
+        Dictionary() {
+            this(new String[16], 0, new HashMap<>());
+        }
+
+        private Dictionary(String[] values, int count, Map<String, Integer> codes) {
+            this.values = values;
+            this.count = count;
+            this.codes = codes;
+        }
+
+        /**
+         * Read-only copy of the codes so far; later codes are only added
+         * past count, so the values array can be shared
+         */
+        Dictionary frozen() {
+            return new Dictionary(values, count, null);
+        }
+
+        int code(String value) {
+            Integer code = codes.get(value);
+            if (code == null) {
+                if (count == values.length) {
+                    values = Arrays.copyOf(values, count * 2);
+                }
+                values[count] = value;
+                code = count++;
+                codes.put(value, code);
+            }
+            return code;
+        }
+
+        byte typeCode(String value) {
+            int code = code(value);
+            if (code > 0xFF) {
+                throw new IllegalStateException("More than 256 exercise types");
+            }
+            return (byte) code;
+        }
+
+        /**
+         * Codes whose value equals the given one ignoring case, or null if none do
+         */
+        boolean[] matching(String value) {
+            boolean[] matches = null;
+            for (int code = 0; code < count; code++) {
+                String candidate = values[code];
+                if (candidate == null ? value == null : candidate.equalsIgnoreCase(value)) {
+                    if (matches == null) {
+                        matches = new boolean[count];
+                    }
+                    matches[code] = true;
+                }
+            }
+            return matches;
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package com.fitnesstracker.store;
+
+import com.fitnesstracker.model.Activity;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * IndexedActivityStore - Activity objects with a time index and
+ * secondary indexes by exercise type and exercise name
+ *
+ * Every index is an immutable TimeIndex sorted by BY_TIME, so:
+ * - range and latest-N queries are a binary search plus the k rows returned
+ * - type and name queries are a hash lookup
+ * - a change copies one chunk of each index it touches, not the whole list
+ *
+ * getAll(), getByType(), getByName() and getBetween() return views of an
+ * index version, without copying. snapshot() is as cheap: it only copies
+ * the two small maps from key to index. The ID map behind findById() is
+ * built on its first use and is not part of a snapshot.
+ * Not thread-safe; snapshots are.
+ * @version 1.0
+ */
+public class IndexedActivityStore implements ActivityStore {
+
+    private TimeIndex byTime = TimeIndex.EMPTY;
+    private final Map<String, TimeIndex> byType;
+    private final Map<String, TimeIndex> byName;
+    private Map<Integer, Activity> byId;   // built by the first findById(); never in a snapshot
+    private final List<Activity> unsaved; // added without an ID and not in byId; null in a snapshot
+    private final boolean readOnly; // a snapshot
+
+    public IndexedActivityStore() {
+        this(TimeIndex.EMPTY, new HashMap<>(), new HashMap<>(), false);
+    }
+
+    private IndexedActivityStore(TimeIndex byTime, Map<String, TimeIndex> byType,
+                                 Map<String, TimeIndex> byName, boolean readOnly) {
+        this.byTime = byTime;
+        this.byType = byType;
+        this.byName = byName;
+        this.unsaved = readOnly ? null : new ArrayList<>();
+        this.readOnly = readOnly;
+    }
+
+    @Override
+    public int size() {
+        return byTime.size();
+    }
+
+    @Override
+    public void add(Activity activity) {
+        checkWritable();
+        byTime = byTime.add(activity);
+        indexId(activity);
+        byType.put(key(activity.getExerciseType()), index(byType, activity.getExerciseType()).add(activity));
+        byName.put(key(activity.getExercise().getName()), index(byName, activity.getExercise().getName()).add(activity));
+    }
+
+    @Override
+    public void addAll(Collection<Activity> activities) {
+        checkWritable();
+        if (activities.isEmpty()) {
+            return;
+        }
+        byTime = byTime.addAll(activities);
+        Map<String, List<Activity>> types = new HashMap<>();
+        Map<String, List<Activity>> names = new HashMap<>();
+        for (Activity activity : activities) {
+            indexId(activity);
+            types.computeIfAbsent(key(activity.getExerciseType()), k -> new ArrayList<>()).add(activity);
+            names.computeIfAbsent(key(activity.getExercise().getName()), k -> new ArrayList<>()).add(activity);
+        }
+        for (Map.Entry<String, List<Activity>> group : types.entrySet()) {
+            byType.put(group.getKey(), byType.getOrDefault(group.getKey(), TimeIndex.EMPTY).addAll(group.getValue()));
+        }
+        for (Map.Entry<String, List<Activity>> group : names.entrySet()) {
+            byName.put(group.getKey(), byName.getOrDefault(group.getKey(), TimeIndex.EMPTY).addAll(group.getValue()));
+        }
+    }
+
+    @Override
+    public boolean remove(Activity activity) {
+        checkWritable();
+        TimeIndex removed = byTime.remove(activity);
+        if (removed == byTime) {
+            return false;
+        }
+        byTime = removed;
+        if (byId != null && byId.get(activity.getId()) == activity) {
+            byId.remove(activity.getId());
+        }
+        unsaved.remove(activity);
+        removeFrom(byType, activity.getExerciseType(), activity);
+        removeFrom(byName, activity.getExercise().getName(), activity);
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        checkWritable();
+        byTime = TimeIndex.EMPTY;
+        byType.clear();
+        byName.clear();
+        byId = null;
+        unsaved.clear();
+    }
+
+    @Override
+    public List<Activity> getAll() {
+        return byTime.asList();
+    }
+
+    @Override
+    public Activity findById(int id) {
+        if (id <= 0) {
+            return null;
+        }
+        if (readOnly) {
+            for (Activity activity : byTime.asList()) {
+                if (activity.getId() == id) {
+                    return activity;
+                }
+            }
+            return null;
+        }
+        if (byId == null) {
+            byId = new HashMap<>(Math.max(16, byTime.size() * 2));
+            for (Activity activity : byTime.asList()) {
+                if (activity.getId() > 0) {
+                    byId.put(activity.getId(), activity);
+                }
+            }
+            unsaved.removeIf(activity -> activity.getId() > 0);
+        }
+        Activity activity = byId.get(id);
+        if (activity == null && indexSaved()) {
+            activity = byId.get(id);
+        }
+        return activity;
+    }
+
+    @Override
+    public List<Activity> getUnsaved() {
+        if (unsaved == null) {
+            List<Activity> found = new ArrayList<>();
+            for (Activity activity : byTime.asList()) {
+                if (activity.getId() <= 0) {
+                    found.add(activity);
+                }
+            }
+            return Collections.unmodifiableList(found);
+        }
+        indexSaved();
+        return Collections.unmodifiableList(new ArrayList<>(unsaved));
+    }
+
+    @Override
+    public List<Activity> getBetween(Date from, Date to) {
+        TimeIndex index = byTime;
+        int start = index.firstIndexAtOrAfter(from.getTime());
+        int end = index.firstIndexAtOrAfter(to.getTime());
+        if (start >= end) {
+            return Collections.emptyList();
+        }
+        return index.asList().subList(start, end);
+    }
+
+    @Override
+    public List<Activity> getByType(String type) {
+        return index(byType, type).asList();
+    }
+
+    @Override
+    public List<Activity> getByName(String name) {
+        return index(byName, name).asList();
+    }
+
+    @Override
+    public List<Activity> getLatest(int count) {
+        TimeIndex index = byTime;
+        int n = Math.min(Math.max(count, 0), index.size());
+        List<Activity> latest = new ArrayList<>(n);
+        for (int i = index.size() - 1; i >= index.size() - n; i--) {
+            latest.add(index.get(i));
+        }
+        return Collections.unmodifiableList(latest);
+    }
+
+    @Override
+    public ActivityTotals getTotals(Date from, Date to) {
+        TimeIndex index = byTime;
+        int start = from == null ? 0 : index.firstIndexAtOrAfter(from.getTime());
+        int end = to == null ? index.size() : index.firstIndexAtOrAfter(to.getTime());
+        double calories = 0;
+        long minutes = 0;
+        for (int i = start; i < end; i++) {
+            Activity activity = index.get(i);
+            calories += activity.getCaloriesBurned();
+            minutes += activity.getDuration();
+        }
+        return new ActivityTotals(Math.max(0, end - start), calories, minutes);
+    }
+
+    @Override
+    public ActivityStore snapshot() {
+        return new IndexedActivityStore(byTime, new HashMap<>(byType), new HashMap<>(byName), true);
+    }
+
+    // Helpers
+
+    private void checkWritable() {
+        if (readOnly) {
+            throw new UnsupportedOperationException("Activity store snapshots are read-only");
+        }
+    }
+
+    private void indexId(Activity activity) {
+        if (activity.getId() <= 0) {
+            unsaved.add(activity); // the ID is assigned when it is saved
+        } else if (byId != null) {
+            byId.put(activity.getId(), activity);
+        }
+    }
+
+    /**
+     * Move activities that were saved since they were added into the ID map
+     * (or just drop them from unsaved if there is no map yet)
+     *
+     * @return true if any were
+     */
+    private boolean indexSaved() {
+        boolean moved = false;
+        for (Iterator<Activity> it = unsaved.iterator(); it.hasNext(); ) {
+            Activity activity = it.next();
+            if (activity.getId() > 0) {
+                if (byId != null) {
+                    byId.put(activity.getId(), activity);
+                }
+                it.remove();
+                moved = true;
+            }
+        }
+        return moved;
+    }
+
+    private static String key(String value) {
+        return value == null ? "" : value.toLowerCase(Locale.ROOT);
+    }
+
+    private static TimeIndex index(Map<String, TimeIndex> indexes, String value) {
+        return indexes.getOrDefault(key(value), TimeIndex.EMPTY);
+    }
+
+    private static void removeFrom(Map<String, TimeIndex> indexes, String value, Activity activity) {
+        String key = key(value);
+        TimeIndex index = indexes.get(key);
+        if (index == null) {
+            return;
+        }
+        TimeIndex removed = index.remove(activity);
+        if (removed.size() == 0) {
+            indexes.remove(key);
+        } else {
+            indexes.put(key, removed);
+        }
+    }
+}
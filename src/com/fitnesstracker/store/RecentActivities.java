@@ -0,0 +1,123 @@
+package com.fitnesstracker.store;
+
+import com.fitnesstracker.model.Activity;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * RecentActivities - The newest few activities in a fixed-size ring
+ *
+ * Adding the newest activity overwrites the oldest slot, so the usual
+ * case is O(1). An activity older than the newest is moved into place and
+ * one older than everything held (when full) is ignored. After a held
+ * activity is removed the ring is one short; refill it with reset().
+ * Not thread-safe; ActivityTracker changes it under its write lock. The
+ * lists returned by getAll() are immutable and can be shared.
+ * @version 1.0
+ */
+public class RecentActivities {
+
+    private final Activity[] ring;
+    private int head; // slot of the newest activity
+    private int size;
+    private List<Activity> snapshot;
+
+    public RecentActivities(int capacity) {
+        this.ring = new Activity[Math.max(1, capacity)];
+    }
+
+    public int getCapacity() {
+        return ring.length;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void offer(Activity activity) {
+        int capacity = ring.length;
+        if (size == capacity && ActivityStore.BY_TIME.compare(activity, get(size - 1)) < 0) {
+            return; // older than everything held
+        }
+        if (size == 0 || ActivityStore.BY_TIME.compare(activity, get(0)) >= 0) {
+            head = (head + capacity - 1) % capacity; // overwrites the oldest when full
+            ring[head] = activity;
+            if (size < capacity) {
+                size++;
+            }
+        } else {
+            int position = size < capacity ? size++ : capacity - 1;
+            while (position > 0 && ActivityStore.BY_TIME.compare(get(position - 1), activity) < 0) {
+                set(position, get(position - 1));
+                position--;
+            }
+            set(position, activity);
+        }
+        snapshot = null;
+    }
+
+    /**
+     * Remove an activity (the same object, or the same ID once saved)
+     *
+     * @return true if it was held
+     */
+    public boolean remove(Activity activity) {
+        for (int i = 0; i < size; i++) {
+            Activity held = get(i);
+            if (held == activity || (activity.getId() > 0 && held.getId() == activity.getId())) {
+                for (int j = i; j < size - 1; j++) {
+                    set(j, get(j + 1));
+                }
+                set(--size, null);
+                snapshot = null;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Replace the contents
+     *
+     * @param newestFirst the newest activities, newest first
+     */
+    public void reset(List<Activity> newestFirst) {
+        clear();
+        int n = Math.min(ring.length, newestFirst.size());
+        for (int i = 0; i < n; i++) {
+            ring[i] = newestFirst.get(i);
+        }
+        size = n;
+    }
+
+    public void clear() {
+        Arrays.fill(ring, null);
+        head = 0;
+        size = 0;
+        snapshot = null;
+    }
+
+    /**
+     * The activities held, newest first (immutable, shared until the next change)
+     */
+    public List<Activity> getAll() {
+        if (snapshot == null) {
+            List<Activity> list = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                list.add(get(i));
+            }
+            snapshot = Collections.unmodifiableList(list);
+        }
+        return snapshot;
+    }
+
+    private Activity get(int position) {
+        return ring[(head + position) % ring.length];
+    }
+
+    private void set(int position, Activity activity) {
+        ring[(head + position) % ring.length] = activity;
+    }
+}
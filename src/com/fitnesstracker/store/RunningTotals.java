@@ -0,0 +1,107 @@
+package com.fitnesstracker.store;
+
+import com.fitnesstracker.model.Activity;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * RunningTotals - Count, calories and minutes kept up to date on every change
+ *
+ * Overall and per exercise type. The owner calls added(), removed() and
+ * clear() alongside each change to its activities; reading is O(1) and
+ * never copies or scans them.
+ * Not thread-safe; ActivityTracker changes it under its write lock and
+ * gives readers a copy().
+ * @version 1.0
+ */
+public class RunningTotals {
+
+    private ActivityTotals overall = ActivityTotals.EMPTY;
+    private final Map<String, ActivityTotals> byType = new HashMap<>();
+
+    /**
+     * A copy that does not change with this one
+     */
+    public RunningTotals copy() {
+        RunningTotals copy = new RunningTotals();
+        copy.overall = overall;
+        copy.byType.putAll(byType);
+        return copy;
+    }
+
+    public void added(Activity activity) {
+        adjust(activity, 1);
+    }
+
+    public void removed(Activity activity) {
+        adjust(activity, -1);
+    }
+
+    public void clear() {
+        overall = ActivityTotals.EMPTY;
+        byType.clear();
+    }
+
+    /**
+     * Start again from totals computed elsewhere (e.g. the database rollup),
+     * for when not every activity is held
+     *
+     * @param totalsByType totals per exercise type; the overall total is their sum
+     */
+    public void reset(Map<String, ActivityTotals> totalsByType) {
+        clear();
+        int count = 0;
+        double calories = 0;
+        long minutes = 0;
+        for (Map.Entry<String, ActivityTotals> entry : totalsByType.entrySet()) {
+            ActivityTotals totals = entry.getValue();
+            if (totals.getCount() > 0) {
+                byType.merge(key(entry.getKey()), totals, (a, b) -> new ActivityTotals(a.getCount() + b.getCount(),
+                    a.getCalories() + b.getCalories(), a.getMinutes() + b.getMinutes()));
+                count += totals.getCount();
+                calories += totals.getCalories();
+                minutes += totals.getMinutes();
+            }
+        }
+        overall = count == 0 ? ActivityTotals.EMPTY : new ActivityTotals(count, calories, minutes);
+    }
+
+    /**
+     * Totals over every activity
+     */
+    public ActivityTotals get() {
+        return overall;
+    }
+
+    /**
+     * Totals for one exercise type (ignoring case)
+     */
+    public ActivityTotals get(String type) {
+        ActivityTotals totals = byType.get(key(type));
+        return totals != null ? totals : ActivityTotals.EMPTY;
+    }
+
+    /**
+     * Totals per exercise type, keyed by upper case type
+     */
+    public Map<String, ActivityTotals> getByType() {
+        return Collections.unmodifiableMap(new HashMap<>(byType));
+    }
+
+    private void adjust(Activity activity, int sign) {
+        overall = overall.adjust(activity, sign);
+        String type = key(activity.getExerciseType());
+        ActivityTotals totals = get(type).adjust(activity, sign);
+        if (totals.getCount() == 0) {
+            byType.remove(type);
+        } else {
+            byType.put(type, totals);
+        }
+    }
+
+    private static String key(String type) {
+        return type == null ? "" : type.toUpperCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,236 @@
+package com.fitnesstracker.store;
+
+import com.fitnesstracker.model.Activity;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * TimeIndex - Immutable list of activities sorted by BY_TIME
+ *
+ * The activities are split into chunks of up to 2 * CHUNK_SIZE. add() and
+ * remove() return a new index that shares every chunk but the one that
+ * changed, so a change copies one chunk plus the chunk table instead of
+ * the whole list, and any version can be read from any thread.
+ * @version 1.0
+ */
+final class TimeIndex {
+
+    static final int CHUNK_SIZE = 512;
+
+    /** Batches up to this size are added one by one; larger ones rebuild the index */
+    private static final int INCREMENTAL_BATCH = 64;
+
+    static final TimeIndex EMPTY = new TimeIndex(new Activity[0][], new int[0], 0);
+
+    private final Activity[][] chunks;
+    private final int[] starts; // position of the first activity of each chunk
+    private final int size;
+    private final List<Activity> list = new View();
+
+    private TimeIndex(Activity[][] chunks, int[] starts, int size) {
+        this.chunks = chunks;
+        this.starts = starts;
+        this.size = size;
+    }
+
+    /**
+     * Build an index from activities already sorted by BY_TIME
+     */
+    static TimeIndex of(List<Activity> sorted) {
+        int size = sorted.size();
+        if (size == 0) {
+            return EMPTY;
+        }
+        int count = (size + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        Activity[][] chunks = new Activity[count][];
+        int[] starts = new int[count];
+        for (int c = 0; c < count; c++) {
+            int from = c * CHUNK_SIZE;
+            int to = Math.min(size, from + CHUNK_SIZE);
+            chunks[c] = sorted.subList(from, to).toArray(new Activity[to - from]);
+            starts[c] = from;
+        }
+        return new TimeIndex(chunks, starts, size);
+    }
+
+    int size() {
+        return size;
+    }
+
+    Activity get(int index) {
+        int c = chunkOf(index);
+        return chunks[c][index - starts[c]];
+    }
+
+    /**
+     * The activities as an immutable list (the same object for this version)
+     */
+    List<Activity> asList() {
+        return list;
+    }
+
+    TimeIndex add(Activity activity) {
+        if (size == 0) {
+            return new TimeIndex(new Activity[][]{{activity}}, new int[]{0}, 1);
+        }
+        int position = upperBound(activity);
+        int c = position == size ? chunks.length - 1 : chunkOf(position);
+        Activity[] old = chunks[c];
+        int offset = position - starts[c];
+        Activity[] grown = new Activity[old.length + 1];
+        System.arraycopy(old, 0, grown, 0, offset);
+        grown[offset] = activity;
+        System.arraycopy(old, offset, grown, offset + 1, old.length - offset);
+
+        if (grown.length <= 2 * CHUNK_SIZE) {
+            return replace(c, new Activity[][]{grown}, 1);
+        }
+        int half = grown.length / 2;
+        return replace(c, new Activity[][]{
+            Arrays.copyOfRange(grown, 0, half), Arrays.copyOfRange(grown, half, grown.length)}, 1);
+    }
+
+    TimeIndex addAll(Collection<Activity> activities) {
+        if (activities.isEmpty()) {
+            return this;
+        }
+        if (activities.size() <= INCREMENTAL_BATCH) {
+            TimeIndex index = this;
+            for (Activity activity : activities) {
+                index = index.add(activity);
+            }
+            return index;
+        }
+        List<Activity> merged = new ArrayList<>(size + activities.size());
+        merged.addAll(list);
+        int oldSize = merged.size();
+        merged.addAll(activities);
+        // Only re-sort when the new rows are not already in order after the old ones
+        // (TimSort handles a newest-first batch in linear time)
+        for (int i = Math.max(oldSize, 1); i < merged.size(); i++) {
+            if (ActivityStore.BY_TIME.compare(merged.get(i - 1), merged.get(i)) > 0) {
+                merged.sort(ActivityStore.BY_TIME);
+                break;
+            }
+        }
+        return of(merged);
+    }
+
+    /**
+     * This index without the given activity (the same object)
+     *
+     * @return the new index, or this index if the activity is not in it
+     */
+    TimeIndex remove(Activity activity) {
+        int index = indexOf(activity);
+        if (index < 0) {
+            return this;
+        }
+        int c = chunkOf(index);
+        Activity[] old = chunks[c];
+        if (old.length == 1) {
+            return replace(c, new Activity[0][], -1);
+        }
+        int offset = index - starts[c];
+        Activity[] shrunk = new Activity[old.length - 1];
+        System.arraycopy(old, 0, shrunk, 0, offset);
+        System.arraycopy(old, offset + 1, shrunk, offset, old.length - offset - 1);
+        return replace(c, new Activity[][]{shrunk}, -1);
+    }
+
+    /**
+     * Index of the first activity at or after the given time
+     */
+    int firstIndexAtOrAfter(long timeMillis) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (get(mid).getDate().getTime() < timeMillis) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Helpers
+
+    private int indexOf(Activity activity) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (ActivityStore.BY_TIME.compare(get(mid), activity) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low < size && get(low) == activity ? low : -1; // the key is unique to the object
+    }
+
+    private int upperBound(Activity activity) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (ActivityStore.BY_TIME.compare(get(mid), activity) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int chunkOf(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        int c = Arrays.binarySearch(starts, index);
+        return c >= 0 ? c : -c - 2;
+    }
+
+    /**
+     * New index with chunk c replaced by the given chunks
+     *
+     * @param sizeChange activities added (+1) or removed (-1)
+     */
+    private TimeIndex replace(int c, Activity[][] replacement, int sizeChange) {
+        int count = chunks.length - 1 + replacement.length;
+        Activity[][] newChunks = new Activity[count][];
+        System.arraycopy(chunks, 0, newChunks, 0, c);
+        System.arraycopy(replacement, 0, newChunks, c, replacement.length);
+        System.arraycopy(chunks, c + 1, newChunks, c + replacement.length, chunks.length - c - 1);
+
+        int[] newStarts = new int[count];
+        System.arraycopy(starts, 0, newStarts, 0, c);
+        int start = c < starts.length ? starts[c] : size;
+        for (int i = c; i < count; i++) {
+            newStarts[i] = start;
+            start += newChunks[i].length;
+        }
+        return new TimeIndex(newChunks, newStarts, size + sizeChange);
+    }
+
+    /**
+     * Read-only list over this version
+     */
+    private final class View extends AbstractList<Activity> implements RandomAccess {
+        @Override
+        public Activity get(int index) {
+            return TimeIndex.this.get(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package com.fitnesstracker.sync;
+
+import com.fitnesstracker.database.ChangeFeedDAO;
+import com.fitnesstracker.database.ChangeSet;
+import com.fitnesstracker.database.DataAccessException;
+import com.fitnesstracker.database.DatabaseConfig;
+import com.fitnesstracker.database.DatabaseManager;
+import com.fitnesstracker.database.RowChange;
+import com.fitnesstracker.model.Activity;
+import com.fitnesstracker.model.FitnessGoal;
+import com.fitnesstracker.singleton.ActivityTracker;
+import com.fitnesstracker.singleton.GoalManagementSystem;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.swing.SwingUtilities;
+
+/**
+ * ChangeFeedSynchronizer - Keeps ActivityTracker and GoalManagementSystem
+ * in step with writes made by other instances
+ *
+ * Purpose: Several kiosks share one database; each should show what the
+ * others record without reloading everything.
+ *
+ * How it works:
+ * - On start the current row version is read BEFORE the trackers load,
+ *   so nothing written during the load is missed (it may be seen twice)
+ * - A background thread polls ChangeFeedDAO for versions above the last
+ *   one read and applies them on the EDT; each tracker notifies its
+ *   observers once per poll
+ * - Versions are taken at write time but become visible at commit, so a
+ *   slow transaction can show up below the last version read. Each poll
+ *   also re-reads the versions read during the last fitness.sync.lookbackMs
+ *   (a little at a time if there are many) to pick those rows up
+ * - Applying a change twice has no effect; deletions already applied are
+ *   remembered so a re-read clear-all does not clear the list again
+ *
+ * Enable with fitness.sync.enabled=true.
+ * @version 1.0
+ */
+public class ChangeFeedSynchronizer {
+
+    private static ChangeFeedSynchronizer instance;
+
+    private final ChangeFeedDAO changeFeed;
+    private final long intervalMillis;
+    private final long lookbackMillis;
+    private final int maxRows;
+
+    private ScheduledExecutorService scheduler;
+    private ActivityTracker activityTracker;
+    private GoalManagementSystem goalSystem;
+
+    // Poll state, only touched by the polling thread
+    private volatile long lastVersion;                 // everything up to here was read once
+    private final Deque<long[]> readHistory = new ArrayDeque<>(); // {time, lastVersion} per poll
+    private long sweepPosition;                        // progress of a lookback re-read
+    private final TreeSet<Long> appliedDeletions = new TreeSet<>();
+
+    private volatile long pollCount;
+    private volatile long changesApplied;
+
+    private ChangeFeedSynchronizer(DatabaseConfig config) {
+        this.changeFeed = new ChangeFeedDAO();
+        this.intervalMillis = config.getLong(DatabaseConfig.SYNC_INTERVAL_MS, 2000L);
+        this.lookbackMillis = config.getLong(DatabaseConfig.SYNC_LOOKBACK_MS, 30000L);
+        this.maxRows = config.getInt(DatabaseConfig.SYNC_MAX_ROWS, 5000);
+    }
+
+    /**
+     * Start syncing if fitness.sync.enabled is set
+     * Call before ActivityTracker and GoalManagementSystem are first used.
+     *
+     * @return the running synchronizer, or null if sync is disabled or failed to start
+     */
+    public static synchronized ChangeFeedSynchronizer startIfEnabled() {
+        DatabaseConfig config = DatabaseManager.getInstance().getConfig();
+        if (instance != null || !config.getBoolean(DatabaseConfig.SYNC_ENABLED, false)) {
+            return instance;
+        }
+        ChangeFeedSynchronizer synchronizer = new ChangeFeedSynchronizer(config);
+        if (synchronizer.start()) {
+            instance = synchronizer;
+        }
+        return instance;
+    }
+
+    /**
+     * The running synchronizer, or null
+     */
+    public static synchronized ChangeFeedSynchronizer getInstance() {
+        return instance;
+    }
+
+    private boolean start() {
+        try {
+            lastVersion = changeFeed.getCurrentVersion();
+        } catch (DataAccessException e) {
+            System.err.println(" Change feed unavailable, sync disabled: " + e.getMessage());
+            return false;
+        }
+        readHistory.addLast(new long[]{System.currentTimeMillis(), lastVersion});
+
+        // Load after the version was read
+        activityTracker = ActivityTracker.getInstance();
+        goalSystem = GoalManagementSystem.getInstance();
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "change-feed-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::poll, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        System.out.println(" Change feed sync started at version " + lastVersion +
+            " (every " + intervalMillis + " ms, lookback " + lookbackMillis + " ms)");
+        return true;
+    }
+
+    /**
+     * Stop polling
+     */
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /** Highest row version read so far */
+    public long getLastVersion() {
+        return lastVersion;
+    }
+
+    public long getPollCount() {
+        return pollCount;
+    }
+
+    /** Changes handed to the trackers (including ones that turned out to be duplicates) */
+    public long getChangesApplied() {
+        return changesApplied;
+    }
+
+    /**
+     * One poll: read new changes (all of them, in chunks of maxRows), plus
+     * one chunk of the lookback window, and apply them
+     */
+    void poll() {
+        try {
+            long now = System.currentTimeMillis();
+            ChangeSet late = readLookback(now);
+            if (late != null) {
+                apply(late);
+            }
+
+            ChangeSet fresh;
+            do {
+                fresh = changeFeed.readChanges(lastVersion, Long.MAX_VALUE, maxRows);
+                apply(fresh);
+                lastVersion = fresh.getLastVersion();
+            } while (fresh.isTruncated() && !Thread.currentThread().isInterrupted());
+
+            readHistory.addLast(new long[]{now, lastVersion});
+            pollCount++;
+        } catch (DataAccessException e) {
+            System.err.println(" Change feed poll failed: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            // Keep the scheduled task alive
+            System.err.println(" Change feed poll failed: " + e);
+        }
+    }
+
+    /**
+     * Re-read part of the versions read during the lookback window
+     *
+     * @return the re-read changes, or null if there is nothing to re-read
+     */
+    private ChangeSet readLookback(long now) {
+        // Oldest version still inside the window: the last one read at or before now - lookback
+        long cutoff = now - lookbackMillis;
+        long[] oldest = readHistory.pollFirst();
+        while (!readHistory.isEmpty() && readHistory.peekFirst()[0] <= cutoff) {
+            oldest = readHistory.pollFirst();
+        }
+        readHistory.addFirst(oldest);
+        long floor = oldest[1];
+        appliedDeletions.headSet(floor, true).clear();
+        if (floor >= lastVersion) {
+            return null;
+        }
+
+        long from = Math.max(floor, sweepPosition);
+        ChangeSet late = changeFeed.readChanges(from, lastVersion, maxRows);
+        sweepPosition = late.isTruncated() ? late.getLastVersion() : 0;
+        return late;
+    }
+
+    private void apply(ChangeSet changes) throws InterruptedException {
+        if (changes.isEmpty()) {
+            return;
+        }
+        List<RowChange<Activity>> activityChanges = withoutAppliedDeletions(changes.getActivityChanges());
+        List<RowChange<FitnessGoal>> goalChanges = withoutAppliedDeletions(changes.getGoalChanges());
+        if (activityChanges.isEmpty() && goalChanges.isEmpty()) {
+            return;
+        }
+
+        // Wait for the EDT so polls apply in order and at most one set is held
+        try {
+            SwingUtilities.invokeAndWait(() -> {
+                if (!activityChanges.isEmpty()) {
+                    activityTracker.applyChanges(activityChanges);
+                }
+                if (!goalChanges.isEmpty()) {
+                    goalSystem.applyChanges(goalChanges);
+                }
+            });
+        } catch (InvocationTargetException e) {
+            System.err.println(" Error applying changes: " + e.getCause());
+        }
+        changesApplied += activityChanges.size() + goalChanges.size();
+    }
+
+    private <T> List<RowChange<T>> withoutAppliedDeletions(List<RowChange<T>> changes) {
+        List<RowChange<T>> remaining = new ArrayList<>(changes.size());
+        for (RowChange<T> change : changes) {
+            if (!change.isDeletion() || appliedDeletions.add(change.getVersion())) {
+                remaining.add(change);
+            }
+        }
+        return remaining;
+    }
+}
@@ -0,0 +1,358 @@
+package com.fitnesstracker.transfer;
+
+import com.fitnesstracker.database.ActivityDAO;
+import com.fitnesstracker.database.BatchResult;
+import com.fitnesstracker.factory.ExerciseFactory;
+import com.fitnesstracker.model.Activity;
+import com.fitnesstracker.model.Exercise;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * ActivityImporter - Streaming bulk import of activities from CSV or NDJSON
+ *
+ * Purpose: Brings in history from spreadsheets and other trackers without
+ * typing it into ActivityLogPanel one row at a time.
+ *
+ * How it works:
+ * - The file is read line by line from a FileChannel; only the current
+ *   transaction's rows are held in memory, whatever the file size
+ * - Every row goes through ExerciseFactory, so invalid types, names,
+ *   durations and intensities are rejected exactly as in the UI
+ * - Rows are written with ActivityDAO.saveActivities, one transaction per
+ *   fitness.import.batchSize rows
+ * - After each commit a checkpoint (byte offset and counts) is saved next
+ *   to the file; a resumed import continues after the last committed line
+ * - Each row gets a ClientRef derived from the file and its line number;
+ *   a resumed import skips rows of its first transaction that are already
+ *   saved (committed before the checkpoint could be written)
+ * - Bad lines are reported with their line number and do not stop the import
+ *
+ * Fields (names are case-insensitive):
+ * type, name, duration, date (required); intensity, notes (optional).
+ * date is yyyy-MM-dd, yyyy-MM-dd HH:mm[:ss], yyyy-MM-ddTHH:mm[:ss]
+ * in local time, or epoch milliseconds. Other fields (e.g. id or
+ * calories from an export) are ignored; calories are recalculated.
+ * @version 1.0
+ */
+public class ActivityImporter {
+
+    /**
+     * Supported file formats
+     */
+    public enum Format {
+        CSV,
+        NDJSON;
+
+        /**
+         * Pick the format from a file extension (.csv, .ndjson, .jsonl, .json)
+         *
+         * @throws IllegalArgumentException for other extensions
+         */
+        public static Format fromFileName(String fileName) {
+            String name = fileName.toLowerCase(Locale.ROOT);
+            if (name.endsWith(".csv")) {
+                return CSV;
+            }
+            if (name.endsWith(".ndjson") || name.endsWith(".jsonl") || name.endsWith(".json")) {
+                return NDJSON;
+            }
+            throw new IllegalArgumentException("Unknown import format for " + fileName +
+                " (expected .csv, .ndjson or .jsonl)");
+        }
+    }
+
+    /**
+     * Receives progress after every committed transaction
+     * Called on the importing thread.
+     */
+    public interface ProgressListener {
+        void onProgress(long bytesRead, long totalBytes, long imported, long failed);
+    }
+
+    private final ActivityDAO activityDAO;
+    private final int transactionSize;
+    private volatile boolean cancelled;
+
+    /**
+     * @param activityDAO DAO used for the batched inserts
+     * @param transactionSize rows committed per transaction (and per checkpoint)
+     */
+    public ActivityImporter(ActivityDAO activityDAO, int transactionSize) {
+        if (transactionSize <= 0) {
+            throw new IllegalArgumentException("Transaction size must be positive");
+        }
+        this.activityDAO = activityDAO;
+        this.transactionSize = transactionSize;
+    }
+
+    /**
+     * Stop after the current transaction; the import can be resumed later
+     * Safe to call from any thread.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Where the checkpoint for a source file is kept
+     */
+    public static Path checkpointPathFor(Path file) {
+        return file.resolveSibling(file.getFileName() + ".checkpoint");
+    }
+
+    /**
+     * Import a file
+     *
+     * @param file the CSV or NDJSON file
+     * @param format the file format
+     * @param resume true to continue from an existing checkpoint, false to start over
+     * @param listener progress callback (may be null)
+     * @return counts and line errors
+     * @throws IOException if the file cannot be read or the checkpoint cannot be written
+     */
+    public ImportResult importFile(Path file, Format format, boolean resume, ProgressListener listener)
+            throws IOException {
+        long start = System.nanoTime();
+        cancelled = false;
+        ImportResult result = new ImportResult();
+
+        long size = Files.size(file);
+        long modified = Files.getLastModifiedTime(file).toMillis();
+        Path checkpointPath = checkpointPathFor(file);
+
+        ImportCheckpoint checkpoint = resume ? ImportCheckpoint.load(checkpointPath) : null;
+        if (checkpoint != null && !checkpoint.matches(size, modified)) {
+            System.err.println(" Import checkpoint does not match " + file.getFileName() +
+                " (file changed); starting from the beginning");
+            checkpoint = null;
+        }
+        if (checkpoint != null) {
+            result.restore(checkpoint);
+            System.out.println(" Resuming import of " + file.getFileName() + " at line " +
+                result.getResumedFromLine());
+        }
+
+        RecordParser parser = RecordParser.forFormat(format);
+        List<Activity> batch = new ArrayList<>(transactionSize);
+        long[] batchLines = new long[transactionSize];
+        String fileRef = file.getFileName() + ":" + size + ":" + modified;
+        // Only the transaction after the checkpoint can have been committed already
+        boolean skipSaved = resume;
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            LineReader reader = new LineReader(channel, 0);
+            long lineNumber = 0;
+            if (parser.hasHeader()) {
+                String header = reader.readLine();
+                if (header == null) {
+                    result.setCompleted(true);
+                    return result;
+                }
+                parser.readHeader(header);
+                lineNumber = 1;
+            }
+            if (checkpoint != null) {
+                reader = new LineReader(channel, checkpoint.offset);
+                lineNumber = checkpoint.lineNumber;
+            }
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                try {
+                    Activity activity = toActivity(parser.parse(line));
+                    activity.setClientRef(clientRefFor(fileRef, lineNumber));
+                    batch.add(activity);
+                    batchLines[batch.size() - 1] = lineNumber;
+                } catch (IllegalArgumentException | IllegalStateException e) {
+                    result.addError(lineNumber, e.getMessage());
+                }
+
+                if (batch.size() == transactionSize) {
+                    if (!commit(batch, batchLines, skipSaved, result)) {
+                        return stop(result, lineNumber, start, "database write failed at line " + lineNumber);
+                    }
+                    skipSaved = false;
+                    saveCheckpoint(checkpointPath, reader, lineNumber, result, size, modified, listener);
+                    if (cancelled) {
+                        return stop(result, lineNumber, start, "cancelled");
+                    }
+                }
+            }
+
+            if (!batch.isEmpty() && !commit(batch, batchLines, skipSaved, result)) {
+                return stop(result, lineNumber, start, "database write failed at line " + lineNumber);
+            }
+            result.setLinesRead(lineNumber);
+            if (listener != null) {
+                listener.onProgress(size, size, result.getImportedCount(), result.getFailedCount());
+            }
+        }
+
+        Files.deleteIfExists(checkpointPath);
+        result.setCompleted(true);
+        result.setElapsedNanos(System.nanoTime() - start);
+        System.out.println(" Import of " + file.getFileName() + ": " + result);
+        return result;
+    }
+
+    /**
+     * Write one transaction; rows rejected by the database become line errors
+     *
+     * @param skipSaved true to leave out rows already saved by an interrupted run
+     * @return false if the whole transaction was rolled back
+     */
+    private boolean commit(List<Activity> batch, long[] batchLines, boolean skipSaved, ImportResult result) {
+        List<Activity> rows = batch;
+        long[] rowLines = batchLines;
+        if (skipSaved) {
+            Map<String, Integer> existing;
+            try {
+                List<String> refs = new ArrayList<>(batch.size());
+                for (Activity activity : batch) {
+                    refs.add(activity.getClientRef());
+                }
+                existing = activityDAO.findIdsByClientRef(refs);
+            } catch (SQLException e) {
+                System.err.println("Error checking imported activities: " + e.getMessage());
+                return false;
+            }
+            if (!existing.isEmpty()) {
+                rows = new ArrayList<>(batch.size());
+                rowLines = new long[batch.size()];
+                for (int i = 0; i < batch.size(); i++) {
+                    if (!existing.containsKey(batch.get(i).getClientRef())) {
+                        rowLines[rows.size()] = batchLines[i];
+                        rows.add(batch.get(i));
+                    }
+                }
+                // Committed by the interrupted run but not yet in its checkpoint
+                result.addImported(existing.size());
+                System.out.println(" Skipped " + existing.size() + " rows saved before the import was interrupted");
+            }
+        }
+
+        if (!rows.isEmpty()) {
+            BatchResult<Activity> saved = activityDAO.saveActivities(rows);
+            if (saved.isRolledBack()) {
+                return false;
+            }
+            result.addImported(saved.getSucceededCount());
+            for (BatchResult.RowFailure<Activity> failure : saved.getFailures()) {
+                result.addError(rowLines[failure.getIndex()], failure.getMessage());
+            }
+        }
+        batch.clear();
+        return true;
+    }
+
+    /**
+     * ClientRef of an imported row: the same file and line always give the
+     * same reference, so the unique index on ClientRef rejects a second copy
+     *
+     * @param fileRef name, size and modification time of the file
+     */
+    static String clientRefFor(String fileRef, long lineNumber) {
+        return UUID.nameUUIDFromBytes((fileRef + "#" + lineNumber).getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    private void saveCheckpoint(Path path, LineReader reader, long lineNumber, ImportResult result,
+                                long size, long modified, ProgressListener listener) throws IOException {
+        new ImportCheckpoint(reader.getOffset(), lineNumber, result.getImportedCount(),
+            result.getFailedCount(), size, modified).save(path);
+        if (listener != null) {
+            listener.onProgress(reader.getOffset(), size, result.getImportedCount(), result.getFailedCount());
+        }
+    }
+
+    private ImportResult stop(ImportResult result, long lineNumber, long start, String reason) {
+        result.setLinesRead(lineNumber);
+        result.setStopReason(reason);
+        result.setElapsedNanos(System.nanoTime() - start);
+        System.err.println(" Import stopped: " + reason);
+        return result;
+    }
+
+    /**
+     * Validate a record and build the Activity
+     *
+     * @throws IllegalArgumentException if a field is missing or invalid
+     */
+    static Activity toActivity(Map<String, String> record) {
+        String type = field(record, "type", "exercisetype");
+        String name = field(record, "name", "exercisename");
+        String duration = field(record, "duration", null);
+        String date = field(record, "date", "activitydate");
+        if (type == null || name == null || duration == null || date == null) {
+            throw new IllegalArgumentException("Missing required field (type, name, duration and date are required)");
+        }
+
+        String intensity = field(record, "intensity", null);
+        Exercise exercise = intensity == null
+            ? ExerciseFactory.createExercise(type, name, parseInt("duration", duration))
+            : ExerciseFactory.createExercise(type, name, parseInt("duration", duration),
+                parseInt("intensity", intensity));
+
+        String notes = field(record, "notes", null);
+        return new Activity(exercise, notes == null ? "" : notes, parseDate(date));
+    }
+
+    private static String field(Map<String, String> record, String name, String alias) {
+        String value = record.get(name);
+        if (value == null && alias != null) {
+            value = record.get(alias);
+        }
+        return value == null || value.trim().isEmpty() ? null : value.trim();
+    }
+
+    private static int parseInt(String field, String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            try {
+                // Spreadsheets like to write 30 as 30.0
+                double number = Double.parseDouble(value);
+                if (number == Math.rint(number) && Math.abs(number) <= Integer.MAX_VALUE) {
+                    return (int) number;
+                }
+            } catch (NumberFormatException ignored) {
+                // reported below
+            }
+            throw new IllegalArgumentException("Invalid " + field + ": " + value);
+        }
+    }
+
+    static Date parseDate(String value) {
+        try {
+            if (value.chars().allMatch(Character::isDigit)) {
+                return new Date(Long.parseLong(value));
+            }
+            if (value.length() == 10) {
+                return Date.from(LocalDate.parse(value).atStartOfDay(ZoneId.systemDefault()).toInstant());
+            }
+            LocalDateTime dateTime = LocalDateTime.parse(value.replace(' ', 'T'));
+            return Date.from(dateTime.atZone(ZoneId.systemDefault()).toInstant());
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid date: " + value);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.fitnesstracker.transfer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * ChannelWriter - Buffered text and binary output to a byte channel
+ *
+ * Everything goes through one direct buffer and one reused UTF-8
+ * encoder; the buffer is handed to the channel whenever it fills up.
+ * Heap use is fixed no matter how much is written.
+ * @version 1.0
+ */
+class ChannelWriter implements AutoCloseable {
+
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private ByteBuffer scratch = ByteBuffer.allocate(1024); // length-prefixed strings
+    private long bytesWritten;
+
+    ChannelWriter(WritableByteChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Write text as UTF-8
+     */
+    void write(CharSequence text) throws IOException {
+        CharBuffer chars = CharBuffer.wrap(text);
+        encoder.reset();
+        while (true) {
+            CoderResult result = encoder.encode(chars, buffer, true);
+            if (result.isOverflow()) {
+                drain();
+            } else {
+                break;
+            }
+        }
+        while (encoder.flush(buffer).isOverflow()) {
+            drain();
+        }
+    }
+
+    void writeByte(int value) throws IOException {
+        ensure(1);
+        buffer.put((byte) value);
+    }
+
+    void writeInt(int value) throws IOException {
+        ensure(4);
+        buffer.putInt(value);
+    }
+
+    void writeLong(long value) throws IOException {
+        ensure(8);
+        buffer.putLong(value);
+    }
+
+    void writeDouble(double value) throws IOException {
+        ensure(8);
+        buffer.putDouble(value);
+    }
+
+    /**
+     * Write a string as its UTF-8 byte length (int) followed by the bytes;
+     * null is written as length -1
+     */
+    void writeLengthPrefixed(String value) throws IOException {
+        if (value == null) {
+            writeInt(-1);
+            return;
+        }
+        int maxBytes = (int) Math.ceil(value.length() * (double) encoder.maxBytesPerChar());
+        if (scratch.capacity() < maxBytes) {
+            scratch = ByteBuffer.allocate(Math.max(maxBytes, scratch.capacity() * 2));
+        }
+        scratch.clear();
+        encoder.reset();
+        encoder.encode(CharBuffer.wrap(value), scratch, true);
+        encoder.flush(scratch);
+        scratch.flip();
+
+        writeInt(scratch.remaining());
+        while (scratch.hasRemaining()) {
+            if (!buffer.hasRemaining()) {
+                drain();
+            }
+            int chunk = Math.min(scratch.remaining(), buffer.remaining());
+            int limit = scratch.limit();
+            scratch.limit(scratch.position() + chunk);
+            buffer.put(scratch);
+            scratch.limit(limit);
+        }
+    }
+
+    /** Bytes handed to the channel so far (before compression, if any) */
+    long getBytesWritten() {
+        return bytesWritten + buffer.position();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            drain();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            drain();
+        }
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            bytesWritten += channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
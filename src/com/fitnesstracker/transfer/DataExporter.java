@@ -0,0 +1,453 @@
+package com.fitnesstracker.transfer;
+
+import com.fitnesstracker.database.ActivityDAO;
+import com.fitnesstracker.database.DataAccessException;
+import com.fitnesstracker.database.GoalDAO;
+import com.fitnesstracker.database.RowCallback;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * DataExporter - Streams Activities or Goals from a database cursor to a file
+ *
+ * Purpose: Gives the analytics team the data without SSMS queries.
+ *
+ * How it works:
+ * - Rows come straight from a forward-only cursor (ActivityDAO/GoalDAO
+ *   exportRows) and are encoded into one reused direct buffer that is
+ *   written to a FileChannel; no row is kept after it is written
+ * - Optional gzip compression wraps the channel
+ * - The file is written under a .part name and renamed when complete,
+ *   so a failed export never leaves a truncated file behind
+ *
+ * Formats (field names are the DAOs' EXPORT_COLUMNS, so CSV and NDJSON
+ * exports of activities can be imported again with ActivityImporter):
+ * - CSV: header row, RFC 4180 quoting, timestamps as yyyy-MM-ddTHH:mm:ss
+ * - NDJSON: one JSON object per row
+ * - BINARY: big-endian; "FTX1", table name, column count, then per column
+ *   its name and type code (I=int, L=long, D=double, S=string,
+ *   T=timestamp millis, B=boolean); each row is byte 1 followed by the
+ *   values (strings are length-prefixed UTF-8, length -1 for null; other
+ *   values are preceded by a presence byte, 0 for null); the file ends
+ *   with byte 0 and the row count (long)
+ * @version 1.0
+ */
+public class DataExporter {
+
+    /**
+     * What to export
+     */
+    public enum Table {
+        ACTIVITIES(ActivityDAO.EXPORT_COLUMNS),
+        GOALS(GoalDAO.EXPORT_COLUMNS);
+
+        private final List<String> columns;
+
+        Table(List<String> columns) {
+            this.columns = columns;
+        }
+    }
+
+    /**
+     * Output formats
+     */
+    public enum Format {
+        CSV,
+        NDJSON,
+        BINARY;
+
+        /**
+         * Pick the format from a file name (.csv, .ndjson/.jsonl, .bin; optionally with .gz)
+         *
+         * @throws IllegalArgumentException for other extensions
+         */
+        public static Format fromFileName(String fileName) {
+            String name = fileName.toLowerCase(Locale.ROOT);
+            if (name.endsWith(".gz")) {
+                name = name.substring(0, name.length() - 3);
+            }
+            if (name.endsWith(".csv")) {
+                return CSV;
+            }
+            if (name.endsWith(".ndjson") || name.endsWith(".jsonl")) {
+                return NDJSON;
+            }
+            if (name.endsWith(".bin")) {
+                return BINARY;
+            }
+            throw new IllegalArgumentException("Unknown export format for " + fileName +
+                " (expected .csv, .ndjson, .jsonl or .bin, optionally followed by .gz)");
+        }
+    }
+
+    private static final byte[] MAGIC = {'F', 'T', 'X', '1'};
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+
+    private final ActivityDAO activityDAO;
+    private final GoalDAO goalDAO;
+
+    public DataExporter(ActivityDAO activityDAO, GoalDAO goalDAO) {
+        this.activityDAO = activityDAO;
+        this.goalDAO = goalDAO;
+    }
+
+    /**
+     * Export a table to a file
+     *
+     * @param table activities or goals
+     * @param file target file (replaced if it exists)
+     * @param format output format
+     * @param gzip true to gzip the output
+     * @param from only rows dated on or after this time (ActivityDate / StartDate), or null
+     * @param to only rows dated before this time, or null
+     * @return rows and bytes written
+     * @throws IOException if the file cannot be written
+     * @throws DataAccessException if the query fails
+     */
+    public ExportResult export(Table table, Path file, Format format, boolean gzip, Date from, Date to)
+            throws IOException {
+        long start = System.nanoTime();
+        Path partFile = file.resolveSibling(file.getFileName() + ".part");
+
+        long rows;
+        long bytes;
+        try {
+            // Closed here as well, in case the gzip stream fails before it owns the channel
+            try (FileChannel fileChannel = FileChannel.open(partFile, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                WritableByteChannel channel = gzip
+                    ? Channels.newChannel(new GZIPOutputStream(Channels.newOutputStream(fileChannel), 64 * 1024))
+                    : fileChannel;
+
+                try (ChannelWriter out = new ChannelWriter(channel)) {
+                    RowEncoder encoder = new RowEncoder(out, format, table);
+                    try {
+                        rows = table == Table.ACTIVITIES
+                            ? activityDAO.exportRows(from, to, encoder)
+                            : goalDAO.exportRows(from, to, encoder);
+                    } catch (UncheckedIOException e) {
+                        throw e.getCause();
+                    }
+                    encoder.finish(rows);
+                    bytes = out.getBytesWritten();
+                }
+            }
+            Files.move(partFile, file, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(partFile);
+            throw e;
+        }
+
+        ExportResult result = new ExportResult(rows, bytes, Files.size(file), System.nanoTime() - start);
+        System.out.println(" Exported " + table.name().toLowerCase(Locale.ROOT) + " to " +
+            file.getFileName() + ": " + result);
+        return result;
+    }
+
+    /**
+     * Writes each cursor row in the chosen format
+     * Column types are read from the result set metadata on the first row;
+     * names come from the table definition because engines differ in the
+     * case they report them in.
+     */
+    private static final class RowEncoder implements RowCallback {
+        private final ChannelWriter out;
+        private final Format format;
+        private final Table table;
+        private final StringBuilder line = new StringBuilder(256);
+        private String[] names;
+        private char[] kinds;
+
+        RowEncoder(ChannelWriter out, Format format, Table table) {
+            this.out = out;
+            this.format = format;
+            this.table = table;
+        }
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            try {
+                if (names == null) {
+                    readColumns(rs.getMetaData());
+                    writeHeader();
+                }
+                if (format == Format.BINARY) {
+                    writeBinaryRow(rs);
+                } else {
+                    line.setLength(0);
+                    if (format == Format.CSV) {
+                        appendCsvRow(rs);
+                    } else {
+                        appendJsonRow(rs);
+                    }
+                    line.append('\n');
+                    out.write(line);
+                }
+            } catch (IOException e) {
+                // Surfaced by export() once the cursor has been closed
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * Write the end of the file (and the header for an empty export)
+         */
+        void finish(long rowCount) throws IOException {
+            if (names == null) {
+                // No rows: write the names with types left as strings
+                names = table.columns.toArray(new String[0]);
+                kinds = new char[names.length];
+                Arrays.fill(kinds, 'S');
+                writeHeader();
+            }
+            if (format == Format.BINARY) {
+                out.writeByte(0);
+                out.writeLong(rowCount);
+            }
+        }
+
+        private void readColumns(ResultSetMetaData meta) throws SQLException {
+            names = table.columns.toArray(new String[0]);
+            kinds = new char[names.length];
+            for (int i = 0; i < names.length; i++) {
+                kinds[i] = kindOf(meta.getColumnType(i + 1));
+            }
+        }
+
+        private static char kindOf(int sqlType) {
+            switch (sqlType) {
+                case Types.TINYINT:
+                case Types.SMALLINT:
+                case Types.INTEGER:
+                    return 'I';
+                case Types.BIGINT:
+                    return 'L';
+                case Types.REAL:
+                case Types.FLOAT:
+                case Types.DOUBLE:
+                case Types.DECIMAL:
+                case Types.NUMERIC:
+                    return 'D';
+                case Types.BIT:
+                case Types.BOOLEAN:
+                    return 'B';
+                case Types.DATE:
+                case Types.TIMESTAMP:
+                case Types.TIMESTAMP_WITH_TIMEZONE:
+                    return 'T';
+                default:
+                    return 'S';
+            }
+        }
+
+        private void writeHeader() throws IOException {
+            if (format == Format.BINARY) {
+                for (byte b : MAGIC) {
+                    out.writeByte(b);
+                }
+                out.writeLengthPrefixed(table.name());
+                out.writeInt(names.length);
+                for (int i = 0; i < names.length; i++) {
+                    out.writeLengthPrefixed(names[i]);
+                    out.writeByte(kinds[i]);
+                }
+            } else if (format == Format.CSV) {
+                line.setLength(0);
+                for (int i = 0; i < names.length; i++) {
+                    if (i > 0) {
+                        line.append(',');
+                    }
+                    appendCsvValue(names[i]);
+                }
+                line.append('\n');
+                out.write(line);
+            }
+        }
+
+        private void appendCsvRow(ResultSet rs) throws SQLException {
+            for (int i = 0; i < names.length; i++) {
+                if (i > 0) {
+                    line.append(',');
+                }
+                String value = textValue(rs, i);
+                if (value != null) {
+                    if (kinds[i] == 'S') {
+                        appendCsvValue(value);
+                    } else {
+                        line.append(value);
+                    }
+                }
+            }
+        }
+
+        private void appendCsvValue(String value) {
+            boolean quote = false;
+            for (int i = 0; i < value.length() && !quote; i++) {
+                char c = value.charAt(i);
+                quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            if (!quote && !value.startsWith(" ") && !value.endsWith(" ")) {
+                line.append(value);
+                return;
+            }
+            line.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"') {
+                    line.append('"');
+                }
+                // Line breaks would split the record for line-based readers
+                line.append(c == '\n' || c == '\r' ? ' ' : c);
+            }
+            line.append('"');
+        }
+
+        private void appendJsonRow(ResultSet rs) throws SQLException {
+            line.append('{');
+            for (int i = 0; i < names.length; i++) {
+                if (i > 0) {
+                    line.append(',');
+                }
+                line.append('"').append(names[i]).append("\":");
+                String value = textValue(rs, i);
+                if (value == null) {
+                    line.append("null");
+                } else if (kinds[i] == 'S' || kinds[i] == 'T') {
+                    appendJsonString(value);
+                } else {
+                    line.append(value);
+                }
+            }
+            line.append('}');
+        }
+
+        private void appendJsonString(String value) {
+            line.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '"': line.append("\\\""); break;
+                    case '\\': line.append("\\\\"); break;
+                    case '\n': line.append("\\n"); break;
+                    case '\r': line.append("\\r"); break;
+                    case '\t': line.append("\\t"); break;
+                    default:
+                        if (c < 0x20) {
+                            line.append(String.format("\\u%04x", (int) c));
+                        } else {
+                            line.append(c);
+                        }
+                }
+            }
+            line.append('"');
+        }
+
+        /**
+         * Column value as text, or null for SQL NULL
+         */
+        private String textValue(ResultSet rs, int i) throws SQLException {
+            int column = i + 1;
+            switch (kinds[i]) {
+                case 'I': {
+                    int value = rs.getInt(column);
+                    return rs.wasNull() ? null : Integer.toString(value);
+                }
+                case 'L': {
+                    long value = rs.getLong(column);
+                    return rs.wasNull() ? null : Long.toString(value);
+                }
+                case 'D': {
+                    double value = rs.getDouble(column);
+                    if (rs.wasNull()) {
+                        return null;
+                    }
+                    return value == Math.rint(value) && Math.abs(value) < 1e15
+                        ? Long.toString((long) value) : Double.toString(value);
+                }
+                case 'B': {
+                    boolean value = rs.getBoolean(column);
+                    return rs.wasNull() ? null : Boolean.toString(value);
+                }
+                case 'T': {
+                    Timestamp value = rs.getTimestamp(column);
+                    return value == null ? null : TIMESTAMP_FORMAT.format(value.toLocalDateTime());
+                }
+                default:
+                    return rs.getString(column);
+            }
+        }
+
+        private void writeBinaryRow(ResultSet rs) throws SQLException, IOException {
+            out.writeByte(1);
+            for (int i = 0; i < names.length; i++) {
+                int column = i + 1;
+                switch (kinds[i]) {
+                    case 'I': {
+                        int value = rs.getInt(column);
+                        writePresence(rs.wasNull());
+                        if (!rs.wasNull()) {
+                            out.writeInt(value);
+                        }
+                        break;
+                    }
+                    case 'L': {
+                        long value = rs.getLong(column);
+                        writePresence(rs.wasNull());
+                        if (!rs.wasNull()) {
+                            out.writeLong(value);
+                        }
+                        break;
+                    }
+                    case 'D': {
+                        double value = rs.getDouble(column);
+                        writePresence(rs.wasNull());
+                        if (!rs.wasNull()) {
+                            out.writeDouble(value);
+                        }
+                        break;
+                    }
+                    case 'B': {
+                        boolean value = rs.getBoolean(column);
+                        writePresence(rs.wasNull());
+                        if (!rs.wasNull()) {
+                            out.writeByte(value ? 1 : 0);
+                        }
+                        break;
+                    }
+                    case 'T': {
+                        Timestamp value = rs.getTimestamp(column);
+                        writePresence(value == null);
+                        if (value != null) {
+                            out.writeLong(value.getTime());
+                        }
+                        break;
+                    }
+                    default:
+                        out.writeLengthPrefixed(rs.getString(column));
+                }
+            }
+        }
+
+        private void writePresence(boolean isNull) throws IOException {
+            out.writeByte(isNull ? 0 : 1);
+        }
+    }
+}
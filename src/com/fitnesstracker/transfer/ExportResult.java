@@ -0,0 +1,49 @@
+package com.fitnesstracker.transfer;
+
+/**
+ * ExportResult - Outcome of an export
+ * @version 1.0
+ */
+public class ExportResult {
+
+    private final long rows;
+    private final long uncompressedBytes;
+    private final long fileBytes;
+    private final long elapsedNanos;
+
+    ExportResult(long rows, long uncompressedBytes, long fileBytes, long elapsedNanos) {
+        this.rows = rows;
+        this.uncompressedBytes = uncompressedBytes;
+        this.fileBytes = fileBytes;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public long getRowCount() {
+        return rows;
+    }
+
+    /** Bytes produced before compression */
+    public long getUncompressedBytes() {
+        return uncompressedBytes;
+    }
+
+    /** Size of the written file */
+    public long getFileBytes() {
+        return fileBytes;
+    }
+
+    public double getElapsedMillis() {
+        return elapsedNanos / 1_000_000.0;
+    }
+
+    /** Rows written per second, or 0 if nothing was timed */
+    public double getRowsPerSecond() {
+        return elapsedNanos == 0 ? 0.0 : rows * 1_000_000_000.0 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d rows, %d bytes (%d on disk) in %.1f ms (%.0f rows/s)",
+            rows, uncompressedBytes, fileBytes, getElapsedMillis(), getRowsPerSecond());
+    }
+}
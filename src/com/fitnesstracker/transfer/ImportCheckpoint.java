@@ -0,0 +1,93 @@
+package com.fitnesstracker.transfer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * ImportCheckpoint - Position of the last committed import batch
+ *
+ * Written after every committed batch, so an interrupted import can
+ * continue at the next line instead of starting over (and inserting
+ * duplicates). The source file's size and modification time are recorded
+ * to detect that a different file is being imported under the same name.
+ * @version 1.0
+ */
+class ImportCheckpoint {
+
+    final long offset;
+    final long lineNumber;
+    final long imported;
+    final long failed;
+    final long fileSize;
+    final long fileModified;
+
+    ImportCheckpoint(long offset, long lineNumber, long imported, long failed,
+                     long fileSize, long fileModified) {
+        this.offset = offset;
+        this.lineNumber = lineNumber;
+        this.imported = imported;
+        this.failed = failed;
+        this.fileSize = fileSize;
+        this.fileModified = fileModified;
+    }
+
+    /**
+     * Whether this checkpoint was taken for the given source file
+     */
+    boolean matches(long size, long modified) {
+        return fileSize == size && fileModified == modified && offset <= size;
+    }
+
+    /**
+     * Load a checkpoint
+     *
+     * @return the checkpoint, or null if there is none or it is unreadable
+     */
+    static ImportCheckpoint load(Path path) {
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+        Properties props = new Properties();
+        try (InputStream in = Files.newInputStream(path)) {
+            props.load(in);
+            return new ImportCheckpoint(
+                Long.parseLong(props.getProperty("offset")),
+                Long.parseLong(props.getProperty("lineNumber")),
+                Long.parseLong(props.getProperty("imported")),
+                Long.parseLong(props.getProperty("failed")),
+                Long.parseLong(props.getProperty("fileSize")),
+                Long.parseLong(props.getProperty("fileModified")));
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Ignoring unreadable import checkpoint " + path + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Save atomically: write a temporary file, then rename it over the old one
+     */
+    void save(Path path) throws IOException {
+        Properties props = new Properties();
+        props.setProperty("offset", Long.toString(offset));
+        props.setProperty("lineNumber", Long.toString(lineNumber));
+        props.setProperty("imported", Long.toString(imported));
+        props.setProperty("failed", Long.toString(failed));
+        props.setProperty("fileSize", Long.toString(fileSize));
+        props.setProperty("fileModified", Long.toString(fileModified));
+
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(temp)) {
+            props.store(out, "Activity import checkpoint");
+        }
+        try {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.fitnesstracker.transfer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * ImportResult - Outcome of an activity import
+ *
+ * Counts cover the whole file, including lines committed by an earlier,
+ * interrupted run. Only the first MAX_REPORTED_ERRORS line errors are
+ * kept so that a badly broken file cannot exhaust memory.
+ * @version 1.0
+ */
+public class ImportResult {
+
+    public static final int MAX_REPORTED_ERRORS = 1000;
+
+    private final List<LineError> errors = new ArrayList<>();
+    private long linesRead;
+    private long imported;
+    private long failed;
+    private long resumedFromLine;
+    private long elapsedNanos;
+    private boolean completed;
+    private String stopReason;
+
+    void addImported(long count) {
+        imported += count;
+    }
+
+    void addError(long lineNumber, String message) {
+        failed++;
+        if (errors.size() < MAX_REPORTED_ERRORS) {
+            errors.add(new LineError(lineNumber, message));
+        }
+    }
+
+    void restore(ImportCheckpoint checkpoint) {
+        imported = checkpoint.imported;
+        failed = checkpoint.failed;
+        linesRead = checkpoint.lineNumber;
+        resumedFromLine = checkpoint.lineNumber + 1;
+    }
+
+    void setLinesRead(long linesRead) {
+        this.linesRead = linesRead;
+    }
+
+    void setElapsedNanos(long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    void setCompleted(boolean completed) {
+        this.completed = completed;
+    }
+
+    void setStopReason(String stopReason) {
+        this.stopReason = stopReason;
+    }
+
+    /** Lines read from the file, including the header */
+    public long getLinesRead() {
+        return linesRead;
+    }
+
+    public long getImportedCount() {
+        return imported;
+    }
+
+    public long getFailedCount() {
+        return failed;
+    }
+
+    /** First line read by this run, or 0 if it started at the beginning */
+    public long getResumedFromLine() {
+        return resumedFromLine;
+    }
+
+    /** False if the import stopped early (error or cancellation); it can be resumed */
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    /** Why an incomplete import stopped, or null */
+    public String getStopReason() {
+        return stopReason;
+    }
+
+    /** Line errors, in file order (at most MAX_REPORTED_ERRORS) */
+    public List<LineError> getErrors() {
+        return Collections.unmodifiableList(errors);
+    }
+
+    public double getElapsedMillis() {
+        return elapsedNanos / 1_000_000.0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d imported, %d failed, %d lines read in %.1f s%s",
+            imported, failed, linesRead, elapsedNanos / 1_000_000_000.0,
+            completed ? "" : " (stopped" + (stopReason == null ? "" : ": " + stopReason) +
+                "; run again to resume)");
+    }
+
+    /**
+     * LineError - A line that could not be imported
+     */
+    public static class LineError {
+        private final long lineNumber;
+        private final String message;
+
+        LineError(long lineNumber, String message) {
+            this.lineNumber = lineNumber;
+            this.message = message;
+        }
+
+        /** 1-based line number in the source file */
+        public long getLineNumber() {
+            return lineNumber;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            return "line " + lineNumber + ": " + message;
+        }
+    }
+}
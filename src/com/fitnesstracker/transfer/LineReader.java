@@ -0,0 +1,94 @@
+package com.fitnesstracker.transfer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * LineReader - Reads UTF-8 lines from a file channel and tracks byte offsets
+ *
+ * Unlike BufferedReader it knows the exact file offset after every line,
+ * which is what an import checkpoint has to record to resume later.
+ * Memory use is one read buffer plus the longest line.
+ * @version 1.0
+ */
+class LineReader {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private byte[] line = new byte[256];
+    private long offset; // file offset just after the last line returned
+    private boolean eof;
+
+    /**
+     * @param channel channel to read from
+     * @param startOffset offset to start reading at (must be the start of a line)
+     */
+    LineReader(FileChannel channel, long startOffset) throws IOException {
+        this.channel = channel;
+        this.offset = startOffset;
+        channel.position(startOffset);
+        buffer.flip(); // start empty
+    }
+
+    /**
+     * Read the next line, without its line terminator
+     *
+     * @return the line, or null at end of file
+     */
+    String readLine() throws IOException {
+        int length = 0;
+        long consumed = 0;
+        while (true) {
+            if (!buffer.hasRemaining()) {
+                if (eof || !fill()) {
+                    if (consumed == 0) {
+                        return null;
+                    }
+                    break; // last line without a terminator
+                }
+            }
+            byte b = buffer.get();
+            consumed++;
+            if (b == '\n') {
+                break;
+            }
+            if (length == line.length) {
+                line = Arrays.copyOf(line, length * 2);
+            }
+            line[length++] = b;
+        }
+
+        boolean atFileStart = offset == 0;
+        offset += consumed;
+        if (length > 0 && line[length - 1] == '\r') {
+            length--;
+        }
+        int start = 0;
+        if (atFileStart && length >= 3 && line[0] == (byte) 0xEF && line[1] == (byte) 0xBB
+                && line[2] == (byte) 0xBF) {
+            start = 3; // UTF-8 byte order mark written by spreadsheet tools
+        }
+        return new String(line, start, length - start, StandardCharsets.UTF_8);
+    }
+
+    /** File offset just after the last line returned */
+    long getOffset() {
+        return offset;
+    }
+
+    private boolean fill() throws IOException {
+        buffer.clear();
+        int read = channel.read(buffer);
+        buffer.flip();
+        if (read < 0) {
+            eof = true;
+            return false;
+        }
+        return read > 0 || fill();
+    }
+}
@@ -0,0 +1,257 @@
+package com.fitnesstracker.transfer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * RecordParser - Turns one line of CSV or NDJSON into field values
+ *
+ * Field names are lower-cased so "ExerciseType" and "exercisetype" match.
+ * Both formats are handled line by line: CSV fields may be quoted
+ * (with "" for a quote) but must not contain line breaks, and each
+ * NDJSON line holds one flat JSON object.
+ * @version 1.0
+ */
+abstract class RecordParser {
+
+    /**
+     * Parse a data line
+     *
+     * @param line the line (never blank)
+     * @return field name to value; missing and null values are absent
+     * @throws IllegalArgumentException if the line is malformed
+     */
+    abstract Map<String, String> parse(String line);
+
+    /**
+     * Whether the first line is a header that has to be read before any data
+     */
+    abstract boolean hasHeader();
+
+    /**
+     * Read the header line (only called when hasHeader() is true)
+     */
+    void readHeader(String line) {
+    }
+
+    /**
+     * Create a parser for a format
+     */
+    static RecordParser forFormat(ActivityImporter.Format format) {
+        return format == ActivityImporter.Format.CSV ? new Csv() : new Ndjson();
+    }
+
+    /**
+     * Comma separated values with a header row
+     */
+    static final class Csv extends RecordParser {
+        private String[] columns;
+
+        @Override
+        boolean hasHeader() {
+            return true;
+        }
+
+        @Override
+        void readHeader(String line) {
+            List<String> names = splitLine(line);
+            columns = new String[names.size()];
+            for (int i = 0; i < columns.length; i++) {
+                columns[i] = names.get(i).trim().toLowerCase(Locale.ROOT);
+            }
+        }
+
+        @Override
+        Map<String, String> parse(String line) {
+            if (columns == null) {
+                throw new IllegalStateException("CSV header has not been read");
+            }
+            List<String> values = splitLine(line);
+            if (values.size() > columns.length) {
+                throw new IllegalArgumentException("Expected " + columns.length + " fields, found " +
+                    values.size());
+            }
+            Map<String, String> record = new HashMap<>();
+            for (int i = 0; i < values.size(); i++) {
+                String value = values.get(i);
+                if (!value.isEmpty()) {
+                    record.put(columns[i], value);
+                }
+            }
+            return record;
+        }
+
+        static List<String> splitLine(String line) {
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt(i);
+                if (quoted) {
+                    if (c == '"') {
+                        if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                            field.append('"');
+                            i++;
+                        } else {
+                            quoted = false;
+                        }
+                    } else {
+                        field.append(c);
+                    }
+                } else if (c == '"' && field.length() == 0) {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else {
+                    field.append(c);
+                }
+            }
+            if (quoted) {
+                throw new IllegalArgumentException("Unterminated quoted field");
+            }
+            fields.add(field.toString());
+            return fields;
+        }
+    }
+
+    /**
+     * Newline delimited JSON: one flat object per line
+     * Values may be strings, numbers, booleans or null; nested objects
+     * and arrays are rejected.
+     */
+    static final class Ndjson extends RecordParser {
+        private String line;
+        private int pos;
+
+        @Override
+        boolean hasHeader() {
+            return false;
+        }
+
+        @Override
+        Map<String, String> parse(String line) {
+            this.line = line;
+            this.pos = 0;
+            Map<String, String> record = new HashMap<>();
+
+            skipWhitespace();
+            expect('{');
+            skipWhitespace();
+            if (peek() == '}') {
+                pos++;
+            } else {
+                while (true) {
+                    skipWhitespace();
+                    String name = readString();
+                    skipWhitespace();
+                    expect(':');
+                    skipWhitespace();
+                    String value = readValue();
+                    if (value != null) {
+                        record.put(name.toLowerCase(Locale.ROOT), value);
+                    }
+                    skipWhitespace();
+                    char c = next();
+                    if (c == '}') {
+                        break;
+                    }
+                    if (c != ',') {
+                        throw error("Expected ',' or '}'");
+                    }
+                }
+            }
+            skipWhitespace();
+            if (pos < line.length()) {
+                throw error("Unexpected text after object");
+            }
+            return record;
+        }
+
+        private String readValue() {
+            char c = peek();
+            if (c == '"') {
+                return readString();
+            }
+            if (c == '{' || c == '[') {
+                throw error("Nested values are not supported");
+            }
+            int start = pos;
+            while (pos < line.length() && ",} \t".indexOf(line.charAt(pos)) < 0) {
+                pos++;
+            }
+            String literal = line.substring(start, pos);
+            if (literal.isEmpty()) {
+                throw error("Missing value");
+            }
+            return "null".equals(literal) ? null : literal;
+        }
+
+        private String readString() {
+            expect('"');
+            StringBuilder sb = new StringBuilder();
+            while (true) {
+                char c = next();
+                if (c == '"') {
+                    return sb.toString();
+                }
+                if (c != '\\') {
+                    sb.append(c);
+                    continue;
+                }
+                char escaped = next();
+                switch (escaped) {
+                    case 'n': sb.append('\n'); break;
+                    case 'r': sb.append('\r'); break;
+                    case 't': sb.append('\t'); break;
+                    case 'b': sb.append('\b'); break;
+                    case 'f': sb.append('\f'); break;
+                    case 'u':
+                        if (pos + 4 > line.length()) {
+                            throw error("Bad unicode escape");
+                        }
+                        try {
+                            sb.append((char) Integer.parseInt(line.substring(pos, pos + 4), 16));
+                        } catch (NumberFormatException e) {
+                            throw error("Bad unicode escape");
+                        }
+                        pos += 4;
+                        break;
+                    default: sb.append(escaped); // \" \\ \/
+                }
+            }
+        }
+
+        private void skipWhitespace() {
+            while (pos < line.length() && Character.isWhitespace(line.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        private char peek() {
+            if (pos >= line.length()) {
+                throw error("Unexpected end of line");
+            }
+            return line.charAt(pos);
+        }
+
+        private char next() {
+            char c = peek();
+            pos++;
+            return c;
+        }
+
+        private void expect(char expected) {
+            if (next() != expected) {
+                throw error("Expected '" + expected + "'");
+            }
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at column " + (pos + 1));
+        }
+    }
+}
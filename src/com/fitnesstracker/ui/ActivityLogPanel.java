@@ -8,8 +8,17 @@ import com.fitnesstracker.model.Exercise;
 import com.fitnesstracker.model.Activity;
 import com.fitnesstracker.decorator.EquipmentDecorator;
 import com.fitnesstracker.decorator.MusicDecorator;
+import com.fitnesstracker.database.ActivityDAO;
+import com.fitnesstracker.database.DatabaseConfig;
+import com.fitnesstracker.database.DatabaseManager;
+import com.fitnesstracker.transfer.ActivityImporter;
+import com.fitnesstracker.transfer.ImportResult;
 import javax.swing.*;
 import java.awt.*;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
 
 
 /**
@@ -29,6 +38,8 @@ public class ActivityLogPanel extends JPanel {
     private JCheckBox musicCheck;
     private JTextField playlistField;
     private JTextArea notesArea;
+    private JButton importButton;
+    private JProgressBar importProgress;
     
     private ActivityTracker activityTracker;
     
@@ -235,8 +246,19 @@ public class ActivityLogPanel extends JPanel {
         clearButton.setPreferredSize(new Dimension(180, 45));
         clearButton.addActionListener(e -> clearForm());
         
+        importButton = MainFrame.createStyledButton(" Import File", MainFrame.BUTTON_BLUE);
+        importButton.setPreferredSize(new Dimension(180, 45));
+        importButton.addActionListener(e -> importActivities());
+        
+        importProgress = new JProgressBar(0, 1000);
+        importProgress.setPreferredSize(new Dimension(220, 24));
+        importProgress.setStringPainted(true);
+        importProgress.setVisible(false);
+        
         panel.add(logButton);
         panel.add(clearButton);
+        panel.add(importButton);
+        panel.add(importProgress);
         
         return panel;
     }
@@ -280,6 +302,104 @@ public class ActivityLogPanel extends JPanel {
         }
     }
     
+    /**
+     * Import activities from a CSV or NDJSON file in the background
+     * An interrupted import of the same file can be resumed.
+     */
+    private void importActivities() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle("Import Activities (.csv, .ndjson)");
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        File file = chooser.getSelectedFile();
+        
+        ActivityImporter.Format format;
+        try {
+            format = ActivityImporter.Format.fromFileName(file.getName());
+        } catch (IllegalArgumentException ex) {
+            JOptionPane.showMessageDialog(this, ex.getMessage(), "Import Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        
+        boolean resume = false;
+        if (Files.exists(ActivityImporter.checkpointPathFor(file.toPath()))) {
+            int choice = JOptionPane.showConfirmDialog(this,
+                "An earlier import of this file was interrupted.\nContinue where it stopped?",
+                "Resume Import", JOptionPane.YES_NO_CANCEL_OPTION);
+            if (choice == JOptionPane.CANCEL_OPTION || choice == JOptionPane.CLOSED_OPTION) {
+                return;
+            }
+            resume = choice == JOptionPane.YES_OPTION;
+        }
+        
+        int transactionSize = DatabaseManager.getInstance().getConfig()
+            .getInt(DatabaseConfig.IMPORT_BATCH_SIZE, 5000);
+        ActivityImporter importer = new ActivityImporter(new ActivityDAO(), transactionSize);
+        Path path = file.toPath();
+        boolean resumeImport = resume;
+        
+        importButton.setEnabled(false);
+        importProgress.setValue(0);
+        importProgress.setString("Importing...");
+        importProgress.setVisible(true);
+        revalidate();
+        
+        new SwingWorker<ImportResult, long[]>() {
+            @Override
+            protected ImportResult doInBackground() throws Exception {
+                return importer.importFile(path, format, resumeImport,
+                    (bytesRead, totalBytes, imported, failed) ->
+                        publish(new long[]{bytesRead, totalBytes, imported}));
+            }
+            
+            @Override
+            protected void process(List<long[]> chunks) {
+                long[] latest = chunks.get(chunks.size() - 1);
+                importProgress.setValue(latest[1] == 0 ? 1000 : (int) (latest[0] * 1000 / latest[1]));
+                importProgress.setString(latest[2] + " imported");
+            }
+            
+            @Override
+            protected void done() {
+                importButton.setEnabled(true);
+                importProgress.setVisible(false);
+                try {
+                    showImportResult(get());
+                } catch (Exception ex) {
+                    Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                    JOptionPane.showMessageDialog(ActivityLogPanel.this, "Import failed: " + cause.getMessage(),
+                        "Import Error", JOptionPane.ERROR_MESSAGE);
+                }
+                // Pick up whatever was committed, even after a failure
+                activityTracker.reloadActivities();
+            }
+        }.execute();
+    }
+    
+    private void showImportResult(ImportResult result) {
+        StringBuilder message = new StringBuilder();
+        message.append(String.format("Imported %d activities, %d lines failed.",
+            result.getImportedCount(), result.getFailedCount()));
+        if (!result.isCompleted()) {
+            message.append("\n\nImport stopped: ").append(result.getStopReason())
+                   .append("\nImport the same file again to resume.");
+        }
+        
+        List<ImportResult.LineError> errors = result.getErrors();
+        int shown = Math.min(errors.size(), 10);
+        if (shown > 0) {
+            message.append("\n\nFirst errors:");
+            for (int i = 0; i < shown; i++) {
+                message.append("\n").append(errors.get(i));
+            }
+        }
+        
+        JOptionPane.showMessageDialog(this, message.toString(), "Import Finished",
+            result.getFailedCount() == 0 && result.isCompleted()
+                ? JOptionPane.INFORMATION_MESSAGE : JOptionPane.WARNING_MESSAGE);
+    }
+    
     private void clearForm() {
         exerciseTypeCombo.setSelectedIndex(0);
         exerciseNameField.setText("");
@@ -1,17 +1,22 @@
 package com.fitnesstracker.ui;
 
+import com.fitnesstracker.model.Activity;
 import com.fitnesstracker.singleton.ActivityTracker;
 import com.fitnesstracker.singleton.GoalManagementSystem;
 import com.fitnesstracker.observer.ActivityObserver;
 import com.fitnesstracker.observer.GoalObserver;
+import com.fitnesstracker.store.ActivityTotals;
 import javax.swing.*;
 import java.awt.*;
+import java.util.List;
 
 /**
  * DashboardPanel - Modern dark theme dashboard
  */
 public class DashboardPanel extends JPanel implements ActivityObserver, GoalObserver {
     
+    private static final int RECENT_SHOWN = 5;
+    
     private JLabel totalActivitiesLabel;
     private JLabel totalCaloriesLabel;
     private JLabel totalDurationLabel;
@@ -175,14 +180,17 @@ public class DashboardPanel extends JPanel implements ActivityObserver, GoalObse
     }
     
     private void updateStatistics() {
-        int totalActivities = activityTracker.getAllActivities().size();
-        totalActivitiesLabel.setText(String.valueOf(totalActivities));
-        
-        double totalCalories = activityTracker.getTotalCaloriesBurned();
-        totalCaloriesLabel.setText(String.format("%.0f kcal", totalCalories));
-        
-        int totalDuration = activityTracker.getTotalDuration();
-        totalDurationLabel.setText(totalDuration + " min");
+        // Running totals: no database query and no copy of the activity list
+        ActivityTotals totals = activityTracker.getTotals();
+        if (activityTracker.getHistoryState() == ActivityTracker.HistoryState.LOADING) {
+            totalActivitiesLabel.setText("...");
+            totalCaloriesLabel.setText("...");
+            totalDurationLabel.setText("...");
+        } else {
+            totalActivitiesLabel.setText(String.valueOf(totals.getCount()));
+            totalCaloriesLabel.setText(String.format("%.0f kcal", totals.getCalories()));
+            totalDurationLabel.setText(totals.getMinutes() + " min");
+        }
         
         int activeGoals = goalSystem.getActiveGoals().size();
         activeGoalsLabel.setText(String.valueOf(activeGoals));
@@ -192,13 +200,14 @@ public class DashboardPanel extends JPanel implements ActivityObserver, GoalObse
     
     private void updateRecentActivities() {
         StringBuilder sb = new StringBuilder();
-        int count = 0;
-        for (int i = activityTracker.getAllActivities().size() - 1; i >= 0 && count < 5; i--) {
-            sb.append("• ").append(activityTracker.getAllActivities().get(i).getSummary()).append("\n");
-            count++;
+        List<Activity> recent = activityTracker.getRecentActivities(); // newest first
+        for (int i = 0; i < Math.min(RECENT_SHOWN, recent.size()); i++) {
+            sb.append("• ").append(recent.get(i).getSummary()).append("\n");
         }
         
-        if (sb.length() == 0) {
+        if (sb.length() == 0 && activityTracker.getHistoryState() == ActivityTracker.HistoryState.LOADING) {
+            sb.append("Loading activity history...");
+        } else if (sb.length() == 0) {
             sb.append("No activities logged yet.\n");
             sb.append("Start by logging your first activity in the 'Log Activity' tab!");
         }
@@ -211,6 +220,11 @@ public class DashboardPanel extends JPanel implements ActivityObserver, GoalObse
         updateStatistics();
     }
     
+    @Override
+    public void onHistoryStateChanged() {
+        updateStatistics();
+    }
+    
     @Override
     public void onGoalUpdated() {
         updateStatistics();